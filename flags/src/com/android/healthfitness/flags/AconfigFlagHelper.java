@@ -16,9 +16,17 @@
 
 package com.android.healthfitness.flags;
 
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_ACTIVITY_DATE_COUNTS;
 import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_ACTIVITY_INTENSITY;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_AGGREGATE_ROLLUPS;
 import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_ECOSYSTEM_METRICS;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_FOREIGN_KEY_INDEXES;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_KEYSET_PAGE_TOKENS;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_MEDICAL_RESOURCE_COMPRESSION;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_MEDICAL_RESOURCE_CONTENT_HASH;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_PACKED_SERIES_SAMPLES;
 import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_PERSONAL_HEALTH_RECORD;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_TIME_RANGE_INDEXES;
 import static com.android.healthfitness.flags.DatabaseVersions.LAST_ROLLED_OUT_DB_VERSION;
 import static com.android.internal.annotations.VisibleForTesting.Visibility.PRIVATE;
 
@@ -128,6 +136,17 @@ public final class AconfigFlagHelper {
         DB_VERSION_TO_DB_FLAG_MAP.put(DB_VERSION_ACTIVITY_INTENSITY, Flags::activityIntensityDb);
         DB_VERSION_TO_DB_FLAG_MAP.put(
                 DB_VERSION_ECOSYSTEM_METRICS, Flags::ecosystemMetricsDbChanges);
+        DB_VERSION_TO_DB_FLAG_MAP.put(DB_VERSION_AGGREGATE_ROLLUPS, Flags::aggregateRollupsDb);
+        DB_VERSION_TO_DB_FLAG_MAP.put(
+                DB_VERSION_PACKED_SERIES_SAMPLES, Flags::packedSeriesSamplesDb);
+        DB_VERSION_TO_DB_FLAG_MAP.put(DB_VERSION_KEYSET_PAGE_TOKENS, Flags::keysetPageTokensDb);
+        DB_VERSION_TO_DB_FLAG_MAP.put(DB_VERSION_ACTIVITY_DATE_COUNTS, Flags::activityDateCountsDb);
+        DB_VERSION_TO_DB_FLAG_MAP.put(DB_VERSION_TIME_RANGE_INDEXES, Flags::timeRangeIndexesDb);
+        DB_VERSION_TO_DB_FLAG_MAP.put(DB_VERSION_FOREIGN_KEY_INDEXES, Flags::foreignKeyIndexesDb);
+        DB_VERSION_TO_DB_FLAG_MAP.put(
+                DB_VERSION_MEDICAL_RESOURCE_CONTENT_HASH, Flags::medicalResourceContentHashDb);
+        DB_VERSION_TO_DB_FLAG_MAP.put(
+                DB_VERSION_MEDICAL_RESOURCE_COMPRESSION, Flags::medicalResourceCompressionDb);
 
         return DB_VERSION_TO_DB_FLAG_MAP;
     }
@@ -148,4 +167,69 @@ public final class AconfigFlagHelper {
     public static boolean isEcosystemMetricsEnabled() {
         return Flags.ecosystemMetrics() && isDbFlagEnabled(DB_VERSION_ECOSYSTEM_METRICS);
     }
+
+    /** Returns a boolean indicating whether aggregations can be answered from hourly rollups. */
+    public static boolean isAggregateRollupsEnabled() {
+        return Flags.aggregateRollups() && isAggregateRollupsDbEnabled();
+    }
+
+    /**
+     * Returns a boolean indicating whether the hourly rollups table exists and has to be kept up
+     * to date on writes, independently of whether aggregations read from it.
+     */
+    public static boolean isAggregateRollupsDbEnabled() {
+        return isDbFlagEnabled(DB_VERSION_AGGREGATE_ROLLUPS);
+    }
+
+    /** Returns a boolean indicating whether new series records store their samples packed. */
+    public static boolean isPackedSeriesSamplesEnabled() {
+        return Flags.packedSeriesSamples() && isPackedSeriesSamplesDbEnabled();
+    }
+
+    /**
+     * Returns a boolean indicating whether the series record tables have the columns for packed
+     * samples, which then have to be read whether or not new records are packed.
+     */
+    public static boolean isPackedSeriesSamplesDbEnabled() {
+        return isDbFlagEnabled(DB_VERSION_PACKED_SERIES_SAMPLES);
+    }
+
+    /**
+     * Returns a boolean indicating whether readRecords returns page tokens pointing at the first
+     * record of the next page, which is found through the index of the read order.
+     */
+    public static boolean isKeysetPageTokensEnabled() {
+        return Flags.keysetPageTokens() && isDbFlagEnabled(DB_VERSION_KEYSET_PAGE_TOKENS);
+    }
+
+    /**
+     * Returns a boolean indicating whether activity dates are only maintained on writes, with the
+     * daily resync just repairing the days whose record counts drifted.
+     */
+    public static boolean isActivityDateCountsEnabled() {
+        return Flags.activityDateCounts() && isActivityDateCountsDbEnabled();
+    }
+
+    /**
+     * Returns a boolean indicating whether the activity date table counts the records of each day,
+     * which then have to be kept up to date on writes.
+     */
+    public static boolean isActivityDateCountsDbEnabled() {
+        return isDbFlagEnabled(DB_VERSION_ACTIVITY_DATE_COUNTS);
+    }
+
+    /**
+     * Returns a boolean indicating whether upserts of medical resources are skipped when their FHIR
+     * data has the hash stored for the existing resource.
+     */
+    public static boolean isMedicalResourceContentHashEnabled() {
+        return Flags.medicalResourceContentHash()
+                && isDbFlagEnabled(DB_VERSION_MEDICAL_RESOURCE_CONTENT_HASH);
+    }
+
+    /** Returns a boolean indicating whether the FHIR data of medical resources is compressed. */
+    public static boolean isMedicalResourceCompressionEnabled() {
+        return Flags.medicalResourceCompression()
+                && isDbFlagEnabled(DB_VERSION_MEDICAL_RESOURCE_COMPRESSION);
+    }
 }
@@ -35,6 +35,14 @@ public final class DatabaseVersions {
 
     public static final int DB_VERSION_ACTIVITY_INTENSITY = 16;
     public static final int DB_VERSION_ECOSYSTEM_METRICS = 17;
+    public static final int DB_VERSION_AGGREGATE_ROLLUPS = 18;
+    public static final int DB_VERSION_PACKED_SERIES_SAMPLES = 19;
+    public static final int DB_VERSION_KEYSET_PAGE_TOKENS = 20;
+    public static final int DB_VERSION_ACTIVITY_DATE_COUNTS = 21;
+    public static final int DB_VERSION_TIME_RANGE_INDEXES = 22;
+    public static final int DB_VERSION_FOREIGN_KEY_INDEXES = 23;
+    public static final int DB_VERSION_MEDICAL_RESOURCE_CONTENT_HASH = 24;
+    public static final int DB_VERSION_MEDICAL_RESOURCE_COMPRESSION = 25;
 
     // For historical reasons, we do not support versions below this
     // See go/hc-mainline-dev/trunk_stable/db-and-aconfig#a-bit-of-history
@@ -43,10 +43,25 @@ public final class PageTokenWrapper {
     private static final int OFFSET_START_BIT = 45;
     private static final int TIMESTAMP_START_BIT = 1;
 
+    /**
+     * Mask of the low bits of the row id kept in a page token, next to its timestamp. The row id
+     * only tells apart the records of the same timestamp, which are few enough for the low bits to
+     * tell them apart as well, see {@link #ofRowId}.
+     */
+    public static final long ROW_ID_LOW_BITS_MASK = (1L << 17) - 1;
+
+    // Row id tokens are negative, with the next bit unset so that other negative numbers, such as
+    // DEFAULT_LONG, are still invalid.
+    private static final long ROW_ID_TOKEN_BIT = 1L << 63;
+    private static final long INVALID_ROW_ID_TOKEN_BIT = 1L << 62;
+    private static final int ROW_ID_START_BIT = 45;
+
     private final boolean mIsAscending;
     private final long mTimeMillis;
     private final int mOffset;
     private final boolean mIsTimestampSet;
+    private final long mRowIdLowBits;
+    private final boolean mIsRowIdSet;
     private final boolean mIsEmpty;
 
     /** isAscending stored in the page token. */
@@ -69,6 +84,19 @@ public final class PageTokenWrapper {
         return mIsTimestampSet;
     }
 
+    /**
+     * Low bits of the row id of the first record of the next page stored in the page token, see
+     * {@link #ROW_ID_LOW_BITS_MASK}.
+     */
+    public long rowIdLowBits() {
+        return mRowIdLowBits;
+    }
+
+    /** Whether or not the row id is set, next to the timestamp and instead of the offset. */
+    public boolean isRowIdSet() {
+        return mIsRowIdSet;
+    }
+
     /** Whether or not the page token contains meaningful values. */
     public boolean isEmpty() {
         return mIsEmpty;
@@ -91,6 +119,26 @@ public final class PageTokenWrapper {
         return new PageTokenWrapper(isAscending, timeMillis, boundedOffset);
     }
 
+    /**
+     * Generate a page token pointing at the record with {@code timeMillis} and {@code rowId}, which
+     * is the first record of the next page. Unlike an offset, the row id lets the next page be read
+     * starting from that record, without reading the records of previous pages again. The next page
+     * still starts at the right place if that record has been deleted or updated since.
+     *
+     * <p>Only the low bits of {@code rowId} fit in the token next to the timestamp. They are enough
+     * to recover the row id from the records with the same timestamp, as long as their row ids
+     * don't span more than {@link #ROW_ID_LOW_BITS_MASK}.
+     *
+     * <p>{@code timeMillis} has to be non-negative and cannot exceed 2^44-1. {@code rowId} has to
+     * be non-negative.
+     */
+    public static PageTokenWrapper ofRowId(boolean isAscending, long timeMillis, long rowId) {
+        checkArgument(timeMillis >= 0, "timestamp can not be negative");
+        checkArgument(timeMillis <= MAX_ALLOWED_TIME_MILLIS, "timestamp too large");
+        checkArgument(rowId >= 0, "row id can not be negative");
+        return new PageTokenWrapper(isAscending, timeMillis, rowId & ROW_ID_LOW_BITS_MASK);
+    }
+
     /**
      * Generate a page token that contains only {@code isAscending} information. Timestamp and
      * offset are not set.
@@ -106,12 +154,19 @@ public final class PageTokenWrapper {
      * the token, it falls back to {@code defaultIsAscending}.
      *
      * <p>{@code pageToken} must be a non-negative long number (except for using the sentinel value
-     * {@code DEFAULT_LONG}, whose current value is {@code -1}, which represents page token not set)
+     * {@code DEFAULT_LONG}, whose current value is {@code -1}, which represents page token not set,
+     * and for row id tokens, see {@link #encode()})
      */
     public static PageTokenWrapper from(long pageToken, boolean defaultIsAscending) {
         if (pageToken == DEFAULT_LONG) {
             return PageTokenWrapper.ofAscending(defaultIsAscending);
         }
+        if ((pageToken & ROW_ID_TOKEN_BIT) != 0 && (pageToken & INVALID_ROW_ID_TOKEN_BIT) == 0) {
+            return PageTokenWrapper.ofRowId(
+                    getIsAscending(pageToken),
+                    getTimestamp(pageToken),
+                    getRowIdLowBits(pageToken));
+        }
         checkArgument(pageToken >= 0, "pageToken cannot be negative");
         return PageTokenWrapper.of(
                 getIsAscending(pageToken), getTimestamp(pageToken), getOffset(pageToken));
@@ -138,6 +193,11 @@ public final class PageTokenWrapper {
         return (int) (pageToken >> OFFSET_START_BIT);
     }
 
+    /** Shifts bits in the given row id {@code pageToken} to retrieve row id information. */
+    private static long getRowIdLowBits(long pageToken) {
+        return (pageToken & (ROW_ID_LOW_BITS_MASK << ROW_ID_START_BIT)) >> ROW_ID_START_BIT;
+    }
+
     private static void checkArgument(boolean expression, String errorMsg) {
         if (!expression) {
             throw new IllegalArgumentException(errorMsg);
@@ -153,8 +213,21 @@ public final class PageTokenWrapper {
      * <li>Next 44 bits: timestamp, represents epoch time millis
      * <li>Next 18 bits: offset, represents number of records processed in the previous page
      * <li>Sign bit: not used for encoding, page token is a signed long
+     *
+     *     <p>Page token with a row id is structured as following:
+     * <li>Least significant bit: 0 = isAscending true, 1 = isAscending false
+     * <li>Next 44 bits: timestamp of the first record of the next page
+     * <li>Next 17 bits: low bits of the row id of the first record of the next page
+     * <li>Next bit: 0, tokens with this bit set are invalid
+     * <li>Sign bit: 1, to tell row id tokens apart
      */
     public long encode() {
+        if (mIsRowIdSet) {
+            return ROW_ID_TOKEN_BIT
+                    | (mRowIdLowBits << ROW_ID_START_BIT)
+                    | (mTimeMillis << TIMESTAMP_START_BIT)
+                    | (mIsAscending ? 0 : 1);
+        }
         return mIsTimestampSet
                 ? ((long) mOffset << OFFSET_START_BIT)
                         | (mTimeMillis << TIMESTAMP_START_BIT)
@@ -173,6 +246,10 @@ public final class PageTokenWrapper {
             builder.append(", timeMillis = ").append(mTimeMillis);
             builder.append(", offset = ").append(mOffset);
         }
+        if (mIsRowIdSet) {
+            builder.append(", timeMillis = ").append(mTimeMillis);
+            builder.append(", rowIdLowBits = ").append(mRowIdLowBits);
+        }
         return builder.append("}").toString();
     }
 
@@ -184,12 +261,21 @@ public final class PageTokenWrapper {
                 && mTimeMillis == that.mTimeMillis
                 && mOffset == that.mOffset
                 && mIsTimestampSet == that.mIsTimestampSet
+                && mRowIdLowBits == that.mRowIdLowBits
+                && mIsRowIdSet == that.mIsRowIdSet
                 && mIsEmpty == that.mIsEmpty;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(mIsAscending, mOffset, mTimeMillis, mIsTimestampSet, mIsEmpty);
+        return Objects.hash(
+                mIsAscending,
+                mOffset,
+                mTimeMillis,
+                mIsTimestampSet,
+                mRowIdLowBits,
+                mIsRowIdSet,
+                mIsEmpty);
     }
 
     private PageTokenWrapper(boolean isAscending, long timeMillis, int offset) {
@@ -197,6 +283,18 @@ public final class PageTokenWrapper {
         this.mTimeMillis = timeMillis;
         this.mOffset = offset;
         this.mIsTimestampSet = true;
+        this.mRowIdLowBits = 0;
+        this.mIsRowIdSet = false;
+        this.mIsEmpty = false;
+    }
+
+    private PageTokenWrapper(boolean isAscending, long timeMillis, long rowIdLowBits) {
+        this.mIsAscending = isAscending;
+        this.mTimeMillis = timeMillis;
+        this.mOffset = 0;
+        this.mIsTimestampSet = false;
+        this.mRowIdLowBits = rowIdLowBits;
+        this.mIsRowIdSet = true;
         this.mIsEmpty = false;
     }
 
@@ -205,6 +303,8 @@ public final class PageTokenWrapper {
         this.mTimeMillis = 0;
         this.mOffset = 0;
         this.mIsTimestampSet = false;
+        this.mRowIdLowBits = 0;
+        this.mIsRowIdSet = false;
         this.mIsEmpty = false;
     }
 
@@ -213,6 +313,8 @@ public final class PageTokenWrapper {
         this.mTimeMillis = 0;
         this.mOffset = 0;
         this.mIsTimestampSet = false;
+        this.mRowIdLowBits = 0;
+        this.mIsRowIdSet = false;
         this.mIsEmpty = true;
     }
 }
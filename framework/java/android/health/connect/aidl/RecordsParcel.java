@@ -20,14 +20,19 @@ import android.annotation.NonNull;
 import android.annotation.Nullable;
 import android.health.connect.HealthConnectManager;
 import android.health.connect.internal.ParcelUtils;
+import android.health.connect.internal.SharedMemoryFrames;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.internal.datatypes.utils.ParcelRecordConverter;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.android.healthfitness.flags.Flags;
+
 import java.lang.reflect.InvocationTargetException;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * A wrapper to carry a list of entries of type {@link RecordInternal} from and to {@link
@@ -60,6 +65,19 @@ public class RecordsParcel implements Parcelable {
     }
 
     private RecordsParcel(@NonNull Parcel in) {
+        int position = in.dataPosition();
+        if (in.readInt() == ParcelUtils.USING_FRAMED_SHARED_MEMORY) {
+            SharedMemoryFrames frames = SharedMemoryFrames.createFromParcel(in);
+            mRecordInternals = new FramedRecordList(frames);
+            mRecordsSize = new ArrayList<>(frames.getFrameCount());
+            for (int i = 0; i < frames.getFrameCount(); i++) {
+                mRecordsSize.add((long) frames.getFrameSize(i));
+            }
+            mRecordsChunkSize = frames.getTotalFrameSize();
+            return;
+        }
+
+        in.setDataPosition(position);
         in = ParcelUtils.getParcelForSharedMemoryIfRequired(in);
         int size = in.readInt();
         mRecordInternals = new ArrayList<>(size);
@@ -67,18 +85,10 @@ public class RecordsParcel implements Parcelable {
         long remainingParcelSize = in.dataAvail();
         mRecordsChunkSize = remainingParcelSize;
         for (int i = 0; i < size; i++) {
-            int identifier = in.readInt();
-            try {
-                mRecordInternals.add(ParcelRecordConverter.getInstance().getRecord(in, identifier));
-                // Calculating record size based on before and after values of parcel size.
-                mRecordsSize.add(remainingParcelSize - in.dataAvail());
-                remainingParcelSize = in.dataAvail();
-            } catch (InstantiationException
-                     | IllegalAccessException
-                     | NoSuchMethodException
-                     | InvocationTargetException e) {
-                throw new IllegalArgumentException();
-            }
+            mRecordInternals.add(readRecord(in));
+            // Calculating record size based on before and after values of parcel size.
+            mRecordsSize.add(remainingParcelSize - in.dataAvail());
+            remainingParcelSize = in.dataAvail();
         }
     }
 
@@ -89,9 +99,18 @@ public class RecordsParcel implements Parcelable {
 
     @Override
     public void writeToParcel(@NonNull Parcel dest, int flags) {
-        ParcelUtils.putToRequiredMemory(dest, flags, this::writeToParcelInternal);
+        if (Flags.framedRecordsSharedMemory()) {
+            ParcelUtils.putFramesToRequiredMemory(
+                    dest, flags, mRecordInternals.size(), this::writeRecordToParcel);
+        } else {
+            ParcelUtils.putToRequiredMemory(dest, flags, this::writeToParcelInternal);
+        }
     }
 
+    /**
+     * Returns the records. If they were sent through {@link SharedMemoryFrames}, each record is
+     * decoded the first time it's accessed.
+     */
     @NonNull
     public List<RecordInternal<?>> getRecords() {
         return mRecordInternals;
@@ -119,4 +138,64 @@ public class RecordsParcel implements Parcelable {
             recordInternal.writeToParcel(dest);
         }
     }
+
+    private void writeRecordToParcel(@NonNull Parcel dest, int index) {
+        RecordInternal<?> recordInternal = mRecordInternals.get(index);
+        dest.writeInt(recordInternal.getRecordType());
+        recordInternal.writeToParcel(dest);
+    }
+
+    private static RecordInternal<?> readRecord(@NonNull Parcel in) {
+        int identifier = in.readInt();
+        try {
+            return ParcelRecordConverter.getInstance().getRecord(in, identifier);
+        } catch (InstantiationException
+                | IllegalAccessException
+                | NoSuchMethodException
+                | InvocationTargetException e) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Records read from {@link SharedMemoryFrames}, one record per frame. Each record is decoded
+     * on first access, and the shared memory is closed once all of them are.
+     */
+    private static final class FramedRecordList extends AbstractList<RecordInternal<?>>
+            implements RandomAccess {
+        private final SharedMemoryFrames mFrames;
+        private final RecordInternal<?>[] mRecords;
+        private int mDecodedCount;
+
+        FramedRecordList(SharedMemoryFrames frames) {
+            mFrames = frames;
+            mRecords = new RecordInternal<?>[frames.getFrameCount()];
+            if (mRecords.length == 0) {
+                frames.close();
+            }
+        }
+
+        @Override
+        public synchronized RecordInternal<?> get(int index) {
+            RecordInternal<?> record = mRecords[index];
+            if (record == null) {
+                Parcel frame = mFrames.readFrame(index);
+                try {
+                    record = readRecord(frame);
+                } finally {
+                    frame.recycle();
+                }
+                mRecords[index] = record;
+                if (++mDecodedCount == mRecords.length) {
+                    mFrames.close();
+                }
+            }
+            return record;
+        }
+
+        @Override
+        public int size() {
+            return mRecords.length;
+        }
+    }
 }
@@ -30,6 +30,7 @@ import java.nio.ByteBuffer;
 public final class ParcelUtils {
     @VisibleForTesting public static final int USING_SHARED_MEMORY = 0;
     @VisibleForTesting public static final int USING_PARCEL = 1;
+    @VisibleForTesting public static final int USING_FRAMED_SHARED_MEMORY = 2;
 
     @VisibleForTesting
     public static final int IPC_PARCEL_LIMIT = IBinder.getSuggestedMaxIpcSizeBytes() / 2;
@@ -38,6 +39,10 @@ public final class ParcelUtils {
         void writeToParcel(Parcel dest);
     }
 
+    public interface IPutFrameToParcelRunnable {
+        void writeFrameToParcel(Parcel dest, int index);
+    }
+
     @NonNull
     public static Parcel getParcelForSharedMemoryIfRequired(Parcel in) {
         int parcelType = in.readInt();
@@ -94,4 +99,51 @@ public final class ParcelUtils {
             dataParcel.recycle();
         }
     }
+
+    /**
+     * Same as {@link #putToRequiredMemory}, but if the frames don't fit in {@code dest} they are
+     * written one at a time to a {@link SharedMemoryFrames.Writer}, instead of copying a parcel of
+     * all of them to shared memory.
+     *
+     * <p>If they fit, {@code dest} holds {@code frameCount} followed by the frames, readable after
+     * {@link #getParcelForSharedMemoryIfRequired}. They are written straight to {@code dest}, which
+     * is rolled back if they turn out not to fit, so the common case of a small parcel only writes
+     * them once.
+     */
+    public static void putFramesToRequiredMemory(
+            Parcel dest, int flags, int frameCount, IPutFrameToParcelRunnable frameRunnable) {
+        final int start = dest.dataPosition();
+        dest.writeInt(USING_PARCEL);
+        dest.writeInt(frameCount);
+        boolean fits = true;
+        for (int i = 0; i < frameCount && fits; i++) {
+            frameRunnable.writeFrameToParcel(dest, i);
+            fits = dest.dataPosition() - start <= IPC_PARCEL_LIMIT;
+        }
+        if (fits) {
+            return;
+        }
+        dest.setDataPosition(start);
+        dest.setDataSize(start);
+
+        final Parcel frameParcel = Parcel.obtain();
+        try (SharedMemoryFrames.Writer writer =
+                new SharedMemoryFrames.Writer(2 * IPC_PARCEL_LIMIT)) {
+            for (int i = 0; i < frameCount; i++) {
+                writeFrame(frameParcel, i, frameRunnable);
+                writer.writeFrame(frameParcel);
+            }
+            dest.writeInt(USING_FRAMED_SHARED_MEMORY);
+            writer.writeToParcel(dest, flags);
+        } finally {
+            frameParcel.recycle();
+        }
+    }
+
+    private static void writeFrame(
+            Parcel frameParcel, int index, IPutFrameToParcelRunnable frameRunnable) {
+        frameParcel.setDataSize(0);
+        frameParcel.setDataPosition(0);
+        frameRunnable.writeFrameToParcel(frameParcel, index);
+    }
 }
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package android.health.connect.internal;
+
+import android.annotation.NonNull;
+import android.os.Parcel;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Frames of parcels in a {@link SharedMemory}, written and read back one frame at a time.
+ *
+ * <p>The memory holds the number of frames, followed by the size and the marshalled bytes of each
+ * frame. Unlike {@link ParcelUtils#putToRequiredMemory}, neither side keeps a parcel of all the
+ * frames on the heap: {@link Writer} marshalls one frame at a time into the mapped memory, and
+ * {@link #readFrame} unmarshalls a frame only when asked for it.
+ *
+ * @hide
+ */
+public final class SharedMemoryFrames implements Closeable {
+    private static final String SHARED_MEMORY_NAME = "SharedMemoryFrames";
+
+    private final SharedMemory mSharedMemory;
+    private final ByteBuffer mBuffer;
+    // Offsets of the size of each frame, followed by the offset of the end of the last frame.
+    private final int[] mFrameOffsets;
+    private boolean mClosed;
+
+    private SharedMemoryFrames(SharedMemory sharedMemory) throws ErrnoException {
+        mSharedMemory = sharedMemory;
+        mBuffer = sharedMemory.mapReadOnly();
+        int frameCount = readSize(0);
+        // Every frame takes at least the bytes of its size.
+        if (frameCount > (mBuffer.limit() - Integer.BYTES) / Integer.BYTES) {
+            throw new IllegalArgumentException("Invalid frame count: " + frameCount);
+        }
+        mFrameOffsets = new int[frameCount + 1];
+        int offset = Integer.BYTES;
+        for (int i = 0; i < frameCount; i++) {
+            mFrameOffsets[i] = offset;
+            offset += Integer.BYTES;
+            int frameSize = readSize(mFrameOffsets[i]);
+            if (frameSize > mBuffer.limit() - offset) {
+                throw new IllegalArgumentException("Truncated frame " + i);
+            }
+            offset += frameSize;
+        }
+        mFrameOffsets[frameCount] = offset;
+    }
+
+    /**
+     * Reads the frames written by {@link Writer#writeToParcel} from {@code in}.
+     *
+     * @throws IllegalArgumentException if the shared memory doesn't contain valid frames
+     */
+    @NonNull
+    public static SharedMemoryFrames createFromParcel(@NonNull Parcel in) {
+        SharedMemory sharedMemory = SharedMemory.CREATOR.createFromParcel(in);
+        try {
+            return new SharedMemoryFrames(sharedMemory);
+        } catch (ErrnoException e) {
+            sharedMemory.close();
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            sharedMemory.close();
+            throw e;
+        }
+    }
+
+    /** Returns the number of frames. */
+    public int getFrameCount() {
+        return mFrameOffsets.length - 1;
+    }
+
+    /** Returns the size of the marshalled bytes of the frame at {@code index}. */
+    public int getFrameSize(int index) {
+        Objects.checkIndex(index, getFrameCount());
+        return mFrameOffsets[index + 1] - mFrameOffsets[index] - Integer.BYTES;
+    }
+
+    /** Returns the total size of the marshalled bytes of all frames. */
+    public long getTotalFrameSize() {
+        return mFrameOffsets[getFrameCount()] - (long) mFrameOffsets.length * Integer.BYTES;
+    }
+
+    /**
+     * Returns a parcel with the contents of the frame at {@code index}, positioned at its start.
+     * The caller must recycle the parcel.
+     *
+     * @throws IllegalStateException if the frames have been closed
+     */
+    @NonNull
+    public synchronized Parcel readFrame(int index) {
+        if (mClosed) {
+            throw new IllegalStateException("Frames are closed");
+        }
+        byte[] frame = new byte[getFrameSize(index)];
+        ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(mFrameOffsets[index] + Integer.BYTES);
+        buffer.get(frame);
+        Parcel parcel = Parcel.obtain();
+        parcel.unmarshall(frame, 0, frame.length);
+        parcel.setDataPosition(0);
+        return parcel;
+    }
+
+    /** Unmaps and closes the shared memory, no frames can be read afterwards. */
+    @Override
+    public synchronized void close() {
+        if (!mClosed) {
+            mClosed = true;
+            SharedMemory.unmap(mBuffer);
+            mSharedMemory.close();
+        }
+    }
+
+    private int readSize(int offset) {
+        if (offset > mBuffer.limit() - Integer.BYTES) {
+            throw new IllegalArgumentException("Truncated frames");
+        }
+        int size = mBuffer.getInt(offset);
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid frame size: " + size);
+        }
+        return size;
+    }
+
+    /**
+     * Writes frames into a {@link SharedMemory}, copying them into a larger one when it runs out
+     * of space.
+     */
+    public static final class Writer implements Closeable {
+        private SharedMemory mSharedMemory;
+        private ByteBuffer mBuffer;
+        private int mFrameCount;
+
+        /** Creates a writer with {@code initialCapacity} bytes of shared memory to start with. */
+        public Writer(int initialCapacity) {
+            try {
+                mSharedMemory =
+                        SharedMemory.create(
+                                SHARED_MEMORY_NAME, Math.max(initialCapacity, Integer.BYTES));
+                mBuffer = mSharedMemory.mapReadWrite();
+            } catch (ErrnoException e) {
+                throw new RuntimeException(e);
+            }
+            // Leaves room for the number of frames.
+            mBuffer.position(Integer.BYTES);
+        }
+
+        /** Appends the contents of {@code frame} as the next frame. */
+        public void writeFrame(@NonNull Parcel frame) {
+            byte[] bytes = frame.marshall();
+            ensureRemaining(Integer.BYTES + bytes.length);
+            mBuffer.putInt(bytes.length);
+            mBuffer.put(bytes);
+            mFrameCount++;
+        }
+
+        /** Writes the shared memory to {@code dest}, to be read with {@link #createFromParcel}. */
+        public void writeToParcel(@NonNull Parcel dest, int flags) {
+            mBuffer.putInt(0, mFrameCount);
+            mSharedMemory.writeToParcel(dest, flags);
+        }
+
+        @Override
+        public void close() {
+            SharedMemory.unmap(mBuffer);
+            mSharedMemory.close();
+        }
+
+        private void ensureRemaining(int size) {
+            if (mBuffer.remaining() >= size) {
+                return;
+            }
+            long requiredCapacity = (long) mBuffer.position() + size;
+            if (requiredCapacity > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Frames don't fit in shared memory");
+            }
+            int capacity =
+                    (int)
+                            Math.min(
+                                    Integer.MAX_VALUE,
+                                    Math.max(requiredCapacity, 2L * mBuffer.capacity()));
+            try {
+                SharedMemory sharedMemory = SharedMemory.create(SHARED_MEMORY_NAME, capacity);
+                ByteBuffer buffer = sharedMemory.mapReadWrite();
+                mBuffer.flip();
+                buffer.put(mBuffer);
+                close();
+                mSharedMemory = sharedMemory;
+                mBuffer = buffer;
+            } catch (ErrnoException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
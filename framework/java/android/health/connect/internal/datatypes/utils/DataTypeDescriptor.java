@@ -26,6 +26,7 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.internal.datatypes.RecordInternal;
 
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /** @hide */
 public class DataTypeDescriptor {
@@ -36,6 +37,7 @@ public class DataTypeDescriptor {
     private final String mWritePermission;
     private final Class<? extends RecordInternal<?>> mRecordInternalClass;
     private final Class<? extends Record> mRecordClass;
+    private final Supplier<? extends RecordInternal<?>> mRecordInternalFactory;
 
     private DataTypeDescriptor(Builder builder) {
         checkArgument(builder.mRecordTypeIdentifier != RECORD_TYPE_UNKNOWN, "Unknown record type");
@@ -52,6 +54,7 @@ public class DataTypeDescriptor {
         mWritePermission = Objects.requireNonNull(builder.mWritePermission);
         mRecordInternalClass = Objects.requireNonNull(builder.mRecordInternalClass);
         mRecordClass = Objects.requireNonNull(builder.mRecordClass);
+        mRecordInternalFactory = Objects.requireNonNull(builder.mRecordInternalFactory);
     }
 
     @RecordTypeIdentifier.RecordType
@@ -85,6 +88,11 @@ public class DataTypeDescriptor {
         return mRecordClass;
     }
 
+    /** Returns the constructor of an empty {@link #getRecordInternalClass()} object. */
+    public Supplier<? extends RecordInternal<?>> getRecordInternalFactory() {
+        return mRecordInternalFactory;
+    }
+
     interface RecordTypeIdentifierBuilderStep {
         PermissionCategoryBuilderStep setRecordTypeIdentifier(
                 @RecordTypeIdentifier.RecordType int recordTypeIdentifier);
@@ -112,7 +120,13 @@ public class DataTypeDescriptor {
     }
 
     interface RecordInternalClassBuilderStep {
-        BuildStep setRecordInternalClass(Class<? extends RecordInternal<?>> recordInternalClass);
+        RecordInternalFactoryBuilderStep setRecordInternalClass(
+                Class<? extends RecordInternal<?>> recordInternalClass);
+    }
+
+    interface RecordInternalFactoryBuilderStep {
+        BuildStep setRecordInternalFactory(
+                Supplier<? extends RecordInternal<?>> recordInternalFactory);
     }
 
     interface BuildStep {
@@ -132,6 +146,7 @@ public class DataTypeDescriptor {
                     WritePermissionBuilderStep,
                     RecordClassBuilderStep,
                     RecordInternalClassBuilderStep,
+                    RecordInternalFactoryBuilderStep,
                     BuildStep {
         @RecordTypeIdentifier.RecordType private int mRecordTypeIdentifier = RECORD_TYPE_UNKNOWN;
 
@@ -143,6 +158,7 @@ public class DataTypeDescriptor {
         @Nullable private String mWritePermission;
         @Nullable private Class<? extends Record> mRecordClass;
         @Nullable private Class<? extends RecordInternal<?>> mRecordInternalClass;
+        @Nullable private Supplier<? extends RecordInternal<?>> mRecordInternalFactory;
 
         private Builder() {}
 
@@ -195,12 +211,19 @@ public class DataTypeDescriptor {
         }
 
         @Override
-        public BuildStep setRecordInternalClass(
+        public RecordInternalFactoryBuilderStep setRecordInternalClass(
                 Class<? extends RecordInternal<?>> recordInternalClass) {
             mRecordInternalClass = Objects.requireNonNull(recordInternalClass);
             return this;
         }
 
+        @Override
+        public BuildStep setRecordInternalFactory(
+                Supplier<? extends RecordInternal<?>> recordInternalFactory) {
+            mRecordInternalFactory = Objects.requireNonNull(recordInternalFactory);
+            return this;
+        }
+
         @Override
         public DataTypeDescriptor build() {
             return new DataTypeDescriptor(this);
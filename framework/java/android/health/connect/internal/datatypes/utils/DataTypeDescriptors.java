@@ -255,6 +255,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_ACTIVE_CALORIES_BURNED)
                                 .setRecordClass(ActiveCaloriesBurnedRecord.class)
                                 .setRecordInternalClass(ActiveCaloriesBurnedRecordInternal.class)
+                                .setRecordInternalFactory(ActiveCaloriesBurnedRecordInternal::new)
                                 .build(),
                         // Redundantly explicitly checking the flag to satisfy the linter.
                         Flags.activityIntensity() && AconfigFlagHelper.isActivityIntensityEnabled()
@@ -268,6 +269,8 @@ public class DataTypeDescriptors {
                                         .setRecordClass(ActivityIntensityRecord.class)
                                         .setRecordInternalClass(
                                                 ActivityIntensityRecordInternal.class)
+                                        .setRecordInternalFactory(
+                                                ActivityIntensityRecordInternal::new)
                                         .build()
                                 : null,
                         DataTypeDescriptor.builder()
@@ -279,6 +282,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_BASAL_BODY_TEMPERATURE)
                                 .setRecordClass(BasalBodyTemperatureRecord.class)
                                 .setRecordInternalClass(BasalBodyTemperatureRecordInternal.class)
+                                .setRecordInternalFactory(BasalBodyTemperatureRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_BASAL_METABOLIC_RATE)
@@ -289,6 +293,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_BASAL_METABOLIC_RATE)
                                 .setRecordClass(BasalMetabolicRateRecord.class)
                                 .setRecordInternalClass(BasalMetabolicRateRecordInternal.class)
+                                .setRecordInternalFactory(BasalMetabolicRateRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_BLOOD_GLUCOSE)
@@ -298,6 +303,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_BLOOD_GLUCOSE)
                                 .setRecordClass(BloodGlucoseRecord.class)
                                 .setRecordInternalClass(BloodGlucoseRecordInternal.class)
+                                .setRecordInternalFactory(BloodGlucoseRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_BLOOD_PRESSURE)
@@ -307,6 +313,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_BLOOD_PRESSURE)
                                 .setRecordClass(BloodPressureRecord.class)
                                 .setRecordInternalClass(BloodPressureRecordInternal.class)
+                                .setRecordInternalFactory(BloodPressureRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_BODY_FAT)
@@ -316,6 +323,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_BODY_FAT)
                                 .setRecordClass(BodyFatRecord.class)
                                 .setRecordInternalClass(BodyFatRecordInternal.class)
+                                .setRecordInternalFactory(BodyFatRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_BODY_TEMPERATURE)
@@ -325,6 +333,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_BODY_TEMPERATURE)
                                 .setRecordClass(BodyTemperatureRecord.class)
                                 .setRecordInternalClass(BodyTemperatureRecordInternal.class)
+                                .setRecordInternalFactory(BodyTemperatureRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_BODY_WATER_MASS)
@@ -334,6 +343,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_BODY_WATER_MASS)
                                 .setRecordClass(BodyWaterMassRecord.class)
                                 .setRecordInternalClass(BodyWaterMassRecordInternal.class)
+                                .setRecordInternalFactory(BodyWaterMassRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_BONE_MASS)
@@ -343,6 +353,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_BONE_MASS)
                                 .setRecordClass(BoneMassRecord.class)
                                 .setRecordInternalClass(BoneMassRecordInternal.class)
+                                .setRecordInternalFactory(BoneMassRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_CERVICAL_MUCUS)
@@ -352,6 +363,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_CERVICAL_MUCUS)
                                 .setRecordClass(CervicalMucusRecord.class)
                                 .setRecordInternalClass(CervicalMucusRecordInternal.class)
+                                .setRecordInternalFactory(CervicalMucusRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_CYCLING_PEDALING_CADENCE)
@@ -361,6 +373,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_EXERCISE)
                                 .setRecordClass(CyclingPedalingCadenceRecord.class)
                                 .setRecordInternalClass(CyclingPedalingCadenceRecordInternal.class)
+                                .setRecordInternalFactory(CyclingPedalingCadenceRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_DISTANCE)
@@ -370,6 +383,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_DISTANCE)
                                 .setRecordClass(DistanceRecord.class)
                                 .setRecordInternalClass(DistanceRecordInternal.class)
+                                .setRecordInternalFactory(DistanceRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_ELEVATION_GAINED)
@@ -379,6 +393,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_ELEVATION_GAINED)
                                 .setRecordClass(ElevationGainedRecord.class)
                                 .setRecordInternalClass(ElevationGainedRecordInternal.class)
+                                .setRecordInternalFactory(ElevationGainedRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_EXERCISE_SESSION)
@@ -388,6 +403,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_EXERCISE)
                                 .setRecordClass(ExerciseSessionRecord.class)
                                 .setRecordInternalClass(ExerciseSessionRecordInternal.class)
+                                .setRecordInternalFactory(ExerciseSessionRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_FLOORS_CLIMBED)
@@ -397,6 +413,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_FLOORS_CLIMBED)
                                 .setRecordClass(FloorsClimbedRecord.class)
                                 .setRecordInternalClass(FloorsClimbedRecordInternal.class)
+                                .setRecordInternalFactory(FloorsClimbedRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_HEART_RATE)
@@ -406,6 +423,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_HEART_RATE)
                                 .setRecordClass(HeartRateRecord.class)
                                 .setRecordInternalClass(HeartRateRecordInternal.class)
+                                .setRecordInternalFactory(HeartRateRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_HEART_RATE_VARIABILITY_RMSSD)
@@ -417,6 +435,8 @@ public class DataTypeDescriptors {
                                 .setRecordClass(HeartRateVariabilityRmssdRecord.class)
                                 .setRecordInternalClass(
                                         HeartRateVariabilityRmssdRecordInternal.class)
+                                .setRecordInternalFactory(
+                                        HeartRateVariabilityRmssdRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_HEIGHT)
@@ -426,6 +446,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_HEIGHT)
                                 .setRecordClass(HeightRecord.class)
                                 .setRecordInternalClass(HeightRecordInternal.class)
+                                .setRecordInternalFactory(HeightRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_HYDRATION)
@@ -435,6 +456,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_HYDRATION)
                                 .setRecordClass(HydrationRecord.class)
                                 .setRecordInternalClass(HydrationRecordInternal.class)
+                                .setRecordInternalFactory(HydrationRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_INTERMENSTRUAL_BLEEDING)
@@ -445,6 +467,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_INTERMENSTRUAL_BLEEDING)
                                 .setRecordClass(IntermenstrualBleedingRecord.class)
                                 .setRecordInternalClass(IntermenstrualBleedingRecordInternal.class)
+                                .setRecordInternalFactory(IntermenstrualBleedingRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_LEAN_BODY_MASS)
@@ -454,6 +477,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_LEAN_BODY_MASS)
                                 .setRecordClass(LeanBodyMassRecord.class)
                                 .setRecordInternalClass(LeanBodyMassRecordInternal.class)
+                                .setRecordInternalFactory(LeanBodyMassRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_MENSTRUATION_FLOW)
@@ -463,6 +487,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_MENSTRUATION)
                                 .setRecordClass(MenstruationFlowRecord.class)
                                 .setRecordInternalClass(MenstruationFlowRecordInternal.class)
+                                .setRecordInternalFactory(MenstruationFlowRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_MENSTRUATION_PERIOD)
@@ -472,6 +497,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_MENSTRUATION)
                                 .setRecordClass(MenstruationPeriodRecord.class)
                                 .setRecordInternalClass(MenstruationPeriodRecordInternal.class)
+                                .setRecordInternalFactory(MenstruationPeriodRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_MINDFULNESS_SESSION)
@@ -481,6 +507,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_MINDFULNESS)
                                 .setRecordClass(MindfulnessSessionRecord.class)
                                 .setRecordInternalClass(MindfulnessSessionRecordInternal.class)
+                                .setRecordInternalFactory(MindfulnessSessionRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_NUTRITION)
@@ -490,6 +517,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_NUTRITION)
                                 .setRecordClass(NutritionRecord.class)
                                 .setRecordInternalClass(NutritionRecordInternal.class)
+                                .setRecordInternalFactory(NutritionRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_OVULATION_TEST)
@@ -499,6 +527,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_OVULATION_TEST)
                                 .setRecordClass(OvulationTestRecord.class)
                                 .setRecordInternalClass(OvulationTestRecordInternal.class)
+                                .setRecordInternalFactory(OvulationTestRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_OXYGEN_SATURATION)
@@ -508,6 +537,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_OXYGEN_SATURATION)
                                 .setRecordClass(OxygenSaturationRecord.class)
                                 .setRecordInternalClass(OxygenSaturationRecordInternal.class)
+                                .setRecordInternalFactory(OxygenSaturationRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_PLANNED_EXERCISE_SESSION)
@@ -517,6 +547,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_PLANNED_EXERCISE)
                                 .setRecordClass(PlannedExerciseSessionRecord.class)
                                 .setRecordInternalClass(PlannedExerciseSessionRecordInternal.class)
+                                .setRecordInternalFactory(PlannedExerciseSessionRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_POWER)
@@ -526,6 +557,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_POWER)
                                 .setRecordClass(PowerRecord.class)
                                 .setRecordInternalClass(PowerRecordInternal.class)
+                                .setRecordInternalFactory(PowerRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_RESPIRATORY_RATE)
@@ -535,6 +567,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_RESPIRATORY_RATE)
                                 .setRecordClass(RespiratoryRateRecord.class)
                                 .setRecordInternalClass(RespiratoryRateRecordInternal.class)
+                                .setRecordInternalFactory(RespiratoryRateRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_RESTING_HEART_RATE)
@@ -544,6 +577,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_RESTING_HEART_RATE)
                                 .setRecordClass(RestingHeartRateRecord.class)
                                 .setRecordInternalClass(RestingHeartRateRecordInternal.class)
+                                .setRecordInternalFactory(RestingHeartRateRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_SEXUAL_ACTIVITY)
@@ -553,6 +587,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_SEXUAL_ACTIVITY)
                                 .setRecordClass(SexualActivityRecord.class)
                                 .setRecordInternalClass(SexualActivityRecordInternal.class)
+                                .setRecordInternalFactory(SexualActivityRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_SKIN_TEMPERATURE)
@@ -562,6 +597,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_SKIN_TEMPERATURE)
                                 .setRecordClass(SkinTemperatureRecord.class)
                                 .setRecordInternalClass(SkinTemperatureRecordInternal.class)
+                                .setRecordInternalFactory(SkinTemperatureRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_SLEEP_SESSION)
@@ -571,6 +607,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_SLEEP)
                                 .setRecordClass(SleepSessionRecord.class)
                                 .setRecordInternalClass(SleepSessionRecordInternal.class)
+                                .setRecordInternalFactory(SleepSessionRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_SPEED)
@@ -580,6 +617,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_SPEED)
                                 .setRecordClass(SpeedRecord.class)
                                 .setRecordInternalClass(SpeedRecordInternal.class)
+                                .setRecordInternalFactory(SpeedRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_STEPS)
@@ -589,6 +627,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_STEPS)
                                 .setRecordClass(StepsRecord.class)
                                 .setRecordInternalClass(StepsRecordInternal.class)
+                                .setRecordInternalFactory(StepsRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_STEPS_CADENCE)
@@ -598,6 +637,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_STEPS)
                                 .setRecordClass(StepsCadenceRecord.class)
                                 .setRecordInternalClass(StepsCadenceRecordInternal.class)
+                                .setRecordInternalFactory(StepsCadenceRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_TOTAL_CALORIES_BURNED)
@@ -608,6 +648,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_TOTAL_CALORIES_BURNED)
                                 .setRecordClass(TotalCaloriesBurnedRecord.class)
                                 .setRecordInternalClass(TotalCaloriesBurnedRecordInternal.class)
+                                .setRecordInternalFactory(TotalCaloriesBurnedRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_VO2_MAX)
@@ -617,6 +658,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_VO2_MAX)
                                 .setRecordClass(Vo2MaxRecord.class)
                                 .setRecordInternalClass(Vo2MaxRecordInternal.class)
+                                .setRecordInternalFactory(Vo2MaxRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_WEIGHT)
@@ -626,6 +668,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_WEIGHT)
                                 .setRecordClass(WeightRecord.class)
                                 .setRecordInternalClass(WeightRecordInternal.class)
+                                .setRecordInternalFactory(WeightRecordInternal::new)
                                 .build(),
                         DataTypeDescriptor.builder()
                                 .setRecordTypeIdentifier(RECORD_TYPE_WHEELCHAIR_PUSHES)
@@ -635,6 +678,7 @@ public class DataTypeDescriptors {
                                 .setWritePermission(WRITE_WHEELCHAIR_PUSHES)
                                 .setRecordClass(WheelchairPushesRecord.class)
                                 .setRecordInternalClass(WheelchairPushesRecordInternal.class)
+                                .setRecordInternalFactory(WheelchairPushesRecordInternal::new)
                                 .build())
                 .filter(Objects::nonNull)
                 .toList();
@@ -238,6 +238,21 @@ public final class HealthConnectMappings {
         return mRecordIdToInternalRecordClassMap;
     }
 
+    /**
+     * Returns a new, empty {@link RecordInternal} of the given record type.
+     *
+     * <p>Only used when the data type descriptors are enabled, as they hold the constructors.
+     *
+     * @throws NullPointerException if {@code recordType} is not a known record type, or is disabled
+     */
+    public RecordInternal<?> newRecordInternal(@RecordTypeIdentifier.RecordType int recordType) {
+        return Objects.requireNonNull(
+                        mRecordIdToDescriptorMap.get(recordType),
+                        "Unsupported record type: " + recordType)
+                .getRecordInternalFactory()
+                .get();
+    }
+
     /** Returns a mapping from {@link RecordTypeIdentifier} to corresponding {@link Record}. */
     public Map<Integer, Class<? extends Record>> getRecordIdToExternalRecordClassMap() {
         if (!Flags.healthConnectMappings()) {
@@ -23,6 +23,8 @@ import android.health.connect.datatypes.Record;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.internal.datatypes.RecordInternal;
 
+import com.android.healthfitness.flags.Flags;
+
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
@@ -59,6 +61,9 @@ public final class InternalExternalRecordConverter {
     /** Returns a new instance of {@link RecordInternal} for the provided {@code type }. */
     @NonNull
     public RecordInternal<?> newInternalRecord(@RecordTypeIdentifier.RecordType int type) {
+        if (Flags.reflectionFreeRecordFactory()) {
+            return RecordInternalFactory.newRecordInternal(type);
+        }
         Class<? extends RecordInternal<?>> recordClass =
                 mRecordIdToInternalRecordClassMap.get(type);
         Objects.requireNonNull(recordClass);
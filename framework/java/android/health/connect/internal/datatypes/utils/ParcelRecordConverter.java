@@ -21,6 +21,8 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.os.Parcel;
 
+import com.android.healthfitness.flags.Flags;
+
 import java.lang.reflect.InvocationTargetException;
 import java.util.Map;
 import java.util.Objects;
@@ -59,9 +61,14 @@ public final class ParcelRecordConverter {
                     IllegalAccessException,
                     NoSuchMethodException,
                     InvocationTargetException {
-        Class<? extends RecordInternal<?>> recordClass = mDataTypeClassMap.get(type);
-        Objects.requireNonNull(recordClass);
-        RecordInternal<?> recordInternal = recordClass.getConstructor().newInstance();
+        RecordInternal<?> recordInternal;
+        if (Flags.reflectionFreeRecordFactory()) {
+            recordInternal = RecordInternalFactory.newRecordInternal(type);
+        } else {
+            Class<? extends RecordInternal<?>> recordClass = mDataTypeClassMap.get(type);
+            Objects.requireNonNull(recordClass);
+            recordInternal = recordClass.getConstructor().newInstance();
+        }
         recordInternal.populateUsing(parcel);
         return recordInternal;
     }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect.internal.datatypes.utils;
+
+import android.annotation.NonNull;
+import android.health.connect.datatypes.RecordTypeIdentifier;
+import android.health.connect.internal.datatypes.RecordInternal;
+
+import com.android.healthfitness.flags.Flags;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Objects;
+
+/**
+ * Creates empty {@link RecordInternal} objects of a record type.
+ *
+ * <p>The records are created through the constructors in {@link DataTypeDescriptors}, so record
+ * types disabled by flags there can't be created. Without the data type descriptors, the records
+ * are created through the constructor of their class in {@link
+ * RecordMapper#getRecordIdToInternalRecordClassMap}, as before.
+ *
+ * @hide
+ */
+public final class RecordInternalFactory {
+    private RecordInternalFactory() {}
+
+    /**
+     * Returns a new {@link RecordInternal} of {@code type}.
+     *
+     * @throws NullPointerException if {@code type} is not a known record type, or is disabled
+     */
+    @NonNull
+    public static RecordInternal<?> newRecordInternal(@RecordTypeIdentifier.RecordType int type) {
+        HealthConnectMappings mappings = HealthConnectMappings.getInstance();
+        if (Flags.healthConnectMappings()) {
+            return mappings.newRecordInternal(type);
+        }
+
+        Class<? extends RecordInternal<?>> recordClass =
+                Objects.requireNonNull(mappings.getRecordIdToInternalRecordClassMap().get(type));
+        try {
+            return recordClass.getConstructor().newInstance();
+        } catch (InstantiationException
+                | IllegalAccessException
+                | InvocationTargetException
+                | NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
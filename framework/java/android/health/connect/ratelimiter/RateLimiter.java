@@ -20,6 +20,8 @@ import android.annotation.IntDef;
 import android.health.connect.HealthConnectException;
 import android.os.SystemClock;
 
+import com.android.healthfitness.flags.Flags;
+
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.time.Duration;
@@ -28,6 +30,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
@@ -52,6 +55,39 @@ public final class RateLimiter {
 
     private static final ConcurrentMap<Integer, Integer> sLocks = new ConcurrentHashMap<>();
 
+    // Used instead of the quota maps and locks above when Flags.lockFreeRateLimiter() is enabled.
+    // Holds, for each quota bucket, the elapsed realtime in nanos at which its quota would have
+    // been fully spent, see tryAcquireQuota.
+    private static final ConcurrentMap<Integer, AtomicLongArray> sUidToQuotaSpentTimes =
+            new ConcurrentHashMap<>();
+    private static final AtomicLongArray sAcrossAppsQuotaSpentTimes = newQuotaSpentTimes();
+    // Spent time of a bucket with its full quota available.
+    private static final long QUOTA_SPENT_TIME_FULL = Long.MIN_VALUE;
+
+    private static final Duration WINDOW_15M = Duration.ofMinutes(15);
+    private static final Duration WINDOW_24H = Duration.ofHours(24);
+
+    private static final int[] NO_QUOTA_BUCKETS = {};
+    private static final int[] READS_FOREGROUND_QUOTA_BUCKETS = {
+        QuotaBucket.QUOTA_BUCKET_READS_PER_15M_FOREGROUND,
+        QuotaBucket.QUOTA_BUCKET_READS_PER_24H_FOREGROUND
+    };
+    private static final int[] READS_BACKGROUND_QUOTA_BUCKETS = {
+        QuotaBucket.QUOTA_BUCKET_READS_PER_15M_BACKGROUND,
+        QuotaBucket.QUOTA_BUCKET_READS_PER_24H_BACKGROUND
+    };
+    private static final int[] WRITES_FOREGROUND_QUOTA_BUCKETS = {
+        QuotaBucket.QUOTA_BUCKET_WRITES_PER_15M_FOREGROUND,
+        QuotaBucket.QUOTA_BUCKET_WRITES_PER_24H_FOREGROUND
+    };
+    private static final int[] WRITES_BACKGROUND_QUOTA_BUCKETS = {
+        QuotaBucket.QUOTA_BUCKET_WRITES_PER_15M_BACKGROUND,
+        QuotaBucket.QUOTA_BUCKET_WRITES_PER_24H_BACKGROUND
+    };
+    private static final int[] WRITES_BACKGROUND_MEMORY_QUOTA_BUCKETS = {
+        QuotaBucket.QUOTA_BUCKET_DATA_PUSH_LIMIT_PER_APP_15M
+    };
+
     private static final Map<Integer, Integer> QUOTA_BUCKET_TO_MAX_ROLLING_QUOTA_MAP =
             new HashMap<>();
     private static final Map<String, Integer> QUOTA_BUCKET_TO_MAX_MEMORY_QUOTA_MAP =
@@ -134,6 +170,16 @@ public final class RateLimiter {
             return;
         }
 
+        if (Flags.lockFreeRateLimiter()) {
+            acquireQuotas(
+                    uid,
+                    getAffectedApiQuotaBucketArray(quotaCategory, isInForeground),
+                    NO_QUOTA_BUCKETS,
+                    /* memoryCost= */ 0,
+                    /* spendAcrossAppsQuota= */ false);
+            return;
+        }
+
         synchronized (getLockObject(uid)) {
             spendApiCallResourcesIfAvailable(
                     uid,
@@ -158,6 +204,15 @@ public final class RateLimiter {
         if (quotaCategory != QuotaCategory.QUOTA_CATEGORY_WRITE) {
             throw new IllegalArgumentException("Quota category must be QUOTA_CATEGORY_WRITE.");
         }
+        if (Flags.lockFreeRateLimiter()) {
+            acquireQuotas(
+                    uid,
+                    getAffectedApiQuotaBucketArray(quotaCategory, isInForeground),
+                    isInForeground ? NO_QUOTA_BUCKETS : WRITES_BACKGROUND_MEMORY_QUOTA_BUCKETS,
+                    memoryCost,
+                    /* spendAcrossAppsQuota= */ !isInForeground);
+            return;
+        }
         sLockAcrossAppQuota.writeLock().lock();
         try {
             synchronized (getLockObject(uid)) {
@@ -201,6 +256,112 @@ public final class RateLimiter {
     public static void clearCache() {
         sUserIdToQuotasMap.clear();
         sQuotaBucketToAcrossAppsRemainingMemoryQuota.clear();
+        sUidToQuotaSpentTimes.clear();
+        for (int i = 0; i < sAcrossAppsQuotaSpentTimes.length(); i++) {
+            sAcrossAppsQuotaSpentTimes.set(i, QUOTA_SPENT_TIME_FULL);
+        }
+    }
+
+    /**
+     * Spends the quotas of all the buckets, or none of them if one has insufficient quota.
+     *
+     * <p>Each bucket is acquired with its own atomic update, and the buckets acquired before one
+     * with insufficient quota are released. So a concurrent call may be refused while the quota is
+     * acquired then released, but quota is never spent beyond the limit of a bucket.
+     */
+    private static void acquireQuotas(
+            int uid,
+            int[] apiQuotaBuckets,
+            int[] memoryQuotaBuckets,
+            long memoryCost,
+            boolean spendAcrossAppsQuota) {
+        long nowNanos = SystemClock.elapsedRealtimeNanos();
+        if (spendAcrossAppsQuota) {
+            tryAcquireQuota(
+                    sAcrossAppsQuotaSpentTimes,
+                    QuotaBucket.QUOTA_BUCKET_DATA_PUSH_LIMIT_ACROSS_APPS_15M,
+                    memoryCost,
+                    nowNanos);
+        }
+        AtomicLongArray spentTimes =
+                sUidToQuotaSpentTimes.computeIfAbsent(uid, unused -> newQuotaSpentTimes());
+        int acquiredApiQuotas = 0;
+        int acquiredMemoryQuotas = 0;
+        try {
+            for (int quotaBucket : apiQuotaBuckets) {
+                tryAcquireQuota(spentTimes, quotaBucket, DEFAULT_API_CALL_COST, nowNanos);
+                acquiredApiQuotas++;
+            }
+            for (int quotaBucket : memoryQuotaBuckets) {
+                tryAcquireQuota(spentTimes, quotaBucket, memoryCost, nowNanos);
+                acquiredMemoryQuotas++;
+            }
+        } catch (RateLimiterException e) {
+            for (int i = 0; i < acquiredApiQuotas; i++) {
+                releaseQuota(spentTimes, apiQuotaBuckets[i], DEFAULT_API_CALL_COST);
+            }
+            for (int i = 0; i < acquiredMemoryQuotas; i++) {
+                releaseQuota(spentTimes, memoryQuotaBuckets[i], memoryCost);
+            }
+            if (spendAcrossAppsQuota) {
+                releaseQuota(
+                        sAcrossAppsQuotaSpentTimes,
+                        QuotaBucket.QUOTA_BUCKET_DATA_PUSH_LIMIT_ACROSS_APPS_15M,
+                        memoryCost);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Spends {@code cost} from the quota of {@code quotaBucket}.
+     *
+     * <p>The quota is tracked as the time at which it would have been fully spent, the quota
+     * available at a time is what accumulated since then. Spending moves that time forward by the
+     * time the cost takes to accumulate, in a single compare and set.
+     */
+    private static void tryAcquireQuota(
+            AtomicLongArray spentTimes,
+            @QuotaBucket.Type int quotaBucket,
+            long cost,
+            long nowNanos) {
+        float maxQuota = getConfiguredMaxRollingQuota(quotaBucket);
+        long windowNanos = getWindowDuration(quotaBucket).toNanos();
+        long costNanos = getCostNanos(quotaBucket, cost);
+        while (true) {
+            long spentTime = spentTimes.get(quotaBucket);
+            // Cannot accumulate more than the configured max quota.
+            long accumulatedSince = Math.max(spentTime, nowNanos - windowNanos);
+            if (nowNanos - accumulatedSince < costNanos) {
+                float availableQuota = (nowNanos - accumulatedSince) * (maxQuota / windowNanos);
+                throw newQuotaExceededException(availableQuota, cost, quotaBucket);
+            }
+            if (spentTimes.compareAndSet(quotaBucket, spentTime, accumulatedSince + costNanos)) {
+                return;
+            }
+        }
+    }
+
+    private static void releaseQuota(
+            AtomicLongArray spentTimes, @QuotaBucket.Type int quotaBucket, long cost) {
+        spentTimes.getAndAdd(quotaBucket, -getCostNanos(quotaBucket, cost));
+    }
+
+    /** Returns the time {@code cost} takes to accumulate in {@code quotaBucket}. */
+    private static long getCostNanos(@QuotaBucket.Type int quotaBucket, long cost) {
+        double nanosPerQuota =
+                getWindowDuration(quotaBucket).toNanos()
+                        / (double) getConfiguredMaxRollingQuota(quotaBucket);
+        return (long) Math.ceil(cost * nanosPerQuota);
+    }
+
+    private static AtomicLongArray newQuotaSpentTimes() {
+        AtomicLongArray spentTimes =
+                new AtomicLongArray(QuotaBucket.QUOTA_BUCKET_DATA_PUSH_LIMIT_ACROSS_APPS_15M + 1);
+        for (int i = 0; i < spentTimes.length(); i++) {
+            spentTimes.set(i, QUOTA_SPENT_TIME_FULL);
+        }
+        return spentTimes;
     }
 
     @SuppressWarnings("NullAway") // TODO(b/317029272): fix this suppression
@@ -302,16 +463,21 @@ public final class RateLimiter {
     private static void hasSufficientQuota(
             float availableQuota, long cost, @QuotaBucket.Type int quotaBucket) {
         if (availableQuota < cost) {
-            throw new RateLimiterException(
-                    "API call quota exceeded, availableQuota: "
-                            + availableQuota
-                            + " requested: "
-                            + cost,
-                    quotaBucket,
-                    getConfiguredMaxRollingQuota(quotaBucket));
+            throw newQuotaExceededException(availableQuota, cost, quotaBucket);
         }
     }
 
+    private static RateLimiterException newQuotaExceededException(
+            float availableQuota, long cost, @QuotaBucket.Type int quotaBucket) {
+        return new RateLimiterException(
+                "API call quota exceeded, availableQuota: "
+                        + availableQuota
+                        + " requested: "
+                        + cost,
+                quotaBucket,
+                getConfiguredMaxRollingQuota(quotaBucket));
+    }
+
     private static float getAvailableQuota(@QuotaBucket.Type int quotaBucket, Quota quota) {
         long lastUpdatedTimeMillis = quota.getLastUpdatedTimeMillis();
         long currentTimeMillis = SystemClock.elapsedRealtime();
@@ -362,14 +528,14 @@ public final class RateLimiter {
             case QuotaBucket.QUOTA_BUCKET_WRITES_PER_24H_FOREGROUND:
             case QuotaBucket.QUOTA_BUCKET_READS_PER_24H_BACKGROUND:
             case QuotaBucket.QUOTA_BUCKET_READS_PER_24H_FOREGROUND:
-                return Duration.ofHours(24);
+                return WINDOW_24H;
             case QuotaBucket.QUOTA_BUCKET_WRITES_PER_15M_BACKGROUND:
             case QuotaBucket.QUOTA_BUCKET_READS_PER_15M_FOREGROUND:
             case QuotaBucket.QUOTA_BUCKET_WRITES_PER_15M_FOREGROUND:
             case QuotaBucket.QUOTA_BUCKET_READS_PER_15M_BACKGROUND:
             case QuotaBucket.QUOTA_BUCKET_DATA_PUSH_LIMIT_ACROSS_APPS_15M:
             case QuotaBucket.QUOTA_BUCKET_DATA_PUSH_LIMIT_PER_APP_15M:
-                return Duration.ofMinutes(15);
+                return WINDOW_15M;
             case QuotaBucket.QUOTA_BUCKET_UNDEFINED:
                 throw new IllegalArgumentException("Invalid quota bucket.");
         }
@@ -422,6 +588,24 @@ public final class RateLimiter {
         throw new IllegalArgumentException("Invalid quota category.");
     }
 
+    private static int[] getAffectedApiQuotaBucketArray(
+            @QuotaCategory.Type int quotaCategory, boolean isInForeground) {
+        switch (quotaCategory) {
+            case QuotaCategory.QUOTA_CATEGORY_READ:
+                return isInForeground
+                        ? READS_FOREGROUND_QUOTA_BUCKETS
+                        : READS_BACKGROUND_QUOTA_BUCKETS;
+            case QuotaCategory.QUOTA_CATEGORY_WRITE:
+                return isInForeground
+                        ? WRITES_FOREGROUND_QUOTA_BUCKETS
+                        : WRITES_BACKGROUND_QUOTA_BUCKETS;
+            case QuotaCategory.QUOTA_CATEGORY_UNDEFINED:
+            case QuotaCategory.QUOTA_CATEGORY_UNMETERED:
+                throw new IllegalArgumentException("Invalid quota category.");
+        }
+        throw new IllegalArgumentException("Invalid quota category.");
+    }
+
     private static List<Integer> getAffectedMemoryQuotaBuckets(
             @QuotaCategory.Type int quotaCategory, boolean isInForeground) {
         switch (quotaCategory) {
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect;
+
+import android.util.Log;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link RoundRobinScheduler} with constant time enqueue and dequeue, which only takes a lock
+ * when a thread has to wait.
+ *
+ * <p>Each uid has its own task queue, and the uids with queued tasks are kept in a ring of active
+ * uids. A uid is in the ring at most once, and only the thread that took it out of the ring runs
+ * its turn, so turns don't need a lock. A thread finding the ring empty while tasks are queued
+ * blocks until the current turn puts its uid back.
+ *
+ * <p>A uid can be given a weight, to run that many tasks in a row on its turn.
+ *
+ * @hide
+ */
+public final class ActiveUidRoundRobinScheduler implements RoundRobinScheduler {
+    private static final String TAG = "HealthConnectScheduler";
+
+    private final Map<Integer, UidQueue> mQueues = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedDeque<UidQueue> mActiveUids = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger mQueuedTaskCount = new AtomicInteger();
+    // Threads blocked on an empty ring, the uids are only put back under the lock while non zero.
+    private final AtomicInteger mWaitingThreadCount = new AtomicInteger();
+    private final ReentrantLock mWaitLock = new ReentrantLock();
+    private final Condition mRingNotEmpty = mWaitLock.newCondition();
+    private volatile boolean mPauseScheduler;
+
+    @Override
+    public void resume() {
+        mPauseScheduler = false;
+    }
+
+    @Override
+    public void addTask(int uid, Runnable task) {
+        // If the scheduler is currently paused (this can happen if the platform is doing a user
+        // switch), ignore this request. This most likely means that we won't be able to deliver
+        // the result back anyway.
+        if (mPauseScheduler) {
+            Log.e(TAG, "Unable to schedule task for uid: " + uid);
+            return;
+        }
+
+        UidQueue queue = mQueues.computeIfAbsent(uid, unused -> new UidQueue());
+        mQueuedTaskCount.incrementAndGet();
+        queue.mTasks.add(task);
+        activate(queue);
+    }
+
+    @Override
+    public Runnable getNextTask() {
+        while (true) {
+            UidQueue queue = mActiveUids.pollFirst();
+            if (queue == null) {
+                if (mQueuedTaskCount.get() <= 0) {
+                    throw new InternalError("Task scheduled but none found");
+                }
+                // Another thread is in the middle of a turn, or of adding a task.
+                awaitActiveUid();
+                continue;
+            }
+
+            Runnable task = queue.mTasks.poll();
+            if (task == null) {
+                // Nothing left to run for this uid, leave the ring unless a task was just added.
+                queue.mTurnsLeft = 0;
+                deactivate(queue);
+                continue;
+            }
+            // Don't go below zero if the tasks were killed during this turn.
+            mQueuedTaskCount.updateAndGet(count -> Math.max(0, count - 1));
+
+            if (queue.mTurnsLeft == 0) {
+                queue.mTurnsLeft = queue.mWeight;
+            }
+            if (queue.mTasks.isEmpty()) {
+                queue.mTurnsLeft = 0;
+                deactivate(queue);
+            } else if (--queue.mTurnsLeft > 0) {
+                offer(queue, /* first= */ true);
+            } else {
+                offer(queue, /* first= */ false);
+            }
+            return task;
+        }
+    }
+
+    @Override
+    public void killTasksAndPauseScheduler() {
+        mPauseScheduler = true;
+        // Clear the queues too, a turn in progress puts its uid back into the ring.
+        for (UidQueue queue : mQueues.values()) {
+            queue.mTasks.clear();
+        }
+        mActiveUids.clear();
+        mQueues.clear();
+        mQueuedTaskCount.set(0);
+        // Let the waiting threads see there is nothing left to run.
+        signalWaitingThreads();
+    }
+
+    /**
+     * Sets how many tasks of the uid run in a row on its turn, 1 by default.
+     *
+     * <p>Takes effect from the next turn of the uid.
+     */
+    public void setWeight(int uid, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be positive: " + weight);
+        }
+        mQueues.computeIfAbsent(uid, unused -> new UidQueue()).mWeight = weight;
+    }
+
+    private void activate(UidQueue queue) {
+        if (queue.mActive.compareAndSet(false, true)) {
+            offer(queue, /* first= */ false);
+        }
+    }
+
+    private void offer(UidQueue queue, boolean first) {
+        if (first) {
+            mActiveUids.offerFirst(queue);
+        } else {
+            mActiveUids.offerLast(queue);
+        }
+        // Read after the offer, a thread that starts waiting later finds the uid in the ring.
+        if (mWaitingThreadCount.get() > 0) {
+            signalWaitingThreads();
+        }
+    }
+
+    private void signalWaitingThreads() {
+        mWaitLock.lock();
+        try {
+            mRingNotEmpty.signalAll();
+        } finally {
+            mWaitLock.unlock();
+        }
+    }
+
+    /** Blocks until a uid is put into the ring, or no task is left. */
+    private void awaitActiveUid() {
+        mWaitLock.lock();
+        mWaitingThreadCount.incrementAndGet();
+        try {
+            while (mActiveUids.isEmpty() && mQueuedTaskCount.get() > 0) {
+                mRingNotEmpty.awaitUninterruptibly();
+            }
+        } finally {
+            mWaitingThreadCount.decrementAndGet();
+            mWaitLock.unlock();
+        }
+    }
+
+    private void deactivate(UidQueue queue) {
+        queue.mActive.set(false);
+        // A task added after the poll above could have seen the queue still active and skipped
+        // putting it back into the ring.
+        if (!queue.mTasks.isEmpty()) {
+            activate(queue);
+        }
+    }
+
+    private static final class UidQueue {
+        private final Queue<Runnable> mTasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean mActive = new AtomicBoolean();
+        private volatile int mWeight = 1;
+        // Tasks left in the current turn, 0 between turns. Only accessed by the thread running the
+        // turn of this uid.
+        private int mTurnsLeft;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect;
+
+import static android.app.ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.Slog;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the uids in foreground, so that checking a uid doesn't need a binder call into
+ * {@link ActivityManager}.
+ *
+ * <p>Until {@link #startTracking()} succeeds, every check falls back to querying the running app
+ * processes.
+ *
+ * <p>The listener updates are applied under a lock held while the initial state is read, so an
+ * update racing with {@link #startTracking()} is applied on top of that state and never overwritten
+ * by it.
+ *
+ * @hide
+ */
+public final class ForegroundUidTracker {
+    private static final String TAG = "HealthConnectForegroundUid";
+
+    private final ActivityManager mActivityManager;
+    private final Set<Integer> mForegroundUids = ConcurrentHashMap.newKeySet();
+    private final ActivityManager.OnUidImportanceListener mListener = this::onUidImportance;
+    private final Object mLock = new Object();
+
+    // Only changed under mLock, read without it by the checks.
+    private volatile boolean mTracking;
+
+    public ForegroundUidTracker(Context context) {
+        mActivityManager =
+                Objects.requireNonNull(context.getSystemService(ActivityManager.class));
+    }
+
+    /** Starts listening to uid importance changes. */
+    public void startTracking() {
+        synchronized (mLock) {
+            if (mTracking) {
+                return;
+            }
+
+            try {
+                mActivityManager.addOnUidImportanceListener(mListener, IMPORTANCE_FOREGROUND);
+            } catch (RuntimeException e) {
+                Slog.e(TAG, "Unable to listen to uid importance, querying processes instead", e);
+                return;
+            }
+
+            // Seed with the current state, the listener is only called on changes. Updates
+            // received meanwhile wait for the lock, and are then applied in order on top of it.
+            List<ActivityManager.RunningAppProcessInfo> runningAppProcesses =
+                    mActivityManager.getRunningAppProcesses();
+            if (runningAppProcesses != null) {
+                for (ActivityManager.RunningAppProcessInfo info : runningAppProcesses) {
+                    if (info.importance == IMPORTANCE_FOREGROUND) {
+                        mForegroundUids.add(info.uid);
+                    }
+                }
+            }
+            mTracking = true;
+        }
+    }
+
+    /** Stops listening to uid importance changes and falls back to querying processes. */
+    public void stopTracking() {
+        synchronized (mLock) {
+            if (!mTracking) {
+                return;
+            }
+
+            mTracking = false;
+            mActivityManager.removeOnUidImportanceListener(mListener);
+            mForegroundUids.clear();
+        }
+    }
+
+    /** Returns whether the given uid is in foreground. */
+    public boolean isUidInForeground(int uid) {
+        if (mTracking) {
+            return mForegroundUids.contains(uid);
+        }
+        return queryUidInForeground(mActivityManager, uid);
+    }
+
+    @VisibleForTesting
+    void onUidImportance(int uid, int importance) {
+        synchronized (mLock) {
+            // A late update after stopTracking() would be left in the set of the next tracking.
+            if (!mTracking) {
+                return;
+            }
+            if (importance == IMPORTANCE_FOREGROUND) {
+                mForegroundUids.add(uid);
+            } else {
+                mForegroundUids.remove(uid);
+            }
+        }
+    }
+
+    /** Returns whether the given uid is in foreground by querying the running processes. */
+    static boolean queryUidInForeground(ActivityManager activityManager, int uid) {
+        List<ActivityManager.RunningAppProcessInfo> runningAppProcesses =
+                activityManager.getRunningAppProcesses();
+        if (runningAppProcesses == null) {
+            return false;
+        }
+        for (ActivityManager.RunningAppProcessInfo info : runningAppProcesses) {
+            if (info.uid == uid && info.importance == IMPORTANCE_FOREGROUND) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -17,7 +17,10 @@
 package com.android.server.healthconnect;
 
 import android.annotation.Nullable;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.health.connect.ratelimiter.RateLimiter;
 import android.os.Process;
 import android.os.UserHandle;
@@ -25,6 +28,7 @@ import android.os.UserManager;
 import android.util.Slog;
 
 import com.android.healthfitness.flags.Flags;
+import com.android.modules.utils.BackgroundThread;
 import com.android.server.SystemService;
 import com.android.server.healthconnect.exportimport.ExportImportJobs;
 import com.android.server.healthconnect.exportimport.ExportManager;
@@ -91,6 +95,7 @@ public class HealthConnectManagerService extends SystemService {
                         mHealthConnectInjector.getInternalHealthConnectMappings(),
                         mTransactionManager,
                         mHealthConnectInjector.getHealthConnectPermissionHelper(),
+                        mHealthConnectInjector.getPermissionDecisionCache(),
                         mHealthConnectInjector.getFirstGrantTimeManager(),
                         mHealthConnectInjector.getMigrationEntityHelper(),
                         mMigrationStateManager,
@@ -119,12 +124,28 @@ public class HealthConnectManagerService extends SystemService {
         mPermissionPackageChangesOrchestrator.registerBroadcastReceiver(mContext);
         new MigratorPackageChangesReceiver(mMigrationStateManager)
                 .registerBroadcastReceiver(mContext);
+        if (Flags.cachedForegroundUids()) {
+            HealthConnectThreadScheduler.startForegroundUidTracking(mContext);
+        }
+        if (Flags.bufferedReadAccessLogs()) {
+            mContext.registerReceiver(
+                    new BroadcastReceiver() {
+                        @Override
+                        public void onReceive(Context context, Intent intent) {
+                            flushReadAccessLogs();
+                        }
+                    },
+                    new IntentFilter(Intent.ACTION_SHUTDOWN),
+                    /* broadcastPermission= */ null,
+                    BackgroundThread.getHandler());
+        }
         publishBinderService(Context.HEALTHCONNECT_SERVICE, mHealthConnectService);
     }
 
     /**
      * NOTE: Don't put any code that uses DB in onUserSwitching, such code should be part of
-     * switchToSetupForUser which is only called once DB is in usable state.
+     * switchToSetupForUser which is only called once DB is in usable state. The only exception is
+     * writing the buffered read access logs to the DB of the previous user, before it's closed.
      */
     @Override
     public void onUserSwitching(@Nullable TargetUser from, TargetUser to) {
@@ -135,6 +156,12 @@ public class HealthConnectManagerService extends SystemService {
         }
 
         HealthConnectThreadScheduler.shutdownThreadPools();
+        if (from != null && mUserManager.isUserUnlocked(from.getUserHandle())) {
+            // The database of the previous user is still open, and is closed below. Buffered read
+            // access logs have to be written to it now, as they can't be written to the next one.
+            // Those of reads still running are discarded when the caches are cleared.
+            flushReadAccessLogs();
+        }
         mDatabaseHelpers.clearAllCache();
         mTransactionManager.onUserSwitching();
         RateLimiter.clearCache();
@@ -165,6 +192,15 @@ public class HealthConnectManagerService extends SystemService {
         switchToSetupForUser(user.getUserHandle());
     }
 
+    @Override
+    public void onUserStopping(TargetUser user) {
+        Objects.requireNonNull(user);
+        if (user.getUserHandle().equals(mCurrentForegroundUser)
+                && mUserManager.isUserUnlocked(user.getUserHandle())) {
+            flushReadAccessLogs();
+        }
+    }
+
     @Override
     public boolean isUserSupported(TargetUser user) {
         UserManager userManager =
@@ -247,6 +283,15 @@ public class HealthConnectManagerService extends SystemService {
                 });
     }
 
+    /** Writes the read access logs buffered for the database of the current user. */
+    private void flushReadAccessLogs() {
+        try {
+            mHealthConnectInjector.getAccessLogsHelper().flushReadAccessLogs();
+        } catch (RuntimeException e) {
+            Slog.e(TAG, "Failed to write buffered read access logs", e);
+        }
+    }
+
     private static Context getUserContext(Context context, UserHandle user) {
         if (Process.myUserHandle().equals(user)) {
             return context;
@@ -30,7 +30,7 @@ import java.util.concurrent.LinkedBlockingQueue;
  *
  * @hide
  */
-public final class HealthConnectRoundRobinScheduler {
+public final class HealthConnectRoundRobinScheduler implements RoundRobinScheduler {
     private static final String TAG = "HealthConnectScheduler";
     private final ConcurrentSkipListMap<Integer, Queue<Runnable>> mTasks =
             new ConcurrentSkipListMap<>();
@@ -43,14 +43,16 @@ public final class HealthConnectRoundRobinScheduler {
     @GuardedBy("mLock")
     private Integer mLastKeyUsed;
 
-    void resume() {
+    @Override
+    public void resume() {
         synchronized (mLock) {
             mPauseScheduler = false;
         }
     }
 
+    @Override
     @SuppressWarnings("NullAway") // TODO(b/317029272): fix this suppression
-    void addTask(int uid, Runnable task) {
+    public void addTask(int uid, Runnable task) {
         synchronized (mLock) {
             // If the scheduler is currently paused (this can happen if the platform is doing a user
             // switch), ignore this request. This most likely means that we won't be able to deliver
@@ -65,7 +67,8 @@ public final class HealthConnectRoundRobinScheduler {
         }
     }
 
-    Runnable getNextTask() {
+    @Override
+    public Runnable getNextTask() {
         synchronized (mLock) {
             if (mLastKeyUsed == null) {
                 mLastKeyUsed = mTasks.firstKey();
@@ -95,7 +98,8 @@ public final class HealthConnectRoundRobinScheduler {
         }
     }
 
-    void killTasksAndPauseScheduler() {
+    @Override
+    public void killTasksAndPauseScheduler() {
         synchronized (mLock) {
             mPauseScheduler = true;
             mTasks.clear();
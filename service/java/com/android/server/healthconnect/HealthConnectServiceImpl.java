@@ -158,6 +158,7 @@ import android.os.Binder;
 import android.os.ParcelFileDescriptor;
 import android.os.Process;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.permission.PermissionManager;
 import android.util.ArrayMap;
@@ -165,6 +166,7 @@ import android.util.Log;
 import android.util.Pair;
 import android.util.Slog;
 
+import com.android.healthfitness.flags.AconfigFlagHelper;
 import com.android.healthfitness.flags.Flags;
 import com.android.server.LocalManagerRegistry;
 import com.android.server.appop.AppOpsManagerLocal;
@@ -185,6 +187,7 @@ import com.android.server.healthconnect.permission.DataPermissionEnforcer;
 import com.android.server.healthconnect.permission.FirstGrantTimeManager;
 import com.android.server.healthconnect.permission.HealthConnectPermissionHelper;
 import com.android.server.healthconnect.permission.MedicalDataPermissionEnforcer;
+import com.android.server.healthconnect.permission.PermissionDecisionCache;
 import com.android.server.healthconnect.phr.PhrPageTokenWrapper;
 import com.android.server.healthconnect.phr.ReadMedicalResourcesInternalResponse;
 import com.android.server.healthconnect.phr.validations.FhirResourceValidator;
@@ -300,6 +303,7 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
             InternalHealthConnectMappings internalHealthConnectMappings,
             TransactionManager transactionManager,
             HealthConnectPermissionHelper permissionHelper,
+            PermissionDecisionCache permissionDecisionCache,
             FirstGrantTimeManager firstGrantTimeManager,
             MigrationEntityHelper migrationEntityHelper,
             MigrationStateManager migrationStateManager,
@@ -361,9 +365,15 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
         mPermissionManager = mContext.getSystemService(PermissionManager.class);
         mAppOpsManagerLocal = LocalManagerRegistry.getManager(AppOpsManagerLocal.class);
         mMedicalDataPermissionEnforcer = new MedicalDataPermissionEnforcer(mPermissionManager);
+        if (Flags.cachedPermissionDecisions()) {
+            permissionDecisionCache.registerListeners(mContext);
+        }
         mDataPermissionEnforcer =
                 new DataPermissionEnforcer(
-                        mPermissionManager, mContext, internalHealthConnectMappings);
+                        mPermissionManager,
+                        mContext,
+                        internalHealthConnectMappings,
+                        Flags.cachedPermissionDecisions() ? permissionDecisionCache : null);
         if (Flags.exportImport()) {
             Clock clockForLogging = Flags.exportImportFastFollow() ? Clock.systemUTC() : null;
             mImportManager =
@@ -544,7 +554,10 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
     }
 
     private void postInsertTasks(AttributionSource attributionSource, RecordsParcel recordsParcel) {
-        mActivityDateHelper.insertRecordDate(recordsParcel.getRecords());
+        if (!AconfigFlagHelper.isActivityDateCountsEnabled()) {
+            // Otherwise the dates have been counted in the insert transaction.
+            mActivityDateHelper.insertRecordDate(recordsParcel.getRecords());
+        }
         Set<Integer> recordsTypesInsertedSet =
                 recordsParcel.getRecords().stream()
                         .map(RecordInternal::getRecordType)
@@ -650,7 +663,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                 logger,
                 errorCallback,
                 uid,
-                /* isController= */ holdsDataManagementPermission);
+                /* isController= */ holdsDataManagementPermission,
+                /* isReadOnly= */ true);
     }
 
     /**
@@ -841,7 +855,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                 logger,
                 errorCallback,
                 uid,
-                /* isController= */ holdsDataManagementPermission);
+                /* isController= */ holdsDataManagementPermission,
+                /* isReadOnly= */ true);
     }
 
     private void maybeEnforceOnlyCallingPackageDataRequested(
@@ -917,13 +932,15 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                     logRecordTypeSpecificUpsertMetrics(
                             recordInternals, attributionSource.getPackageName());
                     logger.setDataTypesFromRecordInternals(recordInternals);
-                    // Update activity dates table
-                    HealthConnectThreadScheduler.scheduleInternalTask(
-                            () ->
-                                    mActivityDateHelper.reSyncByRecordTypeIds(
-                                            recordInternals.stream()
-                                                    .map(RecordInternal::getRecordType)
-                                                    .toList()));
+                    if (!AconfigFlagHelper.isActivityDateCountsEnabled()) {
+                        // Update activity dates table
+                        HealthConnectThreadScheduler.scheduleInternalTask(
+                                () ->
+                                        mActivityDateHelper.reSyncByRecordTypeIds(
+                                                recordInternals.stream()
+                                                        .map(RecordInternal::getRecordType)
+                                                        .toList()));
+                    }
                 },
                 logger,
                 errorCallback,
@@ -1086,7 +1103,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                 logger,
                 errorCallback,
                 uid,
-                /* isController= */ false);
+                /* isController= */ false,
+                /* isReadOnly= */ true);
     }
 
     /**
@@ -2790,7 +2808,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                 logger,
                 errorCallback,
                 uid,
-                /* isController= */ holdsDataManagementPermission);
+                /* isController= */ holdsDataManagementPermission,
+                /* isReadOnly= */ true);
     }
 
     @Override
@@ -2905,7 +2924,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                 logger,
                 errorCallback,
                 uid,
-                /* isController= */ holdsDataManagementPermission);
+                /* isController= */ holdsDataManagementPermission,
+                /* isReadOnly= */ true);
     }
 
     @Override
@@ -3060,9 +3080,24 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
             ErrorCallback errorCallback,
             int uid,
             boolean isController) {
+        scheduleLoggingHealthDataApiErrors(
+                task, logger, errorCallback, uid, isController, /* isReadOnly= */ false);
+    }
+
+    private void scheduleLoggingHealthDataApiErrors(
+            Task task,
+            HealthConnectServiceLogger.Builder logger,
+            ErrorCallback errorCallback,
+            int uid,
+            boolean isController,
+            boolean isReadOnly) {
+        int queuedTaskCount = HealthConnectThreadScheduler.getQueuedClientTaskCount();
+        long scheduledTime = SystemClock.elapsedRealtime();
         HealthConnectThreadScheduler.schedule(
                 mContext,
                 () -> {
+                    logger.setSchedulingStats(
+                            queuedTaskCount, SystemClock.elapsedRealtime() - scheduledTime);
                     int errorCode = ERROR_UNKNOWN;
                     Exception exception = null;
                     try {
@@ -3104,7 +3139,8 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
                     }
                 },
                 uid,
-                isController);
+                isController,
+                isReadOnly);
     }
 
     /**
@@ -3515,7 +3551,9 @@ final class HealthConnectServiceImpl extends IHealthConnectService.Stub {
     private void postDeleteTasks(List<Integer> recordTypeIdsToDelete) {
         if (recordTypeIdsToDelete != null && !recordTypeIdsToDelete.isEmpty()) {
             mAppInfoHelper.syncAppInfoRecordTypesUsed(new HashSet<>(recordTypeIdsToDelete));
-            mActivityDateHelper.reSyncByRecordTypeIds(recordTypeIdsToDelete);
+            if (!AconfigFlagHelper.isActivityDateCountsEnabled()) {
+                mActivityDateHelper.reSyncByRecordTypeIds(recordTypeIdsToDelete);
+            }
         }
     }
 
@@ -16,13 +16,14 @@
 
 package com.android.server.healthconnect;
 
+import android.annotation.Nullable;
 import android.app.ActivityManager;
 import android.content.Context;
 import android.util.Slog;
 
+import com.android.healthfitness.flags.Flags;
 import com.android.internal.annotations.VisibleForTesting;
 
-import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -46,11 +47,22 @@ public final class HealthConnectThreadScheduler {
     private static final long KEEP_ALIVE_TIME_SHARED = 60L;
     private static final int NUM_EXECUTOR_THREADS_CONTROLLER = 2;
     private static final long KEEP_ALIVE_TIME_CONTROLLER = 60L;
+    // SQLite in WAL mode serves readers concurrently, but leave cores for the rest of the system.
+    private static final int NUM_EXECUTOR_THREADS_READ =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final long KEEP_ALIVE_TIME_READ = 60L;
 
     // Scheduler to run the tasks in a RR fashion based on client package names.
-    private static final HealthConnectRoundRobinScheduler
-            HEALTH_CONNECT_BACKGROUND_ROUND_ROBIN_SCHEDULER =
-                    new HealthConnectRoundRobinScheduler();
+    private static final RoundRobinScheduler HEALTH_CONNECT_BACKGROUND_ROUND_ROBIN_SCHEDULER =
+            createRoundRobinScheduler();
+    // Scheduler to run the read-only tasks in a RR fashion based on client uids.
+    private static final RoundRobinScheduler HEALTH_CONNECT_READ_ROUND_ROBIN_SCHEDULER =
+            createRoundRobinScheduler();
+    // Scheduler to run the read-only tasks of foreground uids, served before the ones above.
+    private static final RoundRobinScheduler HEALTH_CONNECT_FOREGROUND_READ_ROUND_ROBIN_SCHEDULER =
+            createRoundRobinScheduler();
+    // Number of tasks in the foreground read scheduler not yet picked up by a read thread.
+    private static final AtomicInteger PENDING_FOREGROUND_READ_TASK_COUNT = new AtomicInteger();
     private static final String TAG = "HealthConnectScheduler";
 
     // Executor to run HC background tasks
@@ -70,13 +82,29 @@ public final class HealthConnectThreadScheduler {
     @VisibleForTesting
     static volatile ThreadPoolExecutor sControllerExecutor = createControllerExecutor();
 
+    // Tracker of foreground uids, queried per task when null
+    @VisibleForTesting @Nullable static volatile ForegroundUidTracker sForegroundUidTracker;
+
+    // Executor to run read-only HC tasks for clients
+    @VisibleForTesting static volatile ThreadPoolExecutor sReadExecutor = createReadExecutor();
+
     public static void resetThreadPools() {
         sInternalBackgroundExecutor = createInternalBackgroundExecutor();
         sBackgroundThreadExecutor = createBackgroundExecutor();
         sForegroundExecutor = createForegroundExecutor();
         sControllerExecutor = createControllerExecutor();
+        sReadExecutor = createReadExecutor();
 
         HEALTH_CONNECT_BACKGROUND_ROUND_ROBIN_SCHEDULER.resume();
+        HEALTH_CONNECT_READ_ROUND_ROBIN_SCHEDULER.resume();
+        HEALTH_CONNECT_FOREGROUND_READ_ROUND_ROBIN_SCHEDULER.resume();
+        PENDING_FOREGROUND_READ_TASK_COUNT.set(0);
+    }
+
+    private static RoundRobinScheduler createRoundRobinScheduler() {
+        return Flags.activeUidRoundRobinScheduler()
+                ? new ActiveUidRoundRobinScheduler()
+                : new HealthConnectRoundRobinScheduler();
     }
 
     private static ThreadPoolExecutor createInternalBackgroundExecutor() {
@@ -119,13 +147,33 @@ public final class HealthConnectThreadScheduler {
                 new NamedThreadFactory("hc-ctrl-"));
     }
 
+    private static ThreadPoolExecutor createReadExecutor() {
+        return new ThreadPoolExecutor(
+                NUM_EXECUTOR_THREADS_READ,
+                NUM_EXECUTOR_THREADS_READ,
+                KEEP_ALIVE_TIME_READ,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamedThreadFactory("hc-read-"));
+    }
+
     static void shutdownThreadPools() {
         HEALTH_CONNECT_BACKGROUND_ROUND_ROBIN_SCHEDULER.killTasksAndPauseScheduler();
+        HEALTH_CONNECT_READ_ROUND_ROBIN_SCHEDULER.killTasksAndPauseScheduler();
+        HEALTH_CONNECT_FOREGROUND_READ_ROUND_ROBIN_SCHEDULER.killTasksAndPauseScheduler();
 
         sInternalBackgroundExecutor.shutdownNow();
         sBackgroundThreadExecutor.shutdownNow();
         sForegroundExecutor.shutdownNow();
         sControllerExecutor.shutdownNow();
+        sReadExecutor.shutdownNow();
+    }
+
+    /** Returns the number of client tasks waiting for a thread. */
+    static int getQueuedClientTaskCount() {
+        return sForegroundExecutor.getQueue().size()
+                + sBackgroundThreadExecutor.getQueue().size()
+                + sReadExecutor.getQueue().size();
     }
 
     /** Schedules the task on the executor dedicated for performing internal tasks */
@@ -140,11 +188,35 @@ public final class HealthConnectThreadScheduler {
 
     /** Schedules the task on the best possible executor based on the parameters */
     static void schedule(Context context, Runnable task, int uid, boolean isController) {
+        schedule(context, task, uid, isController, /* isReadOnly= */ false);
+    }
+
+    /**
+     * Schedules the task on the best possible executor based on the parameters.
+     *
+     * <p>Read-only tasks run on a pool of threads, taking turns between the calling uids, so that
+     * a slow read doesn't block the other apps. Whenever a thread of the pool frees up it picks the
+     * read of a foreground app first, so these don't wait behind background syncs. Other tasks
+     * keep running on the single foreground and background threads.
+     */
+    static void schedule(
+            Context context, Runnable task, int uid, boolean isController, boolean isReadOnly) {
         if (isController) {
             safeExecute(sControllerExecutor, getSafeRunnable(task));
             return;
         }
 
+        if (isReadOnly && Flags.multiThreadedReads()) {
+            if (isUidInForeground(context, uid)) {
+                HEALTH_CONNECT_FOREGROUND_READ_ROUND_ROBIN_SCHEDULER.addTask(uid, task);
+                PENDING_FOREGROUND_READ_TASK_COUNT.incrementAndGet();
+            } else {
+                HEALTH_CONNECT_READ_ROUND_ROBIN_SCHEDULER.addTask(uid, task);
+            }
+            safeExecute(sReadExecutor, getSafeRunnable(() -> getNextReadTask().run()));
+            return;
+        }
+
         if (isUidInForeground(context, uid)) {
             safeExecute(
                     sForegroundExecutor,
@@ -181,22 +253,35 @@ public final class HealthConnectThreadScheduler {
         }
     }
 
+    /**
+     * Returns the next read-only task, taking the ones of foreground uids first.
+     *
+     * <p>Each task added to either read scheduler comes with one call to this, so once no
+     * foreground task is pending there's a background one for the caller.
+     */
+    private static Runnable getNextReadTask() {
+        if (PENDING_FOREGROUND_READ_TASK_COUNT.getAndUpdate(count -> count > 0 ? count - 1 : 0) > 0) {
+            return HEALTH_CONNECT_FOREGROUND_READ_ROUND_ROBIN_SCHEDULER.getNextTask();
+        }
+        return HEALTH_CONNECT_READ_ROUND_ROBIN_SCHEDULER.getNextTask();
+    }
+
+    /** Starts tracking foreground uids with a listener instead of querying them per task. */
+    static void startForegroundUidTracking(Context context) {
+        ForegroundUidTracker tracker = new ForegroundUidTracker(context);
+        tracker.startTracking();
+        sForegroundUidTracker = tracker;
+    }
+
     private static boolean isUidInForeground(Context context, int uid) {
+        ForegroundUidTracker tracker = sForegroundUidTracker;
+        if (tracker != null) {
+            return tracker.isUidInForeground(uid);
+        }
+
         ActivityManager activityManager = context.getSystemService(ActivityManager.class);
         Objects.requireNonNull(activityManager);
-        List<ActivityManager.RunningAppProcessInfo> runningAppProcesses =
-                activityManager.getRunningAppProcesses();
-        if (runningAppProcesses == null) {
-            return false;
-        }
-        for (ActivityManager.RunningAppProcessInfo info : runningAppProcesses) {
-            if (info.uid == uid
-                    && info.importance
-                            == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND) {
-                return true;
-            }
-        }
-        return false;
+        return ForegroundUidTracker.queryUidInForeground(activityManager, uid);
     }
 
     private static void safeExecute(ThreadPoolExecutor executor, Runnable task) {
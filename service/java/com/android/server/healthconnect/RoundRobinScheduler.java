@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect;
+
+/**
+ * Queues tasks per client uid and hands them out taking turns between the uids.
+ *
+ * <p>Every {@link #addTask} is expected to be followed by exactly one {@link #getNextTask} call.
+ *
+ * @hide
+ */
+public interface RoundRobinScheduler {
+    /** Resumes accepting tasks after {@link #killTasksAndPauseScheduler}. */
+    void resume();
+
+    /** Queues the task of the given uid, or drops it if the scheduler is paused. */
+    void addTask(int uid, Runnable task);
+
+    /** Returns the next task, from the uid whose turn it is. */
+    Runnable getNextTask();
+
+    /** Drops all queued tasks and stops accepting new ones until {@link #resume}. */
+    void killTasksAndPauseScheduler();
+}
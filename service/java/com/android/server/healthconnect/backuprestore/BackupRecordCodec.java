@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.backuprestore;
+
+import android.health.connect.internal.datatypes.RecordInternal;
+
+import com.android.server.healthconnect.proto.backuprestore.BackupData;
+import com.android.server.healthconnect.storage.utils.InternalHealthConnectMappings;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.util.Arrays;
+
+/**
+ * Encodes the records of cloud backups into a compact binary format, and decodes them.
+ *
+ * <p>The format starts with a version byte, which can't be the first byte of a Java serialization
+ * stream, followed by the record as a {@link BackupData} proto. The values of each record type are
+ * fields of their own message, see {@link RecordProtoConverter}, so record types evolve
+ * independently and backups written by other versions stay readable.
+ *
+ * @hide
+ */
+public final class BackupRecordCodec {
+    // Version 1 wrote the values of records in their Parcel layout, which is not stable. It was
+    // never enabled by default, so it is not decoded.
+    private static final byte FORMAT_VERSION_PROTO = 2;
+
+    private final InternalHealthConnectMappings mInternalHealthConnectMappings;
+
+    public BackupRecordCodec(InternalHealthConnectMappings internalHealthConnectMappings) {
+        mInternalHealthConnectMappings = internalHealthConnectMappings;
+    }
+
+    /** Encodes {@code record}, which can be decoded by {@link #decode}, without changing it. */
+    public byte[] encode(RecordInternal<?> record) {
+        byte[] data =
+                BackupData.newBuilder()
+                        .setRecord(RecordProtoConverter.toRecordProto(record))
+                        .build()
+                        .toByteArray();
+        byte[] encoded = new byte[data.length + 1];
+        encoded[0] = FORMAT_VERSION_PROTO;
+        System.arraycopy(data, 0, encoded, 1, data.length);
+        return encoded;
+    }
+
+    /**
+     * Decodes a record encoded by {@link #encode}.
+     *
+     * @throws IllegalArgumentException if {@code bytes} is not a record encoded by this codec, or
+     *     its record type is not enabled
+     */
+    public RecordInternal<?> decode(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != FORMAT_VERSION_PROTO) {
+            throw new IllegalArgumentException(
+                    "Unknown backup record format: " + (bytes.length == 0 ? "empty" : bytes[0]));
+        }
+        BackupData data;
+        try {
+            data = BackupData.parseFrom(Arrays.copyOfRange(bytes, 1, bytes.length));
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalArgumentException("Malformed backup record", e);
+        }
+        if (!data.hasRecord()) {
+            throw new IllegalArgumentException("Backup record without a record");
+        }
+        RecordInternal<?> record = RecordProtoConverter.toRecordInternal(data.getRecord());
+        if (!mInternalHealthConnectMappings
+                .getRecordIdToInternalRecordClassMap()
+                .containsKey(record.getRecordType())) {
+            throw new IllegalArgumentException("Unknown record type: " + record.getRecordType());
+        }
+        return record;
+    }
+}
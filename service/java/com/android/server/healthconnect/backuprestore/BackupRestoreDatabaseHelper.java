@@ -35,6 +35,7 @@ import android.health.connect.internal.datatypes.utils.HealthConnectMappings;
 import android.util.Pair;
 import android.util.Slog;
 
+import com.android.healthfitness.flags.Flags;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.datatypehelpers.AccessLogsHelper;
@@ -73,6 +74,7 @@ public class BackupRestoreDatabaseHelper {
     private final InternalHealthConnectMappings mInternalHealthConnectMappings;
     private final ChangeLogsHelper mChangeLogsHelper;
     private final ChangeLogsRequestHelper mChangeLogsRequestHelper;
+    private final BackupRecordCodec mBackupRecordCodec;
 
     // TODO: b/377648858 - maybe also allow client passes its own page size.
     @VisibleForTesting static final int MAXIMUM_PAGE_SIZE = 5000;
@@ -95,6 +97,7 @@ public class BackupRestoreDatabaseHelper {
         mInternalHealthConnectMappings = internalHealthConnectMappings;
         mChangeLogsHelper = changeLogsHelper;
         mChangeLogsRequestHelper = changeLogsRequestHelper;
+        mBackupRecordCodec = new BackupRecordCodec(internalHealthConnectMappings);
     }
 
     /**
@@ -330,7 +333,10 @@ public class BackupRestoreDatabaseHelper {
                 .toList();
     }
 
-    private static byte[] serializeRecordInternal(RecordInternal<?> recordInternal) {
+    private byte[] serializeRecordInternal(RecordInternal<?> recordInternal) {
+        if (Flags.binaryBackupCodec()) {
+            return mBackupRecordCodec.encode(recordInternal);
+        }
         try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
                 ObjectOutputStream objectOutputStream =
                         new ObjectOutputStream(byteArrayOutputStream)) {
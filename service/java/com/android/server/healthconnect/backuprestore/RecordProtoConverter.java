@@ -0,0 +1,1287 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.backuprestore;
+
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_ACTIVE_CALORIES_BURNED;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_ACTIVITY_INTENSITY;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BASAL_BODY_TEMPERATURE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BASAL_METABOLIC_RATE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BLOOD_GLUCOSE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BLOOD_PRESSURE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BODY_FAT;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BODY_TEMPERATURE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BODY_WATER_MASS;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BONE_MASS;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_CERVICAL_MUCUS;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_CYCLING_PEDALING_CADENCE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_DISTANCE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_ELEVATION_GAINED;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_EXERCISE_SESSION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_FLOORS_CLIMBED;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HEART_RATE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HEART_RATE_VARIABILITY_RMSSD;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HEIGHT;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HYDRATION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_INTERMENSTRUAL_BLEEDING;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_LEAN_BODY_MASS;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_MENSTRUATION_FLOW;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_MENSTRUATION_PERIOD;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_MINDFULNESS_SESSION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_NUTRITION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_OVULATION_TEST;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_OXYGEN_SATURATION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_PLANNED_EXERCISE_SESSION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_POWER;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_RESPIRATORY_RATE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_RESTING_HEART_RATE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_SEXUAL_ACTIVITY;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_SKIN_TEMPERATURE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_SLEEP_SESSION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_SPEED;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS_CADENCE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_TOTAL_CALORIES_BURNED;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_VO2_MAX;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_WEIGHT;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_WHEELCHAIR_PUSHES;
+
+import android.health.connect.datatypes.units.Energy;
+import android.health.connect.datatypes.units.Length;
+import android.health.connect.datatypes.units.Mass;
+import android.health.connect.datatypes.units.Temperature;
+import android.health.connect.datatypes.units.Velocity;
+import android.health.connect.internal.datatypes.ActiveCaloriesBurnedRecordInternal;
+import android.health.connect.internal.datatypes.ActivityIntensityRecordInternal;
+import android.health.connect.internal.datatypes.BasalBodyTemperatureRecordInternal;
+import android.health.connect.internal.datatypes.BasalMetabolicRateRecordInternal;
+import android.health.connect.internal.datatypes.BloodGlucoseRecordInternal;
+import android.health.connect.internal.datatypes.BloodPressureRecordInternal;
+import android.health.connect.internal.datatypes.BodyFatRecordInternal;
+import android.health.connect.internal.datatypes.BodyTemperatureRecordInternal;
+import android.health.connect.internal.datatypes.BodyWaterMassRecordInternal;
+import android.health.connect.internal.datatypes.BoneMassRecordInternal;
+import android.health.connect.internal.datatypes.CervicalMucusRecordInternal;
+import android.health.connect.internal.datatypes.CyclingPedalingCadenceRecordInternal;
+import android.health.connect.internal.datatypes.CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample;
+import android.health.connect.internal.datatypes.DistanceRecordInternal;
+import android.health.connect.internal.datatypes.ElevationGainedRecordInternal;
+import android.health.connect.internal.datatypes.ExerciseCompletionGoalInternal;
+import android.health.connect.internal.datatypes.ExerciseLapInternal;
+import android.health.connect.internal.datatypes.ExercisePerformanceGoalInternal;
+import android.health.connect.internal.datatypes.ExerciseRouteInternal;
+import android.health.connect.internal.datatypes.ExerciseRouteInternal.LocationInternal;
+import android.health.connect.internal.datatypes.ExerciseSegmentInternal;
+import android.health.connect.internal.datatypes.ExerciseSessionRecordInternal;
+import android.health.connect.internal.datatypes.FloorsClimbedRecordInternal;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal.HeartRateSample;
+import android.health.connect.internal.datatypes.HeartRateVariabilityRmssdRecordInternal;
+import android.health.connect.internal.datatypes.HeightRecordInternal;
+import android.health.connect.internal.datatypes.HydrationRecordInternal;
+import android.health.connect.internal.datatypes.InstantRecordInternal;
+import android.health.connect.internal.datatypes.IntermenstrualBleedingRecordInternal;
+import android.health.connect.internal.datatypes.IntervalRecordInternal;
+import android.health.connect.internal.datatypes.LeanBodyMassRecordInternal;
+import android.health.connect.internal.datatypes.MenstruationFlowRecordInternal;
+import android.health.connect.internal.datatypes.MenstruationPeriodRecordInternal;
+import android.health.connect.internal.datatypes.MindfulnessSessionRecordInternal;
+import android.health.connect.internal.datatypes.NutritionRecordInternal;
+import android.health.connect.internal.datatypes.OvulationTestRecordInternal;
+import android.health.connect.internal.datatypes.OxygenSaturationRecordInternal;
+import android.health.connect.internal.datatypes.PlannedExerciseBlockInternal;
+import android.health.connect.internal.datatypes.PlannedExerciseSessionRecordInternal;
+import android.health.connect.internal.datatypes.PlannedExerciseStepInternal;
+import android.health.connect.internal.datatypes.PowerRecordInternal;
+import android.health.connect.internal.datatypes.PowerRecordInternal.PowerRecordSample;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.RespiratoryRateRecordInternal;
+import android.health.connect.internal.datatypes.RestingHeartRateRecordInternal;
+import android.health.connect.internal.datatypes.SeriesRecordInternal;
+import android.health.connect.internal.datatypes.SexualActivityRecordInternal;
+import android.health.connect.internal.datatypes.SkinTemperatureRecordInternal;
+import android.health.connect.internal.datatypes.SkinTemperatureRecordInternal.SkinTemperatureDeltaSample;
+import android.health.connect.internal.datatypes.SleepSessionRecordInternal;
+import android.health.connect.internal.datatypes.SleepStageInternal;
+import android.health.connect.internal.datatypes.SpeedRecordInternal;
+import android.health.connect.internal.datatypes.SpeedRecordInternal.SpeedRecordSample;
+import android.health.connect.internal.datatypes.StepsCadenceRecordInternal;
+import android.health.connect.internal.datatypes.StepsCadenceRecordInternal.StepsCadenceRecordSample;
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+import android.health.connect.internal.datatypes.TotalCaloriesBurnedRecordInternal;
+import android.health.connect.internal.datatypes.Vo2MaxRecordInternal;
+import android.health.connect.internal.datatypes.WeightRecordInternal;
+import android.health.connect.internal.datatypes.WheelchairPushesRecordInternal;
+
+import com.android.server.healthconnect.proto.backuprestore.ActiveCaloriesBurned;
+import com.android.server.healthconnect.proto.backuprestore.ActivityIntensity;
+import com.android.server.healthconnect.proto.backuprestore.BasalBodyTemperature;
+import com.android.server.healthconnect.proto.backuprestore.BasalMetabolicRate;
+import com.android.server.healthconnect.proto.backuprestore.BloodGlucose;
+import com.android.server.healthconnect.proto.backuprestore.BloodPressure;
+import com.android.server.healthconnect.proto.backuprestore.BodyFat;
+import com.android.server.healthconnect.proto.backuprestore.BodyTemperature;
+import com.android.server.healthconnect.proto.backuprestore.BodyWaterMass;
+import com.android.server.healthconnect.proto.backuprestore.BoneMass;
+import com.android.server.healthconnect.proto.backuprestore.CervicalMucus;
+import com.android.server.healthconnect.proto.backuprestore.CyclingPedalingCadence;
+import com.android.server.healthconnect.proto.backuprestore.Distance;
+import com.android.server.healthconnect.proto.backuprestore.ElevationGained;
+import com.android.server.healthconnect.proto.backuprestore.ExerciseSession;
+import com.android.server.healthconnect.proto.backuprestore.ExerciseSession.ExerciseLap;
+import com.android.server.healthconnect.proto.backuprestore.ExerciseSession.ExerciseRoute;
+import com.android.server.healthconnect.proto.backuprestore.ExerciseSession.ExerciseSegment;
+import com.android.server.healthconnect.proto.backuprestore.FloorsClimbed;
+import com.android.server.healthconnect.proto.backuprestore.HeartRate;
+import com.android.server.healthconnect.proto.backuprestore.HeartRateVariabilityRmssd;
+import com.android.server.healthconnect.proto.backuprestore.Height;
+import com.android.server.healthconnect.proto.backuprestore.Hydration;
+import com.android.server.healthconnect.proto.backuprestore.InstantRecord;
+import com.android.server.healthconnect.proto.backuprestore.IntermenstrualBleeding;
+import com.android.server.healthconnect.proto.backuprestore.IntervalRecord;
+import com.android.server.healthconnect.proto.backuprestore.LeanBodyMass;
+import com.android.server.healthconnect.proto.backuprestore.MenstruationFlow;
+import com.android.server.healthconnect.proto.backuprestore.MenstruationPeriod;
+import com.android.server.healthconnect.proto.backuprestore.MindfulnessSession;
+import com.android.server.healthconnect.proto.backuprestore.Nutrition;
+import com.android.server.healthconnect.proto.backuprestore.OvulationTest;
+import com.android.server.healthconnect.proto.backuprestore.OxygenSaturation;
+import com.android.server.healthconnect.proto.backuprestore.PlannedExerciseSession;
+import com.android.server.healthconnect.proto.backuprestore.PlannedExerciseSession.PlannedExerciseBlock;
+import com.android.server.healthconnect.proto.backuprestore.PlannedExerciseSession.PlannedExerciseBlock.PlannedExerciseStep;
+import com.android.server.healthconnect.proto.backuprestore.PlannedExerciseSession.PlannedExerciseBlock.PlannedExerciseStep.ExerciseCompletionGoal;
+import com.android.server.healthconnect.proto.backuprestore.PlannedExerciseSession.PlannedExerciseBlock.PlannedExerciseStep.ExercisePerformanceGoal;
+import com.android.server.healthconnect.proto.backuprestore.Power;
+import com.android.server.healthconnect.proto.backuprestore.Record;
+import com.android.server.healthconnect.proto.backuprestore.RespiratoryRate;
+import com.android.server.healthconnect.proto.backuprestore.RestingHeartRate;
+import com.android.server.healthconnect.proto.backuprestore.SexualActivity;
+import com.android.server.healthconnect.proto.backuprestore.SkinTemperature;
+import com.android.server.healthconnect.proto.backuprestore.SleepSession;
+import com.android.server.healthconnect.proto.backuprestore.SleepSession.SleepStage;
+import com.android.server.healthconnect.proto.backuprestore.Speed;
+import com.android.server.healthconnect.proto.backuprestore.Steps;
+import com.android.server.healthconnect.proto.backuprestore.StepsCadence;
+import com.android.server.healthconnect.proto.backuprestore.TotalCaloriesBurned;
+import com.android.server.healthconnect.proto.backuprestore.Vo2Max;
+import com.android.server.healthconnect.proto.backuprestore.Weight;
+import com.android.server.healthconnect.proto.backuprestore.WheelchairPushes;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Converts records between {@link RecordInternal} and the {@link Record} proto of
+ * backup_data.proto.
+ *
+ * <p>Each value of a record type is a field of its own message, so a record type can gain or drop
+ * values without changing how the other record types, or older backups, are read. Converting to a
+ * proto only reads the {@link RecordInternal}.
+ *
+ * @hide
+ */
+public final class RecordProtoConverter {
+
+    private RecordProtoConverter() {}
+
+    /** Returns the proto holding the metadata and values of {@code record}. */
+    public static Record toRecordProto(RecordInternal<?> record) {
+        Record.Builder builder =
+                Record.newBuilder()
+                        .setLastModifiedTime(record.getLastModifiedTime())
+                        .setClientRecordVersion(record.getClientRecordVersion())
+                        .setDeviceType(record.getDeviceType())
+                        .setRecordingMethod(record.getRecordingMethod());
+        if (record.getUuid() != null) {
+            builder.setUuid(record.getUuid().toString());
+        }
+        if (record.getPackageName() != null) {
+            builder.setPackageName(record.getPackageName());
+        }
+        if (record.getAppName() != null) {
+            builder.setAppName(record.getAppName());
+        }
+        if (record.getClientRecordId() != null) {
+            builder.setClientRecordId(record.getClientRecordId());
+        }
+        if (record.getManufacturer() != null) {
+            builder.setManufacturer(record.getManufacturer());
+        }
+        if (record.getModel() != null) {
+            builder.setModel(record.getModel());
+        }
+
+        if (record instanceof IntervalRecordInternal<?> intervalRecord) {
+            builder.setIntervalRecord(toIntervalRecordProto(intervalRecord));
+        } else if (record instanceof InstantRecordInternal<?> instantRecord) {
+            builder.setInstantRecord(toInstantRecordProto(instantRecord));
+        } else {
+            throw new IllegalArgumentException(
+                    "Unsupported record type: " + record.getRecordType());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the record held by {@code proto}.
+     *
+     * @throws IllegalArgumentException if {@code proto} holds no record type known to this version
+     */
+    public static RecordInternal<?> toRecordInternal(Record proto) {
+        RecordInternal<?> record =
+                switch (proto.getSubRecordCase()) {
+                    case INTERVAL_RECORD -> toIntervalRecordInternal(proto.getIntervalRecord());
+                    case INSTANT_RECORD -> toInstantRecordInternal(proto.getInstantRecord());
+                    default ->
+                            throw new IllegalArgumentException(
+                                    "Unknown sub record: " + proto.getSubRecordCase());
+                };
+
+        record.setUuid(proto.getUuid());
+        if (proto.hasPackageName()) {
+            record.setPackageName(proto.getPackageName());
+        }
+        record.setAppName(proto.hasAppName() ? proto.getAppName() : null);
+        record.setLastModifiedTime(proto.getLastModifiedTime());
+        record.setClientRecordId(proto.hasClientRecordId() ? proto.getClientRecordId() : null);
+        record.setClientRecordVersion(proto.getClientRecordVersion());
+        record.setManufacturer(proto.hasManufacturer() ? proto.getManufacturer() : null);
+        record.setModel(proto.hasModel() ? proto.getModel() : null);
+        record.setDeviceType(proto.getDeviceType());
+        record.setRecordingMethod(proto.getRecordingMethod());
+        return record;
+    }
+
+    private static IntervalRecord toIntervalRecordProto(IntervalRecordInternal<?> record) {
+        IntervalRecord.Builder builder =
+                IntervalRecord.newBuilder()
+                        .setStartTime(record.getStartTimeInMillis())
+                        .setStartZoneOffset(record.getStartZoneOffsetInSeconds())
+                        .setEndTime(record.getEndTimeInMillis())
+                        .setEndZoneOffset(record.getEndZoneOffsetInSeconds());
+
+        switch (record.getRecordType()) {
+            case RECORD_TYPE_ACTIVE_CALORIES_BURNED ->
+                    builder.setActiveCaloriesBurned(
+                            ActiveCaloriesBurned.newBuilder()
+                                    .setEnergy(
+                                            ((ActiveCaloriesBurnedRecordInternal) record)
+                                                    .getEnergy()));
+            case RECORD_TYPE_ACTIVITY_INTENSITY ->
+                    builder.setActivityIntensity(
+                            ActivityIntensity.newBuilder()
+                                    .setActivityIntensityType(
+                                            ((ActivityIntensityRecordInternal) record)
+                                                    .getActivityIntensityType()));
+            case RECORD_TYPE_CYCLING_PEDALING_CADENCE -> {
+                CyclingPedalingCadence.Builder data = CyclingPedalingCadence.newBuilder();
+                for (CyclingPedalingCadenceRecordSample sample :
+                        ((CyclingPedalingCadenceRecordInternal) record).getSamples()) {
+                    data.addSample(
+                            CyclingPedalingCadence.CyclingPedalingCadenceSample.newBuilder()
+                                    .setRevolutionsPerMinute(sample.getRevolutionsPerMinute())
+                                    .setEpochMillis(sample.getEpochMillis()));
+                }
+                builder.setCyclingPedalingCadence(data);
+            }
+            case RECORD_TYPE_DISTANCE ->
+                    builder.setDistance(
+                            Distance.newBuilder()
+                                    .setDistance(((DistanceRecordInternal) record).getDistance()));
+            case RECORD_TYPE_ELEVATION_GAINED ->
+                    builder.setElevationGained(
+                            ElevationGained.newBuilder()
+                                    .setElevation(
+                                            ((ElevationGainedRecordInternal) record)
+                                                    .getElevation()));
+            case RECORD_TYPE_EXERCISE_SESSION ->
+                    builder.setExerciseSession(
+                            toExerciseSessionProto((ExerciseSessionRecordInternal) record));
+            case RECORD_TYPE_FLOORS_CLIMBED ->
+                    builder.setFloorsClimbed(
+                            FloorsClimbed.newBuilder()
+                                    .setFloors(((FloorsClimbedRecordInternal) record).getFloors()));
+            case RECORD_TYPE_HEART_RATE -> {
+                HeartRate.Builder data = HeartRate.newBuilder();
+                for (HeartRateSample sample : ((HeartRateRecordInternal) record).getSamples()) {
+                    data.addSample(
+                            HeartRate.HeartRateSample.newBuilder()
+                                    .setBeatsPerMinute(sample.getBeatsPerMinute())
+                                    .setEpochMillis(sample.getEpochMillis()));
+                }
+                builder.setHeartRate(data);
+            }
+            case RECORD_TYPE_HYDRATION ->
+                    builder.setHydration(
+                            Hydration.newBuilder()
+                                    .setVolume(((HydrationRecordInternal) record).getVolume()));
+            case RECORD_TYPE_MENSTRUATION_PERIOD ->
+                    builder.setMenstruationPeriod(MenstruationPeriod.getDefaultInstance());
+            case RECORD_TYPE_MINDFULNESS_SESSION -> {
+                MindfulnessSessionRecordInternal mindfulnessSession =
+                        (MindfulnessSessionRecordInternal) record;
+                MindfulnessSession.Builder data =
+                        MindfulnessSession.newBuilder()
+                                .setMindfulnessSessionType(
+                                        mindfulnessSession.getMindfulnessSessionType());
+                if (mindfulnessSession.getTitle() != null) {
+                    data.setTitle(mindfulnessSession.getTitle());
+                }
+                if (mindfulnessSession.getNotes() != null) {
+                    data.setNotes(mindfulnessSession.getNotes());
+                }
+                builder.setMindfulnessSession(data);
+            }
+            case RECORD_TYPE_NUTRITION ->
+                    builder.setNutrition(toNutritionProto((NutritionRecordInternal) record));
+            case RECORD_TYPE_PLANNED_EXERCISE_SESSION ->
+                    builder.setPlannedExerciseSession(
+                            toPlannedExerciseSessionProto(
+                                    (PlannedExerciseSessionRecordInternal) record));
+            case RECORD_TYPE_POWER -> {
+                Power.Builder data = Power.newBuilder();
+                for (PowerRecordSample sample : ((PowerRecordInternal) record).getSamples()) {
+                    data.addSample(
+                            Power.PowerSample.newBuilder()
+                                    .setPower(sample.getPower())
+                                    .setEpochMillis(sample.getEpochMillis()));
+                }
+                builder.setPower(data);
+            }
+            case RECORD_TYPE_SKIN_TEMPERATURE -> {
+                SkinTemperatureRecordInternal skinTemperature =
+                        (SkinTemperatureRecordInternal) record;
+                SkinTemperature.Builder data =
+                        SkinTemperature.newBuilder()
+                                .setMeasurementLocation(skinTemperature.getMeasurementLocation())
+                                .setBaseline(skinTemperature.getBaseline().getInCelsius());
+                for (SeriesRecordInternal.Sample sample : skinTemperature.getSamples()) {
+                    SkinTemperatureDeltaSample delta = (SkinTemperatureDeltaSample) sample;
+                    data.addSample(
+                            SkinTemperature.SkinTemperatureDeltaSample.newBuilder()
+                                    .setTemperatureDeltaInCelsius(
+                                            delta.mTemperatureDeltaInCelsius())
+                                    .setEpochMillis(delta.mEpochMillis()));
+                }
+                builder.setSkinTemperature(data);
+            }
+            case RECORD_TYPE_SLEEP_SESSION ->
+                    builder.setSleepSession(
+                            toSleepSessionProto((SleepSessionRecordInternal) record));
+            case RECORD_TYPE_SPEED -> {
+                Speed.Builder data = Speed.newBuilder();
+                for (SpeedRecordSample sample : ((SpeedRecordInternal) record).getSamples()) {
+                    data.addSample(
+                            Speed.SpeedSample.newBuilder()
+                                    .setSpeed(sample.getSpeed())
+                                    .setEpochMillis(sample.getEpochMillis()));
+                }
+                builder.setSpeed(data);
+            }
+            case RECORD_TYPE_STEPS ->
+                    builder.setSteps(
+                            Steps.newBuilder()
+                                    .setCount(((StepsRecordInternal) record).getCount()));
+            case RECORD_TYPE_STEPS_CADENCE -> {
+                StepsCadence.Builder data = StepsCadence.newBuilder();
+                for (StepsCadenceRecordSample sample :
+                        ((StepsCadenceRecordInternal) record).getSamples()) {
+                    data.addSample(
+                            StepsCadence.StepsCadenceSample.newBuilder()
+                                    .setRate(sample.getRate())
+                                    .setEpochMillis(sample.getEpochMillis()));
+                }
+                builder.setStepsCadence(data);
+            }
+            case RECORD_TYPE_TOTAL_CALORIES_BURNED ->
+                    builder.setTotalCaloriesBurned(
+                            TotalCaloriesBurned.newBuilder()
+                                    .setEnergy(
+                                            ((TotalCaloriesBurnedRecordInternal) record)
+                                                    .getEnergy()));
+            case RECORD_TYPE_WHEELCHAIR_PUSHES ->
+                    builder.setWheelchairPushes(
+                            WheelchairPushes.newBuilder()
+                                    .setCount(
+                                            (int)
+                                                    ((WheelchairPushesRecordInternal) record)
+                                                            .getCount()));
+            default ->
+                    throw new IllegalArgumentException(
+                            "Unsupported interval record type: " + record.getRecordType());
+        }
+        return builder.build();
+    }
+
+    private static IntervalRecordInternal<?> toIntervalRecordInternal(IntervalRecord proto) {
+        IntervalRecordInternal<?> record =
+                switch (proto.getDataCase()) {
+                    case ACTIVE_CALORIES_BURNED ->
+                            new ActiveCaloriesBurnedRecordInternal()
+                                    .setEnergy(proto.getActiveCaloriesBurned().getEnergy());
+                    case ACTIVITY_INTENSITY ->
+                            new ActivityIntensityRecordInternal()
+                                    .setActivityIntensityType(
+                                            proto.getActivityIntensity()
+                                                    .getActivityIntensityType());
+                    case CYCLING_PEDALING_CADENCE -> {
+                        Set<CyclingPedalingCadenceRecordSample> samples = new HashSet<>();
+                        for (CyclingPedalingCadence.CyclingPedalingCadenceSample sample :
+                                proto.getCyclingPedalingCadence().getSampleList()) {
+                            samples.add(
+                                    new CyclingPedalingCadenceRecordSample(
+                                            sample.getRevolutionsPerMinute(),
+                                            sample.getEpochMillis()));
+                        }
+                        yield new CyclingPedalingCadenceRecordInternal().setSamples(samples);
+                    }
+                    case DISTANCE ->
+                            new DistanceRecordInternal()
+                                    .setDistance(proto.getDistance().getDistance());
+                    case ELEVATION_GAINED ->
+                            new ElevationGainedRecordInternal()
+                                    .setElevation(proto.getElevationGained().getElevation());
+                    case EXERCISE_SESSION ->
+                            toExerciseSessionInternal(proto.getExerciseSession());
+                    case FLOORS_CLIMBED ->
+                            new FloorsClimbedRecordInternal()
+                                    .setFloors(proto.getFloorsClimbed().getFloors());
+                    case HEART_RATE -> {
+                        Set<HeartRateSample> samples = new HashSet<>();
+                        for (HeartRate.HeartRateSample sample :
+                                proto.getHeartRate().getSampleList()) {
+                            samples.add(
+                                    new HeartRateSample(
+                                            sample.getBeatsPerMinute(), sample.getEpochMillis()));
+                        }
+                        yield new HeartRateRecordInternal().setSamples(samples);
+                    }
+                    case HYDRATION ->
+                            new HydrationRecordInternal()
+                                    .setVolume(proto.getHydration().getVolume());
+                    case MENSTRUATION_PERIOD -> new MenstruationPeriodRecordInternal();
+                    case MINDFULNESS_SESSION -> {
+                        MindfulnessSession data = proto.getMindfulnessSession();
+                        yield new MindfulnessSessionRecordInternal()
+                                .setMindfulnessSessionType(data.getMindfulnessSessionType())
+                                .setTitle(data.hasTitle() ? data.getTitle() : null)
+                                .setNotes(data.hasNotes() ? data.getNotes() : null);
+                    }
+                    case NUTRITION -> toNutritionInternal(proto.getNutrition());
+                    case PLANNED_EXERCISE_SESSION ->
+                            toPlannedExerciseSessionInternal(proto.getPlannedExerciseSession());
+                    case POWER -> {
+                        Set<PowerRecordSample> samples = new HashSet<>();
+                        for (Power.PowerSample sample : proto.getPower().getSampleList()) {
+                            samples.add(
+                                    new PowerRecordSample(
+                                            sample.getPower(), sample.getEpochMillis()));
+                        }
+                        yield new PowerRecordInternal().setSamples(samples);
+                    }
+                    case SKIN_TEMPERATURE -> {
+                        SkinTemperature data = proto.getSkinTemperature();
+                        Set<SkinTemperatureDeltaSample> samples = new HashSet<>();
+                        for (SkinTemperature.SkinTemperatureDeltaSample sample :
+                                data.getSampleList()) {
+                            samples.add(
+                                    new SkinTemperatureDeltaSample(
+                                            sample.getTemperatureDeltaInCelsius(),
+                                            sample.getEpochMillis()));
+                        }
+                        SkinTemperatureRecordInternal skinTemperature =
+                                new SkinTemperatureRecordInternal()
+                                        .setMeasurementLocation(data.getMeasurementLocation())
+                                        .setBaseline(Temperature.fromCelsius(data.getBaseline()));
+                        skinTemperature.setSamples(samples);
+                        yield skinTemperature;
+                    }
+                    case SLEEP_SESSION -> toSleepSessionInternal(proto.getSleepSession());
+                    case SPEED -> {
+                        Set<SpeedRecordSample> samples = new HashSet<>();
+                        for (Speed.SpeedSample sample : proto.getSpeed().getSampleList()) {
+                            samples.add(
+                                    new SpeedRecordSample(
+                                            sample.getSpeed(), sample.getEpochMillis()));
+                        }
+                        yield new SpeedRecordInternal().setSamples(samples);
+                    }
+                    case STEPS -> new StepsRecordInternal().setCount(proto.getSteps().getCount());
+                    case STEPS_CADENCE -> {
+                        Set<StepsCadenceRecordSample> samples = new HashSet<>();
+                        for (StepsCadence.StepsCadenceSample sample :
+                                proto.getStepsCadence().getSampleList()) {
+                            samples.add(
+                                    new StepsCadenceRecordSample(
+                                            sample.getRate(), sample.getEpochMillis()));
+                        }
+                        yield new StepsCadenceRecordInternal().setSamples(samples);
+                    }
+                    case TOTAL_CALORIES_BURNED ->
+                            new TotalCaloriesBurnedRecordInternal()
+                                    .setEnergy(proto.getTotalCaloriesBurned().getEnergy());
+                    case WHEELCHAIR_PUSHES ->
+                            new WheelchairPushesRecordInternal()
+                                    .setCount(proto.getWheelchairPushes().getCount());
+                    default ->
+                            throw new IllegalArgumentException(
+                                    "Unknown interval record data: " + proto.getDataCase());
+                };
+
+        record.setStartTime(proto.getStartTime());
+        record.setStartZoneOffset(proto.getStartZoneOffset());
+        record.setEndTime(proto.getEndTime());
+        record.setEndZoneOffset(proto.getEndZoneOffset());
+        return record;
+    }
+
+    private static InstantRecord toInstantRecordProto(InstantRecordInternal<?> record) {
+        InstantRecord.Builder builder =
+                InstantRecord.newBuilder()
+                        .setTime(record.getTimeInMillis())
+                        .setZoneOffset(record.getZoneOffsetInSeconds());
+
+        switch (record.getRecordType()) {
+            case RECORD_TYPE_BASAL_BODY_TEMPERATURE -> {
+                BasalBodyTemperatureRecordInternal basalBodyTemperature =
+                        (BasalBodyTemperatureRecordInternal) record;
+                builder.setBasalBodyTemperature(
+                        BasalBodyTemperature.newBuilder()
+                                .setMeasurementLocation(
+                                        basalBodyTemperature.getMeasurementLocation())
+                                .setTemperature(basalBodyTemperature.getTemperature()));
+            }
+            case RECORD_TYPE_BASAL_METABOLIC_RATE ->
+                    builder.setBasalMetabolicRate(
+                            BasalMetabolicRate.newBuilder()
+                                    .setBasalMetabolicRate(
+                                            ((BasalMetabolicRateRecordInternal) record)
+                                                    .getBasalMetabolicRate()));
+            case RECORD_TYPE_BLOOD_GLUCOSE -> {
+                BloodGlucoseRecordInternal bloodGlucose = (BloodGlucoseRecordInternal) record;
+                builder.setBloodGlucose(
+                        BloodGlucose.newBuilder()
+                                .setSpecimenSource(bloodGlucose.getSpecimenSource())
+                                .setLevel(bloodGlucose.getLevel())
+                                .setRelationToMeal(bloodGlucose.getRelationToMeal())
+                                .setMealType(bloodGlucose.getMealType()));
+            }
+            case RECORD_TYPE_BLOOD_PRESSURE -> {
+                BloodPressureRecordInternal bloodPressure = (BloodPressureRecordInternal) record;
+                builder.setBloodPressure(
+                        BloodPressure.newBuilder()
+                                .setMeasurementLocation(bloodPressure.getMeasurementLocation())
+                                .setSystolic(bloodPressure.getSystolic())
+                                .setDiastolic(bloodPressure.getDiastolic())
+                                .setBodyPosition(bloodPressure.getBodyPosition()));
+            }
+            case RECORD_TYPE_BODY_FAT ->
+                    builder.setBodyFat(
+                            BodyFat.newBuilder()
+                                    .setPercentage(
+                                            ((BodyFatRecordInternal) record).getPercentage()));
+            case RECORD_TYPE_BODY_TEMPERATURE -> {
+                BodyTemperatureRecordInternal bodyTemperature =
+                        (BodyTemperatureRecordInternal) record;
+                builder.setBodyTemperature(
+                        BodyTemperature.newBuilder()
+                                .setMeasurementLocation(bodyTemperature.getMeasurementLocation())
+                                .setTemperature(bodyTemperature.getTemperature()));
+            }
+            case RECORD_TYPE_BODY_WATER_MASS ->
+                    builder.setBodyWaterMass(
+                            BodyWaterMass.newBuilder()
+                                    .setBodyWaterMass(
+                                            ((BodyWaterMassRecordInternal) record)
+                                                    .getBodyWaterMass()));
+            case RECORD_TYPE_BONE_MASS ->
+                    builder.setBoneMass(
+                            BoneMass.newBuilder()
+                                    .setMass(((BoneMassRecordInternal) record).getMass()));
+            case RECORD_TYPE_CERVICAL_MUCUS -> {
+                CervicalMucusRecordInternal cervicalMucus = (CervicalMucusRecordInternal) record;
+                builder.setCervicalMucus(
+                        CervicalMucus.newBuilder()
+                                .setSensation(cervicalMucus.getSensation())
+                                .setAppearance(cervicalMucus.getAppearance()));
+            }
+            case RECORD_TYPE_HEART_RATE_VARIABILITY_RMSSD ->
+                    builder.setHeartRateVariabilityRmssd(
+                            HeartRateVariabilityRmssd.newBuilder()
+                                    .setHeartRateVariabilityMillis(
+                                            ((HeartRateVariabilityRmssdRecordInternal) record)
+                                                    .getHeartRateVariabilityMillis()));
+            case RECORD_TYPE_HEIGHT ->
+                    builder.setHeight(
+                            Height.newBuilder()
+                                    .setHeight(((HeightRecordInternal) record).getHeight()));
+            case RECORD_TYPE_INTERMENSTRUAL_BLEEDING ->
+                    builder.setIntermenstrualBleeding(IntermenstrualBleeding.getDefaultInstance());
+            case RECORD_TYPE_LEAN_BODY_MASS ->
+                    builder.setLeanBodyMass(
+                            LeanBodyMass.newBuilder()
+                                    .setMass(((LeanBodyMassRecordInternal) record).getMass()));
+            case RECORD_TYPE_MENSTRUATION_FLOW ->
+                    builder.setMenstruationFlow(
+                            MenstruationFlow.newBuilder()
+                                    .setFlow(((MenstruationFlowRecordInternal) record).getFlow()));
+            case RECORD_TYPE_OVULATION_TEST ->
+                    builder.setOvulationTest(
+                            OvulationTest.newBuilder()
+                                    .setResult(((OvulationTestRecordInternal) record).getResult()));
+            case RECORD_TYPE_OXYGEN_SATURATION ->
+                    builder.setOxygenSaturation(
+                            OxygenSaturation.newBuilder()
+                                    .setPercentage(
+                                            ((OxygenSaturationRecordInternal) record)
+                                                    .getPercentage()));
+            case RECORD_TYPE_RESPIRATORY_RATE ->
+                    builder.setRespiratoryRate(
+                            RespiratoryRate.newBuilder()
+                                    .setRate(((RespiratoryRateRecordInternal) record).getRate()));
+            case RECORD_TYPE_RESTING_HEART_RATE ->
+                    builder.setRestingHeartRate(
+                            RestingHeartRate.newBuilder()
+                                    .setBeatsPerMinute(
+                                            ((RestingHeartRateRecordInternal) record)
+                                                    .getBeatsPerMinute()));
+            case RECORD_TYPE_SEXUAL_ACTIVITY ->
+                    builder.setSexualActivity(
+                            SexualActivity.newBuilder()
+                                    .setProtectionUsed(
+                                            ((SexualActivityRecordInternal) record)
+                                                    .getProtectionUsed()));
+            case RECORD_TYPE_VO2_MAX -> {
+                Vo2MaxRecordInternal vo2Max = (Vo2MaxRecordInternal) record;
+                builder.setVo2Max(
+                        Vo2Max.newBuilder()
+                                .setMeasurementMethod(vo2Max.getMeasurementMethod())
+                                .setVo2MillilitersPerMinuteKilogram(
+                                        vo2Max.getVo2MillilitersPerMinuteKilogram()));
+            }
+            case RECORD_TYPE_WEIGHT ->
+                    builder.setWeight(
+                            Weight.newBuilder()
+                                    .setWeight(((WeightRecordInternal) record).getWeight()));
+            default ->
+                    throw new IllegalArgumentException(
+                            "Unsupported instant record type: " + record.getRecordType());
+        }
+        return builder.build();
+    }
+
+    private static InstantRecordInternal<?> toInstantRecordInternal(InstantRecord proto) {
+        InstantRecordInternal<?> record =
+                switch (proto.getDataCase()) {
+                    case BASAL_BODY_TEMPERATURE ->
+                            new BasalBodyTemperatureRecordInternal()
+                                    .setMeasurementLocation(
+                                            proto.getBasalBodyTemperature()
+                                                    .getMeasurementLocation())
+                                    .setTemperature(
+                                            proto.getBasalBodyTemperature().getTemperature());
+                    case BASAL_METABOLIC_RATE ->
+                            new BasalMetabolicRateRecordInternal()
+                                    .setBasalMetabolicRate(
+                                            proto.getBasalMetabolicRate().getBasalMetabolicRate());
+                    case BLOOD_GLUCOSE -> {
+                        BloodGlucose data = proto.getBloodGlucose();
+                        yield new BloodGlucoseRecordInternal()
+                                .setSpecimenSource(data.getSpecimenSource())
+                                .setLevel(data.getLevel())
+                                .setRelationToMeal(data.getRelationToMeal())
+                                .setMealType(data.getMealType());
+                    }
+                    case BLOOD_PRESSURE -> {
+                        BloodPressure data = proto.getBloodPressure();
+                        yield new BloodPressureRecordInternal()
+                                .setMeasurementLocation(data.getMeasurementLocation())
+                                .setSystolic(data.getSystolic())
+                                .setDiastolic(data.getDiastolic())
+                                .setBodyPosition(data.getBodyPosition());
+                    }
+                    case BODY_FAT ->
+                            new BodyFatRecordInternal()
+                                    .setPercentage(proto.getBodyFat().getPercentage());
+                    case BODY_TEMPERATURE ->
+                            new BodyTemperatureRecordInternal()
+                                    .setMeasurementLocation(
+                                            proto.getBodyTemperature().getMeasurementLocation())
+                                    .setTemperature(proto.getBodyTemperature().getTemperature());
+                    case BODY_WATER_MASS -> {
+                        BodyWaterMassRecordInternal bodyWaterMass =
+                                new BodyWaterMassRecordInternal();
+                        bodyWaterMass.setBodyWaterMass(
+                                proto.getBodyWaterMass().getBodyWaterMass());
+                        yield bodyWaterMass;
+                    }
+                    case BONE_MASS ->
+                            new BoneMassRecordInternal().setMass(proto.getBoneMass().getMass());
+                    case CERVICAL_MUCUS ->
+                            new CervicalMucusRecordInternal()
+                                    .setSensation(proto.getCervicalMucus().getSensation())
+                                    .setAppearance(proto.getCervicalMucus().getAppearance());
+                    case HEART_RATE_VARIABILITY_RMSSD -> {
+                        HeartRateVariabilityRmssdRecordInternal heartRateVariability =
+                                new HeartRateVariabilityRmssdRecordInternal();
+                        heartRateVariability.setHeartRateVariabilityMillis(
+                                proto.getHeartRateVariabilityRmssd()
+                                        .getHeartRateVariabilityMillis());
+                        yield heartRateVariability;
+                    }
+                    case HEIGHT ->
+                            new HeightRecordInternal().setHeight(proto.getHeight().getHeight());
+                    case INTERMENSTRUAL_BLEEDING -> new IntermenstrualBleedingRecordInternal();
+                    case LEAN_BODY_MASS ->
+                            new LeanBodyMassRecordInternal()
+                                    .setMass(proto.getLeanBodyMass().getMass());
+                    case MENSTRUATION_FLOW ->
+                            new MenstruationFlowRecordInternal()
+                                    .setFlow(proto.getMenstruationFlow().getFlow());
+                    case OVULATION_TEST ->
+                            new OvulationTestRecordInternal()
+                                    .setResult(proto.getOvulationTest().getResult());
+                    case OXYGEN_SATURATION ->
+                            new OxygenSaturationRecordInternal()
+                                    .setPercentage(proto.getOxygenSaturation().getPercentage());
+                    case RESPIRATORY_RATE ->
+                            new RespiratoryRateRecordInternal()
+                                    .setRate(proto.getRespiratoryRate().getRate());
+                    case RESTING_HEART_RATE ->
+                            new RestingHeartRateRecordInternal()
+                                    .setBeatsPerMinute(
+                                            proto.getRestingHeartRate().getBeatsPerMinute());
+                    case SEXUAL_ACTIVITY ->
+                            new SexualActivityRecordInternal()
+                                    .setProtectionUsed(
+                                            proto.getSexualActivity().getProtectionUsed());
+                    case VO2_MAX ->
+                            new Vo2MaxRecordInternal()
+                                    .setMeasurementMethod(proto.getVo2Max().getMeasurementMethod())
+                                    .setVo2MillilitersPerMinuteKilogram(
+                                            proto.getVo2Max().getVo2MillilitersPerMinuteKilogram());
+                    case WEIGHT ->
+                            new WeightRecordInternal().setWeight(proto.getWeight().getWeight());
+                    default ->
+                            throw new IllegalArgumentException(
+                                    "Unknown instant record data: " + proto.getDataCase());
+                };
+
+        record.setTime(proto.getTime());
+        record.setZoneOffset(proto.getZoneOffset());
+        return record;
+    }
+
+    private static ExerciseSession toExerciseSessionProto(ExerciseSessionRecordInternal record) {
+        ExerciseSession.Builder builder =
+                ExerciseSession.newBuilder()
+                        .setExerciseType(record.getExerciseType())
+                        .setHasRoute(record.hasRoute());
+        if (record.getNotes() != null) {
+            builder.setNotes(record.getNotes());
+        }
+        if (record.getTitle() != null) {
+            builder.setTitle(record.getTitle());
+        }
+        ExerciseRouteInternal route = record.getRoute();
+        if (route != null) {
+            ExerciseRoute.Builder routeBuilder = ExerciseRoute.newBuilder();
+            for (LocationInternal location : route.getRouteLocations()) {
+                routeBuilder.addRouteLocation(
+                        ExerciseRoute.Location.newBuilder()
+                                .setTime(location.getTime())
+                                .setLatitude(location.getLatitude())
+                                .setLongitude(location.getLongitude())
+                                .setHorizontalAccuracy(location.getHorizontalAccuracy())
+                                .setVerticalAccuracy(location.getVerticalAccuracy())
+                                .setAltitude(location.getAltitude()));
+            }
+            builder.setRoute(routeBuilder);
+        }
+        if (record.getLaps() != null) {
+            for (ExerciseLapInternal lap : record.getLaps()) {
+                builder.addLap(
+                        ExerciseLap.newBuilder()
+                                .setStartTime(lap.getStartTime())
+                                .setEndTime(lap.getEndTime())
+                                .setLength(lap.getLength()));
+            }
+        }
+        if (record.getSegments() != null) {
+            for (ExerciseSegmentInternal segment : record.getSegments()) {
+                builder.addSegment(
+                        ExerciseSegment.newBuilder()
+                                .setStartTime(segment.getStartTime())
+                                .setEndTime(segment.getEndTime())
+                                .setSegmentType(segment.getSegmentType())
+                                .setRepetitionsCount(segment.getRepetitionsCount()));
+            }
+        }
+        if (record.getPlannedExerciseSessionId() != null) {
+            builder.setPlannedExerciseSessionId(record.getPlannedExerciseSessionId().toString());
+        }
+        return builder.build();
+    }
+
+    private static ExerciseSessionRecordInternal toExerciseSessionInternal(ExerciseSession proto) {
+        ExerciseSessionRecordInternal record =
+                new ExerciseSessionRecordInternal()
+                        .setNotes(proto.hasNotes() ? proto.getNotes() : null)
+                        .setExerciseType(proto.getExerciseType())
+                        .setTitle(proto.hasTitle() ? proto.getTitle() : null)
+                        .setHasRoute(proto.getHasRoute());
+        if (proto.hasRoute()) {
+            List<LocationInternal> locations = new ArrayList<>();
+            for (ExerciseRoute.Location location : proto.getRoute().getRouteLocationList()) {
+                locations.add(
+                        new LocationInternal()
+                                .setTime(location.getTime())
+                                .setLatitude(location.getLatitude())
+                                .setLongitude(location.getLongitude())
+                                .setHorizontalAccuracy(location.getHorizontalAccuracy())
+                                .setVerticalAccuracy(location.getVerticalAccuracy())
+                                .setAltitude(location.getAltitude()));
+            }
+            record.setRoute(new ExerciseRouteInternal(locations));
+        }
+        // Sessions without laps or segments hold null, as when read from a Parcel.
+        if (proto.getLapCount() > 0) {
+            List<ExerciseLapInternal> laps = new ArrayList<>(proto.getLapCount());
+            for (ExerciseLap lap : proto.getLapList()) {
+                laps.add(
+                        new ExerciseLapInternal()
+                                .setStarTime(lap.getStartTime())
+                                .setEndTime(lap.getEndTime())
+                                .setLength(lap.getLength()));
+            }
+            record.setExerciseLaps(laps);
+        }
+        if (proto.getSegmentCount() > 0) {
+            List<ExerciseSegmentInternal> segments = new ArrayList<>(proto.getSegmentCount());
+            for (ExerciseSegment segment : proto.getSegmentList()) {
+                segments.add(
+                        new ExerciseSegmentInternal()
+                                .setStarTime(segment.getStartTime())
+                                .setEndTime(segment.getEndTime())
+                                .setSegmentType(segment.getSegmentType())
+                                .setRepetitionsCount(segment.getRepetitionsCount()));
+            }
+            record.setExerciseSegments(segments);
+        }
+        if (proto.hasPlannedExerciseSessionId()) {
+            record.setPlannedExerciseSessionId(
+                    UUID.fromString(proto.getPlannedExerciseSessionId()));
+        }
+        return record;
+    }
+
+    private static SleepSession toSleepSessionProto(SleepSessionRecordInternal record) {
+        SleepSession.Builder builder = SleepSession.newBuilder();
+        if (record.getNotes() != null) {
+            builder.setNotes(record.getNotes());
+        }
+        if (record.getTitle() != null) {
+            builder.setTitle(record.getTitle());
+        }
+        if (record.getSleepStages() != null) {
+            for (SleepStageInternal stage : record.getSleepStages()) {
+                builder.addStage(
+                        SleepStage.newBuilder()
+                                .setStartTime(stage.getStartTime())
+                                .setEndTime(stage.getEndTime())
+                                .setStageType(stage.getStageType()));
+            }
+        }
+        return builder.build();
+    }
+
+    private static SleepSessionRecordInternal toSleepSessionInternal(SleepSession proto) {
+        SleepSessionRecordInternal record =
+                new SleepSessionRecordInternal()
+                        .setNotes(proto.hasNotes() ? proto.getNotes() : null)
+                        .setTitle(proto.hasTitle() ? proto.getTitle() : null);
+        if (proto.getStageCount() > 0) {
+            List<SleepStageInternal> stages = new ArrayList<>(proto.getStageCount());
+            for (SleepStage stage : proto.getStageList()) {
+                stages.add(
+                        new SleepStageInternal()
+                                .setStartTime(stage.getStartTime())
+                                .setEndTime(stage.getEndTime())
+                                .setStageType(stage.getStageType()));
+            }
+            record.setSleepStages(stages);
+        }
+        return record;
+    }
+
+    private static PlannedExerciseSession toPlannedExerciseSessionProto(
+            PlannedExerciseSessionRecordInternal record) {
+        PlannedExerciseSession.Builder builder =
+                PlannedExerciseSession.newBuilder()
+                        .setExerciseType(record.getExerciseType())
+                        .setHasExplicitTime(record.getHasExplicitTime());
+        if (record.getNotes() != null) {
+            builder.setNotes(record.getNotes());
+        }
+        if (record.getTitle() != null) {
+            builder.setTitle(record.getTitle());
+        }
+        for (PlannedExerciseBlockInternal block : record.getExerciseBlocks()) {
+            PlannedExerciseBlock.Builder blockBuilder =
+                    PlannedExerciseBlock.newBuilder().setRepetitions(block.getRepetitions());
+            if (block.getDescription() != null) {
+                blockBuilder.setDescription(block.getDescription());
+            }
+            for (PlannedExerciseStepInternal step : block.getExerciseSteps()) {
+                blockBuilder.addStep(toPlannedExerciseStepProto(step));
+            }
+            builder.addExerciseBlock(blockBuilder);
+        }
+        if (record.getCompletedExerciseSessionId() != null) {
+            builder.setCompletedExerciseSessionId(
+                    record.getCompletedExerciseSessionId().toString());
+        }
+        return builder.build();
+    }
+
+    private static PlannedExerciseSessionRecordInternal toPlannedExerciseSessionInternal(
+            PlannedExerciseSession proto) {
+        List<PlannedExerciseBlockInternal> blocks = new ArrayList<>();
+        for (PlannedExerciseBlock blockProto : proto.getExerciseBlockList()) {
+            PlannedExerciseBlockInternal block =
+                    new PlannedExerciseBlockInternal(blockProto.getRepetitions());
+            block.setDescription(blockProto.hasDescription() ? blockProto.getDescription() : null);
+            List<PlannedExerciseStepInternal> steps = new ArrayList<>();
+            for (PlannedExerciseStep step : blockProto.getStepList()) {
+                steps.add(toPlannedExerciseStepInternal(step));
+            }
+            block.setExerciseSteps(steps);
+            blocks.add(block);
+        }
+        PlannedExerciseSessionRecordInternal record =
+                new PlannedExerciseSessionRecordInternal()
+                        .setNotes(proto.hasNotes() ? proto.getNotes() : null)
+                        .setExerciseType(proto.getExerciseType())
+                        .setTitle(proto.hasTitle() ? proto.getTitle() : null)
+                        .setHasExplicitTime(proto.getHasExplicitTime())
+                        .setExerciseBlocks(blocks);
+        if (proto.hasCompletedExerciseSessionId()) {
+            record.setCompletedExerciseSessionId(
+                    UUID.fromString(proto.getCompletedExerciseSessionId()));
+        }
+        return record;
+    }
+
+    private static PlannedExerciseStep toPlannedExerciseStepProto(
+            PlannedExerciseStepInternal step) {
+        PlannedExerciseStep.Builder builder =
+                PlannedExerciseStep.newBuilder()
+                        .setExerciseType(step.getExerciseType())
+                        .setExerciseCategory(step.getExerciseCategory());
+        if (step.getDescription() != null) {
+            builder.setDescription(step.getDescription());
+        }
+        if (step.getCompletionGoal() != null) {
+            builder.setCompletionGoal(toCompletionGoalProto(step.getCompletionGoal()));
+        }
+        for (ExercisePerformanceGoalInternal goal : step.getPerformanceGoals()) {
+            builder.addPerformanceGoal(toPerformanceGoalProto(goal));
+        }
+        return builder.build();
+    }
+
+    private static PlannedExerciseStepInternal toPlannedExerciseStepInternal(
+            PlannedExerciseStep proto) {
+        PlannedExerciseStepInternal step =
+                new PlannedExerciseStepInternal(
+                        proto.getExerciseType(),
+                        proto.getExerciseCategory(),
+                        proto.hasCompletionGoal()
+                                ? toCompletionGoalInternal(proto.getCompletionGoal())
+                                : null);
+        step.setDescription(proto.hasDescription() ? proto.getDescription() : null);
+        List<ExercisePerformanceGoalInternal> performanceGoals = new ArrayList<>();
+        for (ExercisePerformanceGoal goal : proto.getPerformanceGoalList()) {
+            performanceGoals.add(toPerformanceGoalInternal(goal));
+        }
+        step.setPerformanceGoals(performanceGoals);
+        return step;
+    }
+
+    private static ExerciseCompletionGoal toCompletionGoalProto(
+            ExerciseCompletionGoalInternal goal) {
+        ExerciseCompletionGoal.Builder builder = ExerciseCompletionGoal.newBuilder();
+        if (goal instanceof ExerciseCompletionGoalInternal.DistanceGoalInternal distanceGoal) {
+            builder.setDistanceGoal(
+                    ExerciseCompletionGoal.DistanceGoal.newBuilder()
+                            .setDistance(distanceGoal.getDistance().getInMeters()));
+        } else if (goal instanceof ExerciseCompletionGoalInternal.StepsGoalInternal stepsGoal) {
+            builder.setStepsGoal(
+                    ExerciseCompletionGoal.StepsGoal.newBuilder().setSteps(stepsGoal.getSteps()));
+        } else if (goal
+                instanceof ExerciseCompletionGoalInternal.DurationGoalInternal durationGoal) {
+            builder.setDurationGoal(
+                    ExerciseCompletionGoal.DurationGoal.newBuilder()
+                            .setDuration(durationGoal.getDuration().toMillis()));
+        } else if (goal
+                instanceof ExerciseCompletionGoalInternal.RepetitionsGoalInternal repetitionsGoal) {
+            builder.setRepetitionsGoal(
+                    ExerciseCompletionGoal.RepetitionsGoal.newBuilder()
+                            .setRepetitions(repetitionsGoal.getReps()));
+        } else if (goal
+                instanceof
+                ExerciseCompletionGoalInternal.TotalCaloriesBurnedGoalInternal caloriesGoal) {
+            builder.setTotalCaloriesBurnedGoal(
+                    ExerciseCompletionGoal.TotalCaloriesBurnedGoal.newBuilder()
+                            .setTotalCalories(caloriesGoal.getTotalCalories().getInCalories()));
+        } else if (goal
+                instanceof
+                ExerciseCompletionGoalInternal.ActiveCaloriesBurnedGoalInternal caloriesGoal) {
+            builder.setActiveCaloriesBurnedGoal(
+                    ExerciseCompletionGoal.ActiveCaloriesBurnedGoal.newBuilder()
+                            .setActiveCalories(caloriesGoal.getActiveCalories().getInCalories()));
+        } else if (goal
+                instanceof
+                ExerciseCompletionGoalInternal.DistanceWithVariableRestGoalInternal restGoal) {
+            builder.setDistanceWithVariableRestGoal(
+                    ExerciseCompletionGoal.DistanceWithVariableRestGoal.newBuilder()
+                            .setDistance(restGoal.getDistance().getInMeters())
+                            .setDuration(restGoal.getDuration().toMillis()));
+        } else if (goal instanceof ExerciseCompletionGoalInternal.UnspecifiedGoalInternal) {
+            builder.setUnspecifiedGoal(
+                    ExerciseCompletionGoal.UnspecifiedGoal.getDefaultInstance());
+        } else {
+            builder.setUnknownGoal(ExerciseCompletionGoal.UnknownGoal.getDefaultInstance());
+        }
+        return builder.build();
+    }
+
+    private static ExerciseCompletionGoalInternal toCompletionGoalInternal(
+            ExerciseCompletionGoal proto) {
+        return switch (proto.getGoalCase()) {
+            case DISTANCE_GOAL ->
+                    new ExerciseCompletionGoalInternal.DistanceGoalInternal(
+                            Length.fromMeters(proto.getDistanceGoal().getDistance()));
+            case STEPS_GOAL ->
+                    new ExerciseCompletionGoalInternal.StepsGoalInternal(
+                            proto.getStepsGoal().getSteps());
+            case DURATION_GOAL ->
+                    new ExerciseCompletionGoalInternal.DurationGoalInternal(
+                            Duration.ofMillis(proto.getDurationGoal().getDuration()));
+            case REPETITIONS_GOAL ->
+                    new ExerciseCompletionGoalInternal.RepetitionsGoalInternal(
+                            proto.getRepetitionsGoal().getRepetitions());
+            case TOTAL_CALORIES_BURNED_GOAL ->
+                    new ExerciseCompletionGoalInternal.TotalCaloriesBurnedGoalInternal(
+                            Energy.fromCalories(
+                                    proto.getTotalCaloriesBurnedGoal().getTotalCalories()));
+            case ACTIVE_CALORIES_BURNED_GOAL ->
+                    new ExerciseCompletionGoalInternal.ActiveCaloriesBurnedGoalInternal(
+                            Energy.fromCalories(
+                                    proto.getActiveCaloriesBurnedGoal().getActiveCalories()));
+            case DISTANCE_WITH_VARIABLE_REST_GOAL ->
+                    new ExerciseCompletionGoalInternal.DistanceWithVariableRestGoalInternal(
+                            Length.fromMeters(
+                                    proto.getDistanceWithVariableRestGoal().getDistance()),
+                            Duration.ofMillis(
+                                    proto.getDistanceWithVariableRestGoal().getDuration()));
+            case UNSPECIFIED_GOAL ->
+                    ExerciseCompletionGoalInternal.UnspecifiedGoalInternal.INSTANCE;
+            // Goals added by later versions are read as unknown goals.
+            default -> ExerciseCompletionGoalInternal.UnknownGoalInternal.INSTANCE;
+        };
+    }
+
+    private static ExercisePerformanceGoal toPerformanceGoalProto(
+            ExercisePerformanceGoalInternal goal) {
+        ExercisePerformanceGoal.Builder builder = ExercisePerformanceGoal.newBuilder();
+        if (goal instanceof ExercisePerformanceGoalInternal.PowerGoalInternal powerGoal) {
+            builder.setPowerGoal(
+                    ExercisePerformanceGoal.PowerGoal.newBuilder()
+                            .setMinPower(powerGoal.getMinPower().getInWatts())
+                            .setMaxPower(powerGoal.getMaxPower().getInWatts()));
+        } else if (goal instanceof ExercisePerformanceGoalInternal.SpeedGoalInternal speedGoal) {
+            builder.setSpeedGoal(
+                    ExercisePerformanceGoal.SpeedGoal.newBuilder()
+                            .setMinSpeed(speedGoal.getMinSpeed().getInMetersPerSecond())
+                            .setMaxSpeed(speedGoal.getMaxSpeed().getInMetersPerSecond()));
+        } else if (goal
+                instanceof ExercisePerformanceGoalInternal.CadenceGoalInternal cadenceGoal) {
+            builder.setCadenceGoal(
+                    ExercisePerformanceGoal.CadenceGoal.newBuilder()
+                            .setMinRpm(cadenceGoal.getMinRpm())
+                            .setMaxRpm(cadenceGoal.getMaxRpm()));
+        } else if (goal
+                instanceof ExercisePerformanceGoalInternal.HeartRateGoalInternal heartRateGoal) {
+            builder.setHeartRateGoal(
+                    ExercisePerformanceGoal.HeartRateGoal.newBuilder()
+                            .setMinBpm(heartRateGoal.getMinBpm())
+                            .setMaxBpm(heartRateGoal.getMaxBpm()));
+        } else if (goal instanceof ExercisePerformanceGoalInternal.WeightGoalInternal weightGoal) {
+            builder.setWeightGoal(
+                    ExercisePerformanceGoal.WeightGoal.newBuilder()
+                            .setMass(weightGoal.getMass().getInGrams()));
+        } else if (goal
+                instanceof
+                ExercisePerformanceGoalInternal.RateOfPerceivedExertionGoalInternal rpeGoal) {
+            builder.setRateOfPerceivedExertionGoal(
+                    ExercisePerformanceGoal.RateOfPerceivedExertionGoal.newBuilder()
+                            .setRpe(rpeGoal.getRpe()));
+        } else if (goal instanceof ExercisePerformanceGoalInternal.AmrapGoalInternal) {
+            builder.setAmrapGoal(ExercisePerformanceGoal.AmrapGoal.getDefaultInstance());
+        } else {
+            builder.setUnknownGoal(ExercisePerformanceGoal.UnknownGoal.getDefaultInstance());
+        }
+        return builder.build();
+    }
+
+    private static ExercisePerformanceGoalInternal toPerformanceGoalInternal(
+            ExercisePerformanceGoal proto) {
+        return switch (proto.getGoalCase()) {
+            case POWER_GOAL ->
+                    new ExercisePerformanceGoalInternal.PowerGoalInternal(
+                            android.health.connect.datatypes.units.Power.fromWatts(
+                                    proto.getPowerGoal().getMinPower()),
+                            android.health.connect.datatypes.units.Power.fromWatts(
+                                    proto.getPowerGoal().getMaxPower()));
+            case SPEED_GOAL ->
+                    new ExercisePerformanceGoalInternal.SpeedGoalInternal(
+                            Velocity.fromMetersPerSecond(proto.getSpeedGoal().getMinSpeed()),
+                            Velocity.fromMetersPerSecond(proto.getSpeedGoal().getMaxSpeed()));
+            case CADENCE_GOAL ->
+                    new ExercisePerformanceGoalInternal.CadenceGoalInternal(
+                            proto.getCadenceGoal().getMinRpm(),
+                            proto.getCadenceGoal().getMaxRpm());
+            case HEART_RATE_GOAL ->
+                    new ExercisePerformanceGoalInternal.HeartRateGoalInternal(
+                            proto.getHeartRateGoal().getMinBpm(),
+                            proto.getHeartRateGoal().getMaxBpm());
+            case WEIGHT_GOAL ->
+                    new ExercisePerformanceGoalInternal.WeightGoalInternal(
+                            Mass.fromGrams(proto.getWeightGoal().getMass()));
+            case RATE_OF_PERCEIVED_EXERTION_GOAL ->
+                    new ExercisePerformanceGoalInternal.RateOfPerceivedExertionGoalInternal(
+                            proto.getRateOfPerceivedExertionGoal().getRpe());
+            case AMRAP_GOAL -> ExercisePerformanceGoalInternal.AmrapGoalInternal.INSTANCE;
+            // Goals added by later versions are read as unknown goals.
+            default -> ExercisePerformanceGoalInternal.UnknownGoalInternal.INSTANCE;
+        };
+    }
+
+    private static Nutrition toNutritionProto(NutritionRecordInternal record) {
+        Nutrition.Builder builder =
+                Nutrition.newBuilder()
+                        .setUnsaturatedFat(record.getUnsaturatedFat())
+                        .setPotassium(record.getPotassium())
+                        .setThiamin(record.getThiamin())
+                        .setMealType(record.getMealType())
+                        .setTransFat(record.getTransFat())
+                        .setManganese(record.getManganese())
+                        .setEnergyFromFat(record.getEnergyFromFat())
+                        .setCaffeine(record.getCaffeine())
+                        .setDietaryFiber(record.getDietaryFiber())
+                        .setSelenium(record.getSelenium())
+                        .setVitaminB6(record.getVitaminB6())
+                        .setProtein(record.getProtein())
+                        .setChloride(record.getChloride())
+                        .setCholesterol(record.getCholesterol())
+                        .setCopper(record.getCopper())
+                        .setIodine(record.getIodine())
+                        .setVitaminB12(record.getVitaminB12())
+                        .setZinc(record.getZinc())
+                        .setRiboflavin(record.getRiboflavin())
+                        .setEnergy(record.getEnergy())
+                        .setMolybdenum(record.getMolybdenum())
+                        .setPhosphorus(record.getPhosphorus())
+                        .setChromium(record.getChromium())
+                        .setTotalFat(record.getTotalFat())
+                        .setCalcium(record.getCalcium())
+                        .setVitaminC(record.getVitaminC())
+                        .setVitaminE(record.getVitaminE())
+                        .setBiotin(record.getBiotin())
+                        .setVitaminD(record.getVitaminD())
+                        .setNiacin(record.getNiacin())
+                        .setMagnesium(record.getMagnesium())
+                        .setTotalCarbohydrate(record.getTotalCarbohydrate())
+                        .setVitaminK(record.getVitaminK())
+                        .setPolyunsaturatedFat(record.getPolyunsaturatedFat())
+                        .setSaturatedFat(record.getSaturatedFat())
+                        .setSodium(record.getSodium())
+                        .setFolate(record.getFolate())
+                        .setMonounsaturatedFat(record.getMonounsaturatedFat())
+                        .setPantothenicAcid(record.getPantothenicAcid())
+                        .setIron(record.getIron())
+                        .setVitaminA(record.getVitaminA())
+                        .setFolicAcid(record.getFolicAcid())
+                        .setSugar(record.getSugar());
+        if (record.getMealName() != null) {
+            builder.setMealName(record.getMealName());
+        }
+        return builder.build();
+    }
+
+    private static NutritionRecordInternal toNutritionInternal(Nutrition proto) {
+        return new NutritionRecordInternal()
+                .setUnsaturatedFat(proto.getUnsaturatedFat())
+                .setPotassium(proto.getPotassium())
+                .setThiamin(proto.getThiamin())
+                .setMealType(proto.getMealType())
+                .setTransFat(proto.getTransFat())
+                .setManganese(proto.getManganese())
+                .setEnergyFromFat(proto.getEnergyFromFat())
+                .setCaffeine(proto.getCaffeine())
+                .setDietaryFiber(proto.getDietaryFiber())
+                .setSelenium(proto.getSelenium())
+                .setVitaminB6(proto.getVitaminB6())
+                .setProtein(proto.getProtein())
+                .setChloride(proto.getChloride())
+                .setCholesterol(proto.getCholesterol())
+                .setCopper(proto.getCopper())
+                .setIodine(proto.getIodine())
+                .setVitaminB12(proto.getVitaminB12())
+                .setZinc(proto.getZinc())
+                .setRiboflavin(proto.getRiboflavin())
+                .setEnergy(proto.getEnergy())
+                .setMolybdenum(proto.getMolybdenum())
+                .setPhosphorus(proto.getPhosphorus())
+                .setChromium(proto.getChromium())
+                .setTotalFat(proto.getTotalFat())
+                .setCalcium(proto.getCalcium())
+                .setVitaminC(proto.getVitaminC())
+                .setVitaminE(proto.getVitaminE())
+                .setBiotin(proto.getBiotin())
+                .setVitaminD(proto.getVitaminD())
+                .setNiacin(proto.getNiacin())
+                .setMagnesium(proto.getMagnesium())
+                .setTotalCarbohydrate(proto.getTotalCarbohydrate())
+                .setVitaminK(proto.getVitaminK())
+                .setPolyunsaturatedFat(proto.getPolyunsaturatedFat())
+                .setSaturatedFat(proto.getSaturatedFat())
+                .setSodium(proto.getSodium())
+                .setFolate(proto.getFolate())
+                .setMonounsaturatedFat(proto.getMonounsaturatedFat())
+                .setPantothenicAcid(proto.getPantothenicAcid())
+                .setMealName(proto.hasMealName() ? proto.getMealName() : null)
+                .setIron(proto.getIron())
+                .setVitaminA(proto.getVitaminA())
+                .setFolicAcid(proto.getFolicAcid())
+                .setSugar(proto.getSugar());
+    }
+}
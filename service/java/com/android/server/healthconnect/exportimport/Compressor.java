@@ -24,7 +24,9 @@ import android.util.Slog;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Objects;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -34,6 +36,9 @@ class Compressor {
 
     private static final String TAG = "HealthConnectCompressor";
 
+    // Large enough for the deflater to work on whole database pages.
+    private static final int STREAMING_BUFFER_SIZE = 64 * 1024;
+
     /** Compresses the source file */
     static void compress(File source, String entryName, File zip) throws IOException {
         try {
@@ -59,6 +64,29 @@ class Compressor {
         }
     }
 
+    /**
+     * Compresses the source file straight into {@code destination}, without an intermediate zip
+     * file. Closes {@code destination}.
+     *
+     * @return the number of bytes written to {@code destination}
+     */
+    static long compress(File source, String entryName, OutputStream destination)
+            throws IOException {
+        CountingOutputStream countingStream = new CountingOutputStream(destination);
+        try (ZipOutputStream outputStream = new ZipOutputStream(countingStream);
+                FileInputStream inputStream = new FileInputStream(source)) {
+            outputStream.putNextEntry(new ZipEntry(entryName));
+            byte[] bytes = new byte[STREAMING_BUFFER_SIZE];
+            int length;
+            while ((length = inputStream.read(bytes)) >= 0) {
+                outputStream.write(bytes, 0, length);
+            }
+            outputStream.closeEntry();
+        }
+        Slog.i(TAG, "File zipped into stream: " + countingStream.getCount() + " bytes");
+        return countingStream.getCount();
+    }
+
     /** Decompresses the zip file */
     static void decompress(Uri zip, String entryName, File destination, Context userContext)
             throws IOException {
@@ -99,4 +127,29 @@ class Compressor {
             throw e;
         }
     }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long mCount;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            mCount++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // FilterOutputStream would write the bytes one by one.
+            out.write(b, off, len);
+            mCount += len;
+        }
+
+        long getCount() {
+            return mCount;
+        }
+    }
 }
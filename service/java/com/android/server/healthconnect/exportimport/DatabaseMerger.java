@@ -66,10 +66,12 @@ import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTransactionRequest;
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTransactionRequest;
 import com.android.server.healthconnect.storage.utils.InternalHealthConnectMappings;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -162,6 +164,19 @@ public final class DatabaseMerger {
 
         Slog.i(TAG, "Merging records");
 
+        // Ids in this database of the apps and devices of the staged database, used to copy rows.
+        Map<Long, Long> appInfoIds = new ArrayMap<>();
+        Map<Long, Long> deviceInfoIds = new ArrayMap<>();
+        if (Flags.batchedImportMerge()) {
+            stagedPackageNamesByAppIds.forEach(
+                    (stagedAppInfoId, packageName) ->
+                            appInfoIds.put(
+                                    stagedAppInfoId, mAppInfoHelper.getAppInfoId(packageName)));
+            deviceInfoIds.putAll(
+                    mDeviceInfoHelper.getOrInsertDeviceInfoIds(
+                            stagedDatabase.getReadableDatabase()));
+        }
+
         // Determine the order in which we should migrate data types. This involves first
         // migrating data types according to the specified ordering overrides. Remaining
         // records are migrated in no particular order.
@@ -178,6 +193,8 @@ public final class DatabaseMerger {
                 mergeRecordsOfType(
                         stagedDatabase,
                         stagedPackageNamesByAppIds,
+                        appInfoIds,
+                        deviceInfoIds,
                         recordTypeToMigrate,
                         mHealthConnectMappings
                                 .getRecordIdToExternalRecordClassMap()
@@ -203,7 +220,12 @@ public final class DatabaseMerger {
                             .get(recordTypeToMigrate);
 
             mergeRecordsOfType(
-                    stagedDatabase, stagedPackageNamesByAppIds, recordTypeToMigrate, recordClass);
+                    stagedDatabase,
+                    stagedPackageNamesByAppIds,
+                    appInfoIds,
+                    deviceInfoIds,
+                    recordTypeToMigrate,
+                    recordClass);
 
             deleteRecordsOfType(stagedDatabase, recordTypeToMigrate, recordClass);
         }
@@ -408,6 +430,8 @@ public final class DatabaseMerger {
     private <T extends Record> void mergeRecordsOfType(
             HealthConnectDatabase stagedDatabase,
             Map<Long, String> stagedPackageNamesByAppIds,
+            Map<Long, Long> appInfoIds,
+            Map<Long, Long> deviceInfoIds,
             int recordType,
             Class<T> recordTypeClass) {
         RecordHelper<?> recordHelper = mInternalHealthConnectMappings.getRecordHelper(recordType);
@@ -416,6 +440,15 @@ public final class DatabaseMerger {
             return;
         }
 
+        if (canCopyRows(recordType, recordHelper)) {
+            copyRecordRows(
+                    stagedDatabase.getReadableDatabase(),
+                    recordHelper.getMainTableName(),
+                    appInfoIds,
+                    deviceInfoIds);
+            return;
+        }
+
         // Read all the records of the given type from the staged db and insert them into the
         // existing healthconnect db.
         PageTokenWrapper currentToken = EMPTY_PAGE_TOKEN;
@@ -456,13 +489,7 @@ public final class DatabaseMerger {
             // Both methods use ON CONFLICT IGNORE strategy, which means that if the source data
             // being inserted into target db already exists, the source data will be ignored. We
             // won't apply updates to the target data.
-            //
-            // Only generate change logs when any change logs token are present. Client apps can
-            // only read change logs if they have ever requested a change logs token.
-            if (cloudBackupAndRestore()
-                    && mTransactionManager.checkTableExists(ChangeLogsRequestHelper.TABLE_NAME)
-                    && mTransactionManager.queryNumEntries(ChangeLogsRequestHelper.TABLE_NAME)
-                            != 0) {
+            if (shouldGenerateChangeLogs()) {
                 mTransactionManager.insertAllRecords(
                         mAppInfoHelper, /* accessLogsHelper */ null, upsertTransactionRequest);
             } else {
@@ -473,6 +500,117 @@ public final class DatabaseMerger {
         } while (!currentToken.isEmpty());
     }
 
+    /**
+     * Only generate change logs when any change logs token are present. Client apps can only read
+     * change logs if they have ever requested a change logs token.
+     */
+    private boolean shouldGenerateChangeLogs() {
+        return cloudBackupAndRestore()
+                && mTransactionManager.checkTableExists(ChangeLogsRequestHelper.TABLE_NAME)
+                && mTransactionManager.queryNumEntries(ChangeLogsRequestHelper.TABLE_NAME) != 0;
+    }
+
+    /**
+     * Returns whether the records of the type can be merged by copying the rows of their main
+     * table, rather than reading them as records and inserting them again.
+     *
+     * <p>Records with child tables need the rowIds of their main table rows remapped, and records
+     * with ordering overrides reference each other, so they are read as records.
+     */
+    private boolean canCopyRows(int recordType, RecordHelper<?> recordHelper) {
+        return Flags.batchedImportMerge()
+                && !recordHelper.hasChildTables()
+                && RECORD_TYPE_MIGRATION_ORDERING_OVERRIDES.stream()
+                        .noneMatch(group -> group.contains(recordType))
+                && !shouldGenerateChangeLogs();
+    }
+
+    /**
+     * Copies the rows of {@code tableName} from the staged database, a page at a time, with the
+     * ids of their apps and devices replaced by the ids in this database. Rows that conflict with
+     * existing rows are ignored, as in {@link #mergeRecordsOfType}.
+     */
+    private void copyRecordRows(
+            SQLiteDatabase stagedDatabase,
+            String tableName,
+            Map<Long, Long> appInfoIds,
+            Map<Long, Long> deviceInfoIds) {
+        // The staged database was upgraded when opened, but only copy the columns in both tables.
+        List<String> columnNames = getColumnNames(stagedDatabase, tableName);
+        columnNames.retainAll(getColumnNames(tableName));
+        String readCommand =
+                "SELECT "
+                        + String.join(", ", columnNames)
+                        + " FROM "
+                        + tableName
+                        + " WHERE "
+                        + RecordHelper.PRIMARY_COLUMN_NAME
+                        + " > ? ORDER BY "
+                        + RecordHelper.PRIMARY_COLUMN_NAME
+                        + " LIMIT "
+                        + MAXIMUM_PAGE_SIZE;
+
+        long lastRowId = DEFAULT_LONG;
+        int rowCount;
+        do {
+            long lastModifiedTime = Instant.now().toEpochMilli();
+            List<UpsertTableRequest> rows = new ArrayList<>();
+            try (Cursor cursor =
+                    stagedDatabase.rawQuery(readCommand, new String[] {Long.toString(lastRowId)})) {
+                rowCount = cursor.getCount();
+                while (cursor.moveToNext()) {
+                    lastRowId = getCursorLong(cursor, RecordHelper.PRIMARY_COLUMN_NAME);
+                    long appInfoId =
+                            getTargetId(
+                                    appInfoIds,
+                                    getCursorLong(cursor, RecordHelper.APP_INFO_ID_COLUMN_NAME));
+                    long deviceInfoId =
+                            getTargetId(
+                                    deviceInfoIds,
+                                    getCursorLong(cursor, RecordHelper.DEVICE_INFO_ID_COLUMN_NAME));
+                    rows.add(
+                            new UpsertTableRequest(
+                                    tableName,
+                                    RecordHelper.getContentValuesOfCopiedRow(
+                                            cursor, appInfoId, deviceInfoId, lastModifiedTime)));
+                }
+            }
+            Slog.d(TAG, "Copying " + rows.size() + " rows of " + tableName);
+            if (!rows.isEmpty()) {
+                mTransactionManager.insertOrIgnoreRecordRows(tableName, rows);
+            }
+        } while (rowCount == MAXIMUM_PAGE_SIZE);
+    }
+
+    private static long getTargetId(Map<Long, Long> targetIds, long stagedId) {
+        Long targetId = targetIds.get(stagedId);
+        if (targetId == null || targetId == DEFAULT_LONG) {
+            throw new IllegalStateException("No id to copy rows with id " + stagedId);
+        }
+        return targetId;
+    }
+
+    private static List<String> getColumnNames(SQLiteDatabase database, String tableName) {
+        try (Cursor cursor = database.rawQuery("PRAGMA table_info(" + tableName + ")", null)) {
+            return readColumnNames(cursor);
+        }
+    }
+
+    private List<String> getColumnNames(String tableName) {
+        try (Cursor cursor =
+                mTransactionManager.rawQuery("PRAGMA table_info(" + tableName + ")", null)) {
+            return readColumnNames(cursor);
+        }
+    }
+
+    private static List<String> readColumnNames(Cursor cursor) {
+        List<String> columnNames = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            columnNames.add(getCursorString(cursor, "name"));
+        }
+        return columnNames;
+    }
+
     private <T extends Record> void deleteRecordsOfType(
             HealthConnectDatabase stagedDatabase, int recordType, Class<T> recordTypeClass) {
         RecordHelper<?> recordHelper = mInternalHealthConnectMappings.getRecordHelper(recordType);
@@ -540,13 +678,21 @@ public final class DatabaseMerger {
                             mAppInfoHelper);
             recordInternalList = readResult.first;
             token = readResult.second;
-            if (readTableRequest.getExtraReadRequests() != null) {
+            if (readTableRequest.getExtraReadRequests() != null && !recordInternalList.isEmpty()) {
                 RecordHelper<?> mainRecordHelper =
                         requireNonNull(readTableRequest.getRecordHelper());
                 for (ReadTableRequest extraDataRequest : readTableRequest.getExtraReadRequests()) {
-                    Cursor cursorExtraData = read(stagedDatabase, extraDataRequest);
-                    mainRecordHelper.updateInternalRecordsWithExtraFields(
-                            recordInternalList, cursorExtraData, extraDataRequest.getTableName());
+                    if (Flags.pipelinedRecordReads()) {
+                        extraDataRequest =
+                                mainRecordHelper.getExtraDataReadRequestForRecords(
+                                        extraDataRequest, recordInternalList);
+                    }
+                    try (Cursor cursorExtraData = read(stagedDatabase, extraDataRequest)) {
+                        mainRecordHelper.updateInternalRecordsWithExtraFields(
+                                recordInternalList,
+                                cursorExtraData,
+                                extraDataRequest.getTableName());
+                    }
                 }
             }
         }
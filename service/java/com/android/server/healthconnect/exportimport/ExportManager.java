@@ -27,12 +27,16 @@ import static com.android.healthfitness.flags.Flags.exportImportFastFollow;
 import static com.android.server.healthconnect.exportimport.ExportImportNotificationSender.NOTIFICATION_TYPE_EXPORT_UNSUCCESSFUL_GENERIC_ERROR;
 import static com.android.server.healthconnect.logging.ExportImportLogger.NO_VALUE_RECORDED;
 
+import android.annotation.Nullable;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.os.UserHandle;
 import android.util.Slog;
 
+import com.android.healthfitness.flags.AconfigFlagHelper;
 import com.android.healthfitness.flags.Flags;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.healthconnect.logging.ExportImportLogger;
@@ -43,9 +47,12 @@ import com.android.server.healthconnect.storage.StorageContext;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.datatypehelpers.AccessLogsHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.MedicalDataSourceHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.MedicalResourceHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.MedicalResourceIndicesHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
+import com.android.server.healthconnect.storage.utils.InternalHealthConnectMappings;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -123,6 +130,11 @@ public class ExportManager {
         File localExportZipFile = getLocalExportZipFile(dbContext);
 
         try {
+            if (Flags.incrementalStreamingExport()) {
+                return runStreamingExport(
+                        userHandle, startTimeMillis, dbContext, localExportDbFile);
+            }
+
             try {
                 exportLocally(localExportDbFile);
             } catch (Exception e) {
@@ -229,6 +241,113 @@ public class ExportManager {
         }
     }
 
+    /**
+     * Exports a snapshot of the HC database, compressed straight into the destination, and skips
+     * the export if nothing imported from it changed since the last successful export to the same
+     * destination.
+     */
+    private boolean runStreamingExport(
+            UserHandle userHandle,
+            long startTimeMillis,
+            StorageContext dbContext,
+            File localExportDbFile) {
+        Uri destinationUri = mExportImportSettingsStorage.getUri();
+        String contentKey = getExportContentKey();
+        String lastContentKey = mExportImportSettingsStorage.getLastSuccessfulExportContentKey();
+        if (contentKey != null
+                && contentKey.equals(lastContentKey)
+                && destinationUri.equals(mExportImportSettingsStorage.getLastSuccessfulExportUri())
+                && isExportPresent(dbContext, destinationUri)) {
+            Slog.i(TAG, "Export skipped, nothing changed since the last export.");
+            recordSuccess(startTimeMillis, NO_VALUE_RECORDED, NO_VALUE_RECORDED, destinationUri);
+            return true;
+        }
+
+        try {
+            exportSnapshot(localExportDbFile);
+        } catch (Exception e) {
+            Slog.e(TAG, "Failed to create local file for export", e);
+            recordErrorAndNotify(
+                    userHandle, DATA_EXPORT_ERROR_UNKNOWN, startTimeMillis, localExportDbFile, 0);
+            return false;
+        }
+
+        try {
+            deleteLogTablesContent(dbContext);
+        } catch (Exception e) {
+            Slog.e(TAG, "Failed to clear log tables in preparation for export", e);
+            recordErrorAndNotify(
+                    userHandle,
+                    DATA_EXPORT_ERROR_CLEARING_LOG_TABLES,
+                    startTimeMillis,
+                    localExportDbFile,
+                    0);
+            return false;
+        }
+
+        if (Flags.personalHealthRecordDisableExportImport()) {
+            try {
+                deletePhrTablesContent(dbContext);
+            } catch (Exception e) {
+                Slog.e(TAG, "Failed to clear phr tables in preparation for export", e);
+                recordErrorAndNotify(
+                        userHandle,
+                        DATA_EXPORT_ERROR_CLEARING_PHR_TABLES,
+                        startTimeMillis,
+                        localExportDbFile,
+                        0);
+                return false;
+            }
+        }
+
+        // The previous export is overwritten, so it can't be trusted until this one succeeds.
+        mExportImportSettingsStorage.setLastSuccessfulExportContentKey(null);
+        long compressedBytes;
+        long streamStartTimeMillis = mClock.millis();
+        try (OutputStream outputStream =
+                dbContext.getContentResolver().openOutputStream(destinationUri)) {
+            if (outputStream == null) {
+                throw new IOException("Unable to copy data to URI for export.");
+            }
+            compressedBytes =
+                    Compressor.compress(
+                            localExportDbFile, LOCAL_EXPORT_DATABASE_FILE_NAME, outputStream);
+        } catch (FileNotFoundException e) {
+            Slog.e(TAG, "Lost access to export location", e);
+            recordErrorAndNotify(
+                    userHandle,
+                    DATA_EXPORT_LOST_FILE_ACCESS,
+                    startTimeMillis,
+                    localExportDbFile,
+                    0);
+            return false;
+        } catch (Exception e) {
+            Slog.e(TAG, "Failed to export to URI", e);
+            recordErrorAndNotify(
+                    userHandle,
+                    DATA_EXPORT_ERROR_UNKNOWN,
+                    startTimeMillis,
+                    localExportDbFile,
+                    0);
+            return false;
+        }
+
+        Slog.i(TAG, "Export completed.");
+        ExportImportLogger.logExportThroughput(
+                localExportDbFile.length(),
+                compressedBytes,
+                mClock.millis() - streamStartTimeMillis,
+                // The snapshot is the only local file.
+                localExportDbFile.length());
+        recordSuccess(
+                startTimeMillis,
+                intSizeInKb(localExportDbFile),
+                (int) (compressedBytes / 1024),
+                destinationUri);
+        mExportImportSettingsStorage.setLastSuccessfulExportContentKey(contentKey);
+        return true;
+    }
+
     protected void recordSuccess(
             long startTimeMillis,
             int originalDataSizeKb,
@@ -260,6 +379,21 @@ public class ExportManager {
                 exportStatus, timeToErrorMillis, originalDataSizeKb, compressedDataSizeKb);
     }
 
+    private void recordErrorAndNotify(
+            UserHandle userHandle,
+            int exportStatus,
+            long startTimeMillis,
+            File localExportDbFile,
+            long compressedBytes) {
+        Slog.d(TAG, "Original file size: " + intSizeInKb(localExportDbFile));
+        recordError(
+                exportStatus,
+                startTimeMillis,
+                intSizeInKb(localExportDbFile),
+                (int) (compressedBytes / 1024));
+        sendNotificationIfEnabled(userHandle, NOTIFICATION_TYPE_EXPORT_UNSUCCESSFUL_GENERIC_ERROR);
+    }
+
     void deleteLocalExportFiles(UserHandle userHandle) {
         Slog.i(TAG, "Delete local export files started.");
         StorageContext dbContext =
@@ -298,6 +432,83 @@ public class ExportManager {
         Slog.i(TAG, "Local export completed: " + destination.toPath().toAbsolutePath());
     }
 
+    private void exportSnapshot(File destination) throws IOException {
+        Slog.i(TAG, "Local export started.");
+
+        File parent = destination.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory for local export.");
+        }
+        if (destination.exists()) {
+            SQLiteDatabase.deleteDatabase(destination);
+        }
+        mTransactionManager.copyDatabaseTo(destination);
+
+        Slog.i(TAG, "Local export completed: " + destination.toPath().toAbsolutePath());
+    }
+
+    /**
+     * Returns a key that changes whenever data that is imported from an export changes, or null if
+     * the exported data can't be keyed.
+     *
+     * <p>Inserts, updates and deletes through the APIs add change logs, so move the change logs
+     * sequence. Records inserted or deleted without change logs, by imports or auto delete, move
+     * the sequence or the count of their table. Priority lists are included as they are.
+     */
+    private @Nullable String getExportContentKey() {
+        if (AconfigFlagHelper.isPersonalHealthRecordEnabled()
+                && !Flags.personalHealthRecordDisableExportImport()) {
+            // Medical data is exported as well, and changes to it don't add change logs.
+            return null;
+        }
+        StringBuilder key = new StringBuilder();
+        try (Cursor cursor =
+                mTransactionManager.rawQuery(
+                        "SELECT name, seq FROM sqlite_sequence WHERE name != ? ORDER BY name",
+                        new String[] {AccessLogsHelper.TABLE_NAME})) {
+            while (cursor.moveToNext()) {
+                key.append(cursor.getString(0)).append('=').append(cursor.getLong(1)).append(';');
+            }
+        }
+        for (RecordHelper<?> helper :
+                InternalHealthConnectMappings.getInstance().getRecordHelpers()) {
+            String tableName = helper.getMainTableName();
+            if (mTransactionManager.checkTableExists(tableName)) {
+                key.append(tableName)
+                        .append('#')
+                        .append(mTransactionManager.queryNumEntries(tableName))
+                        .append(';');
+            }
+        }
+        try (Cursor cursor =
+                mTransactionManager.rawQuery(
+                        "SELECT "
+                                + HealthDataCategoryPriorityHelper.HEALTH_DATA_CATEGORY_COLUMN_NAME
+                                + ", "
+                                + HealthDataCategoryPriorityHelper
+                                        .APP_ID_PRIORITY_ORDER_COLUMN_NAME
+                                + " FROM "
+                                + HealthDataCategoryPriorityHelper.PRIORITY_TABLE_NAME
+                                + " ORDER BY "
+                                + HealthDataCategoryPriorityHelper.HEALTH_DATA_CATEGORY_COLUMN_NAME,
+                        null)) {
+            while (cursor.moveToNext()) {
+                key.append(cursor.getInt(0)).append(':').append(cursor.getString(1)).append(';');
+            }
+        }
+        return key.toString();
+    }
+
+    private static boolean isExportPresent(StorageContext dbContext, Uri destination) {
+        try (ParcelFileDescriptor descriptor =
+                dbContext.getContentResolver().openFileDescriptor(destination, "r")) {
+            return descriptor != null && descriptor.getStatSize() > 0;
+        } catch (Exception e) {
+            // The user may have deleted or moved the file since the last export.
+            return false;
+        }
+    }
+
     private void exportToUri(StorageContext dbContext, File source, Uri destination)
             throws IOException {
         Slog.i(TAG, "Export to URI started.");
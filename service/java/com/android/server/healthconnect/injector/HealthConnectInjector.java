@@ -33,6 +33,7 @@ import com.android.server.healthconnect.permission.FirstGrantTimeManager;
 import com.android.server.healthconnect.permission.HealthConnectPermissionHelper;
 import com.android.server.healthconnect.permission.HealthPermissionIntentAppsTracker;
 import com.android.server.healthconnect.permission.PackageInfoUtils;
+import com.android.server.healthconnect.permission.PermissionDecisionCache;
 import com.android.server.healthconnect.permission.PermissionPackageChangesOrchestrator;
 import com.android.server.healthconnect.storage.DailyCleanupJob;
 import com.android.server.healthconnect.storage.ExportImportSettingsStorage;
@@ -154,6 +155,12 @@ public abstract class HealthConnectInjector {
      */
     public abstract PermissionPackageChangesOrchestrator getPermissionPackageChangesOrchestrator();
 
+    /**
+     * Getter for {@link PermissionDecisionCache} instance initialised by the Health Connect
+     * Injector.
+     */
+    public abstract PermissionDecisionCache getPermissionDecisionCache();
+
     /**
      * Getter for {@link HealthConnectPermissionHelper} instance initialised by the Health Connect
      * Injector.
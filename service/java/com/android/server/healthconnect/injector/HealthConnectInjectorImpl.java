@@ -19,6 +19,7 @@ package com.android.server.healthconnect.injector;
 import android.content.Context;
 import android.health.connect.internal.datatypes.utils.HealthConnectMappings;
 import android.os.UserHandle;
+import android.permission.PermissionManager;
 
 import androidx.annotation.Nullable;
 
@@ -36,6 +37,7 @@ import com.android.server.healthconnect.permission.FirstGrantTimeManager;
 import com.android.server.healthconnect.permission.HealthConnectPermissionHelper;
 import com.android.server.healthconnect.permission.HealthPermissionIntentAppsTracker;
 import com.android.server.healthconnect.permission.PackageInfoUtils;
+import com.android.server.healthconnect.permission.PermissionDecisionCache;
 import com.android.server.healthconnect.permission.PermissionPackageChangesOrchestrator;
 import com.android.server.healthconnect.storage.DailyCleanupJob;
 import com.android.server.healthconnect.storage.ExportImportSettingsStorage;
@@ -92,6 +94,7 @@ public class HealthConnectInjectorImpl extends HealthConnectInjector {
     private final FirstGrantTimeManager mFirstGrantTimeManager;
     private final HealthPermissionIntentAppsTracker mPermissionIntentAppsTracker;
     private final PermissionPackageChangesOrchestrator mPermissionPackageChangesOrchestrator;
+    private final PermissionDecisionCache mPermissionDecisionCache;
     private final HealthConnectPermissionHelper mHealthConnectPermissionHelper;
     private final MigrationCleaner mMigrationCleaner;
     private final TimeSource mTimeSource;
@@ -226,6 +229,11 @@ public class HealthConnectInjectorImpl extends HealthConnectInjector {
                                 mHealthDataCategoryPriorityHelper,
                                 mMigrationStateManager)
                         : builder.mFirstGrantTimeManager;
+        mPermissionDecisionCache =
+                builder.mPermissionDecisionCache == null
+                        ? new PermissionDecisionCache(
+                                context.getSystemService(PermissionManager.class))
+                        : builder.mPermissionDecisionCache;
         mHealthConnectPermissionHelper =
                 builder.mHealthConnectPermissionHelper == null
                         ? new HealthConnectPermissionHelper(
@@ -235,7 +243,8 @@ public class HealthConnectInjectorImpl extends HealthConnectInjector {
                                 mFirstGrantTimeManager,
                                 mHealthDataCategoryPriorityHelper,
                                 mAppInfoHelper,
-                                mHealthConnectMappings)
+                                mHealthConnectMappings,
+                                mPermissionDecisionCache)
                         : builder.mHealthConnectPermissionHelper;
         mPermissionPackageChangesOrchestrator =
                 builder.mPermissionPackageChangesOrchestrator == null
@@ -391,6 +400,11 @@ public class HealthConnectInjectorImpl extends HealthConnectInjector {
         return mPermissionPackageChangesOrchestrator;
     }
 
+    @Override
+    public PermissionDecisionCache getPermissionDecisionCache() {
+        return mPermissionDecisionCache;
+    }
+
     @Override
     public HealthConnectPermissionHelper getHealthConnectPermissionHelper() {
         return mHealthConnectPermissionHelper;
@@ -525,6 +539,7 @@ public class HealthConnectInjectorImpl extends HealthConnectInjector {
         @Nullable
         private PermissionPackageChangesOrchestrator mPermissionPackageChangesOrchestrator;
 
+        @Nullable private PermissionDecisionCache mPermissionDecisionCache;
         @Nullable private HealthConnectPermissionHelper mHealthConnectPermissionHelper;
         @Nullable private MigrationCleaner mMigrationCleaner;
         @Nullable private TimeSource mTimeSource;
@@ -673,6 +688,13 @@ public class HealthConnectInjectorImpl extends HealthConnectInjector {
             return this;
         }
 
+        /** Set fake or custom {@link PermissionDecisionCache} */
+        public Builder setPermissionDecisionCache(PermissionDecisionCache permissionDecisionCache) {
+            Objects.requireNonNull(permissionDecisionCache);
+            mPermissionDecisionCache = permissionDecisionCache;
+            return this;
+        }
+
         /** Set fake or custom {@link HealthConnectPermissionHelper} */
         public Builder setHealthConnectPermissionHelper(
                 HealthConnectPermissionHelper healthConnectPermissionHelper) {
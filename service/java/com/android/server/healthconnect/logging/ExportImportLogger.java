@@ -38,6 +38,7 @@ import static android.health.connect.exportimport.ScheduledExportStatus.DATA_EXP
 import static android.health.connect.exportimport.ScheduledExportStatus.DATA_EXPORT_STARTED;
 
 import android.health.HealthFitnessStatsLog;
+import android.util.Slog;
 import android.util.SparseIntArray;
 
 /**
@@ -51,6 +52,8 @@ public class ExportImportLogger {
     // for from real zero values.
     public static final int NO_VALUE_RECORDED = -1;
 
+    private static final String TAG = "HealthConnectExportImport";
+
     public static final SparseIntArray EXPORT_STATUS_LOG_TAGS;
 
     static {
@@ -131,4 +134,36 @@ public class ExportImportLogger {
                 originalDataSizeKb,
                 compressedDataSizeKb);
     }
+
+    /**
+     * Log the throughput of an export that streams a database snapshot into its destination
+     *
+     * @param originalDataSizeBytes Size of the snapshot that is being exported
+     * @param compressedDataSizeBytes Bytes written to the destination
+     * @param durationMillis Time taken to compress and write the snapshot
+     * @param peakTempDiskBytes Largest disk space used by the local files of the export
+     */
+    public static void logExportThroughput(
+            long originalDataSizeBytes,
+            long compressedDataSizeBytes,
+            long durationMillis,
+            long peakTempDiskBytes) {
+        long bytesPerSecond =
+                durationMillis > 0
+                        ? originalDataSizeBytes * 1000 / durationMillis
+                        : originalDataSizeBytes;
+        Slog.i(
+                TAG,
+                "Export streamed "
+                        + originalDataSizeBytes
+                        + " bytes into "
+                        + compressedDataSizeBytes
+                        + " in "
+                        + durationMillis
+                        + " ms ("
+                        + bytesPerSecond
+                        + " bytes/s), peak temp disk usage "
+                        + peakTempDiskBytes
+                        + " bytes");
+    }
 }
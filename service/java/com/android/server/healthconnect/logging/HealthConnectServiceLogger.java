@@ -201,9 +201,11 @@ import static com.android.server.healthconnect.logging.HealthConnectServiceLogge
 
 import android.annotation.IntDef;
 import android.health.HealthFitnessStatsLog;
+import android.health.connect.Constants;
 import android.health.connect.datatypes.MedicalResource;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.ratelimiter.RateLimiter;
+import android.util.Slog;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.healthconnect.storage.utils.InternalHealthConnectMappings;
@@ -226,6 +228,7 @@ import java.util.Set;
  * @hide
  */
 public class HealthConnectServiceLogger {
+    private static final String TAG = "HealthConnectServiceLogger";
 
     private final int mHealthDataServiceApiMethod;
     private final int mHealthDataServiceApiStatus;
@@ -238,6 +241,8 @@ public class HealthConnectServiceLogger {
     private Set<Integer> mMedicalResourceTypes;
     private final String mPackageName;
     private final int mCallerForegroundState;
+    private final int mQueuedTaskCount;
+    private final long mQueueWaitTime;
     private static final int MAX_NUMBER_OF_LOGGED_DATA_TYPES = 6;
     private static final int RECORD_TYPE_NOT_ASSIGNED_DEFAULT_VALUE = -1;
 
@@ -478,6 +483,8 @@ public class HealthConnectServiceLogger {
         private Set<Integer> mMedicalResourceTypes;
         private String mPackageName;
         private int mCallerForegroundState;
+        private int mQueuedTaskCount;
+        private long mQueueWaitTime;
 
         public Builder(boolean holdsDataManagementPermission, @ApiMethods.ApiMethod int apiMethod) {
             mStartTime = System.currentTimeMillis();
@@ -618,6 +625,19 @@ public class HealthConnectServiceLogger {
             return this;
         }
 
+        /**
+         * Sets how busy the scheduler was for this call.
+         *
+         * @param queuedTaskCount number of client tasks already waiting when this call was
+         *     scheduled.
+         * @param queueWaitTime time in millis this call waited for a thread.
+         */
+        public Builder setSchedulingStats(int queuedTaskCount, long queueWaitTime) {
+            mQueuedTaskCount = queuedTaskCount;
+            mQueueWaitTime = queueWaitTime;
+            return this;
+        }
+
         /** Returns an object of {@link HealthConnectServiceLogger}. */
         public HealthConnectServiceLogger build() {
             mDuration = System.currentTimeMillis() - mStartTime;
@@ -762,10 +782,36 @@ public class HealthConnectServiceLogger {
         mMedicalResourceTypes = builder.mMedicalResourceTypes;
         mPackageName = builder.mPackageName;
         mCallerForegroundState = builder.mCallerForegroundState;
+        mQueuedTaskCount = builder.mQueuedTaskCount;
+        mQueueWaitTime = builder.mQueueWaitTime;
+    }
+
+    /** Returns the number of client tasks waiting when this call was scheduled. */
+    public int getQueuedTaskCount() {
+        return mQueuedTaskCount;
+    }
+
+    /** Returns the time in millis this call waited for a thread. */
+    public long getQueueWaitTime() {
+        return mQueueWaitTime;
     }
 
     /** Log to statsd. */
     public void log() {
+        if (Constants.DEBUG) {
+            Slog.d(
+                    TAG,
+                    "API "
+                            + mHealthDataServiceApiMethod
+                            + " waited "
+                            + mQueueWaitTime
+                            + "ms behind "
+                            + mQueuedTaskCount
+                            + " tasks, took "
+                            + mDuration
+                            + "ms");
+        }
+
         // Do not log API calls made from the controller
         if (mHoldsDataManagementPermission) {
             return;
@@ -20,6 +20,7 @@ import static android.content.pm.PackageManager.PERMISSION_GRANTED;
 
 import static java.util.stream.Collectors.toSet;
 
+import android.annotation.Nullable;
 import android.content.AttributionSource;
 import android.content.Context;
 import android.health.connect.internal.datatypes.RecordInternal;
@@ -46,15 +47,29 @@ public class DataPermissionEnforcer {
     private final Context mContext;
     private final HealthConnectMappings mHealthConnectMappings;
     private final InternalHealthConnectMappings mInternalHealthConnectMappings;
+    @Nullable private final PermissionDecisionCache mPermissionDecisionCache;
 
     public DataPermissionEnforcer(
             PermissionManager permissionManager,
             Context context,
             InternalHealthConnectMappings internalHealthConnectMappings) {
+        this(permissionManager, context, internalHealthConnectMappings, null);
+    }
+
+    /**
+     * Creates an enforcer which checks permissions through {@code permissionDecisionCache}, if not
+     * null.
+     */
+    public DataPermissionEnforcer(
+            PermissionManager permissionManager,
+            Context context,
+            InternalHealthConnectMappings internalHealthConnectMappings,
+            @Nullable PermissionDecisionCache permissionDecisionCache) {
         mPermissionManager = permissionManager;
         mContext = context;
         mHealthConnectMappings = internalHealthConnectMappings.getExternalMappings();
         mInternalHealthConnectMappings = internalHealthConnectMappings;
+        mPermissionDecisionCache = permissionDecisionCache;
     }
 
     /** Enforces default write permissions for given recordTypeIds */
@@ -232,6 +247,9 @@ public class DataPermissionEnforcer {
 
     private boolean isPermissionGranted(
             String permissionName, AttributionSource attributionSource) {
+        if (mPermissionDecisionCache != null) {
+            return mPermissionDecisionCache.isPermissionGranted(permissionName, attributionSource);
+        }
         return mPermissionManager.checkPermissionForDataDelivery(
                         permissionName, attributionSource, null)
                 == PERMISSION_GRANTED;
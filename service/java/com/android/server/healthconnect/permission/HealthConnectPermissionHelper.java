@@ -65,6 +65,7 @@ public final class HealthConnectPermissionHelper {
     private final HealthDataCategoryPriorityHelper mHealthDataCategoryPriorityHelper;
     private final AppInfoHelper mAppInfoHelper;
     private final HealthConnectMappings mHealthConnectMappings;
+    private final PermissionDecisionCache mPermissionDecisionCache;
 
     /**
      * Constructs a {@link HealthConnectPermissionHelper}.
@@ -74,6 +75,8 @@ public final class HealthConnectPermissionHelper {
      * @param permissionIntentTracker a {@link
      *     com.android.server.healthconnect.permission.HealthPermissionIntentAppsTracker} instance
      *     that tracks apps allowed to request health permissions.
+     * @param permissionDecisionCache the cache of permission checks, invalidated by the grants and
+     *     revocations made here before they return.
      */
     public HealthConnectPermissionHelper(
             Context context,
@@ -82,7 +85,8 @@ public final class HealthConnectPermissionHelper {
             FirstGrantTimeManager firstGrantTimeManager,
             HealthDataCategoryPriorityHelper healthDataCategoryPriorityHelper,
             AppInfoHelper appInfoHelper,
-            HealthConnectMappings healthConnectMappings) {
+            HealthConnectMappings healthConnectMappings,
+            PermissionDecisionCache permissionDecisionCache) {
         mContext = context;
         mPackageManager = packageManager;
         mPermissionIntentAppsTracker = permissionIntentTracker;
@@ -90,6 +94,7 @@ public final class HealthConnectPermissionHelper {
         mHealthDataCategoryPriorityHelper = healthDataCategoryPriorityHelper;
         mAppInfoHelper = appInfoHelper;
         mHealthConnectMappings = healthConnectMappings;
+        mPermissionDecisionCache = permissionDecisionCache;
     }
 
     /**
@@ -108,6 +113,7 @@ public final class HealthConnectPermissionHelper {
         final long token = Binder.clearCallingIdentity();
         try {
             mPackageManager.grantRuntimePermission(packageName, permissionName, checkedUser);
+            mPermissionDecisionCache.invalidate();
             mPackageManager.updatePermissionFlags(
                     permissionName,
                     packageName,
@@ -328,6 +334,9 @@ public final class HealthConnectPermissionHelper {
             String packageName, UserHandle user, String permission, @Nullable String reason) {
         mPackageManager.revokeRuntimePermission(
                 packageName, permission, user, reason == null ? UNKNOWN_REASON : reason);
+        // Don't wait for the permission change listener, which runs asynchronously, to stop
+        // serving the revoked grant from the cache.
+        mPermissionDecisionCache.invalidate();
     }
 
     private void enforceValidHealthPermission(String permissionName) {
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.permission;
+
+import static android.content.pm.PackageManager.PERMISSION_GRANTED;
+
+import android.annotation.Nullable;
+import android.app.AppOpsManager;
+import android.content.AttributionSource;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.permission.PermissionManager;
+import android.util.ArrayMap;
+
+import com.android.internal.annotations.GuardedBy;
+import com.android.modules.utils.BackgroundThread;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches the results of {@link PermissionManager#checkPermissionForDataDelivery} per uid, package
+ * and permission, until permissions or packages change.
+ *
+ * <p>Only permissions without an app op are cached, for which the check has nothing to note, and
+ * only for callers without a chain of attribution sources.
+ *
+ * <p>Every change of permissions or packages starts a new generation, and results of checks
+ * started in an earlier generation are not cached, so that a grant can't be cached after its
+ * revocation was signalled.
+ *
+ * @hide
+ */
+public final class PermissionDecisionCache extends BroadcastReceiver
+        implements PackageManager.OnPermissionsChangedListener {
+    private final PermissionManager mPermissionManager;
+    private final Object mLock = new Object();
+
+    @GuardedBy("mLock")
+    private final Map<Key, Boolean> mDecisions = new ArrayMap<>();
+
+    @GuardedBy("mLock")
+    private long mGeneration;
+
+    public PermissionDecisionCache(PermissionManager permissionManager) {
+        mPermissionManager = permissionManager;
+    }
+
+    /** Starts invalidating the cache on permission changes and package changes of all users. */
+    public void registerListeners(Context context) {
+        context.getPackageManager().addOnPermissionsChangeListener(this);
+        context.registerReceiverForAllUsers(
+                this,
+                PermissionPackageChangesOrchestrator.sPackageFilter,
+                null,
+                BackgroundThread.getHandler());
+    }
+
+    /**
+     * Returns whether {@code permissionName} is granted to {@code attributionSource} for data
+     * delivery, from the cache if possible.
+     */
+    public boolean isPermissionGranted(String permissionName, AttributionSource attributionSource) {
+        if (!isCacheable(permissionName, attributionSource)) {
+            return checkPermission(permissionName, attributionSource);
+        }
+
+        Key key =
+                new Key(
+                        attributionSource.getUid(),
+                        attributionSource.getPackageName(),
+                        permissionName);
+        long generation;
+        synchronized (mLock) {
+            Boolean decision = mDecisions.get(key);
+            if (decision != null) {
+                return decision;
+            }
+            generation = mGeneration;
+        }
+
+        boolean isGranted = checkPermission(permissionName, attributionSource);
+        synchronized (mLock) {
+            if (generation == mGeneration) {
+                mDecisions.put(key, isGranted);
+            }
+        }
+        return isGranted;
+    }
+
+    /** Drops all cached decisions. */
+    public void invalidate() {
+        synchronized (mLock) {
+            mGeneration++;
+            mDecisions.clear();
+        }
+    }
+
+    @Override
+    public void onPermissionsChanged(int uid) {
+        invalidate();
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        invalidate();
+    }
+
+    private boolean checkPermission(String permissionName, AttributionSource attributionSource) {
+        return mPermissionManager.checkPermissionForDataDelivery(
+                        permissionName, attributionSource, null)
+                == PERMISSION_GRANTED;
+    }
+
+    private static boolean isCacheable(String permissionName, AttributionSource attributionSource) {
+        return attributionSource.getNext() == null
+                && AppOpsManager.permissionToOp(permissionName) == null;
+    }
+
+    private static final class Key {
+        private final int mUid;
+        @Nullable private final String mPackageName;
+        private final String mPermissionName;
+
+        Key(int uid, @Nullable String packageName, String permissionName) {
+            mUid = uid;
+            mPackageName = packageName;
+            mPermissionName = permissionName;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof Key other)) {
+                return false;
+            }
+            return mUid == other.mUid
+                    && Objects.equals(mPackageName, other.mPackageName)
+                    && mPermissionName.equals(other.mPermissionName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mUid, mPackageName, mPermissionName);
+        }
+    }
+}
@@ -19,13 +19,21 @@ package com.android.server.healthconnect.storage;
 import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_SKIN_TEMPERATURE;
 import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_UNKNOWN;
 
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_ACTIVITY_DATE_COUNTS;
 import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_ACTIVITY_INTENSITY;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_AGGREGATE_ROLLUPS;
 import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_ECOSYSTEM_METRICS;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_FOREIGN_KEY_INDEXES;
 import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_GENERATED_LOCAL_TIME;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_KEYSET_PAGE_TOKENS;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_MEDICAL_RESOURCE_COMPRESSION;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_MEDICAL_RESOURCE_CONTENT_HASH;
 import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_MINDFULNESS_SESSION;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_PACKED_SERIES_SAMPLES;
 import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_PERSONAL_HEALTH_RECORD;
 import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_PLANNED_EXERCISE_SESSIONS;
 import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_SKIN_TEMPERATURE;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_TIME_RANGE_INDEXES;
 import static com.android.healthfitness.flags.DatabaseVersions.MIN_SUPPORTED_DB_VERSION;
 import static com.android.server.healthconnect.storage.HealthConnectDatabase.createTable;
 import static com.android.server.healthconnect.storage.TransactionManager.runAsTransaction;
@@ -35,11 +43,13 @@ import static com.android.server.healthconnect.storage.utils.StorageUtils.checkT
 
 import android.database.sqlite.SQLiteDatabase;
 
+import com.android.healthfitness.flags.AconfigFlagHelper;
 import com.android.healthfitness.flags.Flags;
 import com.android.server.healthconnect.migration.PriorityMigrationHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.AccessLogsHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.ActivityDateHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.ActivityIntensityRecordHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsRequestHelper;
@@ -90,21 +100,94 @@ final class DatabaseUpgradeHelper {
     private static final Upgrader UPGRADE_TO_ECOSYSTEM_METRICS =
             db -> createTable(db, ReadAccessLogsHelper.getCreateTableRequest());
 
+    private static final Upgrader UPGRADE_TO_AGGREGATE_ROLLUPS =
+            db -> {
+                if (AconfigFlagHelper.isPackedSeriesSamplesDbEnabled()) {
+                    // The rollups are computed with the series record params, which read the
+                    // packed samples columns when their DB flag is on. These columns are only
+                    // added by the next upgrade, which computes the rollups instead.
+                    return;
+                }
+                applyAggregateRollupsUpgrade(db);
+            };
+
+    private static final Upgrader UPGRADE_TO_PACKED_SERIES_SAMPLES =
+            db -> {
+                forEachInitialRecordHelper(it -> it.applyPackedSeriesSamplesUpgrade(db));
+                // Computes the rollups skipped above. Done on every upgrade from a version with
+                // the rollups too, as recomputing them is idempotent.
+                applyAggregateRollupsUpgrade(db);
+            };
+
+    private static final Upgrader UPGRADE_TO_KEYSET_PAGE_TOKENS =
+            db ->
+                    InternalHealthConnectMappings.getInstance()
+                            .getRecordHelpers()
+                            .forEach(it -> it.applyKeysetPageTokensUpgrade(db));
+
+    private static final Upgrader UPGRADE_TO_ACTIVITY_DATE_COUNTS =
+            db ->
+                    ActivityDateHelper.applyRecordCountsUpgrade(
+                            db, InternalHealthConnectMappings.getInstance().getRecordHelpers());
+
+    private static final Upgrader UPGRADE_TO_TIME_RANGE_INDEXES =
+            db ->
+                    InternalHealthConnectMappings.getInstance()
+                            .getRecordHelpers()
+                            .forEach(it -> it.applyTimeRangeIndexesUpgrade(db));
+
+    private static final Upgrader UPGRADE_TO_FOREIGN_KEY_INDEXES =
+            DatabaseUpgradeHelper::applyForeignKeyIndexesUpgrade;
+
+    private static final Upgrader UPGRADE_TO_MEDICAL_RESOURCE_CONTENT_HASH =
+            MedicalResourceHelper::applyContentHashUpgrade;
+
+    private static final Upgrader UPGRADE_TO_MEDICAL_RESOURCE_COMPRESSION =
+            MedicalResourceHelper::applyCompressionUpgrade;
+
     /**
      * A list of db version -> Upgrader to upgrade the db from the previous version to the version.
      * The upgrades must be executed one by one in the numeric order of db versions, hence TreeMap.
      */
     private static final TreeMap<Integer, Upgrader> UPGRADERS =
             new TreeMap<>(
-                    Map.of(
-                            DB_VERSION_GENERATED_LOCAL_TIME, UPGRADE_TO_GENERATED_LOCAL_TIME,
-                            DB_VERSION_SKIN_TEMPERATURE, UPGRADE_TO_SKIN_TEMPERATURE,
-                            DB_VERSION_PLANNED_EXERCISE_SESSIONS,
-                                    UPGRADE_TO_PLANNED_EXERCISE_SESSIONS,
-                            DB_VERSION_MINDFULNESS_SESSION, UPGRADE_TO_MINDFULNESS_SESSION,
-                            DB_VERSION_PERSONAL_HEALTH_RECORD, UPGRADE_TO_PERSONAL_HEALTH_RECORD,
-                            DB_VERSION_ACTIVITY_INTENSITY, UPGRADE_TO_ACTIVITY_INTENSITY,
-                            DB_VERSION_ECOSYSTEM_METRICS, UPGRADE_TO_ECOSYSTEM_METRICS));
+                    Map.ofEntries(
+                            Map.entry(
+                                    DB_VERSION_GENERATED_LOCAL_TIME,
+                                    UPGRADE_TO_GENERATED_LOCAL_TIME),
+                            Map.entry(DB_VERSION_SKIN_TEMPERATURE, UPGRADE_TO_SKIN_TEMPERATURE),
+                            Map.entry(
+                                    DB_VERSION_PLANNED_EXERCISE_SESSIONS,
+                                    UPGRADE_TO_PLANNED_EXERCISE_SESSIONS),
+                            Map.entry(
+                                    DB_VERSION_MINDFULNESS_SESSION,
+                                    UPGRADE_TO_MINDFULNESS_SESSION),
+                            Map.entry(
+                                    DB_VERSION_PERSONAL_HEALTH_RECORD,
+                                    UPGRADE_TO_PERSONAL_HEALTH_RECORD),
+                            Map.entry(DB_VERSION_ACTIVITY_INTENSITY, UPGRADE_TO_ACTIVITY_INTENSITY),
+                            Map.entry(DB_VERSION_ECOSYSTEM_METRICS, UPGRADE_TO_ECOSYSTEM_METRICS),
+                            Map.entry(DB_VERSION_AGGREGATE_ROLLUPS, UPGRADE_TO_AGGREGATE_ROLLUPS),
+                            Map.entry(
+                                    DB_VERSION_PACKED_SERIES_SAMPLES,
+                                    UPGRADE_TO_PACKED_SERIES_SAMPLES),
+                            Map.entry(
+                                    DB_VERSION_KEYSET_PAGE_TOKENS, UPGRADE_TO_KEYSET_PAGE_TOKENS),
+                            Map.entry(
+                                    DB_VERSION_ACTIVITY_DATE_COUNTS,
+                                    UPGRADE_TO_ACTIVITY_DATE_COUNTS),
+                            Map.entry(
+                                    DB_VERSION_TIME_RANGE_INDEXES,
+                                    UPGRADE_TO_TIME_RANGE_INDEXES),
+                            Map.entry(
+                                    DB_VERSION_FOREIGN_KEY_INDEXES,
+                                    UPGRADE_TO_FOREIGN_KEY_INDEXES),
+                            Map.entry(
+                                    DB_VERSION_MEDICAL_RESOURCE_CONTENT_HASH,
+                                    UPGRADE_TO_MEDICAL_RESOURCE_CONTENT_HASH),
+                            Map.entry(
+                                    DB_VERSION_MEDICAL_RESOURCE_COMPRESSION,
+                                    UPGRADE_TO_MEDICAL_RESOURCE_COMPRESSION)));
 
     /**
      * Applies db upgrades to bring the current schema to the latest supported version.
@@ -157,6 +240,32 @@ final class DatabaseUpgradeHelper {
             if (effectiveOldVersion < DB_VERSION_ECOSYSTEM_METRICS) {
                 UPGRADE_TO_ECOSYSTEM_METRICS.upgrade(db);
             }
+            if (shouldUpgrade(DB_VERSION_AGGREGATE_ROLLUPS, effectiveOldVersion, newVersion)) {
+                UPGRADE_TO_AGGREGATE_ROLLUPS.upgrade(db);
+            }
+            if (shouldUpgrade(DB_VERSION_PACKED_SERIES_SAMPLES, effectiveOldVersion, newVersion)) {
+                UPGRADE_TO_PACKED_SERIES_SAMPLES.upgrade(db);
+            }
+            if (shouldUpgrade(DB_VERSION_KEYSET_PAGE_TOKENS, effectiveOldVersion, newVersion)) {
+                UPGRADE_TO_KEYSET_PAGE_TOKENS.upgrade(db);
+            }
+            if (shouldUpgrade(DB_VERSION_ACTIVITY_DATE_COUNTS, effectiveOldVersion, newVersion)) {
+                UPGRADE_TO_ACTIVITY_DATE_COUNTS.upgrade(db);
+            }
+            if (shouldUpgrade(DB_VERSION_TIME_RANGE_INDEXES, effectiveOldVersion, newVersion)) {
+                UPGRADE_TO_TIME_RANGE_INDEXES.upgrade(db);
+            }
+            if (shouldUpgrade(DB_VERSION_FOREIGN_KEY_INDEXES, effectiveOldVersion, newVersion)) {
+                UPGRADE_TO_FOREIGN_KEY_INDEXES.upgrade(db);
+            }
+            if (shouldUpgrade(
+                    DB_VERSION_MEDICAL_RESOURCE_CONTENT_HASH, effectiveOldVersion, newVersion)) {
+                UPGRADE_TO_MEDICAL_RESOURCE_CONTENT_HASH.upgrade(db);
+            }
+            if (shouldUpgrade(
+                    DB_VERSION_MEDICAL_RESOURCE_COMPRESSION, effectiveOldVersion, newVersion)) {
+                UPGRADE_TO_MEDICAL_RESOURCE_COMPRESSION.upgrade(db);
+            }
         }
     }
 
@@ -237,6 +346,28 @@ final class DatabaseUpgradeHelper {
                         .getAlterTableAddColumnsCommands());
     }
 
+    /**
+     * Indexes the columns with foreign keys added by ALTER TABLE, which unlike the ones of created
+     * tables got no index, so that deleting an exercise session or a planned exercise session does
+     * not scan the other table for references to it.
+     */
+    private static void applyForeignKeyIndexesUpgrade(SQLiteDatabase db) {
+        if (!checkTableExists(db, PLANNED_EXERCISE_SESSION_RECORD_TABLE_NAME)) {
+            // The columns are only added by the planned exercise sessions upgrade.
+            return;
+        }
+        executeSqlStatements(
+                db,
+                new PlannedExerciseSessionRecordHelper()
+                        .getAlterTableRequestForPlannedExerciseFeature()
+                        .getCreateIndexStatements());
+        executeSqlStatements(
+                db,
+                new ExerciseSessionRecordHelper()
+                        .getAlterTableRequestForPlannedExerciseFeature()
+                        .getCreateIndexStatements());
+    }
+
     private static void applyPersonalHealthRecordDatabaseUpgrade(SQLiteDatabase db) {
         if (checkTableExists(db, MedicalResourceHelper.getMainTableName())) {
             // Upgrade has already been applied. Return early.
@@ -251,6 +382,11 @@ final class DatabaseUpgradeHelper {
                 db, getAlterTableRequestForPhrAccessLogs().getAlterTableAddColumnsCommands());
     }
 
+    private static void applyAggregateRollupsUpgrade(SQLiteDatabase db) {
+        AggregateRollupHelper.onUpgrade(
+                db, InternalHealthConnectMappings.getInstance().getRecordHelpers());
+    }
+
     /** Executes a list of SQL statements one after another, in a transaction. */
     public static void executeSqlStatements(SQLiteDatabase db, List<String> statements) {
         runAsTransaction(db, unused -> statements.forEach(db::execSQL));
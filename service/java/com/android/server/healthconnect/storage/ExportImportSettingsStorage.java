@@ -56,6 +56,8 @@ public final class ExportImportSettingsStorage {
             "last_successful_export_uri_key";
     private static final String NEXT_EXPORT_SEQUENTIAL_NUMBER_PREFERENCE_KEY =
             "next_export_sequential_number_key";
+    private static final String LAST_SUCCESSFUL_EXPORT_CONTENT_KEY_PREFERENCE_KEY =
+            "last_successful_export_content_key";
 
     // Import State
     private static final String IMPORT_ONGOING_PREFERENCE_KEY = "import_ongoing_key";
@@ -87,6 +89,8 @@ public final class ExportImportSettingsStorage {
         if (settings.getUri() != null) {
             Uri uri = settings.getUri();
             mPreferenceHelper.insertOrReplacePreference(EXPORT_URI_PREFERENCE_KEY, uri.toString());
+            // The next export has to be complete, even if it goes to the same URI again.
+            mPreferenceHelper.removeKey(LAST_SUCCESSFUL_EXPORT_CONTENT_KEY_PREFERENCE_KEY);
             String lastExportError =
                     mPreferenceHelper.getPreference(LAST_EXPORT_ERROR_PREFERENCE_KEY);
             if (lastExportError != null) {
@@ -156,6 +160,27 @@ public final class ExportImportSettingsStorage {
                 LAST_SUCCESSFUL_EXPORT_URI_PREFERENCE_KEY, uri.toString());
     }
 
+    /**
+     * Gets the key of the content of the last successful export, see {@link
+     * #setLastSuccessfulExportContentKey}.
+     */
+    public @Nullable String getLastSuccessfulExportContentKey() {
+        return mPreferenceHelper.getPreference(LAST_SUCCESSFUL_EXPORT_CONTENT_KEY_PREFERENCE_KEY);
+    }
+
+    /**
+     * Sets a key that changes whenever the exported content changes, for the last successful
+     * export. Use null when the content can't be keyed.
+     */
+    public void setLastSuccessfulExportContentKey(@Nullable String contentKey) {
+        if (contentKey == null) {
+            mPreferenceHelper.removeKey(LAST_SUCCESSFUL_EXPORT_CONTENT_KEY_PREFERENCE_KEY);
+        } else {
+            mPreferenceHelper.insertOrReplacePreference(
+                    LAST_SUCCESSFUL_EXPORT_CONTENT_KEY_PREFERENCE_KEY, contentKey);
+        }
+    }
+
     /** Set errors and time during the last failed export attempt. */
     public void setLastExportError(
             @ScheduledExportStatus.DataExportError int error, Instant instant) {
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.android.healthfitness.flags.Flags;
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiled INSERT statements, shared by the rows of the same table and columns inserted in one
+ * transaction.
+ *
+ * <p>Binding a row to an already compiled statement skips building the SQL, the {@link
+ * android.content.ContentValues} lookups and the statement setup of {@link
+ * SQLiteDatabase#insertWithOnConflict} for every row, which dominate the insertion of series
+ * samples and route locations.
+ *
+ * <p>Not thread safe, meant to be used by the thread running the transaction and closed with it.
+ */
+final class InsertStatementCache implements AutoCloseable {
+    private final SQLiteDatabase mDb;
+    private final boolean mEnabled;
+    private final Map<String, SQLiteStatement> mStatements = new HashMap<>();
+
+    InsertStatementCache(SQLiteDatabase db) {
+        this(db, Flags.batchedInserts());
+    }
+
+    InsertStatementCache(SQLiteDatabase db, boolean enabled) {
+        mDb = db;
+        mEnabled = enabled;
+    }
+
+    /**
+     * Inserts the row of {@code request}, without its child rows.
+     *
+     * @return the row id of the inserted row, or -1 if it was ignored on conflict
+     * @throws android.database.SQLException if the insert fails, as {@link
+     *     SQLiteDatabase#insertOrThrow} does
+     */
+    long insert(UpsertTableRequest request, int conflictAlgorithm) {
+        if (!mEnabled && !request.isBoundWithoutContentValues()) {
+            return mDb.insertWithOnConflict(
+                    request.getTable(), null, request.getContentValues(), conflictAlgorithm);
+        }
+
+        String sql = request.getInsertCommand(conflictAlgorithm);
+        SQLiteStatement statement = mStatements.get(sql);
+        if (statement == null) {
+            statement = mDb.compileStatement(sql);
+            mStatements.put(sql, statement);
+        }
+        request.bindTo(statement);
+        return statement.executeInsert();
+    }
+
+    @Override
+    public void close() {
+        for (SQLiteStatement statement : mStatements.values()) {
+            statement.close();
+        }
+        mStatements.clear();
+    }
+}
@@ -25,11 +25,11 @@ import static com.android.internal.util.Preconditions.checkArgument;
 import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.APP_INFO_ID_COLUMN_NAME;
 import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.PRIMARY_COLUMN_NAME;
 import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.UUID_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.utils.WhereClauses.LogicalOperator.AND;
 
 import static java.util.Objects.requireNonNull;
 
 import android.annotation.Nullable;
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteConstraintException;
@@ -44,6 +44,8 @@ import android.util.Slog;
 
 import com.android.healthfitness.flags.Flags;
 import com.android.server.healthconnect.storage.datatypehelpers.AccessLogsHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.ActivityDateHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.ChangeLogsHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.DeviceInfoHelper;
@@ -51,13 +53,16 @@ import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
 import com.android.server.healthconnect.storage.request.AggregateTableRequest;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
 import com.android.server.healthconnect.storage.request.DeleteTransactionRequest;
+import com.android.server.healthconnect.storage.request.FusedAggregateRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTransactionRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTransactionRequest;
 import com.android.server.healthconnect.storage.utils.InternalHealthConnectMappings;
+import com.android.server.healthconnect.storage.utils.SqlWithArgs;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 import com.android.server.healthconnect.storage.utils.TableColumnPair;
+import com.android.server.healthconnect.storage.utils.WhereClauses;
 
 import java.io.File;
 import java.time.Instant;
@@ -122,45 +127,76 @@ public final class TransactionManager {
                 new ChangeLogsHelper.ChangeLogs(OPERATION_TYPE_UPSERT, currentTime);
         ChangeLogsHelper.ChangeLogs modificationChangelogs =
                 new ChangeLogsHelper.ChangeLogs(OPERATION_TYPE_UPSERT, currentTime);
+        AggregateRollupHelper.PendingBuckets rollupBuckets =
+                new AggregateRollupHelper.PendingBuckets(mInternalHealthConnectMappings);
+        ActivityDateHelper.PendingCounts activityDateCounts =
+                new ActivityDateHelper.PendingCounts(mInternalHealthConnectMappings);
 
         return runAsTransaction(
                 db -> {
-                    for (UpsertTableRequest upsertRequest : request.getUpsertRequests()) {
-                        insertionChangelogs.addUUID(
-                                upsertRequest.getRecordInternal().getRecordType(),
-                                upsertRequest.getRecordInternal().getAppInfoId(),
-                                upsertRequest.getRecordInternal().getUuid());
-                        addChangelogsForOtherModifiedRecords(
-                                appInfoHelper.getAppInfoId(
-                                        upsertRequest.getRecordInternal().getPackageName()),
-                                upsertRequest,
-                                modificationChangelogs);
-                        if (request.shouldPreferNewRecord()) {
-                            insertOrReplaceOnConflict(db, upsertRequest);
-                        } else {
-                            insertOrIgnoreOnConflict(db, upsertRequest);
-                        }
+                    try (InsertStatementCache statements = new InsertStatementCache(db)) {
+                        return insertAllRecords(
+                                db,
+                                statements,
+                                appInfoHelper,
+                                accessLogsHelper,
+                                request,
+                                insertionChangelogs,
+                                modificationChangelogs,
+                                rollupBuckets,
+                                activityDateCounts);
                     }
-                    for (UpsertTableRequest insertRequestsForChangeLog :
-                            insertionChangelogs.getUpsertTableRequests()) {
-                        insert(db, insertRequestsForChangeLog);
-                    }
-                    for (UpsertTableRequest modificationChangelog :
-                            modificationChangelogs.getUpsertTableRequests()) {
-                        insert(db, modificationChangelog);
-                    }
-
-                    if (request.shouldGenerateAccessLogs()) {
-                        Objects.requireNonNull(accessLogsHelper)
-                                .recordUpsertAccessLog(
-                                        db,
-                                        Objects.requireNonNull(request.getPackageName()),
-                                        request.getRecordTypeIds());
-                    }
-                    return request.getUUIdsInOrder();
                 });
     }
 
+    private List<String> insertAllRecords(
+            SQLiteDatabase db,
+            InsertStatementCache statements,
+            AppInfoHelper appInfoHelper,
+            @Nullable AccessLogsHelper accessLogsHelper,
+            UpsertTransactionRequest request,
+            ChangeLogsHelper.ChangeLogs insertionChangelogs,
+            ChangeLogsHelper.ChangeLogs modificationChangelogs,
+            AggregateRollupHelper.PendingBuckets rollupBuckets,
+            ActivityDateHelper.PendingCounts activityDateCounts) {
+        for (UpsertTableRequest upsertRequest : request.getUpsertRequests()) {
+            insertionChangelogs.addUUID(
+                    upsertRequest.getRecordInternal().getRecordType(),
+                    upsertRequest.getRecordInternal().getAppInfoId(),
+                    upsertRequest.getRecordInternal().getUuid());
+            addChangelogsForOtherModifiedRecords(
+                    appInfoHelper.getAppInfoId(upsertRequest.getRecordInternal().getPackageName()),
+                    upsertRequest,
+                    modificationChangelogs);
+            if (request.shouldPreferNewRecord()) {
+                insertOrReplaceOnConflict(
+                        db, upsertRequest, rollupBuckets, activityDateCounts, statements);
+            } else {
+                insertOrIgnoreOnConflict(
+                        db, upsertRequest, rollupBuckets, activityDateCounts, statements);
+            }
+        }
+        rollupBuckets.recompute(db);
+        activityDateCounts.apply(db);
+        for (UpsertTableRequest insertRequestsForChangeLog :
+                insertionChangelogs.getUpsertTableRequests()) {
+            insert(db, insertRequestsForChangeLog, statements);
+        }
+        for (UpsertTableRequest modificationChangelog :
+                modificationChangelogs.getUpsertTableRequests()) {
+            insert(db, modificationChangelog, statements);
+        }
+
+        if (request.shouldGenerateAccessLogs()) {
+            Objects.requireNonNull(accessLogsHelper)
+                    .recordUpsertAccessLog(
+                            db,
+                            Objects.requireNonNull(request.getPackageName()),
+                            request.getRecordTypeIds());
+        }
+        return request.getUUIdsInOrder();
+    }
+
     /**
      * Inserts record into the table in {@code request} into the HealthConnect database.
      *
@@ -197,9 +233,17 @@ public final class TransactionManager {
      * @return rowId of the inserted record.
      */
     public long insert(SQLiteDatabase db, UpsertTableRequest request) {
-        long rowId = db.insertOrThrow(request.getTable(), null, request.getContentValues());
-        request.getChildTableRequests()
-                .forEach(childRequest -> insert(db, childRequest.withParentKey(rowId)));
+        try (InsertStatementCache statements = new InsertStatementCache(db)) {
+            return insert(db, request, statements);
+        }
+    }
+
+    private long insert(
+            SQLiteDatabase db, UpsertTableRequest request, InsertStatementCache statements) {
+        long rowId = statements.insert(request, SQLiteDatabase.CONFLICT_NONE);
+        for (UpsertTableRequest childRequest : request.getChildTableRequests()) {
+            insert(db, childRequest.withParentKey(rowId), statements);
+        }
         for (String postUpsertCommand : request.getPostUpsertCommands()) {
             db.execSQL(postUpsertCommand);
         }
@@ -214,9 +258,24 @@ public final class TransactionManager {
      */
     public void insertOrReplaceOnConflict(List<UpsertTableRequest> upsertTableRequests)
             throws SQLiteException {
+        AggregateRollupHelper.PendingBuckets rollupBuckets =
+                new AggregateRollupHelper.PendingBuckets(mInternalHealthConnectMappings);
+        ActivityDateHelper.PendingCounts activityDateCounts =
+                new ActivityDateHelper.PendingCounts(mInternalHealthConnectMappings);
         runAsTransaction(
                 db -> {
-                    upsertTableRequests.forEach(request -> insertOrReplaceOnConflict(db, request));
+                    try (InsertStatementCache statements = new InsertStatementCache(db)) {
+                        upsertTableRequests.forEach(
+                                request ->
+                                        insertOrReplaceOnConflict(
+                                                db,
+                                                request,
+                                                rollupBuckets,
+                                                activityDateCounts,
+                                                statements));
+                    }
+                    rollupBuckets.recompute(db);
+                    activityDateCounts.apply(db);
                 });
     }
 
@@ -237,7 +296,19 @@ public final class TransactionManager {
      */
     public long insertOrReplaceOnConflict(UpsertTableRequest request) {
         final SQLiteDatabase db = getWritableDb();
-        return insertOrReplaceOnConflict(db, request);
+        AggregateRollupHelper.PendingBuckets rollupBuckets =
+                new AggregateRollupHelper.PendingBuckets(mInternalHealthConnectMappings);
+        ActivityDateHelper.PendingCounts activityDateCounts =
+                new ActivityDateHelper.PendingCounts(mInternalHealthConnectMappings);
+        long rowId;
+        try (InsertStatementCache statements = new InsertStatementCache(db)) {
+            rowId =
+                    insertOrReplaceOnConflict(
+                            db, request, rollupBuckets, activityDateCounts, statements);
+        }
+        rollupBuckets.recompute(db);
+        activityDateCounts.apply(db);
+        return rowId;
     }
 
     /**
@@ -246,36 +317,43 @@ public final class TransactionManager {
      *
      * <p>Note: This function updates rather than the traditional delete + insert in SQLite
      */
-    private long insertOrReplaceOnConflict(SQLiteDatabase db, UpsertTableRequest request) {
+    private long insertOrReplaceOnConflict(
+            SQLiteDatabase db,
+            UpsertTableRequest request,
+            AggregateRollupHelper.PendingBuckets rollupBuckets,
+            ActivityDateHelper.PendingCounts activityDateCounts,
+            InsertStatementCache statements) {
         try {
             if (request.getUniqueColumnsCount() == 0) {
                 throw new RuntimeException(
                         "insertOrReplaceRecord should only be called with unique columns set");
             }
 
-            long rowId =
-                    db.insertWithOnConflict(
-                            request.getTable(),
-                            null,
-                            request.getContentValues(),
-                            SQLiteDatabase.CONFLICT_FAIL);
-            insertChildTableRequest(request, rowId, db);
+            long rowId = statements.insert(request, SQLiteDatabase.CONFLICT_FAIL);
+            insertChildTableRequest(request, rowId, statements);
             for (String postUpsertCommand : request.getPostUpsertCommands()) {
                 db.execSQL(postUpsertCommand);
             }
+            rollupBuckets.addBucketsOf(db, request);
+            activityDateCounts.addInserted(request);
 
             return rowId;
         } catch (SQLiteConstraintException e) {
-            try (Cursor cursor = db.rawQuery(request.getReadRequest().getReadCommand(), null)) {
+            // The conflicting row may be moved to other buckets and days by the update.
+            rollupBuckets.addBucketsOf(db, request);
+            activityDateCounts.addRowsOf(db, request, -1);
+            try (Cursor cursor = read(db, request.getReadRequest())) {
                 if (!cursor.moveToFirst()) {
                     throw new HealthConnectException(
                             ERROR_INTERNAL, "Conflict found, but couldn't read the entry.", e);
                 }
 
-                long updateResult = updateEntriesIfRequired(db, request, cursor);
+                long updateResult = updateEntriesIfRequired(db, request, cursor, statements);
                 for (String postUpsertCommand : request.getPostUpsertCommands()) {
                     db.execSQL(postUpsertCommand);
                 }
+                rollupBuckets.addBucketsOf(db, request);
+                activityDateCounts.addRowsOf(db, request, 1);
                 return updateResult;
             }
         }
@@ -288,9 +366,68 @@ public final class TransactionManager {
      * @param upsertTableRequests a list of insert table requests.
      */
     public void insertOrIgnoreOnConflict(List<UpsertTableRequest> upsertTableRequests) {
+        AggregateRollupHelper.PendingBuckets rollupBuckets =
+                new AggregateRollupHelper.PendingBuckets(mInternalHealthConnectMappings);
+        ActivityDateHelper.PendingCounts activityDateCounts =
+                new ActivityDateHelper.PendingCounts(mInternalHealthConnectMappings);
         runAsTransaction(
                 db -> {
-                    upsertTableRequests.forEach(request -> insertOrIgnoreOnConflict(db, request));
+                    try (InsertStatementCache statements = new InsertStatementCache(db)) {
+                        upsertTableRequests.forEach(
+                                request ->
+                                        insertOrIgnoreOnConflict(
+                                                db,
+                                                request,
+                                                rollupBuckets,
+                                                activityDateCounts,
+                                                statements));
+                    }
+                    rollupBuckets.recompute(db);
+                    activityDateCounts.apply(db);
+                });
+    }
+
+    /**
+     * Inserts rows into the main table of a record type, ignoring the ones that conflict with
+     * existing rows, in one transaction.
+     *
+     * <p>Unlike {@link #insertOrIgnoreOnConflict(List)}, the rows don't need a {@link
+     * RecordInternal}, as the rollups and activity dates are updated from the inserted rows at the
+     * end. The rows can't have child rows or post upsert commands.
+     *
+     * @param tableName the main table of a record type, with an autoincrement rowId.
+     * @param rows rows to insert into {@code tableName}.
+     */
+    public void insertOrIgnoreRecordRows(String tableName, List<UpsertTableRequest> rows) {
+        AggregateRollupHelper.PendingBuckets rollupBuckets =
+                new AggregateRollupHelper.PendingBuckets(mInternalHealthConnectMappings);
+        ActivityDateHelper.PendingCounts activityDateCounts =
+                new ActivityDateHelper.PendingCounts(mInternalHealthConnectMappings);
+        runAsTransaction(
+                db -> {
+                    long lastRowId;
+                    try (Cursor cursor =
+                            db.rawQuery(StorageUtils.getMaxPrimaryKeyQuery(tableName), null)) {
+                        cursor.moveToFirst();
+                        lastRowId = cursor.getLong(0);
+                    }
+                    try (InsertStatementCache statements = new InsertStatementCache(db)) {
+                        for (UpsertTableRequest row : rows) {
+                            checkArgument(tableName.equals(row.getTable()), "Row of other table");
+                            statements.insert(row, SQLiteDatabase.CONFLICT_IGNORE);
+                        }
+                    }
+                    // The autoincrement rowIds of the inserted rows are above any existing one.
+                    DeleteTableRequest insertedRows =
+                            new DeleteTableRequest(tableName)
+                                    .addExtraWhereClauses(
+                                            new WhereClauses(AND)
+                                                    .addWhereGreaterThanClause(
+                                                            PRIMARY_COLUMN_NAME, lastRowId));
+                    rollupBuckets.addBucketsOf(db, insertedRows);
+                    activityDateCounts.addRowsOf(db, insertedRows, 1);
+                    rollupBuckets.recompute(db);
+                    activityDateCounts.apply(db);
                 });
     }
 
@@ -302,19 +439,38 @@ public final class TransactionManager {
      * @return the row ID of the newly inserted row or <code>-1</code> if an error occurred.
      */
     public long insertOrIgnoreOnConflict(SQLiteDatabase db, UpsertTableRequest request) {
-        long rowId =
-                db.insertWithOnConflict(
-                        request.getTable(),
-                        null,
-                        request.getContentValues(),
-                        SQLiteDatabase.CONFLICT_IGNORE);
+        AggregateRollupHelper.PendingBuckets rollupBuckets =
+                new AggregateRollupHelper.PendingBuckets(mInternalHealthConnectMappings);
+        ActivityDateHelper.PendingCounts activityDateCounts =
+                new ActivityDateHelper.PendingCounts(mInternalHealthConnectMappings);
+        long rowId;
+        try (InsertStatementCache statements = new InsertStatementCache(db)) {
+            rowId =
+                    insertOrIgnoreOnConflict(
+                            db, request, rollupBuckets, activityDateCounts, statements);
+        }
+        rollupBuckets.recompute(db);
+        activityDateCounts.apply(db);
+        return rowId;
+    }
+
+    private long insertOrIgnoreOnConflict(
+            SQLiteDatabase db,
+            UpsertTableRequest request,
+            AggregateRollupHelper.PendingBuckets rollupBuckets,
+            ActivityDateHelper.PendingCounts activityDateCounts,
+            InsertStatementCache statements) {
+        long rowId = statements.insert(request, SQLiteDatabase.CONFLICT_IGNORE);
 
         if (rowId != -1) {
-            request.getChildTableRequests()
-                    .forEach(childRequest -> insert(db, childRequest.withParentKey(rowId)));
+            for (UpsertTableRequest childRequest : request.getChildTableRequests()) {
+                insert(db, childRequest.withParentKey(rowId), statements);
+            }
             for (String postUpsertCommand : request.getPostUpsertCommands()) {
                 db.execSQL(postUpsertCommand);
             }
+            rollupBuckets.addBucketsOf(db, request);
+            activityDateCounts.addInserted(request);
         }
 
         return rowId;
@@ -339,6 +495,10 @@ public final class TransactionManager {
                 new ChangeLogsHelper.ChangeLogs(OPERATION_TYPE_DELETE, currentTime);
         ChangeLogsHelper.ChangeLogs modificationChangelogs =
                 new ChangeLogsHelper.ChangeLogs(OPERATION_TYPE_UPSERT, currentTime);
+        AggregateRollupHelper.PendingBuckets rollupBuckets =
+                new AggregateRollupHelper.PendingBuckets(mInternalHealthConnectMappings);
+        ActivityDateHelper.PendingCounts activityDateCounts =
+                new ActivityDateHelper.PendingCounts(mInternalHealthConnectMappings);
 
         return runAsTransaction(
                 db -> {
@@ -353,8 +513,7 @@ public final class TransactionManager {
                             Delete request needs UUID before the entry can be
                             deleted, fetch and set it in {@code request}
                             */
-                            try (Cursor cursor =
-                                    db.rawQuery(deleteTableRequest.getReadCommand(), null)) {
+                            try (Cursor cursor = readForDelete(db, deleteTableRequest)) {
                                 int numberOfUuidsToDelete = 0;
                                 while (cursor.moveToNext()) {
                                     String packageColumnName =
@@ -413,8 +572,12 @@ public final class TransactionManager {
                             innerRequestRecordsDeleted = ids.size();
                         }
                         numberOfRecordsDeleted += innerRequestRecordsDeleted;
-                        db.execSQL(deleteTableRequest.getDeleteCommand());
+                        rollupBuckets.addBucketsOf(db, deleteTableRequest);
+                        activityDateCounts.addRowsOf(db, deleteTableRequest);
+                        delete(db, deleteTableRequest);
                     }
+                    rollupBuckets.recompute(db);
+                    activityDateCounts.apply(db);
 
                     for (UpsertTableRequest insertRequestsForChangeLog :
                             deletionChangelogs.getUpsertTableRequests()) {
@@ -444,10 +607,18 @@ public final class TransactionManager {
             AccessLogsHelper accessLogsHelper,
             boolean shouldRecordAccessLog) {
         final SQLiteDatabase db = getReadableDb();
-        try (Cursor cursor = db.rawQuery(aggregateTableRequest.getAggregationCommand(), null);
-                Cursor metaDataCursor =
-                        db.rawQuery(
-                                aggregateTableRequest.getCommandToFetchAggregateMetadata(), null)) {
+        SqlWithArgs aggregationCommand;
+        SqlWithArgs metadataCommand;
+        if (Flags.boundSqlArgs()) {
+            aggregationCommand = aggregateTableRequest.getAggregationCommandWithArgs();
+            metadataCommand = aggregateTableRequest.getCommandToFetchAggregateMetadataWithArgs();
+        } else {
+            aggregationCommand = new SqlWithArgs(aggregateTableRequest.getAggregationCommand());
+            metadataCommand =
+                    new SqlWithArgs(aggregateTableRequest.getCommandToFetchAggregateMetadata());
+        }
+        try (Cursor cursor = aggregationCommand.query(db);
+                Cursor metaDataCursor = metadataCommand.query(db)) {
             aggregateTableRequest.onResultsFetched(cursor, metaDataCursor);
         }
         if (Flags.addMissingAccessLogs() && shouldRecordAccessLog) {
@@ -455,6 +626,30 @@ public final class TransactionManager {
         }
     }
 
+    /**
+     * Same as {@link #populateWithAggregation}, for the requests of a {@link
+     * FusedAggregateRequest} with a single query.
+     */
+    public void populateWithFusedAggregation(
+            FusedAggregateRequest fusedAggregateRequest,
+            String packageName,
+            Set<Integer> recordTypeIds,
+            AccessLogsHelper accessLogsHelper,
+            boolean shouldRecordAccessLog) {
+        final SQLiteDatabase db = getReadableDb();
+        SqlWithArgs aggregationCommand =
+                Flags.boundSqlArgs()
+                        ? fusedAggregateRequest.getAggregationCommandWithArgs()
+                        : new SqlWithArgs(fusedAggregateRequest.getAggregationCommand());
+        try (Cursor cursor = aggregationCommand.query(db)) {
+            fusedAggregateRequest.onResultsFetched(cursor);
+        }
+        if (Flags.addMissingAccessLogs() && shouldRecordAccessLog) {
+            // The database the query ran on, so that a buffered log is kept for that database.
+            accessLogsHelper.recordReadAccessLog(db, packageName, recordTypeIds);
+        }
+    }
+
     /**
      * Reads the records {@link RecordInternal} stored in the HealthConnect database.
      *
@@ -570,10 +765,7 @@ public final class TransactionManager {
 
     /** Note: It is the responsibility of the caller to close the returned cursor */
     public Cursor read(ReadTableRequest request) {
-        if (Constants.DEBUG) {
-            Slog.d(TAG, "Read query: " + request.getReadCommand());
-        }
-        return getReadableDb().rawQuery(request.getReadCommand(), null);
+        return read(getReadableDb(), request);
     }
 
     /** Returns the count of rows that would be returned by the given request. */
@@ -588,11 +780,14 @@ public final class TransactionManager {
      * transaction.
      */
     public static int count(ReadTableRequest request, SQLiteDatabase db) {
-        String countSql = request.getCountCommand();
+        SqlWithArgs countSql =
+                Flags.boundSqlArgs()
+                        ? request.getCountCommandWithArgs()
+                        : new SqlWithArgs(request.getCountCommand());
         if (Constants.DEBUG) {
             Slog.d(TAG, "Count query: " + countSql);
         }
-        try (Cursor cursor = db.rawQuery(countSql, null)) {
+        try (Cursor cursor = countSql.query(db)) {
             if (cursor.moveToFirst()) {
                 return cursor.getInt(0);
             } else {
@@ -621,10 +816,14 @@ public final class TransactionManager {
      * @param request a {@link ReadTableRequest}.
      */
     public Cursor read(SQLiteDatabase db, ReadTableRequest request) {
+        SqlWithArgs readSql =
+                Flags.boundSqlArgs()
+                        ? request.getReadCommandWithArgs()
+                        : new SqlWithArgs(request.getReadCommand());
         if (Constants.DEBUG) {
-            Slog.d(TAG, "Read query: " + request.getReadCommand());
+            Slog.d(TAG, "Read query: " + readSql);
         }
-        return db.rawQuery(request.getReadCommand(), null);
+        return readSql.query(db);
     }
 
     public long getLastRowIdFor(String tableName) {
@@ -671,7 +870,19 @@ public final class TransactionManager {
      * @param request the request specifying what to delete
      */
     public void delete(SQLiteDatabase db, DeleteTableRequest request) {
-        db.execSQL(request.getDeleteCommand());
+        if (Flags.boundSqlArgs()) {
+            request.getDeleteCommandWithArgs().execute(db);
+        } else {
+            db.execSQL(request.getDeleteCommand());
+        }
+    }
+
+    /** Reads the ids and app info ids of the rows that {@code request} deletes. */
+    private static Cursor readForDelete(SQLiteDatabase db, DeleteTableRequest request) {
+        if (Flags.boundSqlArgs()) {
+            return request.getReadCommandWithArgs().query(db);
+        }
+        return db.rawQuery(request.getReadCommand(), null);
     }
 
     /**
@@ -688,6 +899,10 @@ public final class TransactionManager {
                 new ChangeLogsHelper.ChangeLogs(OPERATION_TYPE_UPSERT, currentTime);
         ChangeLogsHelper.ChangeLogs modificationChangelogs =
                 new ChangeLogsHelper.ChangeLogs(OPERATION_TYPE_UPSERT, currentTime);
+        AggregateRollupHelper.PendingBuckets rollupBuckets =
+                new AggregateRollupHelper.PendingBuckets(mInternalHealthConnectMappings);
+        ActivityDateHelper.PendingCounts activityDateCounts =
+                new ActivityDateHelper.PendingCounts(mInternalHealthConnectMappings);
         runAsTransaction(
                 db -> {
                     for (UpsertTableRequest upsertRequest : request.getUpsertRequests()) {
@@ -702,8 +917,14 @@ public final class TransactionManager {
                                         upsertRequest.getRecordInternal().getPackageName()),
                                 upsertRequest,
                                 modificationChangelogs);
+                        rollupBuckets.addBucketsOf(db, upsertRequest);
+                        activityDateCounts.addRowsOf(db, upsertRequest, -1);
                         updateRecord(db, upsertRequest);
+                        rollupBuckets.addBucketsOf(db, upsertRequest);
+                        activityDateCounts.addRowsOf(db, upsertRequest, 1);
                     }
+                    rollupBuckets.recompute(db);
+                    activityDateCounts.apply(db);
 
                     for (UpsertTableRequest insertRequestsForChangeLog :
                             updateChangelogs.getUpsertTableRequests()) {
@@ -734,12 +955,7 @@ public final class TransactionManager {
                     mInternalHealthConnectMappings.getRecordHelper(recordType);
             HashSet<Long> packageIds = new HashSet<>();
             try (Cursor cursorForDistinctPackageNames =
-                    db.rawQuery(
-                            /* sql query */
-                            recordHelper
-                                    .getReadTableRequestWithDistinctAppInfoIds()
-                                    .getReadCommand(),
-                            /* selectionArgs */ null)) {
+                    read(db, recordHelper.getReadTableRequestWithDistinctAppInfoIds())) {
                 if (cursorForDistinctPackageNames.getCount() > 0) {
                     while (cursorForDistinctPackageNames.moveToNext()) {
                         packageIds.add(
@@ -763,9 +979,19 @@ public final class TransactionManager {
      */
     public void deleteWithoutChangeLogs(List<DeleteTableRequest> deleteTableRequests) {
         requireNonNull(deleteTableRequests);
+        AggregateRollupHelper.PendingBuckets rollupBuckets =
+                new AggregateRollupHelper.PendingBuckets(mInternalHealthConnectMappings);
+        ActivityDateHelper.PendingCounts activityDateCounts =
+                new ActivityDateHelper.PendingCounts(mInternalHealthConnectMappings);
         runAsTransaction(
                 db -> {
-                    deleteTableRequests.forEach(request -> db.execSQL(request.getDeleteCommand()));
+                    for (DeleteTableRequest request : deleteTableRequests) {
+                        rollupBuckets.addBucketsOf(db, request);
+                        activityDateCounts.addRowsOf(db, request);
+                        delete(db, request);
+                    }
+                    rollupBuckets.recompute(db);
+                    activityDateCounts.apply(db);
                 });
     }
 
@@ -848,6 +1074,27 @@ public final class TransactionManager {
         return mHealthConnectDatabase.getDatabasePath();
     }
 
+    /**
+     * Writes a consistent copy of the database to {@code destination}, which must not exist.
+     *
+     * <p>Unlike copying the database file, this includes the changes not yet checkpointed from the
+     * write-ahead log and leaves out free pages.
+     *
+     * <p>{@code VACUUM INTO} isn't a read-only statement as far as {@link SQLiteDatabase} is
+     * concerned, so on the shared database it would run on the primary connection and hold up
+     * every writer until the copy is done. It's run on a separate read-only connection instead,
+     * which only holds a read transaction on the write-ahead log while copying.
+     */
+    public void copyDatabaseTo(File destination) {
+        try (SQLiteDatabase db =
+                SQLiteDatabase.openDatabase(
+                        getDatabasePath().getPath(),
+                        /* factory= */ null,
+                        SQLiteDatabase.OPEN_READONLY)) {
+            db.execSQL("VACUUM INTO ?", new Object[] {destination.getAbsolutePath()});
+        }
+    }
+
     public void updateTable(UpsertTableRequest upsertTableRequest) {
         getWritableDb()
                 .update(
@@ -896,15 +1143,16 @@ public final class TransactionManager {
             return;
         }
 
-        try (Cursor cursor =
-                db.rawQuery(request.getReadRequestUsingUpdateClause().getReadCommand(), null)) {
+        try (Cursor cursor = read(db, request.getReadRequestUsingUpdateClause())) {
             if (!cursor.moveToFirst()) {
                 throw new HealthConnectException(
                         ERROR_INTERNAL, "Expected to read an entry for update, but none found");
             }
             final long rowId = StorageUtils.getCursorLong(cursor, request.getRowIdColName());
             deleteChildTableRequest(request, rowId, db);
-            insertChildTableRequest(request, rowId, db);
+            try (InsertStatementCache statements = new InsertStatementCache(db)) {
+                insertChildTableRequest(request, rowId, statements);
+            }
         }
     }
 
@@ -917,20 +1165,33 @@ public final class TransactionManager {
         if (request.getExtraReadRequests() == null) {
             return;
         }
+        if (Flags.pipelinedRecordReads() && records.isEmpty()) {
+            return;
+        }
         for (ReadTableRequest extraDataRequest : request.getExtraReadRequests()) {
-            Cursor cursorExtraData = read(extraDataRequest);
             RecordHelper<?> recordHelper = request.getRecordHelper();
             if (recordHelper == null) {
                 throw new IllegalArgumentException(
                         "Extra read request with no attached record helper.");
             }
-            recordHelper.updateInternalRecordsWithExtraFields(
-                    records, cursorExtraData, extraDataRequest.getTableName());
+            if (Flags.pipelinedRecordReads()) {
+                // Without this the extra data of every record matching the filter is read, not
+                // only of the records on this page.
+                extraDataRequest =
+                        recordHelper.getExtraDataReadRequestForRecords(extraDataRequest, records);
+            }
+            try (Cursor cursorExtraData = read(extraDataRequest)) {
+                recordHelper.updateInternalRecordsWithExtraFields(
+                        records, cursorExtraData, extraDataRequest.getTableName());
+            }
         }
     }
 
     private long updateEntriesIfRequired(
-            SQLiteDatabase db, UpsertTableRequest request, Cursor cursor) {
+            SQLiteDatabase db,
+            UpsertTableRequest request,
+            Cursor cursor,
+            InsertStatementCache statements) {
         if (!request.requiresUpdate(cursor, request)) {
             return -1;
         }
@@ -948,7 +1209,7 @@ public final class TransactionManager {
         }
         final long rowId = StorageUtils.getCursorLong(cursor, request.getRowIdColName());
         deleteChildTableRequest(request, rowId, db);
-        insertChildTableRequest(request, rowId, db);
+        insertChildTableRequest(request, rowId, statements);
 
         return rowId;
     }
@@ -959,18 +1220,22 @@ public final class TransactionManager {
                 request.getChildTablesWithRowsToBeDeletedDuringUpdate()) {
             DeleteTableRequest deleteTableRequest =
                     new DeleteTableRequest(childTableAndColumn.getTableName())
-                            .setId(childTableAndColumn.getColumnName(), String.valueOf(rowId));
-            db.execSQL(deleteTableRequest.getDeleteCommand());
+                            .addExtraWhereClauses(
+                                    new WhereClauses(AND)
+                                            .addWhereInLongsClause(
+                                                    childTableAndColumn.getColumnName(),
+                                                    List.of(rowId)));
+            delete(db, deleteTableRequest);
         }
     }
 
-    private void insertChildTableRequest(
-            UpsertTableRequest request, long rowId, SQLiteDatabase db) {
+    private static void insertChildTableRequest(
+            UpsertTableRequest request, long rowId, InsertStatementCache statements) {
         for (UpsertTableRequest childTableRequest : request.getChildTableRequests()) {
-            String tableName = childTableRequest.getTable();
-            ContentValues contentValues = childTableRequest.withParentKey(rowId).getContentValues();
-            long childRowId = db.insertOrThrow(tableName, null, contentValues);
-            insertChildTableRequest(childTableRequest, childRowId, db);
+            long childRowId =
+                    statements.insert(
+                            childTableRequest.withParentKey(rowId), SQLiteDatabase.CONFLICT_NONE);
+            insertChildTableRequest(childTableRequest, childRowId, statements);
         }
     }
 
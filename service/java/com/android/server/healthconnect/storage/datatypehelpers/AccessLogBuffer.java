@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import android.content.ContentValues;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Holds access log rows in memory until they're written to {@link AccessLogsHelper#TABLE_NAME}.
+ *
+ * <p>Rows which only differ in their access time are coalesced into the latest one. The rows are
+ * kept for the database they were read from, and are only handed out to be written to that same
+ * database. Rows of another database, such as the one of the previous user, are discarded.
+ *
+ * @hide
+ */
+final class AccessLogBuffer {
+    private final int mCapacity;
+    private final String mAccessTimeColumnName;
+    // Rows keyed by their values other than the access time, oldest first.
+    private final LinkedHashMap<ContentValues, ContentValues> mRows = new LinkedHashMap<>();
+    // Path of the database the rows were read from, null while there are no rows.
+    private String mDatabasePath;
+    private boolean mIsDrainPending;
+    private boolean mIsFullDrainPending;
+
+    AccessLogBuffer(int capacity, String accessTimeColumnName) {
+        mCapacity = capacity;
+        mAccessTimeColumnName = accessTimeColumnName;
+    }
+
+    /**
+     * Adds a row read from the database at {@code databasePath} to the buffer. The rows of another
+     * database are discarded.
+     *
+     * @return whether the caller has to arrange for {@link #drain} to be called, which is the case
+     *     for the first row added since the last drain, and again once the buffer holds {@code
+     *     capacity} rows
+     */
+    synchronized boolean add(String databasePath, ContentValues row) {
+        if (!databasePath.equals(mDatabasePath)) {
+            clear();
+            mDatabasePath = databasePath;
+        }
+        ContentValues key = new ContentValues(row);
+        key.remove(mAccessTimeColumnName);
+        mRows.remove(key);
+        mRows.put(key, row);
+
+        boolean shouldScheduleDrain = !mIsDrainPending;
+        mIsDrainPending = true;
+        if (mRows.size() >= mCapacity && !mIsFullDrainPending) {
+            mIsFullDrainPending = true;
+            shouldScheduleDrain = true;
+        }
+        return shouldScheduleDrain;
+    }
+
+    /** Returns whether there are no rows. */
+    synchronized boolean isEmpty() {
+        return mRows.isEmpty();
+    }
+
+    /**
+     * Removes and returns all rows, oldest first, if they were read from the database at {@code
+     * databasePath}. Otherwise discards them and returns an empty list.
+     */
+    synchronized List<ContentValues> drain(String databasePath) {
+        List<ContentValues> rows =
+                Objects.equals(databasePath, mDatabasePath)
+                        ? new ArrayList<>(mRows.values())
+                        : Collections.emptyList();
+        clear();
+        return rows;
+    }
+
+    /** Discards all rows. */
+    synchronized void clear() {
+        mRows.clear();
+        mDatabasePath = null;
+        mIsDrainPending = false;
+        mIsFullDrainPending = false;
+    }
+}
@@ -47,7 +47,9 @@ import android.util.Pair;
 import android.util.Slog;
 
 import com.android.healthfitness.flags.AconfigFlagHelper;
+import com.android.healthfitness.flags.Flags;
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.healthconnect.HealthConnectThreadScheduler;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.request.AlterTableRequest;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
@@ -86,9 +88,12 @@ public final class AccessLogsHelper extends DatabaseHelper {
 
     private static final int NUM_COLS = 5;
     private static final int DEFAULT_ACCESS_LOG_TIME_PERIOD_IN_DAYS = 7;
+    private static final int READ_ACCESS_LOG_BUFFER_CAPACITY = 256;
 
     private final TransactionManager mTransactionManager;
     private final AppInfoHelper mAppInfoHelper;
+    private final AccessLogBuffer mReadAccessLogBuffer =
+            new AccessLogBuffer(READ_ACCESS_LOG_BUFFER_CAPACITY, ACCESS_TIME_COLUMN_NAME);
 
     public AccessLogsHelper(
             TransactionManager transactionManager,
@@ -107,6 +112,7 @@ public final class AccessLogsHelper extends DatabaseHelper {
      * @return AccessLog list
      */
     public List<AccessLog> queryAccessLogs() {
+        flushReadAccessLogs();
         final ReadTableRequest readTableRequest = new ReadTableRequest(TABLE_NAME);
 
         List<AccessLog> accessLogsList = new ArrayList<>();
@@ -157,6 +163,7 @@ public final class AccessLogsHelper extends DatabaseHelper {
      * access log.
      */
     public long getLatestUpsertOrReadOperationAccessLogTimeStamp() {
+        flushReadAccessLogs();
         final ReadTableRequest readTableRequest =
                 new ReadTableRequest(TABLE_NAME)
                         .setWhereClause(
@@ -222,6 +229,10 @@ public final class AccessLogsHelper extends DatabaseHelper {
         UpsertTableRequest request =
                 getUpsertTableRequestForPhr(
                         appInfoId, medicalResourceTypes, operationType, accessedMedicalDataSource);
+        if (operationType == OPERATION_TYPE_READ && Flags.bufferedReadAccessLogs()) {
+            bufferReadAccessLog(db, request.getContentValues());
+            return;
+        }
         mTransactionManager.insert(db, request);
     }
 
@@ -284,10 +295,48 @@ public final class AccessLogsHelper extends DatabaseHelper {
         }
         ContentValues contentValues =
                 populateCommonColumns(appInfoId, recordTypeIds.stream().toList(), operationType);
+        if (operationType == OPERATION_TYPE_READ && Flags.bufferedReadAccessLogs()) {
+            bufferReadAccessLog(db, contentValues);
+            return;
+        }
         UpsertTableRequest request = new UpsertTableRequest(TABLE_NAME, contentValues);
         mTransactionManager.insert(db, request);
     }
 
+    /**
+     * Writes the buffered access logs of reads in one transaction.
+     *
+     * <p>Reads don't write their access logs themselves when {@link
+     * Flags#bufferedReadAccessLogs()} is enabled, so that they don't wait for the write lock.
+     * Instead the logs are buffered, and identical logs coalesced, until this runs on the internal
+     * executor, which happens soon after the first log is buffered and again if too many are
+     * buffered. It also runs before the access logs are queried, and has to run before the
+     * database of the user is closed or the system shuts down, see {@code
+     * HealthConnectManagerService}.
+     *
+     * <p>The logs are only written to the database they were read from. Logs of reads still
+     * running on the database of the previous user when it was closed are discarded.
+     */
+    public void flushReadAccessLogs() {
+        if (mReadAccessLogBuffer.isEmpty()) {
+            return;
+        }
+        mTransactionManager.runAsTransaction(
+                (TransactionManager.TransactionRunnable<RuntimeException>)
+                        db -> {
+                            for (ContentValues row : mReadAccessLogBuffer.drain(db.getPath())) {
+                                mTransactionManager.insert(
+                                        db, new UpsertTableRequest(TABLE_NAME, row));
+                            }
+                        });
+    }
+
+    private void bufferReadAccessLog(SQLiteDatabase db, ContentValues row) {
+        if (mReadAccessLogBuffer.add(db.getPath(), row)) {
+            HealthConnectThreadScheduler.scheduleInternalTask(this::flushReadAccessLogs);
+        }
+    }
+
     @VisibleForTesting
     static ContentValues populateCommonColumns(
             long appInfoId,
@@ -352,6 +401,15 @@ public final class AccessLogsHelper extends DatabaseHelper {
                 Pair.create(MEDICAL_DATA_SOURCE_ACCESSED_COLUMN_NAME, INTEGER));
     }
 
+    /**
+     * Discards the buffered access logs of reads, which on a user switch were buffered by reads
+     * that were still running after they were flushed, and belong to the previous user.
+     */
+    @Override
+    protected void clearCache() {
+        mReadAccessLogBuffer.clear();
+    }
+
     @Override
     protected String getMainTableName() {
         return TABLE_NAME;
@@ -16,19 +16,28 @@
 
 package com.android.server.healthconnect.storage.datatypehelpers;
 
+import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER_NOT_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.PRIMARY_AUTOINCREMENT;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.checkColumnExists;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.checkTableExists;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
 import static com.android.server.healthconnect.storage.utils.WhereClauses.LogicalOperator.AND;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.health.connect.datatypes.Record;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.internal.datatypes.utils.HealthConnectMappings;
+import android.util.ArrayMap;
 import android.util.Pair;
 
+import androidx.annotation.Nullable;
+
+import com.android.healthfitness.flags.AconfigFlagHelper;
 import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.request.AlterTableRequest;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
@@ -40,21 +49,30 @@ import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 /**
  * Helper for Activity Date Table. The table maps a record to a date on which there was a db write
  * for that record
  *
+ * <p>When {@link #isCounted()}, the table also counts the records of each type on each day. The
+ * counts are updated inside the transaction of every write, see {@link PendingCounts}, so that the
+ * daily resync only has to repair the days whose count drifted from the record tables.
+ *
  * @hide
  */
 public final class ActivityDateHelper extends DatabaseHelper {
     private static final String TABLE_NAME = "activity_date_table";
     private static final String EPOCH_DAYS_COLUMN_NAME = "epoch_days";
     private static final String RECORD_TYPE_ID_COLUMN_NAME = "record_type_id";
+    private static final String RECORD_COUNT_COLUMN_NAME = "record_count";
 
     private final TransactionManager mTransactionManager;
     private final InternalHealthConnectMappings mInternalHealthConnectMappings;
@@ -77,6 +95,53 @@ public final class ActivityDateHelper extends DatabaseHelper {
                 .addUniqueConstraints(List.of(EPOCH_DAYS_COLUMN_NAME, RECORD_TYPE_ID_COLUMN_NAME));
     }
 
+    /** Returns whether the table counts records, which then have to be kept up to date. */
+    public static boolean isCounted() {
+        return AconfigFlagHelper.isActivityDateCountsDbEnabled();
+    }
+
+    /**
+     * Database migration. Adds the record count column to the table, and counts the records of each
+     * day of {@code recordHelpers}.
+     */
+    public static void applyRecordCountsUpgrade(
+            SQLiteDatabase db, Collection<RecordHelper<?>> recordHelpers) {
+        if (!checkColumnExists(db, TABLE_NAME, RECORD_COUNT_COLUMN_NAME)) {
+            // ALTER TABLE ... ADD COLUMN is not idempotent.
+            List<Pair<String, String>> columnInfo =
+                    List.of(new Pair<>(RECORD_COUNT_COLUMN_NAME, INTEGER));
+            for (String command :
+                    new AlterTableRequest(TABLE_NAME, columnInfo)
+                            .getAlterTableAddColumnsCommands()) {
+                db.execSQL(command);
+            }
+        }
+
+        for (RecordHelper<?> recordHelper : recordHelpers) {
+            if (!checkTableExists(db, recordHelper.getMainTableName())) {
+                continue;
+            }
+            db.execSQL(
+                    "DELETE FROM "
+                            + TABLE_NAME
+                            + " WHERE "
+                            + RECORD_TYPE_ID_COLUMN_NAME
+                            + " = "
+                            + recordHelper.getRecordIdentifier());
+            db.execSQL(
+                    "INSERT INTO "
+                            + TABLE_NAME
+                            + " ("
+                            + EPOCH_DAYS_COLUMN_NAME
+                            + ", "
+                            + RECORD_TYPE_ID_COLUMN_NAME
+                            + ", "
+                            + RECORD_COUNT_COLUMN_NAME
+                            + ") "
+                            + getCountByDayCommand(recordHelper, /* whereClause= */ ""));
+        }
+    }
+
     @Override
     protected String getMainTableName() {
         return TABLE_NAME;
@@ -123,8 +188,18 @@ public final class ActivityDateHelper extends DatabaseHelper {
         reSyncByRecordTypeIds(recordTypeIds);
     }
 
-    /** Updates the activity dates cache for the given record IDs */
+    /**
+     * Updates the activity dates cache for the given record IDs.
+     *
+     * <p>When {@link #isCounted()}, only the days whose stored count differs from the record table
+     * are rewritten, and no write transaction is started if there are none.
+     */
     public void reSyncByRecordTypeIds(List<Integer> recordTypeIds) {
+        if (isCounted()) {
+            reSyncRecordCounts(recordTypeIds);
+            return;
+        }
+
         List<UpsertTableRequest> upsertTableRequests = new ArrayList<>();
 
         DeleteTableRequest deleteTableRequest =
@@ -153,6 +228,160 @@ public final class ActivityDateHelper extends DatabaseHelper {
                 });
     }
 
+    private void reSyncRecordCounts(List<Integer> recordTypeIds) {
+        // Record type id -> epoch days whose stored count drifted.
+        Map<Integer, Set<Long>> driftedDays = new ArrayMap<>();
+        for (int recordTypeId : recordTypeIds) {
+            RecordHelper<?> recordHelper =
+                    mInternalHealthConnectMappings.getRecordHelper(recordTypeId);
+            Map<Long, Long> actualCounts;
+            try (Cursor cursor =
+                    mTransactionManager.rawQuery(
+                            getCountByDayCommand(recordHelper, /* whereClause= */ ""), null)) {
+                actualCounts = readCounts(cursor);
+            }
+            Map<Long, Long> storedCounts;
+            try (Cursor cursor =
+                    mTransactionManager.rawQuery(getStoredCountsCommand(recordTypeId), null)) {
+                storedCounts = readCounts(cursor);
+            }
+
+            Set<Long> days = new TreeSet<>();
+            actualCounts.forEach(
+                    (epochDay, count) -> {
+                        if (!count.equals(storedCounts.get(epochDay))) {
+                            days.add(epochDay);
+                        }
+                    });
+            for (long epochDay : storedCounts.keySet()) {
+                if (!actualCounts.containsKey(epochDay)) {
+                    days.add(epochDay);
+                }
+            }
+            if (!days.isEmpty()) {
+                driftedDays.put(recordTypeId, days);
+            }
+        }
+        if (driftedDays.isEmpty()) {
+            return;
+        }
+
+        mTransactionManager.runAsTransaction(
+                db -> {
+                    for (Map.Entry<Integer, Set<Long>> entry : driftedDays.entrySet()) {
+                        RecordHelper<?> recordHelper =
+                                mInternalHealthConnectMappings.getRecordHelper(entry.getKey());
+                        // Recounted, since the records may have been written since the check.
+                        String whereClause =
+                                " WHERE "
+                                        + recordHelper.getPeriodGroupByColumnName()
+                                        + " IN ("
+                                        + entry.getValue().stream()
+                                                .map(String::valueOf)
+                                                .collect(Collectors.joining(", "))
+                                        + ")";
+                        String command = getCountByDayCommand(recordHelper, whereClause);
+                        Map<Long, Long> counts;
+                        try (Cursor cursor = db.rawQuery(command, null)) {
+                            counts = readCounts(cursor);
+                        }
+                        for (long epochDay : entry.getValue()) {
+                            long count = counts.getOrDefault(epochDay, 0L);
+                            setRecordCount(db, entry.getKey(), epochDay, count);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Returns a query of the number of records of each day of {@code recordHelper}, with the
+     * columns of this table.
+     */
+    private static String getCountByDayCommand(RecordHelper<?> recordHelper, String whereClause) {
+        String dateColumnName = recordHelper.getPeriodGroupByColumnName();
+        return "SELECT "
+                + dateColumnName
+                + " AS "
+                + EPOCH_DAYS_COLUMN_NAME
+                + ", "
+                + recordHelper.getRecordIdentifier()
+                + " AS "
+                + RECORD_TYPE_ID_COLUMN_NAME
+                + ", COUNT(*) AS "
+                + RECORD_COUNT_COLUMN_NAME
+                + " FROM "
+                + recordHelper.getMainTableName()
+                + whereClause
+                + " GROUP BY "
+                + dateColumnName;
+    }
+
+    private static String getStoredCountsCommand(int recordTypeId) {
+        return "SELECT "
+                + EPOCH_DAYS_COLUMN_NAME
+                + ", "
+                + RECORD_COUNT_COLUMN_NAME
+                + " FROM "
+                + TABLE_NAME
+                + " WHERE "
+                + RECORD_TYPE_ID_COLUMN_NAME
+                + " = "
+                + recordTypeId;
+    }
+
+    /** Reads the epoch day -> record count rows of a cursor, a null count is read as 0. */
+    private static Map<Long, Long> readCounts(Cursor cursor) {
+        Map<Long, Long> counts = new HashMap<>();
+        while (cursor.moveToNext()) {
+            counts.put(
+                    getCursorLong(cursor, EPOCH_DAYS_COLUMN_NAME),
+                    getCursorLong(cursor, RECORD_COUNT_COLUMN_NAME));
+        }
+        return counts;
+    }
+
+    private static void setRecordCount(
+            SQLiteDatabase db, int recordTypeId, long epochDay, long recordCount) {
+        if (recordCount > 0) {
+            db.execSQL(
+                    getUpsertCountCommand("excluded." + RECORD_COUNT_COLUMN_NAME),
+                    new Object[] {epochDay, recordTypeId, recordCount});
+        } else {
+            db.execSQL(
+                    "DELETE FROM "
+                            + TABLE_NAME
+                            + " WHERE "
+                            + EPOCH_DAYS_COLUMN_NAME
+                            + " = ? AND "
+                            + RECORD_TYPE_ID_COLUMN_NAME
+                            + " = ?",
+                    new Object[] {epochDay, recordTypeId});
+        }
+    }
+
+    /**
+     * Returns a statement inserting the day, record type and count bound to it, or setting the
+     * count of the existing row to {@code countExpression}.
+     */
+    private static String getUpsertCountCommand(String countExpression) {
+        return "INSERT INTO "
+                + TABLE_NAME
+                + " ("
+                + EPOCH_DAYS_COLUMN_NAME
+                + ", "
+                + RECORD_TYPE_ID_COLUMN_NAME
+                + ", "
+                + RECORD_COUNT_COLUMN_NAME
+                + ") VALUES (?, ?, ?) ON CONFLICT ("
+                + EPOCH_DAYS_COLUMN_NAME
+                + ", "
+                + RECORD_TYPE_ID_COLUMN_NAME
+                + ") DO UPDATE SET "
+                + RECORD_COUNT_COLUMN_NAME
+                + " = "
+                + countExpression;
+    }
+
     private static List<Pair<String, String>> getColumnInfo() {
         return Arrays.asList(
                 new Pair<>(RecordHelper.PRIMARY_COLUMN_NAME, PRIMARY_AUTOINCREMENT),
@@ -216,8 +445,143 @@ public final class ActivityDateHelper extends DatabaseHelper {
 
     /** Creates UpsertTableRequest to insert into activity_date_table table from recordInternal. */
     public static UpsertTableRequest getUpsertTableRequest(RecordInternal<?> recordInternal) {
-        return getUpsertTableRequest(
-                recordInternal.getRecordType(),
-                ChronoUnit.DAYS.between(LocalDate.EPOCH, recordInternal.getLocalDate()));
+        return getUpsertTableRequest(recordInternal.getRecordType(), getEpochDay(recordInternal));
+    }
+
+    private static long getEpochDay(RecordInternal<?> recordInternal) {
+        return ChronoUnit.DAYS.between(LocalDate.EPOCH, recordInternal.getLocalDate());
+    }
+
+    /**
+     * Collects the changes of the record counts of each day by the writes of a transaction, and
+     * applies them before the transaction commits.
+     *
+     * <p>Rows about to be replaced or deleted must be added before the write, rows written after
+     * it. All methods are no-ops for tables other than record tables, or when the table isn't
+     * {@link #isCounted()}.
+     */
+    public static final class PendingCounts {
+        private final InternalHealthConnectMappings mInternalHealthConnectMappings;
+        private final boolean mIsCounted;
+
+        // Record type -> epoch day -> change of the record count.
+        private final Map<Integer, Map<Long, Long>> mDeltas = new ArrayMap<>();
+        private final Map<String, RecordHelper<?>> mRecordHelpersByTable = new ArrayMap<>();
+
+        public PendingCounts(InternalHealthConnectMappings internalHealthConnectMappings) {
+            mInternalHealthConnectMappings = internalHealthConnectMappings;
+            mIsCounted = isCounted();
+        }
+
+        /** Counts the record of {@code request}, which has just been inserted. */
+        public void addInserted(UpsertTableRequest request) {
+            RecordHelper<?> recordHelper = getRecordHelperFor(request.getTable());
+            RecordInternal<?> recordInternal = request.getRecordInternal();
+            if (recordHelper == null || recordInternal == null) {
+                return;
+            }
+            add(recordHelper.getRecordIdentifier(), getEpochDay(recordInternal), 1);
+        }
+
+        /** Adds {@code delta} to the count of each row matching the unique columns of request. */
+        public void addRowsOf(SQLiteDatabase db, UpsertTableRequest request, int delta) {
+            RecordHelper<?> recordHelper = getRecordHelperFor(request.getTable());
+            if (recordHelper == null) {
+                return;
+            }
+
+            String dateColumnName = recordHelper.getPeriodGroupByColumnName();
+            try (Cursor cursor = db.rawQuery(request.getReadRequest().getReadCommand(), null)) {
+                while (cursor.moveToNext()) {
+                    add(
+                            recordHelper.getRecordIdentifier(),
+                            getCursorLong(cursor, dateColumnName),
+                            delta);
+                }
+            }
+        }
+
+        /** Uncounts the rows currently matching {@code request}, which are about to be deleted. */
+        public void addRowsOf(SQLiteDatabase db, DeleteTableRequest request) {
+            addRowsOf(db, request, -1);
+        }
+
+        /**
+         * Adds {@code sign} times the count of the rows currently matching {@code request}, 1 for
+         * rows that have just been inserted and -1 for rows about to be deleted.
+         */
+        public void addRowsOf(SQLiteDatabase db, DeleteTableRequest request, int sign) {
+            RecordHelper<?> recordHelper = getRecordHelperFor(request.getTableName());
+            if (recordHelper == null) {
+                return;
+            }
+
+            try (Cursor cursor =
+                    db.rawQuery(
+                            getCountByDayCommand(recordHelper, request.getWhereCommand()), null)) {
+                for (Map.Entry<Long, Long> entry : readCounts(cursor).entrySet()) {
+                    add(
+                            recordHelper.getRecordIdentifier(),
+                            entry.getKey(),
+                            sign * entry.getValue());
+                }
+            }
+        }
+
+        /** Applies the changes to the table, and removes the days left without records. */
+        public void apply(SQLiteDatabase db) {
+            String addCountCommand =
+                    getUpsertCountCommand(
+                            "IFNULL("
+                                    + RECORD_COUNT_COLUMN_NAME
+                                    + ", 0) + excluded."
+                                    + RECORD_COUNT_COLUMN_NAME);
+            String deleteEmptyDayCommand =
+                    "DELETE FROM "
+                            + TABLE_NAME
+                            + " WHERE "
+                            + EPOCH_DAYS_COLUMN_NAME
+                            + " = ? AND "
+                            + RECORD_TYPE_ID_COLUMN_NAME
+                            + " = ? AND "
+                            + RECORD_COUNT_COLUMN_NAME
+                            + " <= 0";
+            mDeltas.forEach(
+                    (recordTypeId, deltas) ->
+                            deltas.forEach(
+                                    (epochDay, delta) -> {
+                                        if (delta == 0) {
+                                            return;
+                                        }
+                                        db.execSQL(
+                                                addCountCommand,
+                                                new Object[] {epochDay, recordTypeId, delta});
+                                        if (delta < 0) {
+                                            db.execSQL(
+                                                    deleteEmptyDayCommand,
+                                                    new Object[] {epochDay, recordTypeId});
+                                        }
+                                    }));
+            mDeltas.clear();
+        }
+
+        private void add(int recordTypeId, long epochDay, long delta) {
+            mDeltas.computeIfAbsent(recordTypeId, unused -> new ArrayMap<>())
+                    .merge(epochDay, delta, Long::sum);
+        }
+
+        @Nullable
+        private RecordHelper<?> getRecordHelperFor(String tableName) {
+            if (!mIsCounted) {
+                return null;
+            }
+            if (mRecordHelpersByTable.isEmpty()) {
+                for (RecordHelper<?> recordHelper :
+                        mInternalHealthConnectMappings.getRecordHelpers()) {
+                    mRecordHelpersByTable.put(recordHelper.getMainTableName(), recordHelper);
+                }
+            }
+            return mRecordHelpersByTable.get(tableName);
+        }
     }
 }
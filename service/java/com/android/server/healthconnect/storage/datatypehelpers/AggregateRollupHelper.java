@@ -0,0 +1,501 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.APP_INFO_ID_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.PRIMARY_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER_NOT_NULL;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.REAL;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.health.connect.Constants;
+import android.util.ArrayMap;
+import android.util.Pair;
+import android.util.Slog;
+
+import androidx.annotation.Nullable;
+
+import com.android.healthfitness.flags.AconfigFlagHelper;
+import com.android.server.healthconnect.storage.request.AggregateParams;
+import com.android.server.healthconnect.storage.request.CreateTableRequest;
+import com.android.server.healthconnect.storage.request.DeleteTableRequest;
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+import com.android.server.healthconnect.storage.utils.InternalHealthConnectMappings;
+import com.android.server.healthconnect.storage.utils.SqlJoin;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Helper for the aggregate rollup table, which keeps per record type, app and hour partial
+ * aggregates (sum, count, min and max) of the value aggregated by non-priority aggregations, so
+ * that long range aggregations only have to read raw rows for partial buckets at their edges.
+ *
+ * <p>Buckets are kept both for physical and for local time, since aggregations can be requested
+ * in either. A bucket is recomputed from the raw rows whenever a write touches it, inside the
+ * transaction of that write, see {@link PendingBuckets}. Record types opt in by overriding {@link
+ * RecordHelper#getRollupParams()}.
+ *
+ * @hide
+ */
+public final class AggregateRollupHelper {
+    public static final String TABLE_NAME = "aggregate_rollup_table";
+    public static final String RECORD_TYPE_COLUMN_NAME = "record_type";
+    public static final String USE_LOCAL_TIME_COLUMN_NAME = "use_local_time";
+    public static final String BUCKET_START_COLUMN_NAME = "bucket_start";
+    public static final String VALUE_SUM_COLUMN_NAME = "value_sum";
+    public static final String VALUE_COUNT_COLUMN_NAME = "value_count";
+    public static final String VALUE_MIN_COLUMN_NAME = "value_min";
+    public static final String VALUE_MAX_COLUMN_NAME = "value_max";
+    public static final String ZONE_OFFSET_COLUMN_NAME = "zone_offset";
+
+    public static final long BUCKET_SIZE_MILLIS = Duration.ofHours(1).toMillis();
+
+    private static final String TAG = "HealthConnectRollup";
+    private static final int NUM_COLS = 9;
+
+    // Keeps the statements recomputing buckets reasonably sized for bulk writes.
+    private static final int MAX_BUCKETS_PER_STATEMENT = 500;
+
+    private static final String PHYSICAL_BUCKET_ALIAS = "physical_bucket";
+    private static final String LOCAL_BUCKET_ALIAS = "local_bucket";
+
+    private AggregateRollupHelper() {}
+
+    /** Returns whether the rollup table exists and has to be kept up to date on writes. */
+    public static boolean isMaintained() {
+        return AconfigFlagHelper.isAggregateRollupsDbEnabled();
+    }
+
+    /** Returns a request to create the rollup table. */
+    public static CreateTableRequest getCreateTableRequest() {
+        return new CreateTableRequest(TABLE_NAME, getColumnInfo())
+                .addForeignKey(
+                        AppInfoHelper.TABLE_NAME,
+                        List.of(APP_INFO_ID_COLUMN_NAME),
+                        List.of(PRIMARY_COLUMN_NAME))
+                // Also serves as the index of the planner's reads, which filter on the record type
+                // and time kind and scan a range of buckets.
+                .addUniqueConstraints(
+                        List.of(
+                                RECORD_TYPE_COLUMN_NAME,
+                                USE_LOCAL_TIME_COLUMN_NAME,
+                                BUCKET_START_COLUMN_NAME,
+                                APP_INFO_ID_COLUMN_NAME));
+    }
+
+    /**
+     * Creates the rollup table and populates it from the existing records.
+     *
+     * <p>Idempotent, the rollups of each record type are rebuilt from scratch. This also brings the
+     * table back in sync after a module rollback, during which it wasn't maintained.
+     */
+    public static void onUpgrade(SQLiteDatabase db, Collection<RecordHelper<?>> recordHelpers) {
+        CreateTableRequest createTableRequest = getCreateTableRequest();
+        db.execSQL(createTableRequest.getCreateCommand());
+        createTableRequest.getCreateIndexStatements().forEach(db::execSQL);
+
+        for (RecordHelper<?> recordHelper : recordHelpers) {
+            AggregateParams params = recordHelper.getRollupParams();
+            if (params == null) {
+                continue;
+            }
+            db.execSQL(
+                    "DELETE FROM "
+                            + TABLE_NAME
+                            + " WHERE "
+                            + RECORD_TYPE_COLUMN_NAME
+                            + " = "
+                            + recordHelper.getRecordIdentifier());
+            for (boolean useLocalTime : new boolean[] {false, true}) {
+                db.execSQL(
+                        getRecomputeCommand(
+                                recordHelper, params, useLocalTime, /* condition= */ null));
+            }
+        }
+    }
+
+    /**
+     * Returns an SQL expression mapping the millisecond {@code timeColumnName} to the start of its
+     * bucket, rounding down for negative values too.
+     */
+    public static String getBucketStartExpression(String timeColumnName) {
+        return "("
+                + timeColumnName
+                + " - (("
+                + timeColumnName
+                + " % "
+                + BUCKET_SIZE_MILLIS
+                + ") + "
+                + BUCKET_SIZE_MILLIS
+                + ") % "
+                + BUCKET_SIZE_MILLIS
+                + ")";
+    }
+
+    /** Returns the start of the bucket containing {@code timeMillis}. */
+    public static long getBucketStart(long timeMillis) {
+        return Math.floorDiv(timeMillis, BUCKET_SIZE_MILLIS) * BUCKET_SIZE_MILLIS;
+    }
+
+    private static List<Pair<String, String>> getColumnInfo() {
+        List<Pair<String, String>> columnInfo = new ArrayList<>(NUM_COLS);
+        columnInfo.add(new Pair<>(RECORD_TYPE_COLUMN_NAME, INTEGER_NOT_NULL));
+        columnInfo.add(new Pair<>(USE_LOCAL_TIME_COLUMN_NAME, INTEGER_NOT_NULL));
+        columnInfo.add(new Pair<>(BUCKET_START_COLUMN_NAME, INTEGER_NOT_NULL));
+        columnInfo.add(new Pair<>(APP_INFO_ID_COLUMN_NAME, INTEGER_NOT_NULL));
+        columnInfo.add(new Pair<>(VALUE_SUM_COLUMN_NAME, REAL));
+        columnInfo.add(new Pair<>(VALUE_COUNT_COLUMN_NAME, INTEGER_NOT_NULL));
+        columnInfo.add(new Pair<>(VALUE_MIN_COLUMN_NAME, REAL));
+        columnInfo.add(new Pair<>(VALUE_MAX_COLUMN_NAME, REAL));
+        columnInfo.add(new Pair<>(ZONE_OFFSET_COLUMN_NAME, INTEGER));
+        return columnInfo;
+    }
+
+    private static String getTimeColumnName(RecordHelper<?> recordHelper, boolean useLocalTime) {
+        return useLocalTime
+                ? recordHelper.getLocalStartTimeColumnName()
+                : recordHelper.getStartTimeColumnName();
+    }
+
+    /**
+     * Returns the condition of the interval rows that are left out of the rollups of {@code
+     * useLocalTime}, or null for instant records.
+     *
+     * <p>Aggregations keep the interval rows that end at or after their start. A row that starts in
+     * a bucket read from the rollups passes that filter whenever it doesn't end before it starts,
+     * which can happen in local time when the end zone offset is smaller than the start one. Such
+     * rows are aggregated from the raw rows instead.
+     */
+    @Nullable
+    public static String getExcludedRowsCondition(
+            RecordHelper<?> recordHelper, boolean useLocalTime) {
+        String endTimeColumnName =
+                useLocalTime
+                        ? recordHelper.getLocalEndTimeColumnName()
+                        : recordHelper.getEndTimeColumnName();
+        if (endTimeColumnName == null) {
+            return null;
+        }
+        return endTimeColumnName + " < " + getTimeColumnName(recordHelper, useLocalTime);
+    }
+
+    /**
+     * Returns an INSERT ... SELECT statement aggregating the raw rows of {@code recordHelper} into
+     * buckets, restricted by {@code condition} if not null.
+     *
+     * <p>The zone offset of a bucket is the smallest one of its rows, for the bucket not to depend
+     * on the order SQLite reads the rows in.
+     */
+    private static String getRecomputeCommand(
+            RecordHelper<?> recordHelper,
+            AggregateParams params,
+            boolean useLocalTime,
+            @Nullable String condition) {
+        String valueColumnName = params.getColumnsToFetch().get(0);
+        String timeColumnName = getTimeColumnName(recordHelper, useLocalTime);
+        List<String> conditions = new ArrayList<>(2);
+        if (condition != null) {
+            conditions.add(condition);
+        }
+        String excludedRowsCondition = getExcludedRowsCondition(recordHelper, useLocalTime);
+        if (excludedRowsCondition != null) {
+            conditions.add("NOT (" + excludedRowsCondition + ")");
+        }
+        SqlJoin join = params.getJoin();
+        StringBuilder builder =
+                new StringBuilder("INSERT OR REPLACE INTO ")
+                        .append(TABLE_NAME)
+                        .append(" (")
+                        .append(RECORD_TYPE_COLUMN_NAME)
+                        .append(", ")
+                        .append(USE_LOCAL_TIME_COLUMN_NAME)
+                        .append(", ")
+                        .append(BUCKET_START_COLUMN_NAME)
+                        .append(", ")
+                        .append(APP_INFO_ID_COLUMN_NAME)
+                        .append(", ")
+                        .append(VALUE_SUM_COLUMN_NAME)
+                        .append(", ")
+                        .append(VALUE_COUNT_COLUMN_NAME)
+                        .append(", ")
+                        .append(VALUE_MIN_COLUMN_NAME)
+                        .append(", ")
+                        .append(VALUE_MAX_COLUMN_NAME)
+                        .append(", ")
+                        .append(ZONE_OFFSET_COLUMN_NAME)
+                        .append(") SELECT ")
+                        .append(recordHelper.getRecordIdentifier())
+                        .append(", ")
+                        .append(useLocalTime ? 1 : 0)
+                        .append(", ")
+                        .append(getBucketStartExpression(timeColumnName))
+                        .append(" AS ")
+                        .append(BUCKET_START_COLUMN_NAME)
+                        .append(", ")
+                        .append(APP_INFO_ID_COLUMN_NAME)
+                        .append(", ");
+        AggregateParams.PackedSampleSummary packedSampleSummary = params.getPackedSampleSummary();
+        if (packedSampleSummary != null) {
+            builder.append("SUM(")
+                    .append(packedSampleSummary.getSumExpression(valueColumnName))
+                    .append("), IFNULL(SUM(")
+                    .append(packedSampleSummary.getCountExpression(valueColumnName))
+                    .append("), 0), MIN(")
+                    .append(packedSampleSummary.getMinExpression(valueColumnName))
+                    .append("), MAX(")
+                    .append(packedSampleSummary.getMaxExpression(valueColumnName))
+                    .append("), ");
+        } else {
+            builder.append("SUM(")
+                    .append(valueColumnName)
+                    .append("), COUNT(")
+                    .append(valueColumnName)
+                    .append("), MIN(")
+                    .append(valueColumnName)
+                    .append("), MAX(")
+                    .append(valueColumnName)
+                    .append("), ");
+        }
+        builder.append("MIN(")
+                .append(recordHelper.getZoneOffsetColumnName())
+                .append(") FROM ")
+                .append(params.getTableName());
+        if (join != null) {
+            builder.append(join.getJoinCommand());
+        }
+        if (!conditions.isEmpty()) {
+            builder.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        return builder.append(" GROUP BY ")
+                .append(APP_INFO_ID_COLUMN_NAME)
+                .append(", ")
+                .append(BUCKET_START_COLUMN_NAME)
+                .toString();
+    }
+
+    /**
+     * Collects the buckets touched by the writes of a transaction, and recomputes them from the raw
+     * rows before the transaction commits.
+     *
+     * <p>Reads of the rows about to be replaced or deleted must happen before the write, reads of
+     * the rows written after it. All methods are no-ops for tables without rollups, or when the
+     * rollups aren't maintained.
+     */
+    public static final class PendingBuckets {
+        private final InternalHealthConnectMappings mInternalHealthConnectMappings;
+        private final boolean mIsMaintained;
+
+        // Record type -> (app info id, use local time) -> bucket starts.
+        private final Map<Integer, Map<Pair<Long, Boolean>, TreeSet<Long>>> mBuckets =
+                new ArrayMap<>();
+        private final Map<String, RecordHelper<?>> mRollupHelpersByTable = new ArrayMap<>();
+
+        public PendingBuckets(InternalHealthConnectMappings internalHealthConnectMappings) {
+            mInternalHealthConnectMappings = internalHealthConnectMappings;
+            mIsMaintained = isMaintained();
+        }
+
+        /** Adds the buckets of the rows matching the unique columns of {@code request}. */
+        public void addBucketsOf(SQLiteDatabase db, UpsertTableRequest request) {
+            RecordHelper<?> recordHelper = getRollupHelperFor(request.getTable());
+            if (recordHelper == null) {
+                return;
+            }
+
+            String timeColumnName = recordHelper.getStartTimeColumnName();
+            String localTimeColumnName = recordHelper.getLocalStartTimeColumnName();
+            try (Cursor cursor = db.rawQuery(request.getReadRequest().getReadCommand(), null)) {
+                while (cursor.moveToNext()) {
+                    long appInfoId = getCursorLong(cursor, APP_INFO_ID_COLUMN_NAME);
+                    add(
+                            recordHelper,
+                            appInfoId,
+                            getBucketStart(getCursorLong(cursor, timeColumnName)),
+                            getBucketStart(getCursorLong(cursor, localTimeColumnName)));
+                }
+            }
+        }
+
+        /** Adds the buckets of the rows currently matching {@code request}. */
+        public void addBucketsOf(SQLiteDatabase db, DeleteTableRequest request) {
+            RecordHelper<?> recordHelper = getRollupHelperFor(request.getTableName());
+            if (recordHelper == null) {
+                return;
+            }
+
+            String command =
+                    "SELECT DISTINCT "
+                            + APP_INFO_ID_COLUMN_NAME
+                            + ", "
+                            + getBucketStartExpression(recordHelper.getStartTimeColumnName())
+                            + " AS "
+                            + PHYSICAL_BUCKET_ALIAS
+                            + ", "
+                            + getBucketStartExpression(recordHelper.getLocalStartTimeColumnName())
+                            + " AS "
+                            + LOCAL_BUCKET_ALIAS
+                            + " FROM "
+                            + request.getTableName()
+                            + request.getWhereCommand();
+            try (Cursor cursor = db.rawQuery(command, null)) {
+                while (cursor.moveToNext()) {
+                    add(
+                            recordHelper,
+                            getCursorLong(cursor, APP_INFO_ID_COLUMN_NAME),
+                            getCursorLong(cursor, PHYSICAL_BUCKET_ALIAS),
+                            getCursorLong(cursor, LOCAL_BUCKET_ALIAS));
+                }
+            }
+        }
+
+        /** Recomputes all the collected buckets and clears them. */
+        public void recompute(SQLiteDatabase db) {
+            for (Map.Entry<Integer, Map<Pair<Long, Boolean>, TreeSet<Long>>> recordTypeEntry :
+                    mBuckets.entrySet()) {
+                RecordHelper<?> recordHelper =
+                        mInternalHealthConnectMappings.getRecordHelper(recordTypeEntry.getKey());
+                AggregateParams params = recordHelper.getRollupParams();
+                if (params == null) {
+                    continue;
+                }
+                for (Map.Entry<Pair<Long, Boolean>, TreeSet<Long>> entry :
+                        recordTypeEntry.getValue().entrySet()) {
+                    recompute(
+                            db,
+                            recordHelper,
+                            params,
+                            entry.getKey().first,
+                            entry.getKey().second,
+                            entry.getValue());
+                }
+            }
+            mBuckets.clear();
+        }
+
+        private void add(
+                RecordHelper<?> recordHelper,
+                long appInfoId,
+                long physicalBucketStart,
+                long localBucketStart) {
+            Map<Pair<Long, Boolean>, TreeSet<Long>> buckets =
+                    mBuckets.computeIfAbsent(
+                            recordHelper.getRecordIdentifier(), unused -> new ArrayMap<>());
+            buckets.computeIfAbsent(new Pair<>(appInfoId, false), unused -> new TreeSet<>())
+                    .add(physicalBucketStart);
+            buckets.computeIfAbsent(new Pair<>(appInfoId, true), unused -> new TreeSet<>())
+                    .add(localBucketStart);
+        }
+
+        private static void recompute(
+                SQLiteDatabase db,
+                RecordHelper<?> recordHelper,
+                AggregateParams params,
+                long appInfoId,
+                boolean useLocalTime,
+                TreeSet<Long> bucketStarts) {
+            String timeColumnName = getTimeColumnName(recordHelper, useLocalTime);
+            Iterator<Long> iterator = bucketStarts.iterator();
+            while (iterator.hasNext()) {
+                List<String> chunk = new ArrayList<>(MAX_BUCKETS_PER_STATEMENT);
+                long firstBucketStart = iterator.next();
+                long lastBucketStart = firstBucketStart;
+                chunk.add(String.valueOf(firstBucketStart));
+                while (iterator.hasNext() && chunk.size() < MAX_BUCKETS_PER_STATEMENT) {
+                    lastBucketStart = iterator.next();
+                    chunk.add(String.valueOf(lastBucketStart));
+                }
+                String bucketList = "(" + String.join(", ", chunk) + ")";
+
+                db.execSQL(
+                        "DELETE FROM "
+                                + TABLE_NAME
+                                + " WHERE "
+                                + RECORD_TYPE_COLUMN_NAME
+                                + " = "
+                                + recordHelper.getRecordIdentifier()
+                                + " AND "
+                                + USE_LOCAL_TIME_COLUMN_NAME
+                                + " = "
+                                + (useLocalTime ? 1 : 0)
+                                + " AND "
+                                + BUCKET_START_COLUMN_NAME
+                                + " IN "
+                                + bucketList
+                                + " AND "
+                                + APP_INFO_ID_COLUMN_NAME
+                                + " = "
+                                + appInfoId);
+                // The time range lets the time index narrow down the rows, the list then skips the
+                // buckets in between which were not touched.
+                db.execSQL(
+                        getRecomputeCommand(
+                                recordHelper,
+                                params,
+                                useLocalTime,
+                                APP_INFO_ID_COLUMN_NAME
+                                        + " = "
+                                        + appInfoId
+                                        + " AND "
+                                        + timeColumnName
+                                        + " >= "
+                                        + firstBucketStart
+                                        + " AND "
+                                        + timeColumnName
+                                        + " < "
+                                        + (lastBucketStart + BUCKET_SIZE_MILLIS)
+                                        + " AND "
+                                        + getBucketStartExpression(timeColumnName)
+                                        + " IN "
+                                        + bucketList));
+            }
+
+            if (Constants.DEBUG) {
+                Slog.d(
+                        TAG,
+                        "Recomputed "
+                                + bucketStarts.size()
+                                + " buckets of record type "
+                                + recordHelper.getRecordIdentifier());
+            }
+        }
+
+        @Nullable
+        private RecordHelper<?> getRollupHelperFor(String tableName) {
+            if (!mIsMaintained) {
+                return null;
+            }
+            if (mRollupHelpersByTable.isEmpty()) {
+                for (RecordHelper<?> recordHelper :
+                        mInternalHealthConnectMappings.getRecordHelpers()) {
+                    if (recordHelper.getRollupParams() != null) {
+                        mRollupHelpersByTable.put(recordHelper.getMainTableName(), recordHelper);
+                    }
+                }
+            }
+            return mRollupHelpersByTable.get(tableName);
+        }
+    }
+}
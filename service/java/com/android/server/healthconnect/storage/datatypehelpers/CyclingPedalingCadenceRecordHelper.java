@@ -22,12 +22,10 @@ import static android.health.connect.datatypes.AggregationType.AggregationTypeId
 
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.REAL;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorDouble;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorUUID;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 import android.health.connect.AggregateResult;
 import android.health.connect.datatypes.AggregationType;
 import android.health.connect.datatypes.RecordTypeIdentifier;
@@ -37,13 +35,11 @@ import android.util.Pair;
 import androidx.annotation.Nullable;
 
 import com.android.server.healthconnect.storage.request.AggregateParams;
-import com.android.server.healthconnect.storage.utils.SqlJoin;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Helper class for CyclingPedalingCadenceRecord.
@@ -88,14 +84,17 @@ public class CyclingPedalingCadenceRecordHelper
             Cursor seriesTableCursor, CyclingPedalingCadenceRecordInternal record) {
         HashSet<CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample>
                 cyclingPedalingCadenceRecordSampleSet = new HashSet<>();
-        UUID uuid = getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME);
+        int uuidIndex = seriesTableCursor.getColumnIndex(UUID_COLUMN_NAME);
+        int valueIndex = seriesTableCursor.getColumnIndex(REVOLUTIONS_PER_MINUTE_COLUMN_NAME);
+        int epochMillisIndex = seriesTableCursor.getColumnIndex(EPOCH_MILLIS_COLUMN_NAME);
+        byte[] uuid = seriesTableCursor.getBlob(uuidIndex);
         do {
             cyclingPedalingCadenceRecordSampleSet.add(
                     new CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample(
-                            getCursorDouble(seriesTableCursor, REVOLUTIONS_PER_MINUTE_COLUMN_NAME),
-                            getCursorLong(seriesTableCursor, EPOCH_MILLIS_COLUMN_NAME)));
+                            seriesTableCursor.getDouble(valueIndex),
+                            seriesTableCursor.getLong(epochMillisIndex)));
         } while (seriesTableCursor.moveToNext()
-                && uuid.equals(getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME)));
+                && Arrays.equals(uuid, seriesTableCursor.getBlob(uuidIndex)));
         // In case we hit another record, move the cursor back to read next record in outer
         // RecordHelper#getInternalRecords loop.
         seriesTableCursor.moveToPrevious();
@@ -113,6 +112,16 @@ public class CyclingPedalingCadenceRecordHelper
         contentValues.put(EPOCH_MILLIS_COLUMN_NAME, cyclingPedalingCadenceRecord.getEpochMillis());
     }
 
+    @Override
+    void bindSampleTo(
+            SQLiteStatement statement,
+            int index,
+            CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample
+                    cyclingPedalingCadenceRecord) {
+        statement.bindLong(index, cyclingPedalingCadenceRecord.getEpochMillis());
+        statement.bindDouble(index + 1, cyclingPedalingCadenceRecord.getRevolutionsPerMinute());
+    }
+
     @Override
     @Nullable
     public final AggregateResult<?> getAggregateResult(
@@ -137,17 +146,28 @@ public class CyclingPedalingCadenceRecordHelper
             case CYCLING_PEDALING_CADENCE_RECORD_RPM_MIN:
             case CYCLING_PEDALING_CADENCE_RECORD_RPM_MAX:
             case CYCLING_PEDALING_CADENCE_RECORD_RPM_AVG:
-                return new AggregateParams(
-                                SERIES_TABLE_NAME,
-                                Collections.singletonList(REVOLUTIONS_PER_MINUTE_COLUMN_NAME))
-                        .setJoin(
-                                new SqlJoin(
-                                        SERIES_TABLE_NAME,
-                                        TABLE_NAME,
-                                        PARENT_KEY_COLUMN_NAME,
-                                        PRIMARY_COLUMN_NAME));
+                return getSampleAggregateParams(REVOLUTIONS_PER_MINUTE_COLUMN_NAME);
             default:
                 return null;
         }
     }
+
+    @Override
+    final long getSampleEpochMillis(
+            CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample sample) {
+        return sample.getEpochMillis();
+    }
+
+    @Override
+    final double getSampleValue(
+            CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample sample) {
+        return sample.getRevolutionsPerMinute();
+    }
+
+    @Override
+    final CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample createSample(
+            long epochMillis, double value) {
+        return new CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample(
+                value, epochMillis);
+    }
 }
@@ -27,8 +27,10 @@ import static com.android.server.healthconnect.storage.utils.StorageUtils.getCur
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.health.connect.datatypes.Device.DeviceType;
 import android.health.connect.internal.datatypes.RecordInternal;
+import android.util.ArrayMap;
 import android.util.Pair;
 
 import com.android.server.healthconnect.storage.TransactionManager;
@@ -81,15 +83,30 @@ public class DeviceInfoHelper extends DatabaseHelper {
 
     /** Populates record with deviceInfoId */
     public void populateDeviceInfoId(RecordInternal<?> recordInternal) {
-        String manufacturer = recordInternal.getManufacturer();
-        String model = recordInternal.getModel();
-        int deviceType = recordInternal.getDeviceType();
-        DeviceInfo deviceInfo = new DeviceInfo(manufacturer, model, deviceType);
-        long rowId = getDeviceInfoMap().getOrDefault(deviceInfo, DEFAULT_LONG);
-        if (rowId == DEFAULT_LONG) {
-            rowId = insertIfNotPresent(deviceInfo);
+        recordInternal.setDeviceInfoId(
+                getOrInsertDeviceInfoId(
+                        recordInternal.getManufacturer(),
+                        recordInternal.getModel(),
+                        recordInternal.getDeviceType()));
+    }
+
+    /**
+     * Returns the rowIds in this database of the device infos of {@code otherDatabase}, by their
+     * rowIds in {@code otherDatabase}. Device infos missing from this database are inserted.
+     */
+    public Map<Long, Long> getOrInsertDeviceInfoIds(SQLiteDatabase otherDatabase) {
+        Map<Long, Long> rowIds = new ArrayMap<>();
+        try (Cursor cursor = otherDatabase.rawQuery("SELECT * FROM " + TABLE_NAME, null)) {
+            while (cursor.moveToNext()) {
+                rowIds.put(
+                        getCursorLong(cursor, RecordHelper.PRIMARY_COLUMN_NAME),
+                        getOrInsertDeviceInfoId(
+                                getCursorString(cursor, MANUFACTURER_COLUMN_NAME),
+                                getCursorString(cursor, MODEL_COLUMN_NAME),
+                                getCursorInt(cursor, DEVICE_TYPE_COLUMN_NAME)));
+            }
         }
-        recordInternal.setDeviceInfoId(rowId);
+        return rowIds;
     }
 
     /**
@@ -119,6 +136,16 @@ public class DeviceInfoHelper extends DatabaseHelper {
         return TABLE_NAME;
     }
 
+    private long getOrInsertDeviceInfoId(
+            String manufacturer, String model, @DeviceType int deviceType) {
+        DeviceInfo deviceInfo = new DeviceInfo(manufacturer, model, deviceType);
+        long rowId = getDeviceInfoMap().getOrDefault(deviceInfo, DEFAULT_LONG);
+        if (rowId == DEFAULT_LONG) {
+            rowId = insertIfNotPresent(deviceInfo);
+        }
+        return rowId;
+    }
+
     private synchronized void populateDeviceInfoMap() {
         if (mDeviceInfoMap != null) {
             return;
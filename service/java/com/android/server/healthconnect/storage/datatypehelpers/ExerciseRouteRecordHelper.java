@@ -24,9 +24,11 @@ import static com.android.server.healthconnect.storage.utils.StorageUtils.getCur
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 import android.health.connect.internal.datatypes.ExerciseRouteInternal;
 import android.util.Pair;
 
+import com.android.healthfitness.flags.Flags;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
 
@@ -45,6 +47,18 @@ class ExerciseRouteRecordHelper {
     static final String ROUTE_LOCATION_HORIZONTAL_ACCURACY_COLUMN_NAME = "horizontal_accuracy";
     static final String ROUTE_LOCATION_ALTITUDE_COLUMN_NAME = "altitude";
 
+    private static final UpsertTableRequest.RowLayout ROUTE_LOCATION_ROW_LAYOUT =
+            new UpsertTableRequest.RowLayout(
+                    EXERCISE_ROUTE_RECORD_TABLE_NAME,
+                    PARENT_KEY_COLUMN_NAME,
+                    List.of(
+                            ROUTE_LOCATION_TIME_IN_MILLIS_COLUMN_NAME,
+                            ROUTE_LOCATION_LONGITUDE_COLUMN_NAME,
+                            ROUTE_LOCATION_LATITUDE_COLUMN_NAME,
+                            ROUTE_LOCATION_HORIZONTAL_ACCURACY_COLUMN_NAME,
+                            ROUTE_LOCATION_VERTICAL_ACCURACY_COLUMN_NAME,
+                            ROUTE_LOCATION_ALTITUDE_COLUMN_NAME));
+
     static ExerciseRouteInternal.LocationInternal populateLocation(Cursor cursor) {
         return new ExerciseRouteInternal.LocationInternal()
                 .setTime(getCursorLong(cursor, ROUTE_LOCATION_TIME_IN_MILLIS_COLUMN_NAME))
@@ -69,6 +83,16 @@ class ExerciseRouteRecordHelper {
 
     static List<UpsertTableRequest> getRouteUpsertRequests(ExerciseRouteInternal route) {
         List<UpsertTableRequest> requests = new ArrayList<>(route.getRouteLocations().size());
+        if (Flags.batchedInserts()) {
+            for (ExerciseRouteInternal.LocationInternal location : route.getRouteLocations()) {
+                requests.add(
+                        new UpsertTableRequest(
+                                ROUTE_LOCATION_ROW_LAYOUT,
+                                (statement, index) ->
+                                        bindRouteLocationTo(statement, index, location)));
+            }
+            return requests;
+        }
         route.getRouteLocations()
                 .forEach(
                         (sample -> {
@@ -105,4 +129,15 @@ class ExerciseRouteRecordHelper {
                 ROUTE_LOCATION_VERTICAL_ACCURACY_COLUMN_NAME, location.getVerticalAccuracy());
         contentValues.put(ROUTE_LOCATION_ALTITUDE_COLUMN_NAME, location.getAltitude());
     }
+
+    /** Binds the {@code location} in the order of the columns of the route location rows. */
+    private static void bindRouteLocationTo(
+            SQLiteStatement statement, int index, ExerciseRouteInternal.LocationInternal location) {
+        statement.bindLong(index, location.getTime());
+        statement.bindDouble(index + 1, location.getLongitude());
+        statement.bindDouble(index + 2, location.getLatitude());
+        statement.bindDouble(index + 3, location.getHorizontalAccuracy());
+        statement.bindDouble(index + 4, location.getVerticalAccuracy());
+        statement.bindDouble(index + 5, location.getAltitude());
+    }
 }
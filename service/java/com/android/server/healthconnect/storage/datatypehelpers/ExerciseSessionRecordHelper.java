@@ -65,7 +65,9 @@ import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
 import com.android.server.healthconnect.storage.utils.InternalHealthConnectMappings;
+import com.android.server.healthconnect.storage.utils.OrderByClause;
 import com.android.server.healthconnect.storage.utils.SqlJoin;
+import com.android.server.healthconnect.storage.utils.SqlWithArgs;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 import com.android.server.healthconnect.storage.utils.TableColumnPair;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
@@ -98,6 +100,9 @@ public final class ExerciseSessionRecordHelper
     private static final String HAS_ROUTE_COLUMN_NAME = "has_route";
     static final String PLANNED_EXERCISE_SESSION_ID_COLUMN_NAME = "planned_exercise_session_id";
 
+    // The route table has no primary key column, so its rows are ordered by the implicit one.
+    private static final String ROUTE_ROW_ID_COLUMN_NAME = "rowid";
+
     private static final int ROUTE_READ_ACCESS_TYPE_NONE = 0;
     private static final int ROUTE_READ_ACCESS_TYPE_OWN = 1;
     private static final int ROUTE_READ_ACCESS_TYPE_ALL = 2;
@@ -391,14 +396,56 @@ public final class ExerciseSessionRecordHelper
             mapping.put(internalRecords.get(i).getRowId(), i);
         }
 
+        // Locations of the same session are usually consecutive, so look up the record only when
+        // the session changes.
+        ExerciseSessionRecordInternal record = null;
+        int recordRowId = 0;
         while (cursorExtraData.moveToNext()) {
-            ExerciseSessionRecordInternal record =
-                    internalRecords.get(
-                            mapping.get(getCursorInt(cursorExtraData, PARENT_KEY_COLUMN_NAME)));
+            int parentRowId = getCursorInt(cursorExtraData, PARENT_KEY_COLUMN_NAME);
+            if (record == null || parentRowId != recordRowId) {
+                Integer index = mapping.get(parentRowId);
+                if (index == null) {
+                    // The session is not in the records being read, e.g. it is on another page.
+                    record = null;
+                    continue;
+                }
+                record = internalRecords.get(index);
+                recordRowId = parentRowId;
+            }
             record.addRouteLocation(ExerciseRouteRecordHelper.populateLocation(cursorExtraData));
         }
     }
 
+    @Override
+    ReadTableRequest getExtraDataReadRequestForRecords(
+            ReadTableRequest extraDataRequest,
+            List<ExerciseSessionRecordInternal> internalRecords,
+            String tableName) {
+        if (!EXERCISE_ROUTE_RECORD_TABLE_NAME.equals(tableName)) {
+            return extraDataRequest;
+        }
+        List<Long> rowIds = new ArrayList<>(internalRecords.size());
+        for (ExerciseSessionRecordInternal record : internalRecords) {
+            rowIds.add((long) record.getRowId());
+        }
+        // Locations are read in insertion order within each session, as they were written.
+        OrderByClause orderBy =
+                new OrderByClause()
+                        .addOrderByClause(PARENT_KEY_COLUMN_NAME, /* isAscending= */ true)
+                        .addOrderByClause(ROUTE_ROW_ID_COLUMN_NAME, /* isAscending= */ true);
+        // Route requests only filter the sessions, see getRouteReadRequest, so a new request with
+        // the same filter can be built instead of changing the one of the caller.
+        WhereClauses pageRoutesClause =
+                new WhereClauses(AND)
+                        .addNestedWhereClauses(
+                                extraDataRequest.getWhereClauses(),
+                                new WhereClauses(AND)
+                                        .addWhereInLongsClause(PARENT_KEY_COLUMN_NAME, rowIds));
+        return new ReadTableRequest(EXERCISE_ROUTE_RECORD_TABLE_NAME)
+                .setWhereClause(pageRoutesClause)
+                .setOrderBy(orderBy);
+    }
+
     /**
      * Adds a column which points to the planned exercise session ID associated with this session.
      */
@@ -463,6 +510,11 @@ public final class ExerciseSessionRecordHelper
                                     + appId
                                     + "))";
                         }
+
+                        @Override
+                        public SqlWithArgs getReadCommandWithArgs() {
+                            return new SqlWithArgs(getReadCommand());
+                        }
                     };
             readRequest.setRecordHelper(
                     InternalHealthConnectMappings.getInstance()
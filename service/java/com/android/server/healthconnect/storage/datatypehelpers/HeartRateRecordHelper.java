@@ -22,12 +22,10 @@ import static android.health.connect.datatypes.AggregationType.AggregationTypeId
 import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.HEART_RATE_RECORD_MEASUREMENTS_COUNT;
 
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorInt;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorUUID;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 import android.health.connect.AggregateResult;
 import android.health.connect.datatypes.AggregationType;
 import android.health.connect.datatypes.RecordTypeIdentifier;
@@ -38,13 +36,11 @@ import androidx.annotation.Nullable;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.healthconnect.storage.request.AggregateParams;
-import com.android.server.healthconnect.storage.utils.SqlJoin;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Helper class for HeartRateRecord.
@@ -96,20 +92,21 @@ public class HeartRateRecordHelper
             case HEART_RATE_RECORD_BPM_MIN:
             case HEART_RATE_RECORD_BPM_AVG:
             case HEART_RATE_RECORD_MEASUREMENTS_COUNT:
-                return new AggregateParams(
-                                SERIES_TABLE_NAME,
-                                Collections.singletonList(BEATS_PER_MINUTE_COLUMN_NAME))
-                        .setJoin(
-                                new SqlJoin(
-                                        SERIES_TABLE_NAME,
-                                        TABLE_NAME,
-                                        PARENT_KEY_COLUMN_NAME,
-                                        PRIMARY_COLUMN_NAME));
+                return getBeatsPerMinuteAggregateParams();
             default:
                 return null;
         }
     }
 
+    @Override
+    final AggregateParams getRollupParams() {
+        return getBeatsPerMinuteAggregateParams();
+    }
+
+    private AggregateParams getBeatsPerMinuteAggregateParams() {
+        return getSampleAggregateParams(BEATS_PER_MINUTE_COLUMN_NAME);
+    }
+
     @Override
     final List<Pair<String, String>> getSeriesRecordColumnInfo() {
         List<Pair<String, String>> columnInfo = new ArrayList<>(NUM_LOCAL_COLUMNS);
@@ -126,14 +123,17 @@ public class HeartRateRecordHelper
     @Override
     void populateSpecificValues(Cursor seriesTableCursor, HeartRateRecordInternal record) {
         HashSet<HeartRateRecordInternal.HeartRateSample> heartRateSamplesSet = new HashSet<>();
-        UUID uuid = getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME);
+        int uuidIndex = seriesTableCursor.getColumnIndex(UUID_COLUMN_NAME);
+        int valueIndex = seriesTableCursor.getColumnIndex(BEATS_PER_MINUTE_COLUMN_NAME);
+        int epochMillisIndex = seriesTableCursor.getColumnIndex(EPOCH_MILLIS_COLUMN_NAME);
+        byte[] uuid = seriesTableCursor.getBlob(uuidIndex);
         do {
             heartRateSamplesSet.add(
                     new HeartRateRecordInternal.HeartRateSample(
-                            getCursorInt(seriesTableCursor, BEATS_PER_MINUTE_COLUMN_NAME),
-                            getCursorLong(seriesTableCursor, EPOCH_MILLIS_COLUMN_NAME)));
+                            seriesTableCursor.getInt(valueIndex),
+                            seriesTableCursor.getLong(epochMillisIndex)));
         } while (seriesTableCursor.moveToNext()
-                && uuid.equals(getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME)));
+                && Arrays.equals(uuid, seriesTableCursor.getBlob(uuidIndex)));
         // In case we hit another record, move the cursor back to read next record in outer
         // RecordHelper#getInternalRecords loop.
         seriesTableCursor.moveToPrevious();
@@ -146,4 +146,33 @@ public class HeartRateRecordHelper
         contentValues.put(BEATS_PER_MINUTE_COLUMN_NAME, heartRateSample.getBeatsPerMinute());
         contentValues.put(EPOCH_MILLIS_COLUMN_NAME, heartRateSample.getEpochMillis());
     }
+
+    @Override
+    final void bindSampleTo(
+            SQLiteStatement statement,
+            int index,
+            HeartRateRecordInternal.HeartRateSample heartRateSample) {
+        statement.bindLong(index, heartRateSample.getBeatsPerMinute());
+        statement.bindLong(index + 1, heartRateSample.getEpochMillis());
+    }
+
+    @Override
+    final long getSampleEpochMillis(HeartRateRecordInternal.HeartRateSample sample) {
+        return sample.getEpochMillis();
+    }
+
+    @Override
+    final double getSampleValue(HeartRateRecordInternal.HeartRateSample sample) {
+        return sample.getBeatsPerMinute();
+    }
+
+    @Override
+    final HeartRateRecordInternal.HeartRateSample createSample(long epochMillis, double value) {
+        return new HeartRateRecordInternal.HeartRateSample((int) value, epochMillis);
+    }
+
+    @Override
+    final boolean hasIntegerSampleValues() {
+        return true;
+    }
 }
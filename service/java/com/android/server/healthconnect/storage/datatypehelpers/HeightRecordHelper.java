@@ -90,6 +90,12 @@ public final class HeightRecordHelper extends InstantRecordHelper<HeightRecordIn
         return new AggregateParams(HEIGHT_RECORD_TABLE_NAME, columnNames);
     }
 
+    @Override
+    AggregateParams getRollupParams() {
+        return new AggregateParams(
+                HEIGHT_RECORD_TABLE_NAME, Collections.singletonList(HEIGHT_COLUMN_NAME));
+    }
+
     @Override
     void populateSpecificRecordValue(Cursor cursor, HeightRecordInternal heightRecord) {
         heightRecord.setHeight(getCursorDouble(cursor, HEIGHT_COLUMN_NAME));
@@ -32,10 +32,13 @@ import static com.android.server.healthconnect.storage.datatypehelpers.MedicalRe
 import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.LAST_MODIFIED_TIME_COLUMN_NAME;
 import static com.android.server.healthconnect.storage.utils.SqlJoin.INNER_QUERY_ALIAS;
 import static com.android.server.healthconnect.storage.utils.SqlJoin.SQL_JOIN_INNER;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.BLOB_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.DELIMITER;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER_NOT_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.PRIMARY_AUTOINCREMENT;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.TEXT_NOT_NULL;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.checkColumnExists;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.checkTableExists;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorInt;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLongList;
@@ -64,6 +67,7 @@ import android.health.connect.datatypes.MedicalResource.MedicalResourceType;
 import android.util.Pair;
 import android.util.Slog;
 
+import com.android.healthfitness.flags.AconfigFlagHelper;
 import com.android.healthfitness.flags.Flags;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.healthconnect.phr.PhrPageTokenWrapper;
@@ -71,19 +75,25 @@ import com.android.server.healthconnect.phr.ReadMedicalResourcesInternalResponse
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.TransactionManager.TransactionRunnableWithReturn;
 import com.android.server.healthconnect.storage.request.AggregateTableRequest;
+import com.android.server.healthconnect.storage.request.AlterTableRequest;
 import com.android.server.healthconnect.storage.request.CreateIndexRequest;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.DeleteTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertMedicalResourceInternalRequest;
+import com.android.server.healthconnect.storage.utils.FhirDataCompression;
 import com.android.server.healthconnect.storage.utils.OrderByClause;
 import com.android.server.healthconnect.storage.utils.SqlJoin;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
 import com.android.server.healthconnect.utils.TimeSource;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -108,6 +118,14 @@ public final class MedicalResourceHelper {
 
     @VisibleForTesting static final String DATA_SOURCE_ID_COLUMN_NAME = "data_source_id";
     @VisibleForTesting static final String FHIR_RESOURCE_ID_COLUMN_NAME = "fhir_resource_id";
+
+    // Column added in DB_VERSION_MEDICAL_RESOURCE_CONTENT_HASH, null for resources last written
+    // without it.
+    @VisibleForTesting static final String FHIR_DATA_HASH_COLUMN_NAME = "fhir_data_hash";
+
+    // The number of resources compressed at a time by the compression upgrade.
+    private static final int COMPRESSION_UPGRADE_BATCH_SIZE = 100;
+
     private static final String LAST_MODIFIED_TIMESTAMP_MEDICAL_RESOURCE_ALIAS =
             "medical_resource_last_modified_time";
 
@@ -157,6 +175,41 @@ public final class MedicalResourceHelper {
                     + FHIR_RESOURCE_ID_COLUMN_NAME
                     + ") IN ";
 
+    /** Reads the row id and FHIR data hash of a resource by data source row id, type and id. */
+    private static final String SELECT_ROW_ID_AND_HASH_ON_KEY_QUERY =
+            "SELECT "
+                    + MEDICAL_RESOURCE_PRIMARY_COLUMN_NAME
+                    + ", "
+                    + FHIR_DATA_HASH_COLUMN_NAME
+                    + " FROM "
+                    + MEDICAL_RESOURCE_TABLE_NAME
+                    + " WHERE "
+                    + DATA_SOURCE_ID_COLUMN_NAME
+                    + " = ? AND "
+                    + FHIR_RESOURCE_TYPE_COLUMN_NAME
+                    + " = ? AND "
+                    + FHIR_RESOURCE_ID_COLUMN_NAME
+                    + " = ?";
+
+    /** Reads a batch of resources with uncompressed FHIR data after a row id, in row id order. */
+    private static final String SELECT_UNCOMPRESSED_FHIR_DATA_QUERY =
+            "SELECT "
+                    + MEDICAL_RESOURCE_PRIMARY_COLUMN_NAME
+                    + ", "
+                    + FHIR_RESOURCE_TYPE_COLUMN_NAME
+                    + ", "
+                    + FHIR_DATA_COLUMN_NAME
+                    + " FROM "
+                    + MEDICAL_RESOURCE_TABLE_NAME
+                    + " WHERE "
+                    + MEDICAL_RESOURCE_PRIMARY_COLUMN_NAME
+                    + " > ? AND typeof("
+                    + FHIR_DATA_COLUMN_NAME
+                    + ") = 'text' ORDER BY "
+                    + MEDICAL_RESOURCE_PRIMARY_COLUMN_NAME
+                    + " LIMIT "
+                    + COMPRESSION_UPGRADE_BATCH_SIZE;
+
     /**
      * A block of SQL with the inner select where clause for deleting based on the medical resource
      * id.
@@ -312,6 +365,67 @@ public final class MedicalResourceHelper {
                         .getCommand());
     }
 
+    /**
+     * Database migration. Adds the column holding the hash of the FHIR data, for upserts to skip
+     * resources that did not change.
+     */
+    public static void applyContentHashUpgrade(SQLiteDatabase db) {
+        if (!checkTableExists(db, MEDICAL_RESOURCE_TABLE_NAME)) {
+            // The table is only created with the PHR DB changes.
+            return;
+        }
+        if (checkColumnExists(db, MEDICAL_RESOURCE_TABLE_NAME, FHIR_DATA_HASH_COLUMN_NAME)) {
+            // Upgrade has already been applied, ALTER TABLE ... ADD COLUMN is not idempotent.
+            return;
+        }
+        new AlterTableRequest(
+                        MEDICAL_RESOURCE_TABLE_NAME,
+                        List.of(Pair.create(FHIR_DATA_HASH_COLUMN_NAME, BLOB_NULL)))
+                .getAlterTableAddColumnsCommands()
+                .forEach(db::execSQL);
+    }
+
+    /**
+     * Database migration. Compresses the FHIR data of existing resources if compression is
+     * enabled, otherwise it is compressed when the resource is next written with it enabled.
+     *
+     * <p>Readers decompress the FHIR data stored as a blob, so the data of each resource may be
+     * compressed or not.
+     */
+    public static void applyCompressionUpgrade(SQLiteDatabase db) {
+        if (!checkTableExists(db, MEDICAL_RESOURCE_TABLE_NAME)) {
+            // The table is only created with the PHR DB changes.
+            return;
+        }
+        long lastRowId = 0;
+        int batchSize;
+        do {
+            // Read a batch at a time, as the table is updated while going through it.
+            List<Pair<Long, ContentValues>> updates = new ArrayList<>();
+            try (Cursor cursor =
+                    db.rawQuery(
+                            SELECT_UNCOMPRESSED_FHIR_DATA_QUERY,
+                            new String[] {String.valueOf(lastRowId)})) {
+                batchSize = cursor.getCount();
+                while (cursor.moveToNext()) {
+                    lastRowId = cursor.getLong(0);
+                    ContentValues contentValues = new ContentValues();
+                    putFhirData(contentValues, cursor.getInt(1), cursor.getString(2));
+                    if (contentValues.get(FHIR_DATA_COLUMN_NAME) instanceof byte[]) {
+                        updates.add(Pair.create(lastRowId, contentValues));
+                    }
+                }
+            }
+            for (Pair<Long, ContentValues> update : updates) {
+                db.update(
+                        MEDICAL_RESOURCE_TABLE_NAME,
+                        update.second,
+                        MEDICAL_RESOURCE_PRIMARY_COLUMN_NAME + " = ?",
+                        new String[] {String.valueOf(update.first)});
+            }
+        } while (batchSize == COMPRESSION_UPGRADE_BATCH_SIZE);
+    }
+
     /** Returns the total number of medical resources in HC database. */
     public int getMedicalResourcesCount() {
         ReadTableRequest readTableRequest = new ReadTableRequest(getMainTableName());
@@ -1000,18 +1114,11 @@ public final class MedicalResourceHelper {
             }
             ContentValues contentValues =
                     getContentValues(dataSourceRowId, upsertRequest, mTimeSource.getInstantNow());
-            long rowId =
-                    db.insertWithOnConflict(
-                            MEDICAL_RESOURCE_TABLE_NAME,
-                            /* nullColumnHack= */ null,
-                            contentValues,
-                            SQLiteDatabase.CONFLICT_REPLACE);
-            int medicalResourceType = upsertRequest.getMedicalResourceType();
-            db.insertWithOnConflict(
-                    MedicalResourceIndicesHelper.getTableName(),
-                    /* nullColumnHack= */ null,
-                    MedicalResourceIndicesHelper.getContentValues(rowId, medicalResourceType),
-                    SQLiteDatabase.CONFLICT_REPLACE);
+            if (AconfigFlagHelper.isMedicalResourceContentHashEnabled()) {
+                upsertMedicalResourceIfChanged(db, dataSourceRowId, upsertRequest, contentValues);
+            } else {
+                replaceMedicalResource(db, upsertRequest, contentValues);
+            }
         }
 
         List<MedicalResource> upsertedMedicalResources = new ArrayList<>();
@@ -1034,6 +1141,106 @@ public final class MedicalResourceHelper {
         return upsertedMedicalResources;
     }
 
+    /**
+     * Upserts the medical resource of {@code upsertRequest}, replacing any existing resource with a
+     * new row.
+     */
+    @VisibleForTesting
+    static void replaceMedicalResource(
+            SQLiteDatabase db,
+            UpsertMedicalResourceInternalRequest upsertRequest,
+            ContentValues contentValues) {
+        long rowId =
+                db.insertWithOnConflict(
+                        MEDICAL_RESOURCE_TABLE_NAME,
+                        /* nullColumnHack= */ null,
+                        contentValues,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+        int medicalResourceType = upsertRequest.getMedicalResourceType();
+        db.insertWithOnConflict(
+                MedicalResourceIndicesHelper.getTableName(),
+                /* nullColumnHack= */ null,
+                MedicalResourceIndicesHelper.getContentValues(rowId, medicalResourceType),
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Upserts the medical resource of {@code upsertRequest}, unless the existing resource has the
+     * same FHIR data, in which case its row is left untouched, including its last modified time.
+     * An existing resource is updated in place, keeping its row id.
+     */
+    @VisibleForTesting
+    static void upsertMedicalResourceIfChanged(
+            SQLiteDatabase db,
+            long dataSourceRowId,
+            UpsertMedicalResourceInternalRequest upsertRequest,
+            ContentValues contentValues) {
+        byte[] fhirDataHash = getFhirDataHash(upsertRequest.getData());
+        contentValues.put(FHIR_DATA_HASH_COLUMN_NAME, fhirDataHash);
+        long rowId;
+        try (Cursor cursor =
+                db.rawQuery(
+                        SELECT_ROW_ID_AND_HASH_ON_KEY_QUERY,
+                        new String[] {
+                            String.valueOf(dataSourceRowId),
+                            String.valueOf(upsertRequest.getFhirResourceType()),
+                            upsertRequest.getFhirResourceId()
+                        })) {
+            if (!cursor.moveToFirst()) {
+                rowId =
+                        db.insertOrThrow(
+                                MEDICAL_RESOURCE_TABLE_NAME,
+                                /* nullColumnHack= */ null,
+                                contentValues);
+                db.insertOrThrow(
+                        MedicalResourceIndicesHelper.getTableName(),
+                        /* nullColumnHack= */ null,
+                        MedicalResourceIndicesHelper.getContentValues(
+                                rowId, upsertRequest.getMedicalResourceType()));
+                return;
+            }
+            if (Arrays.equals(cursor.getBlob(1), fhirDataHash)) {
+                return;
+            }
+            rowId = cursor.getLong(0);
+        }
+
+        String[] rowIdArgs = {String.valueOf(rowId)};
+        db.update(
+                MEDICAL_RESOURCE_TABLE_NAME,
+                contentValues,
+                MEDICAL_RESOURCE_PRIMARY_COLUMN_NAME + " = ?",
+                rowIdArgs);
+        // The medical resource type is extracted from the FHIR data, so may have changed with it.
+        ContentValues indicesContentValues =
+                MedicalResourceIndicesHelper.getContentValues(
+                        rowId, upsertRequest.getMedicalResourceType());
+        int updatedIndices =
+                db.update(
+                        MedicalResourceIndicesHelper.getTableName(),
+                        indicesContentValues,
+                        MedicalResourceIndicesHelper.getParentColumnReference() + " = ?",
+                        rowIdArgs);
+        if (updatedIndices == 0) {
+            db.insertOrThrow(
+                    MedicalResourceIndicesHelper.getTableName(),
+                    /* nullColumnHack= */ null,
+                    indicesContentValues);
+        }
+    }
+
+    /** Returns the SHA-256 hash of the UTF-8 encoded {@code fhirData}. */
+    @VisibleForTesting
+    static byte[] getFhirDataHash(String fhirData) {
+        try {
+            return MessageDigest.getInstance("SHA-256")
+                    .digest(fhirData.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
     @VisibleForTesting
     static ContentValues getContentValues(
             long dataSourceRowId,
@@ -1041,8 +1248,10 @@ public final class MedicalResourceHelper {
             Instant instant) {
         ContentValues resourceContentValues = new ContentValues();
         resourceContentValues.put(DATA_SOURCE_ID_COLUMN_NAME, dataSourceRowId);
-        resourceContentValues.put(
-                FHIR_DATA_COLUMN_NAME, upsertMedicalResourceInternalRequest.getData());
+        putFhirData(
+                resourceContentValues,
+                upsertMedicalResourceInternalRequest.getFhirResourceType(),
+                upsertMedicalResourceInternalRequest.getData());
         resourceContentValues.put(
                 FHIR_RESOURCE_TYPE_COLUMN_NAME,
                 upsertMedicalResourceInternalRequest.getFhirResourceType());
@@ -1065,13 +1274,39 @@ public final class MedicalResourceHelper {
         FhirResource fhirResource = resource.getFhirResource();
         ContentValues resourceContentValues = new ContentValues();
         resourceContentValues.put(DATA_SOURCE_ID_COLUMN_NAME, dataSourceRowId);
-        resourceContentValues.put(FHIR_DATA_COLUMN_NAME, fhirResource.getData());
+        putFhirData(resourceContentValues, fhirResource.getType(), fhirResource.getData());
         resourceContentValues.put(FHIR_RESOURCE_TYPE_COLUMN_NAME, fhirResource.getType());
         resourceContentValues.put(FHIR_RESOURCE_ID_COLUMN_NAME, fhirResource.getId());
         resourceContentValues.put(LAST_MODIFIED_TIME_COLUMN_NAME, lastModifiedTime);
         return resourceContentValues;
     }
 
+    /**
+     * Puts the FHIR data into {@code contentValues}, compressed if enabled and smaller than the
+     * text.
+     */
+    private static void putFhirData(
+            ContentValues contentValues, int fhirResourceType, String fhirData) {
+        if (AconfigFlagHelper.isMedicalResourceCompressionEnabled()) {
+            byte[] compressed = FhirDataCompression.compress(fhirResourceType, fhirData);
+            // The UTF-8 encoded text takes at least a byte per char.
+            if (compressed.length < fhirData.length()) {
+                contentValues.put(FHIR_DATA_COLUMN_NAME, compressed);
+                return;
+            }
+        }
+        contentValues.put(FHIR_DATA_COLUMN_NAME, fhirData);
+    }
+
+    /** Reads the FHIR data of the current row, decompressing it if stored as a blob. */
+    private static String getFhirData(Cursor cursor) {
+        int columnIndex = cursor.getColumnIndexOrThrow(FHIR_DATA_COLUMN_NAME);
+        if (cursor.getType(columnIndex) == Cursor.FIELD_TYPE_BLOB) {
+            return FhirDataCompression.decompress(cursor.getBlob(columnIndex));
+        }
+        return cursor.getString(columnIndex);
+    }
+
     /**
      * Creates a {@link MedicalResource} for the given {@code uuid} and {@link
      * UpsertMedicalResourceInternalRequest}.
@@ -1407,7 +1642,7 @@ public final class MedicalResourceHelper {
                 new FhirResource.Builder(
                                 fhirResourceTypeInt,
                                 getCursorString(cursor, FHIR_RESOURCE_ID_COLUMN_NAME),
-                                getCursorString(cursor, FHIR_DATA_COLUMN_NAME))
+                                getFhirData(cursor))
                         .build();
         FhirVersion fhirVersion =
                 parseFhirVersion(getCursorString(cursor, getFhirVersionColumnName()));
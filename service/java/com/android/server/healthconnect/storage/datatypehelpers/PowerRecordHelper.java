@@ -22,12 +22,10 @@ import static android.health.connect.datatypes.AggregationType.AggregationTypeId
 
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.REAL;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorDouble;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorUUID;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 import android.health.connect.AggregateResult;
 import android.health.connect.datatypes.AggregationType;
 import android.health.connect.datatypes.RecordTypeIdentifier;
@@ -37,13 +35,11 @@ import android.util.Pair;
 import androidx.annotation.Nullable;
 
 import com.android.server.healthconnect.storage.request.AggregateParams;
-import com.android.server.healthconnect.storage.utils.SqlJoin;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Helper class for PowerRecord.
@@ -91,14 +87,7 @@ public class PowerRecordHelper
             case POWER_RECORD_POWER_MIN:
             case POWER_RECORD_POWER_MAX:
             case POWER_RECORD_POWER_AVG:
-                return new AggregateParams(
-                                SERIES_TABLE_NAME, Collections.singletonList(POWER_COLUMN_NAME))
-                        .setJoin(
-                                new SqlJoin(
-                                        SERIES_TABLE_NAME,
-                                        TABLE_NAME,
-                                        PARENT_KEY_COLUMN_NAME,
-                                        PRIMARY_COLUMN_NAME));
+                return getSampleAggregateParams(POWER_COLUMN_NAME);
             default:
                 return null;
         }
@@ -121,14 +110,17 @@ public class PowerRecordHelper
     @Override
     void populateSpecificValues(Cursor seriesTableCursor, PowerRecordInternal record) {
         HashSet<PowerRecordInternal.PowerRecordSample> powerRecordSampleSet = new HashSet<>();
-        UUID uuid = getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME);
+        int uuidIndex = seriesTableCursor.getColumnIndex(UUID_COLUMN_NAME);
+        int valueIndex = seriesTableCursor.getColumnIndex(POWER_COLUMN_NAME);
+        int epochMillisIndex = seriesTableCursor.getColumnIndex(EPOCH_MILLIS_COLUMN_NAME);
+        byte[] uuid = seriesTableCursor.getBlob(uuidIndex);
         do {
             powerRecordSampleSet.add(
                     new PowerRecordInternal.PowerRecordSample(
-                            getCursorDouble(seriesTableCursor, POWER_COLUMN_NAME),
-                            getCursorLong(seriesTableCursor, EPOCH_MILLIS_COLUMN_NAME)));
+                            seriesTableCursor.getDouble(valueIndex),
+                            seriesTableCursor.getLong(epochMillisIndex)));
         } while (seriesTableCursor.moveToNext()
-                && uuid.equals(getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME)));
+                && Arrays.equals(uuid, seriesTableCursor.getBlob(uuidIndex)));
         // In case we hit another record, move the cursor back to read next record in outer
         // RecordHelper#getInternalRecords loop.
         seriesTableCursor.moveToPrevious();
@@ -141,4 +133,28 @@ public class PowerRecordHelper
         contentValues.put(POWER_COLUMN_NAME, powerRecord.getPower());
         contentValues.put(EPOCH_MILLIS_COLUMN_NAME, powerRecord.getEpochMillis());
     }
+
+    @Override
+    void bindSampleTo(
+            SQLiteStatement statement,
+            int index,
+            PowerRecordInternal.PowerRecordSample powerRecord) {
+        statement.bindDouble(index, powerRecord.getPower());
+        statement.bindLong(index + 1, powerRecord.getEpochMillis());
+    }
+
+    @Override
+    final long getSampleEpochMillis(PowerRecordInternal.PowerRecordSample sample) {
+        return sample.getEpochMillis();
+    }
+
+    @Override
+    final double getSampleValue(PowerRecordInternal.PowerRecordSample sample) {
+        return sample.getPower();
+    }
+
+    @Override
+    final PowerRecordInternal.PowerRecordSample createSample(long epochMillis, double value) {
+        return new PowerRecordInternal.PowerRecordSample(value, epochMillis);
+    }
 }
@@ -30,9 +30,8 @@ import static com.android.server.healthconnect.storage.utils.StorageUtils.BLOB_U
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.PRIMARY_AUTOINCREMENT;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.TEXT_NULL;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorInt;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.checkTableExists;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorString;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorUUID;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getDedupeByteBuffer;
 import static com.android.server.healthconnect.storage.utils.WhereClauses.LogicalOperator.AND;
@@ -49,12 +48,15 @@ import android.health.connect.datatypes.AggregationType;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.internal.datatypes.utils.HealthConnectMappings;
+import android.health.connect.internal.datatypes.utils.RecordInternalFactory;
 import android.util.ArrayMap;
 import android.util.Pair;
 import android.util.Slog;
 
 import androidx.annotation.Nullable;
 
+import com.android.healthfitness.flags.AconfigFlagHelper;
+import com.android.healthfitness.flags.Flags;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.request.AggregateParams;
 import com.android.server.healthconnect.storage.request.AggregateTableRequest;
@@ -69,7 +71,9 @@ import com.android.server.healthconnect.storage.utils.StorageUtils;
 import com.android.server.healthconnect.storage.utils.TableColumnPair;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -93,7 +97,7 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
     public static final String APP_INFO_ID_COLUMN_NAME = "app_info_id";
     public static final String LAST_MODIFIED_TIME_COLUMN_NAME = "last_modified_time";
     private static final String CLIENT_RECORD_VERSION_COLUMN_NAME = "client_record_version";
-    private static final String DEVICE_INFO_ID_COLUMN_NAME = "device_info_id";
+    public static final String DEVICE_INFO_ID_COLUMN_NAME = "device_info_id";
     private static final String RECORDING_METHOD_COLUMN_NAME = "recording_method";
     private static final String DEDUPE_HASH_COLUMN_NAME = "dedupe_hash";
     private static final List<Pair<String, Integer>> UNIQUE_COLUMNS_INFO =
@@ -101,6 +105,8 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
                     new Pair<>(DEDUPE_HASH_COLUMN_NAME, UpsertTableRequest.TYPE_BLOB),
                     new Pair<>(UUID_COLUMN_NAME, UpsertTableRequest.TYPE_BLOB));
     @RecordTypeIdentifier.RecordType private final int mRecordIdentifier;
+    // Resolved on first read, looking up the constructor allocates on every call.
+    @Nullable private volatile Constructor<? extends RecordInternal<?>> mRecordConstructor;
 
     RecordHelper(@RecordTypeIdentifier.RecordType int recordIdentifier) {
         mRecordIdentifier = recordIdentifier;
@@ -121,6 +127,45 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
     /** Database migration. Introduces automatic local time generation. */
     public abstract void applyGeneratedLocalTimeUpgrade(SQLiteDatabase db);
 
+    /**
+     * Database migration. Adds the columns for packed samples to the tables of series records,
+     * no-op for other records.
+     */
+    public void applyPackedSeriesSamplesUpgrade(SQLiteDatabase db) {}
+
+    /**
+     * Database migration. Indexes the main table in the order of pages read by filters, for row id
+     * page tokens to seek to the next page.
+     */
+    public final void applyKeysetPageTokensUpgrade(SQLiteDatabase db) {
+        if (!checkTableExists(db, getMainTableName())) {
+            return;
+        }
+        List<String> columnNames = List.of(getStartTimeColumnName(), PRIMARY_COLUMN_NAME);
+        db.execSQL(CreateTableRequest.getCreateIndexCommand(getMainTableName(), columnNames));
+    }
+
+    /**
+     * Database migration. Indexes the main table by app in the order of pages, for reads and
+     * deletes of the records of some apps within a time range, and by local start time, for reads
+     * and aggregations in local time.
+     */
+    public final void applyTimeRangeIndexesUpgrade(SQLiteDatabase db) {
+        if (!checkTableExists(db, getMainTableName())) {
+            return;
+        }
+        db.execSQL(
+                CreateTableRequest.getCreateIndexCommand(
+                        getMainTableName(),
+                        List.of(
+                                APP_INFO_ID_COLUMN_NAME,
+                                getStartTimeColumnName(),
+                                PRIMARY_COLUMN_NAME)));
+        db.execSQL(
+                CreateTableRequest.getCreateIndexCommand(
+                        getMainTableName(), List.of(getLocalStartTimeColumnName())));
+    }
+
     @RecordTypeIdentifier.RecordType
     public int getRecordIdentifier() {
         return mRecordIdentifier;
@@ -165,14 +210,14 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
             params.appendAdditionalColumns(Collections.singletonList(physicalTimeColumnName));
         }
 
+        List<Long> appInfoIdFilters = appInfoHelper.getAppInfoIds(packageFilters);
+        long callingAppInfoId = appInfoHelper.getAppInfoId(callingPackage);
         WhereClauses whereClauses = new WhereClauses(AND);
         // filters by package names
-        whereClauses.addWhereInLongsClause(
-                APP_INFO_ID_COLUMN_NAME, appInfoHelper.getAppInfoIds(packageFilters));
+        whereClauses.addWhereInLongsClause(APP_INFO_ID_COLUMN_NAME, appInfoIdFilters);
         // filter by start date access
         whereClauses.addNestedWhereClauses(
-                getFilterByStartAccessDateWhereClauses(
-                        appInfoHelper.getAppInfoId(callingPackage), startDateAccess));
+                getFilterByStartAccessDateWhereClauses(callingAppInfoId, startDateAccess));
         // data start time < filter end time
         whereClauses.addWhereLessThanClause(startTimeColumnName, endTime);
         if (endTimeColumnName != null) {
@@ -184,17 +229,30 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
             whereClauses.addWhereGreaterThanOrEqualClause(startTimeColumnName, startTime);
         }
 
-        return new AggregateTableRequest(
-                        params,
-                        aggregationType,
-                        this,
-                        whereClauses,
-                        healthDataCategoryPriorityHelper,
-                        internalHealthConnectMappings,
-                        appInfoHelper,
-                        transactionManager,
-                        useLocalTime)
-                .setTimeFilter(startTime, endTime);
+        AggregateTableRequest request =
+                new AggregateTableRequest(
+                                params,
+                                aggregationType,
+                                this,
+                                whereClauses,
+                                healthDataCategoryPriorityHelper,
+                                internalHealthConnectMappings,
+                                appInfoHelper,
+                                transactionManager,
+                                useLocalTime)
+                        .setTimeFilter(startTime, endTime);
+        if (AconfigFlagHelper.isAggregateRollupsEnabled() && hasRollupsFor(params)) {
+            request.setRollupFilters(appInfoIdFilters, callingAppInfoId, startDateAccess);
+        }
+        return request;
+    }
+
+    /** Returns whether the rollups of this record type aggregate the same column as params. */
+    private boolean hasRollupsFor(AggregateParams params) {
+        AggregateParams rollupParams = getRollupParams();
+        return rollupParams != null
+                && rollupParams.getTableName().equals(params.getTableName())
+                && rollupParams.getColumnsToFetch().equals(params.getColumnsToFetch());
     }
 
     /**
@@ -468,10 +526,12 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
                     "Too many records in the cursor. Max allowed: " + MAXIMUM_ALLOWED_CURSOR_COUNT);
         }
         List<RecordInternal<?>> recordInternalList = new ArrayList<>();
+        RecordColumnIndexes columnIndexes = new RecordColumnIndexes(cursor);
         while (cursor.moveToNext()) {
             recordInternalList.add(
                     getRecord(
                             cursor,
+                            columnIndexes,
                             /* packageNamesByAppIds= */ null,
                             deviceInfoHelper,
                             appInfoHelper));
@@ -520,6 +580,11 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
      * <li>one extra record: If there are more records than (offset+requestSize), a page token is
      *     returned for the next page. If not, then a default token is returned.
      *
+     *     <p>If {@link AconfigFlagHelper#isKeysetPageTokensEnabled()}, the page token returned
+     *     holds the start time and row id of the extra record instead of the offset, and the next
+     *     page is read from that key onwards, with no records to skip. Row ids too large for the
+     *     page token fall back to the offset.
+     *
      * @see #getLimitSize(ReadRecordsRequestParcel)
      */
     public Pair<List<RecordInternal<?>>, PageTokenWrapper> getNextInternalRecordsPageAndToken(
@@ -533,6 +598,8 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
         // page(s).
         // If the offset is greater than number of records in the cursor, it'll move to the last
         // index and will not enter the while loop below.
+        RecordColumnIndexes columnIndexes = new RecordColumnIndexes(cursor);
+        int startTimeIndex = cursor.getColumnIndex(getStartTimeColumnName());
         long prevStartTime;
         long currentStartTime = DEFAULT_LONG;
         for (int i = 0; i < prevPageToken.offset(); i++) {
@@ -540,7 +607,7 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
                 break;
             }
             prevStartTime = currentStartTime;
-            currentStartTime = getCursorLong(cursor, getStartTimeColumnName());
+            currentStartTime = cursor.getLong(startTimeIndex);
             if (prevStartTime != DEFAULT_LONG && prevStartTime != currentStartTime) {
                 // The current record should not be skipped
                 cursor.moveToPrevious();
@@ -554,17 +621,32 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
         PageTokenWrapper nextPageToken = EMPTY_PAGE_TOKEN;
         while (cursor.moveToNext()) {
             prevStartTime = currentStartTime;
-            currentStartTime = getCursorLong(cursor, getStartTimeColumnName());
+            currentStartTime = cursor.getLong(startTimeIndex);
             if (currentStartTime != prevStartTime) {
                 offset = 0;
             }
 
             if (recordInternalList.size() >= requestSize) {
-                nextPageToken =
-                        PageTokenWrapper.of(prevPageToken.isAscending(), currentStartTime, offset);
+                if (AconfigFlagHelper.isKeysetPageTokensEnabled()) {
+                    nextPageToken =
+                            PageTokenWrapper.ofRowId(
+                                    prevPageToken.isAscending(),
+                                    currentStartTime,
+                                    cursor.getLong(columnIndexes.mRowId));
+                } else {
+                    nextPageToken =
+                            PageTokenWrapper.of(
+                                    prevPageToken.isAscending(), currentStartTime, offset);
+                }
                 break;
             } else {
-                T record = getRecord(cursor, packageNamesByAppIds, deviceInfoHelper, appInfoHelper);
+                T record =
+                        getRecord(
+                                cursor,
+                                columnIndexes,
+                                packageNamesByAppIds,
+                                deviceInfoHelper,
+                                appInfoHelper);
                 recordInternalList.add(record);
                 offset++;
             }
@@ -575,27 +657,25 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
     @SuppressWarnings("unchecked") // uncheck cast to T
     private T getRecord(
             Cursor cursor,
+            RecordColumnIndexes columnIndexes,
             @Nullable Map<Long, String> packageNamesByAppIds,
             DeviceInfoHelper deviceInfoHelper,
             AppInfoHelper appInfoHelper) {
         try {
-            @SuppressWarnings("NullAway") // TODO(b/317029272): fix this suppression
             T record =
                     (T)
-                            HealthConnectMappings.getInstance()
-                                    .getRecordIdToInternalRecordClassMap()
-                                    .get(getRecordIdentifier())
-                                    .getConstructor()
-                                    .newInstance();
-            record.setUuid(getCursorUUID(cursor, UUID_COLUMN_NAME));
-            record.setLastModifiedTime(getCursorLong(cursor, LAST_MODIFIED_TIME_COLUMN_NAME));
-            record.setClientRecordId(getCursorString(cursor, CLIENT_RECORD_ID_COLUMN_NAME));
-            record.setClientRecordVersion(getCursorLong(cursor, CLIENT_RECORD_VERSION_COLUMN_NAME));
-            record.setRecordingMethod(getCursorInt(cursor, RECORDING_METHOD_COLUMN_NAME));
-            record.setRowId(getCursorInt(cursor, PRIMARY_COLUMN_NAME));
-            long deviceInfoId = getCursorLong(cursor, DEVICE_INFO_ID_COLUMN_NAME);
+                            (Flags.reflectionFreeRecordFactory()
+                                    ? RecordInternalFactory.newRecordInternal(getRecordIdentifier())
+                                    : getRecordConstructor().newInstance());
+            record.setUuid(StorageUtils.convertBytesToUUID(cursor.getBlob(columnIndexes.mUuid)));
+            record.setLastModifiedTime(cursor.getLong(columnIndexes.mLastModifiedTime));
+            record.setClientRecordId(cursor.getString(columnIndexes.mClientRecordId));
+            record.setClientRecordVersion(cursor.getLong(columnIndexes.mClientRecordVersion));
+            record.setRecordingMethod(cursor.getInt(columnIndexes.mRecordingMethod));
+            record.setRowId(cursor.getInt(columnIndexes.mRowId));
+            long deviceInfoId = cursor.getLong(columnIndexes.mDeviceInfoId);
             deviceInfoHelper.populateRecordWithValue(deviceInfoId, record);
-            long appInfoId = getCursorLong(cursor, APP_INFO_ID_COLUMN_NAME);
+            long appInfoId = cursor.getLong(columnIndexes.mAppInfoId);
             String packageName =
                     packageNamesByAppIds != null
                             ? packageNamesByAppIds.get(appInfoId)
@@ -614,6 +694,21 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
         }
     }
 
+    private Constructor<? extends RecordInternal<?>> getRecordConstructor()
+            throws NoSuchMethodException {
+        Constructor<? extends RecordInternal<?>> constructor = mRecordConstructor;
+        if (constructor == null) {
+            constructor =
+                    Objects.requireNonNull(
+                                    HealthConnectMappings.getInstance()
+                                            .getRecordIdToInternalRecordClassMap()
+                                            .get(getRecordIdentifier()))
+                            .getConstructor();
+            mRecordConstructor = constructor;
+        }
+        return constructor;
+    }
+
     /** Populate internalRecords fields using extraDataCursor */
     @SuppressWarnings("unchecked")
     public void updateInternalRecordsWithExtraFields(
@@ -621,6 +716,17 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
         readExtraData((List<T>) internalRecords, cursorExtraData, tableName);
     }
 
+    /**
+     * Returns {@code extraDataRequest} restricted to the extra data of {@code internalRecords}, and
+     * ordered so that {@link #updateInternalRecordsWithExtraFields} can read it in a single pass.
+     */
+    @SuppressWarnings("unchecked")
+    public ReadTableRequest getExtraDataReadRequestForRecords(
+            ReadTableRequest extraDataRequest, List<RecordInternal<?>> internalRecords) {
+        return getExtraDataReadRequestForRecords(
+                extraDataRequest, (List<T>) internalRecords, extraDataRequest.getTableName());
+    }
+
     public DeleteTableRequest getDeleteTableRequest(
             List<String> packageFilters,
             long startTime,
@@ -664,6 +770,12 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
     /** Populate internalRecords with extra data. */
     void readExtraData(List<T> internalRecords, Cursor cursorExtraData, String tableName) {}
 
+    /** Restricts a request for extra data of {@code tableName} to {@code internalRecords}. */
+    ReadTableRequest getExtraDataReadRequestForRecords(
+            ReadTableRequest extraDataRequest, List<T> internalRecords, String tableName) {
+        return extraDataRequest;
+    }
+
     /**
      * Child classes should implement this if it wants to create additional tables, apart from the
      * main table.
@@ -672,6 +784,14 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
         return Collections.emptyList();
     }
 
+    /**
+     * Returns whether the record has rows in child tables, which reference the rowId of its row in
+     * the main table.
+     */
+    public boolean hasChildTables() {
+        return !getChildTableCreateRequests().isEmpty();
+    }
+
     /** Returns the table name to be created corresponding to this helper */
     public abstract String getMainTableName();
 
@@ -681,6 +801,17 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
         return null;
     }
 
+    /**
+     * Returns the value that is pre-aggregated into hourly buckets by {@link
+     * AggregateRollupHelper}, or null if this record type has no rollups.
+     *
+     * <p>Only the table, join and the single column to fetch of the returned params are used.
+     */
+    @Nullable
+    AggregateParams getRollupParams() {
+        return null;
+    }
+
     /**
      * This implementation should return the column names with which the table should be created.
      *
@@ -755,7 +886,17 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
             // page token filter
             PageTokenWrapper pageToken =
                     PageTokenWrapper.from(request.getPageToken(), request.isAscending());
-            if (pageToken.isTimestampSet()) {
+            // Row id tokens are accepted even if the flag to return them has been turned off since.
+            if (pageToken.isRowIdSet()) {
+                clauses.addWhereFromKeyClause(
+                        getMainTableName(),
+                        getStartTimeColumnName(),
+                        pageToken.timeMillis(),
+                        PRIMARY_COLUMN_NAME,
+                        pageToken.rowIdLowBits(),
+                        PageTokenWrapper.ROW_ID_LOW_BITS_MASK,
+                        pageToken.isAscending());
+            } else if (pageToken.isTimestampSet()) {
                 long timestamp = pageToken.timeMillis();
                 if (pageToken.isAscending()) {
                     clauses.addWhereGreaterThanOrEqualClause(getStartTimeColumnName(), timestamp);
@@ -846,6 +987,53 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
                 .addOrderByClause(PRIMARY_COLUMN_NAME, /* isAscending= */ true);
     }
 
+    /**
+     * Returns the values of the main table row at the position of {@code cursor}, read from
+     * another database, to insert it into this one. The rowId is left out, and the ids of the app
+     * and the device replaced with their ids in this database.
+     */
+    public static ContentValues getContentValuesOfCopiedRow(
+            Cursor cursor, long appInfoId, long deviceInfoId, long lastModifiedTime) {
+        ContentValues contentValues = new ContentValues(cursor.getColumnCount());
+        for (int i = 0; i < cursor.getColumnCount(); i++) {
+            String columnName = cursor.getColumnName(i);
+            switch (columnName) {
+                case PRIMARY_COLUMN_NAME -> {}
+                case APP_INFO_ID_COLUMN_NAME -> contentValues.put(columnName, appInfoId);
+                case DEVICE_INFO_ID_COLUMN_NAME -> contentValues.put(columnName, deviceInfoId);
+                case LAST_MODIFIED_TIME_COLUMN_NAME ->
+                        contentValues.put(columnName, lastModifiedTime);
+                case DEDUPE_HASH_COLUMN_NAME -> {
+                    byte[] dedupeHash = cursor.getBlob(i);
+                    if (dedupeHash != null) {
+                        // The hash starts with the ids of the app and the device, see
+                        // StorageUtils#getDedupeByteBuffer.
+                        dedupeHash =
+                                ByteBuffer.wrap(dedupeHash.clone())
+                                        .putLong(0, appInfoId)
+                                        .putLong(Long.BYTES, deviceInfoId)
+                                        .array();
+                    }
+                    contentValues.put(columnName, dedupeHash);
+                }
+                default -> {
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_INTEGER ->
+                                contentValues.put(columnName, cursor.getLong(i));
+                        case Cursor.FIELD_TYPE_FLOAT ->
+                                contentValues.put(columnName, cursor.getDouble(i));
+                        case Cursor.FIELD_TYPE_STRING ->
+                                contentValues.put(columnName, cursor.getString(i));
+                        case Cursor.FIELD_TYPE_BLOB ->
+                                contentValues.put(columnName, cursor.getBlob(i));
+                        default -> contentValues.putNull(columnName);
+                    }
+                }
+            }
+        }
+        return contentValues;
+    }
+
     private ContentValues getContentValues(T recordInternal) {
         ContentValues recordContentValues = new ContentValues();
 
@@ -941,4 +1129,27 @@ public abstract class RecordHelper<T extends RecordInternal<?>> {
             UUID upsertedRecordId, UpsertTableRequest upsertTableRequest, long appId) {
         return Collections.emptyList();
     }
+
+    /** Indexes of the columns read for every record, resolved once per cursor. */
+    private static final class RecordColumnIndexes {
+        final int mUuid;
+        final int mLastModifiedTime;
+        final int mClientRecordId;
+        final int mClientRecordVersion;
+        final int mRecordingMethod;
+        final int mRowId;
+        final int mDeviceInfoId;
+        final int mAppInfoId;
+
+        RecordColumnIndexes(Cursor cursor) {
+            mUuid = cursor.getColumnIndex(UUID_COLUMN_NAME);
+            mLastModifiedTime = cursor.getColumnIndex(LAST_MODIFIED_TIME_COLUMN_NAME);
+            mClientRecordId = cursor.getColumnIndex(CLIENT_RECORD_ID_COLUMN_NAME);
+            mClientRecordVersion = cursor.getColumnIndex(CLIENT_RECORD_VERSION_COLUMN_NAME);
+            mRecordingMethod = cursor.getColumnIndex(RECORDING_METHOD_COLUMN_NAME);
+            mRowId = cursor.getColumnIndex(PRIMARY_COLUMN_NAME);
+            mDeviceInfoId = cursor.getColumnIndex(DEVICE_INFO_ID_COLUMN_NAME);
+            mAppInfoId = cursor.getColumnIndex(APP_INFO_ID_COLUMN_NAME);
+        }
+    }
 }
@@ -92,6 +92,13 @@ public final class RestingHeartRateRecordHelper
         return new AggregateParams(RESTING_HEART_RATE_RECORD_TABLE_NAME, columnNames);
     }
 
+    @Override
+    AggregateParams getRollupParams() {
+        return new AggregateParams(
+                RESTING_HEART_RATE_RECORD_TABLE_NAME,
+                Collections.singletonList(BEATS_PER_MINUTE_COLUMN_NAME));
+    }
+
     @Override
     void populateSpecificRecordValue(
             Cursor cursor, RestingHeartRateRecordInternal restingHeartRateRecord) {
@@ -18,28 +18,69 @@ package com.android.server.healthconnect.storage.datatypehelpers;
 
 import static android.health.connect.Constants.PARENT_KEY;
 
+import static com.android.server.healthconnect.storage.utils.StorageUtils.BLOB_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.REAL;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.checkColumnExists;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorBlob;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.internal.datatypes.SeriesRecordInternal;
 import android.util.Pair;
 
+import androidx.annotation.Nullable;
+
+import com.android.healthfitness.flags.AconfigFlagHelper;
+import com.android.healthfitness.flags.Flags;
+import com.android.server.healthconnect.storage.request.AggregateParams;
+import com.android.server.healthconnect.storage.request.AlterTableRequest;
 import com.android.server.healthconnect.storage.request.CreateTableRequest;
 import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+import com.android.server.healthconnect.storage.utils.PackedSeriesSamples;
 import com.android.server.healthconnect.storage.utils.SqlJoin;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
-/** @hide */
+/**
+ * Helper class for series records, which store each sample in a row of a child table.
+ *
+ * <p>When {@link AconfigFlagHelper#isPackedSeriesSamplesEnabled()}, the samples of new records are
+ * instead packed by {@link PackedSeriesSamples} into a blob column of the record row, along with a
+ * summary of the aggregated sample value. Records of both kinds are read and aggregated together,
+ * see {@link #getSampleAggregateParams}.
+ *
+ * @hide
+ */
 abstract class SeriesRecordHelper<
                 T extends SeriesRecordInternal<?, ?>, U extends SeriesRecordInternal.Sample>
         extends IntervalRecordHelper<T> {
     protected static final String PARENT_KEY_COLUMN_NAME = PARENT_KEY;
 
+    // Columns of the main table added in DB_VERSION_PACKED_SERIES_SAMPLES. All null for records
+    // whose samples are in the child table.
+    private static final String PACKED_SAMPLES_COLUMN_NAME = "packed_samples";
+    private static final String SAMPLE_COUNT_COLUMN_NAME = "sample_count";
+    private static final String SAMPLE_SUM_COLUMN_NAME = "sample_sum";
+    private static final String SAMPLE_MIN_COLUMN_NAME = "sample_min";
+    private static final String SAMPLE_MAX_COLUMN_NAME = "sample_max";
+    private static final AggregateParams.PackedSampleSummary PACKED_SAMPLE_SUMMARY =
+            new AggregateParams.PackedSampleSummary(
+                    SAMPLE_COUNT_COLUMN_NAME,
+                    SAMPLE_SUM_COLUMN_NAME,
+                    SAMPLE_MIN_COLUMN_NAME,
+                    SAMPLE_MAX_COLUMN_NAME);
+
+    @Nullable private UpsertTableRequest.RowLayout mSampleRowLayout;
+
     SeriesRecordHelper(@RecordTypeIdentifier.RecordType int recordIdentifier) {
         super(recordIdentifier);
     }
@@ -57,8 +98,22 @@ abstract class SeriesRecordHelper<
     @Override
     @SuppressWarnings("unchecked")
     final List<UpsertTableRequest> getChildTableUpsertRequests(T record) {
+        if (AconfigFlagHelper.isPackedSeriesSamplesEnabled()) {
+            // The samples are in the main table row, see populateSpecificContentValues.
+            return Collections.emptyList();
+        }
         List<? extends SeriesRecordInternal.Sample> samples = record.getSamples().stream().toList();
         List<UpsertTableRequest> requests = new ArrayList<>(samples.size());
+        if (Flags.batchedInserts()) {
+            UpsertTableRequest.RowLayout rowLayout = getSampleRowLayout();
+            for (SeriesRecordInternal.Sample sample : samples) {
+                requests.add(
+                        new UpsertTableRequest(
+                                rowLayout,
+                                (statement, index) -> bindSampleTo(statement, index, (U) sample)));
+            }
+            return requests;
+        }
         samples.forEach(
                 (sample -> {
                     ContentValues contentValues = new ContentValues();
@@ -71,27 +126,106 @@ abstract class SeriesRecordHelper<
         return requests;
     }
 
-    /** Returns the INNER JOIN clause for querying from the table for series datatype */
+    /**
+     * Returns the INNER JOIN clause for querying from the table for series datatype, or a LEFT JOIN
+     * if records may have packed samples and no rows in the series table.
+     */
     @Override
     final SqlJoin getJoinForReadRequest() {
-        return new SqlJoin(
-                getMainTableName(),
-                getSeriesDataTableName(),
-                PRIMARY_COLUMN_NAME,
-                PARENT_KEY_COLUMN_NAME);
+        SqlJoin join =
+                new SqlJoin(
+                        getMainTableName(),
+                        getSeriesDataTableName(),
+                        PRIMARY_COLUMN_NAME,
+                        PARENT_KEY_COLUMN_NAME);
+        if (AconfigFlagHelper.isPackedSeriesSamplesDbEnabled()) {
+            join.setJoinType(SqlJoin.SQL_JOIN_LEFT);
+        }
+        return join;
     }
 
     @Override
     final void populateSpecificContentValues(ContentValues contentValues, T record) {
-        // Empty as we don't want to populate any additional in the main table.
+        if (!AconfigFlagHelper.isPackedSeriesSamplesDbEnabled()) {
+            return;
+        }
+        if (!AconfigFlagHelper.isPackedSeriesSamplesEnabled()) {
+            // Clear the packed samples of an updated record, its samples go to the series table.
+            contentValues.putNull(PACKED_SAMPLES_COLUMN_NAME);
+            contentValues.putNull(SAMPLE_COUNT_COLUMN_NAME);
+            contentValues.putNull(SAMPLE_SUM_COLUMN_NAME);
+            contentValues.putNull(SAMPLE_MIN_COLUMN_NAME);
+            contentValues.putNull(SAMPLE_MAX_COLUMN_NAME);
+            return;
+        }
+        populatePackedSamplesTo(contentValues, record);
     }
 
     /** Populates record with datatype specific details */
     @Override
     final void populateSpecificRecordValue(Cursor cursor, T record) {
+        if (AconfigFlagHelper.isPackedSeriesSamplesDbEnabled()) {
+            byte[] packedSamples = getCursorBlob(cursor, PACKED_SAMPLES_COLUMN_NAME);
+            if (packedSamples != null) {
+                record.setSamples(unpackSamples(packedSamples));
+                return;
+            }
+            if (cursor.isNull(cursor.getColumnIndex(PARENT_KEY_COLUMN_NAME))) {
+                // Not matched by the LEFT JOIN, the record has no samples.
+                record.setSamples(Collections.emptySet());
+                return;
+            }
+        }
         populateSpecificValues(cursor, record);
     }
 
+    /**
+     * Database migration. Adds the columns holding packed samples and their summary to the main
+     * table.
+     */
+    @Override
+    public final void applyPackedSeriesSamplesUpgrade(SQLiteDatabase db) {
+        if (checkColumnExists(db, getMainTableName(), PACKED_SAMPLES_COLUMN_NAME)) {
+            // Upgrade has already been applied, ALTER TABLE ... ADD COLUMN is not idempotent.
+            return;
+        }
+        List<Pair<String, String>> columnInfo =
+                List.of(
+                        new Pair<>(PACKED_SAMPLES_COLUMN_NAME, BLOB_NULL),
+                        new Pair<>(SAMPLE_COUNT_COLUMN_NAME, INTEGER),
+                        new Pair<>(SAMPLE_SUM_COLUMN_NAME, REAL),
+                        new Pair<>(SAMPLE_MIN_COLUMN_NAME, REAL),
+                        new Pair<>(SAMPLE_MAX_COLUMN_NAME, REAL));
+        for (String command :
+                new AlterTableRequest(getMainTableName(), columnInfo)
+                        .getAlterTableAddColumnsCommands()) {
+            db.execSQL(command);
+        }
+    }
+
+    /**
+     * Returns the params to aggregate {@code valueColumnName} of the series table over all the
+     * samples of the records, including the packed ones.
+     *
+     * <p>Records with packed samples have a single row, with null in {@code valueColumnName}, for
+     * which the summary of {@link #getSampleValue} is aggregated instead.
+     */
+    final AggregateParams getSampleAggregateParams(String valueColumnName) {
+        if (!AconfigFlagHelper.isPackedSeriesSamplesDbEnabled()) {
+            return new AggregateParams(
+                            getSeriesDataTableName(), Collections.singletonList(valueColumnName))
+                    .setJoin(
+                            new SqlJoin(
+                                    getSeriesDataTableName(),
+                                    getMainTableName(),
+                                    PARENT_KEY_COLUMN_NAME,
+                                    PRIMARY_COLUMN_NAME));
+        }
+        return new AggregateParams(getMainTableName(), Collections.singletonList(valueColumnName))
+                .setJoin(getJoinForReadRequest())
+                .setPackedSampleSummary(PACKED_SAMPLE_SUMMARY);
+    }
+
     /**
      * A typical series data type should not use the main table to store any of its data, and should
      * instead implement get addition table related functions. Hence, an empty final function
@@ -116,6 +250,96 @@ abstract class SeriesRecordHelper<
     /** Puts the {@code sample} to the {@code contentValues} */
     abstract void populateSampleTo(ContentValues contentValues, U sample);
 
+    /**
+     * Binds the {@code sample} to the {@code statement} from {@code index}, in the order of {@link
+     * #getSeriesRecordColumnInfo()}.
+     */
+    abstract void bindSampleTo(SQLiteStatement statement, int index, U sample);
+
+    /** Returns the time of the {@code sample}. */
+    abstract long getSampleEpochMillis(U sample);
+
+    /** Returns the value of the {@code sample} that is aggregated. */
+    abstract double getSampleValue(U sample);
+
+    /** Creates a sample from the time and value returned for it by the methods above. */
+    abstract U createSample(long epochMillis, double value);
+
+    /** Whether the values of {@link #getSampleValue} are integers, which are packed smaller. */
+    boolean hasIntegerSampleValues() {
+        return false;
+    }
+
+    private void populatePackedSamplesTo(ContentValues contentValues, T record) {
+        List<U> samples = getSamplesSortedByTime(record);
+        int count = samples.size();
+        long[] epochMillis = new long[count];
+        double[] values = new double[count];
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            U sample = samples.get(i);
+            epochMillis[i] = getSampleEpochMillis(sample);
+            values[i] = getSampleValue(sample);
+            sum += values[i];
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+
+        contentValues.put(PACKED_SAMPLES_COLUMN_NAME, packSamples(epochMillis, values));
+        contentValues.put(SAMPLE_COUNT_COLUMN_NAME, count);
+        if (count > 0) {
+            contentValues.put(SAMPLE_SUM_COLUMN_NAME, sum);
+            contentValues.put(SAMPLE_MIN_COLUMN_NAME, min);
+            contentValues.put(SAMPLE_MAX_COLUMN_NAME, max);
+        } else {
+            contentValues.putNull(SAMPLE_SUM_COLUMN_NAME);
+            contentValues.putNull(SAMPLE_MIN_COLUMN_NAME);
+            contentValues.putNull(SAMPLE_MAX_COLUMN_NAME);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<U> getSamplesSortedByTime(T record) {
+        List<U> samples = new ArrayList<>((Set<U>) record.getSamples());
+        // Sorted by time, for the time deltas to be small.
+        samples.sort(Comparator.comparingLong(this::getSampleEpochMillis));
+        return samples;
+    }
+
+    private byte[] packSamples(long[] epochMillis, double[] values) {
+        if (!hasIntegerSampleValues()) {
+            return PackedSeriesSamples.pack(epochMillis, values);
+        }
+        long[] longValues = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            longValues[i] = (long) values[i];
+        }
+        return PackedSeriesSamples.pack(epochMillis, longValues);
+    }
+
+    private Set<U> unpackSamples(byte[] packedSamples) {
+        Set<U> samples = new HashSet<>();
+        PackedSeriesSamples.unpack(
+                packedSamples,
+                (epochMillis, value) -> samples.add(createSample(epochMillis, value)));
+        return samples;
+    }
+
+    private UpsertTableRequest.RowLayout getSampleRowLayout() {
+        if (mSampleRowLayout == null) {
+            mSampleRowLayout =
+                    new UpsertTableRequest.RowLayout(
+                            getSeriesDataTableName(),
+                            PARENT_KEY_COLUMN_NAME,
+                            getSeriesRecordColumnInfo().stream()
+                                    .map(columnInfo -> columnInfo.first)
+                                    .toList());
+        }
+        return mSampleRowLayout;
+    }
+
     private List<Pair<String, String>> getSeriesTableColumnInfo() {
         ArrayList<Pair<String, String>> columnInfo = new ArrayList<>();
         columnInfo.add(new Pair<>(PARENT_KEY_COLUMN_NAME, INTEGER));
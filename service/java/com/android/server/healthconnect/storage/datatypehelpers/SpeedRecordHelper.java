@@ -22,13 +22,11 @@ import static android.health.connect.datatypes.AggregationType.AggregationTypeId
 
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.REAL;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorDouble;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorUUID;
 
 import android.annotation.Nullable;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 import android.health.connect.AggregateResult;
 import android.health.connect.datatypes.AggregationType;
 import android.health.connect.datatypes.RecordTypeIdentifier;
@@ -37,13 +35,11 @@ import android.util.Pair;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.healthconnect.storage.request.AggregateParams;
-import com.android.server.healthconnect.storage.utils.SqlJoin;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Helper class for SpeedRecord.
@@ -85,14 +81,17 @@ public class SpeedRecordHelper
     @Override
     void populateSpecificValues(Cursor seriesTableCursor, SpeedRecordInternal record) {
         HashSet<SpeedRecordInternal.SpeedRecordSample> speedRecordSampleSet = new HashSet<>();
-        UUID uuid = getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME);
+        int uuidIndex = seriesTableCursor.getColumnIndex(UUID_COLUMN_NAME);
+        int valueIndex = seriesTableCursor.getColumnIndex(SPEED_COLUMN_NAME);
+        int epochMillisIndex = seriesTableCursor.getColumnIndex(EPOCH_MILLIS_COLUMN_NAME);
+        byte[] uuid = seriesTableCursor.getBlob(uuidIndex);
         do {
             speedRecordSampleSet.add(
                     new SpeedRecordInternal.SpeedRecordSample(
-                            getCursorDouble(seriesTableCursor, SPEED_COLUMN_NAME),
-                            getCursorLong(seriesTableCursor, EPOCH_MILLIS_COLUMN_NAME)));
+                            seriesTableCursor.getDouble(valueIndex),
+                            seriesTableCursor.getLong(epochMillisIndex)));
         } while (seriesTableCursor.moveToNext()
-                && uuid.equals(getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME)));
+                && Arrays.equals(uuid, seriesTableCursor.getBlob(uuidIndex)));
         // In case we hit another record, move the cursor back to read next record in outer
         // RecordHelper#getInternalRecords loop.
         seriesTableCursor.moveToPrevious();
@@ -122,14 +121,7 @@ public class SpeedRecordHelper
             case SPEED_RECORD_SPEED_MAX:
             case SPEED_RECORD_SPEED_MIN:
             case SPEED_RECORD_SPEED_AVG:
-                return new AggregateParams(
-                                SERIES_TABLE_NAME, Collections.singletonList(SPEED_COLUMN_NAME))
-                        .setJoin(
-                                new SqlJoin(
-                                        SERIES_TABLE_NAME,
-                                        TABLE_NAME,
-                                        PARENT_KEY_COLUMN_NAME,
-                                        PRIMARY_COLUMN_NAME));
+                return getSampleAggregateParams(SPEED_COLUMN_NAME);
             default:
                 return null;
         }
@@ -141,4 +133,28 @@ public class SpeedRecordHelper
         contentValues.put(SPEED_COLUMN_NAME, speedRecord.getSpeed());
         contentValues.put(EPOCH_MILLIS_COLUMN_NAME, speedRecord.getEpochMillis());
     }
+
+    @Override
+    void bindSampleTo(
+            SQLiteStatement statement,
+            int index,
+            SpeedRecordInternal.SpeedRecordSample speedRecord) {
+        statement.bindDouble(index, speedRecord.getSpeed());
+        statement.bindLong(index + 1, speedRecord.getEpochMillis());
+    }
+
+    @Override
+    final long getSampleEpochMillis(SpeedRecordInternal.SpeedRecordSample sample) {
+        return sample.getEpochMillis();
+    }
+
+    @Override
+    final double getSampleValue(SpeedRecordInternal.SpeedRecordSample sample) {
+        return sample.getSpeed();
+    }
+
+    @Override
+    final SpeedRecordInternal.SpeedRecordSample createSample(long epochMillis, double value) {
+        return new SpeedRecordInternal.SpeedRecordSample(value, epochMillis);
+    }
 }
@@ -22,12 +22,10 @@ import static android.health.connect.datatypes.AggregationType.AggregationTypeId
 
 import static com.android.server.healthconnect.storage.utils.StorageUtils.INTEGER;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.REAL;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorDouble;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
-import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorUUID;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 import android.health.connect.AggregateResult;
 import android.health.connect.datatypes.AggregationType;
 import android.health.connect.datatypes.RecordTypeIdentifier;
@@ -37,13 +35,11 @@ import android.util.Pair;
 import androidx.annotation.Nullable;
 
 import com.android.server.healthconnect.storage.request.AggregateParams;
-import com.android.server.healthconnect.storage.utils.SqlJoin;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Helper class for StepsCadenceRecord.
@@ -86,14 +82,17 @@ public class StepsCadenceRecordHelper
     void populateSpecificValues(Cursor seriesTableCursor, StepsCadenceRecordInternal record) {
         HashSet<StepsCadenceRecordInternal.StepsCadenceRecordSample> stepsCadenceRecordSampleSet =
                 new HashSet<>();
-        UUID uuid = getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME);
+        int uuidIndex = seriesTableCursor.getColumnIndex(UUID_COLUMN_NAME);
+        int valueIndex = seriesTableCursor.getColumnIndex(RATE_COLUMN_NAME);
+        int epochMillisIndex = seriesTableCursor.getColumnIndex(EPOCH_MILLIS_COLUMN_NAME);
+        byte[] uuid = seriesTableCursor.getBlob(uuidIndex);
         do {
             stepsCadenceRecordSampleSet.add(
                     new StepsCadenceRecordInternal.StepsCadenceRecordSample(
-                            getCursorDouble(seriesTableCursor, RATE_COLUMN_NAME),
-                            getCursorLong(seriesTableCursor, EPOCH_MILLIS_COLUMN_NAME)));
+                            seriesTableCursor.getDouble(valueIndex),
+                            seriesTableCursor.getLong(epochMillisIndex)));
         } while (seriesTableCursor.moveToNext()
-                && uuid.equals(getCursorUUID(seriesTableCursor, UUID_COLUMN_NAME)));
+                && Arrays.equals(uuid, seriesTableCursor.getBlob(uuidIndex)));
         // In case we hit another record, move the cursor back to read next record in outer
         // RecordHelper#getInternalRecords loop.
         seriesTableCursor.moveToPrevious();
@@ -108,6 +107,15 @@ public class StepsCadenceRecordHelper
         contentValues.put(EPOCH_MILLIS_COLUMN_NAME, stepsCadenceRecord.getEpochMillis());
     }
 
+    @Override
+    void bindSampleTo(
+            SQLiteStatement statement,
+            int index,
+            StepsCadenceRecordInternal.StepsCadenceRecordSample stepsCadenceRecord) {
+        statement.bindDouble(index, stepsCadenceRecord.getRate());
+        statement.bindLong(index + 1, stepsCadenceRecord.getEpochMillis());
+    }
+
     @Override
     @Nullable
     public AggregateResult<?> getAggregateResult(
@@ -131,16 +139,25 @@ public class StepsCadenceRecordHelper
             case STEPS_CADENCE_RECORD_RATE_AVG:
             case STEPS_CADENCE_RECORD_RATE_MIN:
             case STEPS_CADENCE_RECORD_RATE_MAX:
-                return new AggregateParams(
-                                SERIES_TABLE_NAME, Collections.singletonList(RATE_COLUMN_NAME))
-                        .setJoin(
-                                new SqlJoin(
-                                        SERIES_TABLE_NAME,
-                                        TABLE_NAME,
-                                        PARENT_KEY_COLUMN_NAME,
-                                        PRIMARY_COLUMN_NAME));
+                return getSampleAggregateParams(RATE_COLUMN_NAME);
             default:
                 return null;
         }
     }
+
+    @Override
+    final long getSampleEpochMillis(StepsCadenceRecordInternal.StepsCadenceRecordSample sample) {
+        return sample.getEpochMillis();
+    }
+
+    @Override
+    final double getSampleValue(StepsCadenceRecordInternal.StepsCadenceRecordSample sample) {
+        return sample.getRate();
+    }
+
+    @Override
+    final StepsCadenceRecordInternal.StepsCadenceRecordSample createSample(
+            long epochMillis, double value) {
+        return new StepsCadenceRecordInternal.StepsCadenceRecordSample(value, epochMillis);
+    }
 }
@@ -89,6 +89,12 @@ public final class WeightRecordHelper extends InstantRecordHelper<WeightRecordIn
         return new AggregateParams(WEIGHT_RECORD_TABLE_NAME, columnNames);
     }
 
+    @Override
+    AggregateParams getRollupParams() {
+        return new AggregateParams(
+                WEIGHT_RECORD_TABLE_NAME, Collections.singletonList(WEIGHT_COLUMN_NAME));
+    }
+
     @Override
     void populateSpecificRecordValue(Cursor cursor, WeightRecordInternal weightRecord) {
         weightRecord.setWeight(getCursorDouble(cursor, WEIGHT_COLUMN_NAME));
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.android.server.healthconnect.storage.datatypehelpers.aggregation;
+
+import android.database.Cursor;
+
+import androidx.annotation.Nullable;
+
+import java.time.ZoneOffset;
+
+/**
+ * Computes priority aggregation results for a set of time groups.
+ *
+ * @hide
+ */
+public interface PriorityAggregator {
+    /** Calculates aggregation result for each group. */
+    void calculateAggregation(Cursor cursor);
+
+    /** Returns result for the given group, or {@code null} if no record contributed to it. */
+    @Nullable
+    Double getResultForGroup(Integer groupNumber);
+
+    /** Returns start time zone offset for the given group */
+    @Nullable
+    ZoneOffset getZoneOffsetForGroup(Integer groupNumber);
+}
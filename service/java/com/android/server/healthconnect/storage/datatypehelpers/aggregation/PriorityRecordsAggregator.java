@@ -51,7 +51,7 @@ import java.util.TreeSet;
  *
  * @hide
  */
-public class PriorityRecordsAggregator {
+public class PriorityRecordsAggregator implements PriorityAggregator {
     static final String TAG = "HealthPriorityRecordsAggregator";
 
     private final List<Long> mGroupSplits;
@@ -101,7 +101,7 @@ public class PriorityRecordsAggregator {
         }
     }
 
-    /** Calculates aggregation result for each group. */
+    @Override
     public void calculateAggregation(Cursor cursor) {
         initialiseTimestampsBuffer(cursor);
         populateTimestampBuffer(cursor);
@@ -211,13 +211,13 @@ public class PriorityRecordsAggregator {
         return data;
     }
 
-    /** Returns result for the given group */
+    @Override
     @SuppressWarnings("NullAway") // TODO(b/317029272): fix this suppression
     public Double getResultForGroup(Integer groupNumber) {
         return mGroupToAggregationResult.get(groupNumber);
     }
 
-    /** Returns start time zone offset for the given group */
+    @Override
     @SuppressWarnings("NullAway") // TODO(b/317029272): fix this suppression
     public ZoneOffset getZoneOffsetForGroup(Integer groupNumber) {
         return mGroupToFirstZoneOffset.get(groupNumber);
@@ -0,0 +1,698 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.android.server.healthconnect.storage.datatypehelpers.aggregation;
+
+import static android.health.connect.datatypes.ActivityIntensityRecord.ACTIVITY_INTENSITY_TYPE_MODERATE;
+import static android.health.connect.datatypes.ActivityIntensityRecord.ACTIVITY_INTENSITY_TYPE_VIGOROUS;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.ACTIVE_CALORIES_BURNED_RECORD_ACTIVE_CALORIES_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.ACTIVITY_INTENSITY_DURATION_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.ACTIVITY_INTENSITY_MINUTES_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.ACTIVITY_INTENSITY_MODERATE_DURATION_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.ACTIVITY_INTENSITY_VIGOROUS_DURATION_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.DISTANCE_RECORD_DISTANCE_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.ELEVATION_RECORD_ELEVATION_GAINED_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.EXERCISE_SESSION_DURATION_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.FLOORS_CLIMBED_RECORD_FLOORS_CLIMBED_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.MINDFULNESS_SESSION_DURATION_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.SLEEP_SESSION_DURATION_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.STEPS_RECORD_COUNT_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.WHEEL_CHAIR_PUSHES_RECORD_COUNT_TOTAL;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.IntervalRecordHelper.END_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.IntervalRecordHelper.LOCAL_DATE_TIME_END_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.IntervalRecordHelper.LOCAL_DATE_TIME_START_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.IntervalRecordHelper.START_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.IntervalRecordHelper.START_ZONE_OFFSET_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.APP_INFO_ID_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.LAST_MODIFIED_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.UUID_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.request.AggregateParams.PriorityAggregationExtraParams.VALUE_TYPE_DOUBLE;
+import static com.android.server.healthconnect.storage.request.AggregateParams.PriorityAggregationExtraParams.VALUE_TYPE_LONG;
+
+import android.database.Cursor;
+import android.health.connect.Constants;
+import android.health.connect.datatypes.AggregationType;
+import android.util.Slog;
+
+import androidx.annotation.Nullable;
+
+import com.android.server.healthconnect.storage.datatypehelpers.ActivityIntensityRecordHelper;
+import com.android.server.healthconnect.storage.request.AggregateParams;
+
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Aggregates records with priorities by sweeping over primitive column buffers.
+ *
+ * <p>Produces the same results as {@link PriorityRecordsAggregator}, but instead of allocating
+ * {@link AggregationRecordData} and {@link AggregationTimestamp} objects per row and keeping them
+ * in {@link java.util.TreeSet}s, it reads the cursor into primitive arrays, sorts interval
+ * endpoints with a primitive merge sort and tracks open intervals in an array backed max heap.
+ *
+ * @hide
+ */
+public final class SweepLinePriorityAggregator implements PriorityAggregator {
+    private static final String TAG = "HealthSweepLineAggregator";
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long MILLIS_IN_SECOND = 1000L;
+    private static final long MILLIS_IN_A_MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final int NO_ZONE_OFFSET = Integer.MIN_VALUE;
+
+    // Defines how a record contributes to the result, mirrors subclasses of AggregationRecordData.
+    private static final int KIND_VALUE = 0;
+    private static final int KIND_SESSION_DURATION = 1;
+    private static final int KIND_ACTIVITY_INTENSITY = 2;
+
+    private static final int GROUP_BORDER = AggregationTimestamp.GROUP_BORDER;
+    private static final int INTERVAL_START = AggregationTimestamp.INTERVAL_START;
+    private static final int INTERVAL_END = AggregationTimestamp.INTERVAL_END;
+
+    @AggregationType.AggregationTypeIdentifier private final int mAggregationType;
+    private final AggregateParams.PriorityAggregationExtraParams mExtraParams;
+    private final boolean mUseLocalTime;
+    private final int mKind;
+    private final long[] mGroupSplits;
+    private final int mNumberOfGroups;
+    // App ids in the priority order, app at index i has priority (length - i).
+    private final long[] mAppIdPriorityList;
+
+    // Record columns, index i describes the i-th accepted record.
+    private int mRecordCount;
+    private long[] mStartTimes = new long[INITIAL_CAPACITY];
+    private long[] mEndTimes = new long[INITIAL_CAPACITY];
+    private long[] mLastModifiedTimes = new long[INITIAL_CAPACITY];
+    private int[] mPriorities = new int[INITIAL_CAPACITY];
+    private int[] mZoneOffsetSeconds = new int[INITIAL_CAPACITY];
+    // Value for KIND_VALUE, multiplier for KIND_ACTIVITY_INTENSITY.
+    private double[] mValues = new double[INITIAL_CAPACITY];
+
+    // Intervals to exclude for KIND_SESSION_DURATION, record i owns the sorted slices
+    // [mExcludeOffsets[i], mExcludeOffsets[i + 1]) of mExcludeStarts and mExcludeEnds.
+    private int[] mExcludeOffsets = new int[INITIAL_CAPACITY + 1];
+    private int mExcludeCount;
+    private long[] mExcludeStarts = new long[0];
+    private long[] mExcludeEnds = new long[0];
+
+    // Position of each record in the priority order, the higher the rank the higher the priority.
+    private int[] mRanks = new int[0];
+    private int[] mOpenIntervalsHeap = new int[0];
+    private int mOpenIntervalsHeapSize;
+    private int mOpenIntervalsCount;
+    private boolean[] mClosed = new boolean[0];
+
+    private final double[] mGroupResults;
+    private final boolean[] mGroupHasResult;
+    private final int[] mGroupZoneOffsetSeconds;
+    private int mCurrentGroup = -1;
+
+    public SweepLinePriorityAggregator(
+            List<Long> groupSplits,
+            List<Long> appIdPriorityList,
+            @AggregationType.AggregationTypeIdentifier int aggregationType,
+            AggregateParams.PriorityAggregationExtraParams extraParams,
+            boolean useLocalTime) {
+        mAggregationType = aggregationType;
+        mExtraParams = extraParams;
+        mUseLocalTime = useLocalTime;
+        mKind = getKind(aggregationType);
+        mGroupSplits = new long[groupSplits.size()];
+        for (int i = 0; i < mGroupSplits.length; i++) {
+            mGroupSplits[i] = groupSplits.get(i);
+        }
+        mAppIdPriorityList = new long[appIdPriorityList.size()];
+        for (int i = 0; i < mAppIdPriorityList.length; i++) {
+            mAppIdPriorityList[i] = appIdPriorityList.get(i);
+        }
+        mNumberOfGroups = Math.max(mGroupSplits.length - 1, 0);
+        mGroupResults = new double[mNumberOfGroups];
+        mGroupHasResult = new boolean[mNumberOfGroups];
+        mGroupZoneOffsetSeconds = new int[mNumberOfGroups];
+
+        if (Constants.DEBUG) {
+            Slog.d(
+                    TAG,
+                    "Aggregation request for splits: "
+                            + groupSplits
+                            + " with priorities: "
+                            + appIdPriorityList);
+        }
+    }
+
+    @Override
+    public void calculateAggregation(Cursor cursor) {
+        readRecords(cursor);
+        computeRanks();
+        sweep();
+
+        if (Constants.DEBUG) {
+            Slog.d(
+                    TAG,
+                    "Aggregated "
+                            + mRecordCount
+                            + " records, result: "
+                            + Arrays.toString(mGroupResults));
+        }
+    }
+
+    @Override
+    @Nullable
+    public Double getResultForGroup(Integer groupNumber) {
+        if (groupNumber < 0 || groupNumber >= mNumberOfGroups || !mGroupHasResult[groupNumber]) {
+            return null;
+        }
+        return mGroupResults[groupNumber];
+    }
+
+    @Override
+    @Nullable
+    public ZoneOffset getZoneOffsetForGroup(Integer groupNumber) {
+        if (groupNumber < 0
+                || groupNumber >= mNumberOfGroups
+                || !mGroupHasResult[groupNumber]
+                || mGroupZoneOffsetSeconds[groupNumber] == NO_ZONE_OFFSET) {
+            return null;
+        }
+        return ZoneOffset.ofTotalSeconds(mGroupZoneOffsetSeconds[groupNumber]);
+    }
+
+    private void readRecords(Cursor cursor) {
+        int startTimeIndex =
+                cursor.getColumnIndex(
+                        mUseLocalTime
+                                ? LOCAL_DATE_TIME_START_TIME_COLUMN_NAME
+                                : START_TIME_COLUMN_NAME);
+        int endTimeIndex =
+                cursor.getColumnIndex(
+                        mUseLocalTime
+                                ? LOCAL_DATE_TIME_END_TIME_COLUMN_NAME
+                                : END_TIME_COLUMN_NAME);
+        int lastModifiedTimeIndex = cursor.getColumnIndex(LAST_MODIFIED_TIME_COLUMN_NAME);
+        int zoneOffsetIndex = cursor.getColumnIndex(START_ZONE_OFFSET_COLUMN_NAME);
+        int appIdIndex = cursor.getColumnIndex(APP_INFO_ID_COLUMN_NAME);
+        int valueIndex = getValueColumnIndex(cursor);
+
+        while (cursor.moveToNext()) {
+            long startTime = cursor.getLong(startTimeIndex);
+            long endTime = cursor.getLong(endTimeIndex);
+            long lastModifiedTime = cursor.getLong(lastModifiedTimeIndex);
+            int zoneOffsetSeconds =
+                    zoneOffsetIndex == -1 ? NO_ZONE_OFFSET : cursor.getInt(zoneOffsetIndex);
+            int priority = getPriority(cursor.getLong(appIdIndex));
+            double value = readValue(cursor, valueIndex);
+
+            ensureRecordCapacity(mRecordCount + 1);
+            if (mKind == KIND_SESSION_DURATION) {
+                // Sessions span several rows, one per interval to exclude, hence must be read
+                // even if the session is skipped to keep the cursor position consistent.
+                mExcludeOffsets[mRecordCount] = mExcludeCount;
+                readIntervalsToExclude(cursor, zoneOffsetSeconds);
+            }
+
+            // TODO(b/313924267): workaround for b/308467442, should be remove once we have a long
+            // term solution. Skip records with start time > end time to keep the algorithm
+            // functional.
+            if (priority == Integer.MIN_VALUE || startTime > endTime) {
+                mExcludeCount = mExcludeOffsets[mRecordCount];
+                continue;
+            }
+
+            int index = mRecordCount++;
+            mStartTimes[index] = startTime;
+            mEndTimes[index] = endTime;
+            mLastModifiedTimes[index] = lastModifiedTime;
+            mPriorities[index] = priority;
+            mZoneOffsetSeconds[index] = zoneOffsetSeconds;
+            mValues[index] = value;
+            if (mKind == KIND_SESSION_DURATION) {
+                int from = mExcludeOffsets[index];
+                Arrays.sort(mExcludeStarts, from, mExcludeCount);
+                Arrays.sort(mExcludeEnds, from, mExcludeCount);
+            }
+        }
+
+        mExcludeOffsets[mRecordCount] = mExcludeCount;
+    }
+
+    private int getValueColumnIndex(Cursor cursor) {
+        return switch (mKind) {
+            case KIND_VALUE -> cursor.getColumnIndex(mExtraParams.getColumnToAggregateName());
+            case KIND_ACTIVITY_INTENSITY ->
+                    cursor.getColumnIndex(ActivityIntensityRecordHelper.TYPE_COLUMN_NAME);
+            default -> -1;
+        };
+    }
+
+    private double readValue(Cursor cursor, int valueIndex) {
+        if (mKind == KIND_VALUE) {
+            int valueType = mExtraParams.getColumnToAggregateType();
+            if (valueType == VALUE_TYPE_DOUBLE) {
+                return cursor.getDouble(valueIndex);
+            } else if (valueType == VALUE_TYPE_LONG) {
+                return cursor.getLong(valueIndex);
+            }
+            throw new IllegalArgumentException("Unknown aggregation column type.");
+        }
+
+        if (mKind == KIND_ACTIVITY_INTENSITY) {
+            return getActivityIntensityMultiplier(cursor.getInt(valueIndex));
+        }
+
+        return 0;
+    }
+
+    /**
+     * Zero multiplier is used for cases when the intensity type of the underlying record is
+     * different to the intensity type being aggregated, see {@link
+     * ActivityIntensityAggregationData}.
+     */
+    private int getActivityIntensityMultiplier(int activityIntensityType) {
+        return switch (mAggregationType) {
+            case ACTIVITY_INTENSITY_MODERATE_DURATION_TOTAL ->
+                    activityIntensityType == ACTIVITY_INTENSITY_TYPE_MODERATE ? 1 : 0;
+            case ACTIVITY_INTENSITY_VIGOROUS_DURATION_TOTAL ->
+                    activityIntensityType == ACTIVITY_INTENSITY_TYPE_VIGOROUS ? 1 : 0;
+            case ACTIVITY_INTENSITY_DURATION_TOTAL -> 1;
+            case ACTIVITY_INTENSITY_MINUTES_TOTAL ->
+                    activityIntensityType == ACTIVITY_INTENSITY_TYPE_MODERATE ? 1 : 2;
+            default ->
+                    throw new IllegalStateException(
+                            "Unsupported aggregation type: " + mAggregationType);
+        };
+    }
+
+    private void readIntervalsToExclude(Cursor cursor, int zoneOffsetSeconds) {
+        String excludeStartColumn = mExtraParams.getExcludeIntervalStartColumnName();
+        String excludeEndColumn = mExtraParams.getExcludeIntervalEndColumnName();
+        int uuidIndex = cursor.getColumnIndex(UUID_COLUMN_NAME);
+        int excludeStartIndex =
+                excludeStartColumn == null ? -1 : cursor.getColumnIndex(excludeStartColumn);
+        int excludeEndIndex =
+                excludeEndColumn == null ? -1 : cursor.getColumnIndex(excludeEndColumn);
+        long localTimeShift = mUseLocalTime ? MILLIS_IN_SECOND * zoneOffsetSeconds : 0;
+
+        byte[] currentSessionUuid = cursor.getBlob(uuidIndex);
+        do {
+            if (excludeStartIndex != -1
+                    && excludeEndIndex != -1
+                    && !cursor.isNull(excludeStartIndex)) {
+                ensureExcludeCapacity(mExcludeCount + 1);
+                mExcludeStarts[mExcludeCount] = cursor.getLong(excludeStartIndex) + localTimeShift;
+                mExcludeEnds[mExcludeCount] = cursor.getLong(excludeEndIndex) + localTimeShift;
+                mExcludeCount++;
+            }
+        } while (cursor.moveToNext()
+                && Arrays.equals(currentSessionUuid, cursor.getBlob(uuidIndex)));
+        // In case we hit another record, move the cursor back to read next record in outer loop.
+        cursor.moveToPrevious();
+    }
+
+    private int getPriority(long appId) {
+        // Iterate from the end so duplicated ids get the lowest priority, same as the map in
+        // PriorityRecordsAggregator.
+        for (int i = mAppIdPriorityList.length - 1; i >= 0; i--) {
+            if (mAppIdPriorityList[i] == appId) {
+                return mAppIdPriorityList.length - i;
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    private void computeRanks() {
+        int[] order = new int[mRecordCount];
+        for (int i = 0; i < mRecordCount; i++) {
+            order[i] = i;
+        }
+        mergeSort(order, this::compareRecords);
+        mRanks = new int[mRecordCount];
+        for (int rank = 0; rank < mRecordCount; rank++) {
+            mRanks[order[rank]] = rank;
+        }
+    }
+
+    private void sweep() {
+        // Event 2 * i is the start of record i, event 2 * i + 1 is its end.
+        int[] events = new int[2 * mRecordCount];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = i;
+        }
+        mergeSort(events, this::compareEvents);
+
+        mOpenIntervalsHeap = new int[mRecordCount];
+        mClosed = new boolean[mRecordCount];
+
+        int splitIndex = 0;
+        int eventIndex = 0;
+        int totalPoints = mGroupSplits.length + events.length;
+        for (int point = 0; point < totalPoints - 1; point++) {
+            long scanTime;
+            int scanType;
+            if (isNextPointGroupBorder(splitIndex, eventIndex, events)) {
+                scanTime = mGroupSplits[splitIndex++];
+                scanType = GROUP_BORDER;
+                mCurrentGroup += 1;
+            } else {
+                int event = events[eventIndex++];
+                int record = event >> 1;
+                scanTime = getEventTime(event);
+                scanType = getEventType(event);
+                if (scanType == INTERVAL_START) {
+                    openInterval(record);
+                } else {
+                    closeInterval(record);
+                }
+            }
+
+            long nextTime;
+            int nextType;
+            if (isNextPointGroupBorder(splitIndex, eventIndex, events)) {
+                nextTime = mGroupSplits[splitIndex];
+                nextType = GROUP_BORDER;
+            } else {
+                nextTime = getEventTime(events[eventIndex]);
+                nextType = getEventType(events[eventIndex]);
+            }
+
+            updateAggregationResult(scanTime, scanType, nextTime, nextType);
+        }
+    }
+
+    private boolean isNextPointGroupBorder(int splitIndex, int eventIndex, int[] events) {
+        if (splitIndex >= mGroupSplits.length) {
+            return false;
+        }
+        // Group borders go first as group intervals are inclusive for start, exclusive for end.
+        return eventIndex >= events.length
+                || mGroupSplits[splitIndex] <= getEventTime(events[eventIndex]);
+    }
+
+    private void updateAggregationResult(
+            long startTime, int startType, long endTime, int endType) {
+        if (mOpenIntervalsCount == 0 || mCurrentGroup < 0 || mCurrentGroup >= mNumberOfGroups) {
+            return;
+        }
+
+        if (startTime == endTime && startType == GROUP_BORDER && endType == INTERVAL_END) {
+            // Don't create new aggregation result as no open intervals in this group so far.
+            return;
+        }
+
+        int record = peekHighestPriorityOpenInterval();
+        mGroupResults[mCurrentGroup] +=
+                getResultOnInterval(record, startTime, startType, endTime, endType);
+
+        if (!mGroupHasResult[mCurrentGroup]) {
+            mGroupHasResult[mCurrentGroup] = true;
+            mGroupZoneOffsetSeconds[mCurrentGroup] = getZoneOffsetOfEarliestOpenInterval();
+        }
+    }
+
+    /** Same as {@link AggregationRecordData#getResultOnInterval} for the given record. */
+    private double getResultOnInterval(
+            int record, long startTime, int startType, long endTime, int endType) {
+        long recordStart = mStartTimes[record];
+        long recordEnd = mEndTimes[record];
+        switch (mKind) {
+            case KIND_VALUE:
+                double intervalDuration = recordEnd - recordStart;
+                double overlapDuration =
+                        Math.min(recordEnd, endTime) - Math.max(recordStart, startTime);
+                // Multiple instant records with the same time account only one value, see
+                // ValueColumnAggregationData.
+                if (intervalDuration == 0
+                        && startType == INTERVAL_START
+                        && endType == INTERVAL_END) {
+                    return mValues[record];
+                }
+                if (intervalDuration < 0 || overlapDuration <= 0) {
+                    return 0;
+                }
+                return mValues[record] * overlapDuration / intervalDuration;
+            case KIND_SESSION_DURATION:
+                return AggregationRecordData.calculateIntervalOverlapDuration(
+                                recordStart, startTime, recordEnd, endTime)
+                        - calculateDurationToExclude(record, startTime, endTime);
+            case KIND_ACTIVITY_INTENSITY:
+                double overlapDurationMillis =
+                        AggregationRecordData.calculateIntervalOverlapDuration(
+                                recordStart, startTime, recordEnd, endTime);
+                return overlapDurationMillis
+                        * mValues[record]
+                        / (mAggregationType == ACTIVITY_INTENSITY_MINUTES_TOTAL
+                                ? MILLIS_IN_A_MINUTE
+                                : 1);
+            default:
+                throw new IllegalStateException("Unknown aggregation kind: " + mKind);
+        }
+    }
+
+    /** Same as {@link SessionDurationAggregationData} exclusion, over primitive slices. */
+    private long calculateDurationToExclude(int record, long startTime, long endTime) {
+        int from = mExcludeOffsets[record];
+        int to = mExcludeOffsets[record + 1];
+        if (from == to) {
+            return 0;
+        }
+
+        // Find the latest start timestamp index such that intervalStart <= startTime
+        int lowerBoundStartIndex = Arrays.binarySearch(mExcludeStarts, from, to, startTime);
+        if (lowerBoundStartIndex < 0) {
+            int insertionIndex = -lowerBoundStartIndex - 1;
+            lowerBoundStartIndex = Math.max(insertionIndex - 1, from);
+        }
+
+        // Find the earliest end timestamp index such that intervalEnd >= endTime
+        int upperBoundEndIndex = Arrays.binarySearch(mExcludeEnds, from, to, endTime);
+        if (upperBoundEndIndex < 0) {
+            upperBoundEndIndex = -upperBoundEndIndex;
+        }
+
+        long durationToExclude = 0;
+        for (int index = lowerBoundStartIndex;
+                index < Math.min(upperBoundEndIndex + 1, to);
+                index++) {
+            durationToExclude +=
+                    AggregationRecordData.calculateIntervalOverlapDuration(
+                            mExcludeStarts[index], startTime, mExcludeEnds[index], endTime);
+        }
+        return durationToExclude;
+    }
+
+    private int getZoneOffsetOfEarliestOpenInterval() {
+        int earliest = -1;
+        for (int i = 0; i < mOpenIntervalsHeapSize; i++) {
+            int record = mOpenIntervalsHeap[i];
+            if (mClosed[record]) {
+                continue;
+            }
+            if (earliest == -1
+                    || mStartTimes[record] < mStartTimes[earliest]
+                    || (mStartTimes[record] == mStartTimes[earliest]
+                            && mRanks[record] < mRanks[earliest])) {
+                earliest = record;
+            }
+        }
+        return mZoneOffsetSeconds[earliest];
+    }
+
+    /** Orders records the same way as {@link AggregationRecordData#compareTo}. */
+    private int compareRecords(int first, int second) {
+        if (mPriorities[first] != mPriorities[second]) {
+            return Integer.compare(mPriorities[first], mPriorities[second]);
+        }
+
+        // The later the last modified time, the higher priority this record has.
+        if (mLastModifiedTimes[first] != mLastModifiedTimes[second]) {
+            return Long.compare(mLastModifiedTimes[first], mLastModifiedTimes[second]);
+        }
+
+        if (mStartTimes[first] != mStartTimes[second]) {
+            return Long.compare(mStartTimes[first], mStartTimes[second]);
+        }
+
+        if (mEndTimes[first] != mEndTimes[second]) {
+            return Long.compare(mEndTimes[first], mEndTimes[second]);
+        }
+
+        return Double.compare(getFullResult(first), getFullResult(second));
+    }
+
+    private double getFullResult(int record) {
+        return getResultOnInterval(
+                record, mStartTimes[record], INTERVAL_START, mEndTimes[record], INTERVAL_END);
+    }
+
+    /** Orders events the same way as {@link AggregationTimestamp#compareTo}. */
+    private int compareEvents(int first, int second) {
+        long firstTime = getEventTime(first);
+        long secondTime = getEventTime(second);
+        if (firstTime != secondTime) {
+            return Long.compare(firstTime, secondTime);
+        }
+
+        int firstType = getEventType(first);
+        int secondType = getEventType(second);
+        if (firstType != secondType) {
+            return firstType - secondType;
+        }
+
+        return Integer.compare(mRanks[first >> 1], mRanks[second >> 1]);
+    }
+
+    private long getEventTime(int event) {
+        int record = event >> 1;
+        return (event & 1) == 0 ? mStartTimes[record] : mEndTimes[record];
+    }
+
+    private static int getEventType(int event) {
+        return (event & 1) == 0 ? INTERVAL_START : INTERVAL_END;
+    }
+
+    private void openInterval(int record) {
+        mOpenIntervalsCount++;
+        int position = mOpenIntervalsHeapSize++;
+        mOpenIntervalsHeap[position] = record;
+        while (position > 0) {
+            int parent = (position - 1) >> 1;
+            if (mRanks[mOpenIntervalsHeap[parent]] >= mRanks[record]) {
+                break;
+            }
+            mOpenIntervalsHeap[position] = mOpenIntervalsHeap[parent];
+            position = parent;
+        }
+        mOpenIntervalsHeap[position] = record;
+    }
+
+    /** Closed intervals are removed lazily, once they reach the top of the heap. */
+    private void closeInterval(int record) {
+        mClosed[record] = true;
+        mOpenIntervalsCount--;
+    }
+
+    private int peekHighestPriorityOpenInterval() {
+        while (mClosed[mOpenIntervalsHeap[0]]) {
+            popHeap();
+        }
+        return mOpenIntervalsHeap[0];
+    }
+
+    private void popHeap() {
+        int last = mOpenIntervalsHeap[--mOpenIntervalsHeapSize];
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= mOpenIntervalsHeapSize) {
+                break;
+            }
+            if (child + 1 < mOpenIntervalsHeapSize
+                    && mRanks[mOpenIntervalsHeap[child + 1]] > mRanks[mOpenIntervalsHeap[child]]) {
+                child++;
+            }
+            if (mRanks[mOpenIntervalsHeap[child]] <= mRanks[last]) {
+                break;
+            }
+            mOpenIntervalsHeap[position] = mOpenIntervalsHeap[child];
+            position = child;
+        }
+        mOpenIntervalsHeap[position] = last;
+    }
+
+    private void ensureRecordCapacity(int capacity) {
+        if (capacity <= mStartTimes.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, mStartTimes.length * 2);
+        mStartTimes = Arrays.copyOf(mStartTimes, newCapacity);
+        mEndTimes = Arrays.copyOf(mEndTimes, newCapacity);
+        mLastModifiedTimes = Arrays.copyOf(mLastModifiedTimes, newCapacity);
+        mPriorities = Arrays.copyOf(mPriorities, newCapacity);
+        mZoneOffsetSeconds = Arrays.copyOf(mZoneOffsetSeconds, newCapacity);
+        mValues = Arrays.copyOf(mValues, newCapacity);
+        mExcludeOffsets = Arrays.copyOf(mExcludeOffsets, newCapacity + 1);
+    }
+
+    private void ensureExcludeCapacity(int capacity) {
+        if (capacity <= mExcludeStarts.length) {
+            return;
+        }
+        int newCapacity = Math.max(INITIAL_CAPACITY, mExcludeStarts.length * 2);
+        mExcludeStarts = Arrays.copyOf(mExcludeStarts, newCapacity);
+        mExcludeEnds = Arrays.copyOf(mExcludeEnds, newCapacity);
+    }
+
+    /** Stable bottom up merge sort of int items, avoids boxing of {@link Arrays#sort}. */
+    private static void mergeSort(int[] items, IntBinaryOperator comparator) {
+        int[] source = items;
+        int[] target = new int[items.length];
+        for (int width = 1; width < items.length; width *= 2) {
+            for (int low = 0; low < items.length; low += 2 * width) {
+                int middle = Math.min(low + width, items.length);
+                int high = Math.min(low + 2 * width, items.length);
+                int left = low;
+                int right = middle;
+                int out = low;
+                while (left < middle && right < high) {
+                    target[out++] =
+                            comparator.applyAsInt(source[left], source[right]) <= 0
+                                    ? source[left++]
+                                    : source[right++];
+                }
+                while (left < middle) {
+                    target[out++] = source[left++];
+                }
+                while (right < high) {
+                    target[out++] = source[right++];
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != items) {
+            System.arraycopy(source, 0, items, 0, items.length);
+        }
+    }
+
+    private static int getKind(@AggregationType.AggregationTypeIdentifier int aggregationType) {
+        return switch (aggregationType) {
+            case STEPS_RECORD_COUNT_TOTAL,
+                            ACTIVE_CALORIES_BURNED_RECORD_ACTIVE_CALORIES_TOTAL,
+                            DISTANCE_RECORD_DISTANCE_TOTAL,
+                            ELEVATION_RECORD_ELEVATION_GAINED_TOTAL,
+                            FLOORS_CLIMBED_RECORD_FLOORS_CLIMBED_TOTAL,
+                            WHEEL_CHAIR_PUSHES_RECORD_COUNT_TOTAL ->
+                    KIND_VALUE;
+            case SLEEP_SESSION_DURATION_TOTAL,
+                            EXERCISE_SESSION_DURATION_TOTAL,
+                            MINDFULNESS_SESSION_DURATION_TOTAL ->
+                    KIND_SESSION_DURATION;
+            case ACTIVITY_INTENSITY_MODERATE_DURATION_TOTAL,
+                            ACTIVITY_INTENSITY_VIGOROUS_DURATION_TOTAL,
+                            ACTIVITY_INTENSITY_DURATION_TOTAL,
+                            ACTIVITY_INTENSITY_MINUTES_TOTAL ->
+                    KIND_ACTIVITY_INTENSITY;
+            default ->
+                    throw new UnsupportedOperationException(
+                            "Priority aggregation do not support type: " + aggregationType);
+        };
+    }
+}
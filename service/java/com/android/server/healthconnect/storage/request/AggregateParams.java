@@ -17,6 +17,7 @@
 package com.android.server.healthconnect.storage.request;
 
 import android.annotation.IntDef;
+import android.annotation.Nullable;
 
 import com.android.server.healthconnect.storage.utils.SqlJoin;
 
@@ -49,6 +50,8 @@ public final class AggregateParams {
 
     private PriorityAggregationExtraParams mPriorityAggregationExtraParams;
 
+    @Nullable private PackedSampleSummary mPackedSampleSummary;
+
     @SuppressWarnings("NullAway") // TODO(b/317029272): fix this suppression
     public AggregateParams(String tableName, List<String> columnsToFetch) {
         this(tableName, columnsToFetch, null);
@@ -130,6 +133,70 @@ public final class AggregateParams {
         return this;
     }
 
+    /**
+     * Sets the summary of the samples packed into rows which have no value in the column to
+     * aggregate.
+     */
+    public AggregateParams setPackedSampleSummary(PackedSampleSummary packedSampleSummary) {
+        mPackedSampleSummary = packedSampleSummary;
+        return this;
+    }
+
+    /** Returns the summary of packed samples, or null if no rows pack their samples. */
+    @Nullable
+    public PackedSampleSummary getPackedSampleSummary() {
+        return mPackedSampleSummary;
+    }
+
+    /**
+     * Columns summarizing the samples packed into a row, used in place of the column to aggregate
+     * for the rows where it is null.
+     *
+     * <p>The expressions returned here evaluate to the contribution of one row to the aggregate,
+     * whether the row is a sample or a summary of packed samples.
+     */
+    public static final class PackedSampleSummary {
+        private final String mCountColumnName;
+        private final String mSumColumnName;
+        private final String mMinColumnName;
+        private final String mMaxColumnName;
+
+        public PackedSampleSummary(
+                String countColumnName,
+                String sumColumnName,
+                String minColumnName,
+                String maxColumnName) {
+            mCountColumnName = countColumnName;
+            mSumColumnName = sumColumnName;
+            mMinColumnName = minColumnName;
+            mMaxColumnName = maxColumnName;
+        }
+
+        /** Returns the number of samples of the row, to be added up with SUM. */
+        public String getCountExpression(String valueColumnName) {
+            return "CASE WHEN "
+                    + valueColumnName
+                    + " IS NULL THEN "
+                    + mCountColumnName
+                    + " ELSE 1 END";
+        }
+
+        /** Returns the sum of the samples of the row. */
+        public String getSumExpression(String valueColumnName) {
+            return "COALESCE(" + valueColumnName + ", " + mSumColumnName + ")";
+        }
+
+        /** Returns the smallest sample of the row. */
+        public String getMinExpression(String valueColumnName) {
+            return "COALESCE(" + valueColumnName + ", " + mMinColumnName + ")";
+        }
+
+        /** Returns the largest sample of the row. */
+        public String getMaxExpression(String valueColumnName) {
+            return "COALESCE(" + valueColumnName + ", " + mMaxColumnName + ")";
+        }
+    }
+
     /** Collections of parameters of priority AggregationRequest. */
     public static class PriorityAggregationExtraParams {
 
@@ -16,13 +16,25 @@
 
 package com.android.server.healthconnect.storage.request;
 
+import static android.health.connect.Constants.DEFAULT_LONG;
 import static android.health.connect.datatypes.AggregationType.AVG;
 import static android.health.connect.datatypes.AggregationType.COUNT;
 import static android.health.connect.datatypes.AggregationType.MAX;
 import static android.health.connect.datatypes.AggregationType.MIN;
 import static android.health.connect.datatypes.AggregationType.SUM;
 
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.BUCKET_SIZE_MILLIS;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.BUCKET_START_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.RECORD_TYPE_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.USE_LOCAL_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.VALUE_COUNT_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.VALUE_MAX_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.VALUE_MIN_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.VALUE_SUM_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.ZONE_OFFSET_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.getBucketStart;
 import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.APP_INFO_ID_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.utils.WhereClauses.LogicalOperator.AND;
 
 import android.database.Cursor;
 import android.health.connect.AggregateResult;
@@ -35,23 +47,34 @@ import android.util.ArrayMap;
 import android.util.Pair;
 import android.util.Slog;
 
+import androidx.annotation.Nullable;
+
+import com.android.healthfitness.flags.Flags;
 import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.aggregation.PriorityAggregator;
 import com.android.server.healthconnect.storage.datatypehelpers.aggregation.PriorityRecordsAggregator;
+import com.android.server.healthconnect.storage.datatypehelpers.aggregation.SweepLinePriorityAggregator;
 import com.android.server.healthconnect.storage.utils.InternalHealthConnectMappings;
 import com.android.server.healthconnect.storage.utils.OrderByClause;
 import com.android.server.healthconnect.storage.utils.SqlJoin;
+import com.android.server.healthconnect.storage.utils.SqlWithArgs;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.Period;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * A request for {@link TransactionManager} to query the DB for aggregation results
@@ -63,6 +86,7 @@ public class AggregateTableRequest {
     private static final String GROUP_BY_COLUMN_NAME = "category";
 
     private static final int MAX_NUMBER_OF_GROUPS = Constants.MAXIMUM_PAGE_SIZE;
+    private static final long MAX_ZONE_OFFSET_MILLIS = ZoneOffset.MAX.getTotalSeconds() * 1000L;
 
     private final String mTableName;
     private final List<String> mColumnNamesToAggregate;
@@ -79,12 +103,14 @@ public class AggregateTableRequest {
      */
     private final String mTimeColumnName;
 
+    private final String mTimeOffsetColumnName;
     private final WhereClauses mWhereClauses;
     private final SqlJoin mSqlJoin;
     private String mGroupByColumnName;
     private int mGroupBySize = 1;
     private final List<String> mAdditionalColumnsToFetch;
     private final AggregateParams.PriorityAggregationExtraParams mPriorityParams;
+    @Nullable private final AggregateParams.PackedSampleSummary mPackedSampleSummary;
     private final boolean mUseLocalTime;
     private final HealthDataCategoryPriorityHelper mHealthDataCategoryPriorityHelper;
     private final InternalHealthConnectMappings mInternalHealthConnectMappings;
@@ -92,6 +118,13 @@ public class AggregateTableRequest {
     private final TransactionManager mTransactionManager;
     private List<Long> mTimeSplits;
 
+    // Filters of the raw rows that have to be applied to rollups too, see setRollupFilters.
+    private boolean mUseRollups;
+    private List<Long> mRollupAppInfoIdFilters = List.of();
+    private long mCallingAppInfoId = DEFAULT_LONG;
+    private long mStartDateAccess;
+    @Nullable private List<RollupSegment> mRollupSegments;
+
     @SuppressWarnings("NullAway.Init") // TODO(b/317029272): fix this suppression
     public AggregateTableRequest(
             AggregateParams params,
@@ -110,9 +143,11 @@ public class AggregateTableRequest {
         mRecordHelper = recordHelper;
         mSqlJoin = params.getJoin();
         mPriorityParams = params.getPriorityAggregationExtraParams();
+        mPackedSampleSummary = params.getPackedSampleSummary();
         mWhereClauses = whereClauses;
+        mTimeOffsetColumnName = params.getTimeOffsetColumnName();
         mAdditionalColumnsToFetch = new ArrayList<>();
-        mAdditionalColumnsToFetch.add(params.getTimeOffsetColumnName());
+        mAdditionalColumnsToFetch.add(mTimeOffsetColumnName);
         mAdditionalColumnsToFetch.add(mTimeColumnName);
         String endTimeColumnName = params.getExtraTimeColumnName();
         if (endTimeColumnName != null) {
@@ -155,9 +190,28 @@ public class AggregateTableRequest {
 
     /** Returns SQL statement to get data origins for the aggregation operation */
     public String getCommandToFetchAggregateMetadata() {
+        return getCommandToFetchAggregateMetadata(/* args= */ null);
+    }
+
+    /**
+     * Same as {@link #getCommandToFetchAggregateMetadata()}, but with the values of the WHERE
+     * clauses and group splits bound as arguments.
+     */
+    public SqlWithArgs getCommandToFetchAggregateMetadataWithArgs() {
+        List<Object> args = new ArrayList<>();
+        String sql = getCommandToFetchAggregateMetadata(args);
+        return new SqlWithArgs(sql, args);
+    }
+
+    private String getCommandToFetchAggregateMetadata(@Nullable List<Object> args) {
+        List<RollupSegment> rollupSegments = getRollupSegments();
+        if (!rollupSegments.isEmpty()) {
+            return getRollupMetadataCommand(rollupSegments);
+        }
+
         final StringBuilder builder = new StringBuilder("SELECT DISTINCT ");
         builder.append(APP_INFO_ID_COLUMN_NAME).append(", ");
-        return appendAggregateCommand(builder, /* isMetadata= */ true);
+        return appendAggregateCommand(builder, /* isMetadata= */ true, args);
     }
 
     /** Returns name of the main time column (start time for Interval, time for Instant records) */
@@ -172,39 +226,114 @@ public class AggregateTableRequest {
 
     /** Returns SQL statement to perform aggregation operation */
     public String getAggregationCommand() {
+        return getAggregationCommand(/* args= */ null);
+    }
+
+    /**
+     * Same as {@link #getAggregationCommand()}, but with the values of the WHERE clauses and group
+     * splits bound as arguments.
+     *
+     * <p>Commands reading the rollups keep their values inlined.
+     */
+    public SqlWithArgs getAggregationCommandWithArgs() {
+        List<Object> args = new ArrayList<>();
+        String sql = getAggregationCommand(args);
+        return new SqlWithArgs(sql, args);
+    }
+
+    private String getAggregationCommand(@Nullable List<Object> args) {
+        List<RollupSegment> rollupSegments = getRollupSegments();
+        if (!rollupSegments.isEmpty()) {
+            return getRollupAggregationCommand(rollupSegments);
+        }
+
         final StringBuilder builder = new StringBuilder("SELECT ");
-        String aggCommand;
-        boolean usingPriority =
-                mInternalHealthConnectMappings.supportsPriority(
-                                mRecordHelper.getRecordIdentifier(),
-                                mAggregationType.getAggregateOperationType())
-                        || mInternalHealthConnectMappings.isDerivedType(
-                                mRecordHelper.getRecordIdentifier());
+        boolean usingPriority = isUsingPriority();
         if (usingPriority) {
             for (String columnName : mColumnNamesToAggregate) {
                 builder.append(columnName).append(", ");
             }
         } else {
-            aggCommand = getSqlCommandFor(mAggregationType.getAggregateOperationType());
-
             for (String columnName : mColumnNamesToAggregate) {
-                builder.append(aggCommand)
-                        .append("(")
-                        .append(columnName)
-                        .append(")")
+                builder.append(getAggregateExpression(columnName))
                         .append(" as ")
                         .append(columnName)
                         .append(", ");
             }
         }
 
+        appendAdditionalColumnsToFetch(builder);
+        return appendAggregateCommand(builder, usingPriority, args);
+    }
+
+    /** Returns the columns aggregated by this request. */
+    List<String> getColumnNamesToAggregate() {
+        return mColumnNamesToAggregate;
+    }
+
+    /** Returns the SQL aggregating {@code columnName}, for requests not using priority. */
+    String getAggregateExpression(String columnName) {
+        if (mPackedSampleSummary != null) {
+            return getPackedSamplesAggregateCommand(mPackedSampleSummary, columnName);
+        }
+        return getSqlCommandFor(mAggregationType.getAggregateOperationType())
+                + "("
+                + columnName
+                + ")";
+    }
+
+    /**
+     * Returns whether this request can be computed by a {@link FusedAggregateRequest}, that is it
+     * aggregates rows with plain SQL aggregate functions.
+     */
+    boolean canBeFused() {
+        return !isUsingPriority()
+                && getSqlCommandFor(mAggregationType.getAggregateOperationType()) != null
+                && getRollupSegments().isEmpty();
+    }
+
+    /**
+     * Returns whether the extra columns returned by this request are taken from the row with the
+     * aggregated value, which is the case for MIN and MAX in SQLite.
+     */
+    boolean hasExtremeValueRow() {
+        int operationType = mAggregationType.getAggregateOperationType();
+        return operationType == MIN || operationType == MAX;
+    }
+
+    /**
+     * Returns a key which is the same for requests that read the same rows, and split them into the
+     * same groups.
+     */
+    String getFusionKey() {
+        StringBuilder builder = new StringBuilder("SELECT ");
+        appendAdditionalColumnsToFetch(builder);
+        return appendAggregateCommand(builder, /* isMetadata= */ false, /* args= */ null);
+    }
+
+    void appendAdditionalColumnsToFetch(StringBuilder builder) {
         if (mAdditionalColumnsToFetch != null) {
             for (String additionalColumnToFetch : mAdditionalColumnsToFetch) {
                 builder.append(additionalColumnToFetch).append(", ");
             }
         }
+    }
 
-        return appendAggregateCommand(builder, usingPriority);
+    /**
+     * Allows this request to read the hourly rollups of {@link AggregateRollupHelper} instead of
+     * raw rows for the buckets that fall entirely into one group.
+     *
+     * <p>The rollups are per app, so the app filters of the raw rows are passed here to be applied
+     * to them as well.
+     */
+    public AggregateTableRequest setRollupFilters(
+            List<Long> appInfoIdFilters, long callingAppInfoId, long startDateAccess) {
+        mUseRollups = true;
+        mRollupAppInfoIdFilters = appInfoIdFilters;
+        mCallingAppInfoId = callingAppInfoId;
+        mStartDateAccess = startDateAccess;
+        mRollupSegments = null;
+        return this;
     }
 
     /** Sets time filter for table request. */
@@ -243,6 +372,18 @@ public class AggregateTableRequest {
     }
 
     public void onResultsFetched(Cursor cursor, Cursor metaDataCursor) {
+        List<Long> appInfoIds = new ArrayList<>();
+        while (metaDataCursor.moveToNext()) {
+            appInfoIds.add(StorageUtils.getCursorLong(metaDataCursor, APP_INFO_ID_COLUMN_NAME));
+        }
+        onResultsFetched(cursor, appInfoIds);
+    }
+
+    /**
+     * Same as {@link #onResultsFetched(Cursor, Cursor)}, with the ids of the apps contributing to
+     * the results already read.
+     */
+    void onResultsFetched(Cursor cursor, List<Long> dataOriginAppInfoIds) {
         if (mInternalHealthConnectMappings.isDerivedType(mRecordHelper.getRecordIdentifier())) {
             deriveAggregate(cursor);
         } else if (mInternalHealthConnectMappings.supportsPriority(
@@ -253,7 +394,7 @@ public class AggregateTableRequest {
             processNoPrioritiesRequest(cursor);
         }
 
-        updateResultWithDataOriginPackageNames(metaDataCursor);
+        updateResultWithDataOriginPackageNames(dataOriginAppInfoIds);
     }
 
     /** Returns list of app Ids of contributing apps for the record type in the priority order */
@@ -266,27 +407,33 @@ public class AggregateTableRequest {
 
     private void processPriorityRequest(Cursor cursor) {
         List<Long> priorityList = getAppIdPriorityList(mRecordHelper.getRecordIdentifier());
-        PriorityRecordsAggregator aggregator =
-                new PriorityRecordsAggregator(
-                        mTimeSplits,
-                        priorityList,
-                        mAggregationType.getAggregationTypeIdentifier(),
-                        mPriorityParams,
-                        mUseLocalTime);
+        PriorityAggregator aggregator =
+                Flags.sweepLinePriorityAggregation()
+                        ? new SweepLinePriorityAggregator(
+                                mTimeSplits,
+                                priorityList,
+                                mAggregationType.getAggregationTypeIdentifier(),
+                                mPriorityParams,
+                                mUseLocalTime)
+                        : new PriorityRecordsAggregator(
+                                mTimeSplits,
+                                priorityList,
+                                mAggregationType.getAggregationTypeIdentifier(),
+                                mPriorityParams,
+                                mUseLocalTime);
         aggregator.calculateAggregation(cursor);
         AggregateResult<?> result;
         for (int groupNumber = 0; groupNumber < mGroupBySize; groupNumber++) {
-            if (aggregator.getResultForGroup(groupNumber) == null) {
+            Double groupResult = aggregator.getResultForGroup(groupNumber);
+            if (groupResult == null) {
                 continue;
             }
 
             if (mAggregationType.getAggregateResultClass() == Long.class
                     || mAggregationType.getAggregateResultClass() == Duration.class) {
-                result =
-                        new AggregateResult<>(
-                                aggregator.getResultForGroup(groupNumber).longValue());
+                result = new AggregateResult<>(groupResult.longValue());
             } else {
-                result = new AggregateResult<>(aggregator.getResultForGroup(groupNumber));
+                result = new AggregateResult<>(groupResult);
             }
             mAggregateResults.put(
                     groupNumber,
@@ -318,24 +465,70 @@ public class AggregateTableRequest {
         };
     }
 
-    private String appendAggregateCommand(StringBuilder builder, boolean isMetadata) {
+    /**
+     * Returns the aggregate of {@code valueColumnName} over rows that either are a sample, or
+     * summarize the samples packed into them.
+     */
+    @Nullable
+    private String getPackedSamplesAggregateCommand(
+            AggregateParams.PackedSampleSummary summary, String valueColumnName) {
+        return switch (mAggregationType.getAggregateOperationType()) {
+            case MIN -> "MIN(" + summary.getMinExpression(valueColumnName) + ")";
+            case MAX -> "MAX(" + summary.getMaxExpression(valueColumnName) + ")";
+            case SUM -> "SUM(" + summary.getSumExpression(valueColumnName) + ")";
+            case COUNT -> "SUM(" + summary.getCountExpression(valueColumnName) + ")";
+            case AVG ->
+                    "TOTAL("
+                            + summary.getSumExpression(valueColumnName)
+                            + ") / SUM("
+                            + summary.getCountExpression(valueColumnName)
+                            + ")";
+            default -> null;
+        };
+    }
+
+    private boolean isUsingPriority() {
+        return mInternalHealthConnectMappings.supportsPriority(
+                        mRecordHelper.getRecordIdentifier(),
+                        mAggregationType.getAggregateOperationType())
+                || mInternalHealthConnectMappings.isDerivedType(
+                        mRecordHelper.getRecordIdentifier());
+    }
+
+    /**
+     * Appends the CASE mapping the time column to the index of its group.
+     *
+     * @param args if not null, the group splits are replaced by placeholders and added to this list
+     */
+    private void appendGroupByCase(
+            StringBuilder builder, String timeColumnName, @Nullable List<Object> args) {
+        builder.append(" CASE ");
+        int groupByIndex = 0;
+        for (int i = 0; i < mTimeSplits.size() - 1; i++) {
+            builder.append(" WHEN ").append(timeColumnName).append(" >= ");
+            appendValue(builder, mTimeSplits.get(i), args);
+            builder.append(" AND ").append(timeColumnName).append(" < ");
+            appendValue(builder, mTimeSplits.get(i + 1), args);
+            builder.append(" THEN ").append(groupByIndex++);
+        }
+        builder.append(" END " + GROUP_BY_COLUMN_NAME + " ");
+    }
+
+    private static void appendValue(
+            StringBuilder builder, long value, @Nullable List<Object> args) {
+        if (args == null) {
+            builder.append(value);
+        } else {
+            builder.append('?');
+            args.add(value);
+        }
+    }
+
+    String appendAggregateCommand(
+            StringBuilder builder, boolean isMetadata, @Nullable List<Object> args) {
         boolean useGroupBy = mGroupByColumnName != null && !isMetadata;
         if (useGroupBy) {
-            builder.append(" CASE ");
-            int groupByIndex = 0;
-            for (int i = 0; i < mTimeSplits.size() - 1; i++) {
-                builder.append(" WHEN ")
-                        .append(mTimeColumnName)
-                        .append(" >= ")
-                        .append(mTimeSplits.get(i))
-                        .append(" AND ")
-                        .append(mTimeColumnName)
-                        .append(" < ")
-                        .append(mTimeSplits.get(i + 1))
-                        .append(" THEN ")
-                        .append(groupByIndex++);
-            }
-            builder.append(" END " + GROUP_BY_COLUMN_NAME + " ");
+            appendGroupByCase(builder, mTimeColumnName, args);
         } else {
             builder.setLength(builder.length() - 2); // Remove the last 2 char i.e. ", "
         }
@@ -345,7 +538,12 @@ public class AggregateTableRequest {
             builder.append(mSqlJoin.getJoinCommand());
         }
 
-        builder.append(mWhereClauses.get(/* withWhereKeyword= */ true));
+        if (args == null) {
+            builder.append(mWhereClauses.get(/* withWhereKeyword= */ true));
+        } else {
+            builder.append(mWhereClauses.getWithPlaceholders(/* withWhereKeyword= */ true));
+            args.addAll(mWhereClauses.getArgs());
+        }
 
         if (useGroupBy) {
             builder.append(" GROUP BY " + GROUP_BY_COLUMN_NAME);
@@ -362,12 +560,264 @@ public class AggregateTableRequest {
         return builder.toString();
     }
 
-    @SuppressWarnings("NullAway") // TODO(b/317029272): fix this suppression
-    private void updateResultWithDataOriginPackageNames(Cursor metaDataCursor) {
-        List<Long> packageIds = new ArrayList<>();
-        while (metaDataCursor.moveToNext()) {
-            packageIds.add(StorageUtils.getCursorLong(metaDataCursor, APP_INFO_ID_COLUMN_NAME));
+    /**
+     * Returns the ranges of hourly buckets which can be read from rollups instead of raw rows.
+     *
+     * <p>Buckets that contain a group split are left to raw rows, as well as the ones around {@link
+     * #mStartDateAccess} for which the rows of other apps can't be told apart by the bucket alone.
+     */
+    private List<RollupSegment> getRollupSegments() {
+        if (mRollupSegments == null) {
+            mRollupSegments = computeRollupSegments();
+        }
+        return mRollupSegments;
+    }
+
+    private List<RollupSegment> computeRollupSegments() {
+        List<RollupSegment> segments = new ArrayList<>();
+        if (!mUseRollups
+                || mGroupByColumnName == null
+                || mTimeSplits == null
+                || mColumnNamesToAggregate.size() != 1
+                || getRollupAggregateCommand() == null
+                || isUsingPriority()) {
+            return segments;
+        }
+
+        long coreStart = getBucketStart(mTimeSplits.get(0) + BUCKET_SIZE_MILLIS - 1);
+        long coreEnd = getBucketStart(mTimeSplits.get(mTimeSplits.size() - 1));
+        if (coreStart >= coreEnd) {
+            return segments;
+        }
+
+        // Start date access is applied to the physical time, which can be up to the max zone
+        // offset away from the local time the buckets are made of.
+        long margin = mUseLocalTime ? MAX_ZONE_OFFSET_MILLIS : 0;
+        long allAppsStart = getBucketStart(mStartDateAccess + margin + BUCKET_SIZE_MILLIS - 1);
+        long callingAppOnlyEnd = getBucketStart(mStartDateAccess - margin);
+
+        TreeSet<Long> cuts = new TreeSet<>();
+        Set<Long> splitBuckets = new HashSet<>();
+        cuts.add(coreStart);
+        cuts.add(coreEnd);
+        cuts.add(allAppsStart);
+        cuts.add(callingAppOnlyEnd);
+        for (long split : mTimeSplits) {
+            long bucketStart = getBucketStart(split);
+            if (bucketStart != split) {
+                splitBuckets.add(bucketStart);
+                cuts.add(bucketStart);
+                cuts.add(bucketStart + BUCKET_SIZE_MILLIS);
+            }
+        }
+
+        long segmentStart = coreStart;
+        for (long cut : cuts.subSet(coreStart, false, coreEnd, true)) {
+            long start = segmentStart;
+            segmentStart = cut;
+            if (splitBuckets.contains(start)) {
+                continue;
+            }
+
+            boolean callingAppOnly;
+            if (start >= allAppsStart) {
+                callingAppOnly = false;
+            } else if (cut <= callingAppOnlyEnd) {
+                callingAppOnly = true;
+            } else {
+                continue;
+            }
+
+            RollupSegment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (last != null && last.mEnd == start && last.mCallingAppOnly == callingAppOnly) {
+                last.mEnd = cut;
+            } else {
+                segments.add(new RollupSegment(start, cut, callingAppOnly));
+            }
+        }
+        return segments;
+    }
+
+    @Nullable
+    private String getRollupAggregateCommand() {
+        return switch (mAggregationType.getAggregateOperationType()) {
+            case MIN -> "MIN(" + VALUE_MIN_COLUMN_NAME + ")";
+            case MAX -> "MAX(" + VALUE_MAX_COLUMN_NAME + ")";
+            case SUM -> "SUM(" + VALUE_SUM_COLUMN_NAME + ")";
+            case COUNT -> "SUM(" + VALUE_COUNT_COLUMN_NAME + ")";
+            case AVG ->
+                    "TOTAL("
+                            + VALUE_SUM_COLUMN_NAME
+                            + ") / SUM("
+                            + VALUE_COUNT_COLUMN_NAME
+                            + ")";
+            default -> null;
+        };
+    }
+
+    private String getRollupAggregationCommand(List<RollupSegment> segments) {
+        String valueColumnName = mColumnNamesToAggregate.get(0);
+        StringBuilder builder = new StringBuilder("SELECT ");
+        builder.append(getRollupAggregateCommand())
+                .append(" AS ")
+                .append(valueColumnName)
+                .append(", ")
+                .append(mTimeOffsetColumnName)
+                .append(", ")
+                .append(mTimeColumnName)
+                .append(", ")
+                .append(GROUP_BY_COLUMN_NAME)
+                .append(" FROM (SELECT ");
+        appendGroupByCase(builder, BUCKET_START_COLUMN_NAME, /* args= */ null);
+        builder.append(", ")
+                .append(VALUE_SUM_COLUMN_NAME)
+                .append(", ")
+                .append(VALUE_COUNT_COLUMN_NAME)
+                .append(", ")
+                .append(VALUE_MIN_COLUMN_NAME)
+                .append(", ")
+                .append(VALUE_MAX_COLUMN_NAME)
+                .append(", ")
+                .append(ZONE_OFFSET_COLUMN_NAME)
+                .append(" AS ")
+                .append(mTimeOffsetColumnName)
+                .append(", ")
+                .append(BUCKET_START_COLUMN_NAME)
+                .append(" AS ")
+                .append(mTimeColumnName);
+        appendRollupFromAndWhere(builder, segments);
+        builder.append(" UNION ALL SELECT ");
+        appendGroupByCase(builder, mTimeColumnName, /* args= */ null);
+        if (mPackedSampleSummary != null) {
+            builder.append(", ")
+                    .append(mPackedSampleSummary.getSumExpression(valueColumnName))
+                    .append(" AS ")
+                    .append(VALUE_SUM_COLUMN_NAME)
+                    .append(", ")
+                    .append(mPackedSampleSummary.getCountExpression(valueColumnName))
+                    .append(" AS ")
+                    .append(VALUE_COUNT_COLUMN_NAME)
+                    .append(", ")
+                    .append(mPackedSampleSummary.getMinExpression(valueColumnName))
+                    .append(" AS ")
+                    .append(VALUE_MIN_COLUMN_NAME)
+                    .append(", ")
+                    .append(mPackedSampleSummary.getMaxExpression(valueColumnName))
+                    .append(" AS ")
+                    .append(VALUE_MAX_COLUMN_NAME);
+        } else {
+            builder.append(", ")
+                    .append(valueColumnName)
+                    .append(" AS ")
+                    .append(VALUE_SUM_COLUMN_NAME)
+                    .append(", ")
+                    .append(valueColumnName)
+                    .append(" IS NOT NULL AS ")
+                    .append(VALUE_COUNT_COLUMN_NAME)
+                    .append(", ")
+                    .append(valueColumnName)
+                    .append(" AS ")
+                    .append(VALUE_MIN_COLUMN_NAME)
+                    .append(", ")
+                    .append(valueColumnName)
+                    .append(" AS ")
+                    .append(VALUE_MAX_COLUMN_NAME);
         }
+        builder.append(", ")
+                .append(mTimeOffsetColumnName)
+                .append(", ")
+                .append(mTimeColumnName);
+        appendRawFromAndWhere(builder, segments);
+        builder.append(") GROUP BY ").append(GROUP_BY_COLUMN_NAME);
+
+        OrderByClause orderByClause = new OrderByClause();
+        orderByClause.addOrderByClause(mTimeColumnName, true);
+        builder.append(orderByClause.getOrderBy());
+
+        if (Constants.DEBUG) {
+            Slog.d(TAG, "Rollup aggregation query: " + builder);
+        }
+
+        return builder.toString();
+    }
+
+    private String getRollupMetadataCommand(List<RollupSegment> segments) {
+        StringBuilder builder = new StringBuilder("SELECT DISTINCT ");
+        builder.append(APP_INFO_ID_COLUMN_NAME)
+                .append(" FROM (SELECT ")
+                .append(APP_INFO_ID_COLUMN_NAME);
+        appendRollupFromAndWhere(builder, segments);
+        builder.append(" UNION ALL SELECT ").append(APP_INFO_ID_COLUMN_NAME);
+        appendRawFromAndWhere(builder, segments);
+        builder.append(")");
+
+        if (Constants.DEBUG) {
+            Slog.d(TAG, "Rollup aggregation origin query: " + builder);
+        }
+
+        return builder.toString();
+    }
+
+    private void appendRollupFromAndWhere(StringBuilder builder, List<RollupSegment> segments) {
+        WhereClauses whereClauses = new WhereClauses(AND);
+        whereClauses.addWhereEqualsClause(
+                RECORD_TYPE_COLUMN_NAME, String.valueOf(mRecordHelper.getRecordIdentifier()));
+        whereClauses.addWhereEqualsClause(USE_LOCAL_TIME_COLUMN_NAME, mUseLocalTime ? "1" : "0");
+        whereClauses.addWhereInLongsClause(APP_INFO_ID_COLUMN_NAME, mRollupAppInfoIdFilters);
+        builder.append(" FROM ")
+                .append(AggregateRollupHelper.TABLE_NAME)
+                .append(whereClauses.get(/* withWhereKeyword= */ true))
+                .append(" AND ")
+                .append(getSegmentsCondition(segments, BUCKET_START_COLUMN_NAME, true));
+    }
+
+    private void appendRawFromAndWhere(StringBuilder builder, List<RollupSegment> segments) {
+        builder.append(" FROM ").append(mTableName);
+        if (mSqlJoin != null) {
+            builder.append(mSqlJoin.getJoinCommand());
+        }
+        String whereClauses = mWhereClauses.get(/* withWhereKeyword= */ false);
+        builder.append(" WHERE ");
+        if (!whereClauses.isEmpty()) {
+            builder.append("(").append(whereClauses).append(") AND ");
+        }
+        String segmentsCondition = "NOT " + getSegmentsCondition(segments, mTimeColumnName, false);
+        // The rows left out of the rollups are read raw in every segment.
+        String excludedRowsCondition =
+                AggregateRollupHelper.getExcludedRowsCondition(mRecordHelper, mUseLocalTime);
+        if (excludedRowsCondition == null) {
+            builder.append(segmentsCondition);
+        } else {
+            builder.append("(")
+                    .append(segmentsCondition)
+                    .append(" OR ")
+                    .append(excludedRowsCondition)
+                    .append(")");
+        }
+    }
+
+    private String getSegmentsCondition(
+            List<RollupSegment> segments, String timeColumnName, boolean withCallingAppFilter) {
+        List<String> conditions = new ArrayList<>();
+        for (RollupSegment segment : segments) {
+            String condition =
+                    timeColumnName
+                            + " >= "
+                            + segment.mStart
+                            + " AND "
+                            + timeColumnName
+                            + " < "
+                            + segment.mEnd;
+            if (withCallingAppFilter && segment.mCallingAppOnly) {
+                condition += " AND " + APP_INFO_ID_COLUMN_NAME + " = " + mCallingAppInfoId;
+            }
+            conditions.add("(" + condition + ")");
+        }
+        return "(" + String.join(" OR ", conditions) + ")";
+    }
+
+    @SuppressWarnings("NullAway") // TODO(b/317029272): fix this suppression
+    private void updateResultWithDataOriginPackageNames(List<Long> packageIds) {
         List<String> packageNames = mAppInfoHelper.getPackageNames(packageIds);
 
         mAggregateResults.replaceAll(
@@ -448,4 +898,16 @@ public class AggregateTableRequest {
             index++;
         }
     }
+
+    private static final class RollupSegment {
+        private final long mStart;
+        private long mEnd;
+        private final boolean mCallingAppOnly;
+
+        RollupSegment(long start, long end, boolean callingAppOnly) {
+            mStart = start;
+            mEnd = end;
+            mCallingAppOnly = callingAppOnly;
+        }
+    }
 }
@@ -25,6 +25,7 @@ import android.health.connect.datatypes.AggregationType;
 import android.health.connect.internal.datatypes.utils.AggregationTypeIdMapper;
 import android.util.ArrayMap;
 
+import com.android.healthfitness.flags.Flags;
 import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.datatypehelpers.AccessLogsHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
@@ -113,7 +114,26 @@ public final class AggregateTransactionRequest {
     public AggregateDataResponseParcel getAggregateDataResponseParcel(
             AccessLogsHelper accessLogsHelper, boolean shouldRecordAccessLog) {
         Map<AggregationType<?>, List<AggregateResult<?>>> results = new ArrayMap<>();
-        for (AggregateTableRequest aggregateTableRequest : mAggregateTableRequests) {
+        List<AggregateTableRequest> unfusedRequests = mAggregateTableRequests;
+        if (Flags.fusedAggregationQueries()) {
+            unfusedRequests = new ArrayList<>();
+            for (FusedAggregateRequest fusedAggregateRequest :
+                    FusedAggregateRequest.plan(mAggregateTableRequests, unfusedRequests)) {
+                mTransactionManager.populateWithFusedAggregation(
+                        fusedAggregateRequest,
+                        mPackageName,
+                        mRecordTypeIds,
+                        accessLogsHelper,
+                        shouldRecordAccessLog);
+                for (AggregateTableRequest aggregateTableRequest :
+                        fusedAggregateRequest.getRequests()) {
+                    results.put(
+                            aggregateTableRequest.getAggregationType(),
+                            aggregateTableRequest.getAggregateResults());
+                }
+            }
+        }
+        for (AggregateTableRequest aggregateTableRequest : unfusedRequests) {
             // Compute aggregations and record read access log
             mTransactionManager.populateWithAggregation(
                     aggregateTableRequest,
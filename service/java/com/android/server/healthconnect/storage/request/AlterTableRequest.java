@@ -86,6 +86,23 @@ public final class AlterTableRequest {
         return statements;
     }
 
+    /**
+     * Returns the statements to index the new columns with a foreign key constraint, so that
+     * deleting a referenced row looks up the references to set to null instead of scanning the
+     * table.
+     */
+    public List<String> getCreateIndexStatements() {
+        List<String> statements = new ArrayList<>();
+        for (Pair<String, String> columnInfo : mColumnInfo) {
+            if (mForeignKeyConstraints.containsKey(columnInfo.first)) {
+                statements.add(
+                        CreateTableRequest.getCreateIndexCommand(
+                                mTableName, List.of(columnInfo.first)));
+            }
+        }
+        return statements;
+    }
+
     public static String getAlterTableCommandToAddGeneratedColumn(
             String tableName, CreateTableRequest.GeneratedColumnInfo generatedColumnInfo) {
         String request =
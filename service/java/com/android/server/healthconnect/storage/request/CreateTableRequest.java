@@ -163,6 +163,22 @@ public final class CreateTableRequest {
         return this;
     }
 
+    /**
+     * Returns the command to create an index on {@code columnNames} of an existing table, named
+     * after the table and the columns.
+     */
+    public static String getCreateIndexCommand(String tableName, List<String> columnNames) {
+        return CREATE_INDEX_COMMAND
+                + tableName
+                + "_"
+                + String.join("_", columnNames)
+                + " ON "
+                + tableName
+                + "("
+                + String.join(DELIMITER, columnNames)
+                + ")";
+    }
+
     private String getCreateIndexCommand(String indexName, List<String> columnNames) {
         Objects.requireNonNull(columnNames);
         Objects.requireNonNull(indexName);
@@ -26,6 +26,7 @@ import android.health.connect.Constants;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.util.Slog;
 
+import com.android.server.healthconnect.storage.utils.SqlWithArgs;
 import com.android.server.healthconnect.storage.utils.StorageUtils;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
 
@@ -166,12 +167,36 @@ public class DeleteTableRequest {
                 + getWhereCommand();
     }
 
+    /**
+     * Same as {@link #getDeleteCommand()}, but with the values of the WHERE clauses bound as
+     * arguments.
+     */
+    public SqlWithArgs getDeleteCommandWithArgs() {
+        WhereClauses whereClauses = getWhereClauses();
+        return new SqlWithArgs(
+                "DELETE FROM " + mTableName + whereClauses.getWithPlaceholders(true),
+                whereClauses.getArgs());
+    }
+
+    /**
+     * Same as {@link #getReadCommand()}, but with the values of the WHERE clauses bound as
+     * arguments.
+     */
+    public SqlWithArgs getReadCommandWithArgs() {
+        WhereClauses whereClauses = getWhereClauses();
+        return new SqlWithArgs(
+                "SELECT "
+                        + mIdColumnName
+                        + ", "
+                        + mPackageColumnName
+                        + " FROM "
+                        + mTableName
+                        + whereClauses.getWithPlaceholders(true),
+                whereClauses.getArgs());
+    }
+
     public String getWhereCommand() {
-        WhereClauses whereClauses = new WhereClauses(AND);
-        whereClauses.addNestedWhereClauses(mExtraWhereClauses);
-        whereClauses.addWhereInLongsClause(mPackageColumnName, mPackageFilters);
-        whereClauses.addWhereBetweenTimeClause(mTimeColumnName, mStartTime, mEndTime);
-        whereClauses.addWhereInClauseWithoutQuotes(mIdColumnName, mIds);
+        WhereClauses whereClauses = getWhereClauses();
 
         if (Constants.DEBUG) {
             Slog.d(
@@ -185,6 +210,15 @@ public class DeleteTableRequest {
         return whereClauses.get(true);
     }
 
+    private WhereClauses getWhereClauses() {
+        WhereClauses whereClauses = new WhereClauses(AND);
+        whereClauses.addNestedWhereClauses(mExtraWhereClauses);
+        whereClauses.addWhereInLongsClause(mPackageColumnName, mPackageFilters);
+        whereClauses.addWhereBetweenTimeClause(mTimeColumnName, mStartTime, mEndTime);
+        whereClauses.addWhereInClauseWithoutQuotes(mIdColumnName, mIds);
+        return whereClauses;
+    }
+
     public DeleteTableRequest setTimeFilter(String timeColumnName, long startTime, long endTime) {
         Objects.requireNonNull(timeColumnName);
 
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.android.server.healthconnect.storage.request;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.APP_INFO_ID_COLUMN_NAME;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.util.ArrayMap;
+
+import androidx.annotation.Nullable;
+
+import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.utils.SqlWithArgs;
+import com.android.server.healthconnect.storage.utils.StorageUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes several {@link AggregateTableRequest}s that read the same rows, and split them into the
+ * same groups, with one query.
+ *
+ * <p>The query computes the aggregates of every request, each under its own alias, together with
+ * the ids of the contributing apps, which {@link AggregateTableRequest} otherwise reads with a
+ * separate query per request. The results are then handed to each request with its aliases mapped
+ * back to the column names it expects.
+ *
+ * @hide
+ */
+public final class FusedAggregateRequest {
+    private static final String APP_INFO_IDS_COLUMN_NAME = "fused_app_info_ids";
+
+    private final List<AggregateTableRequest> mRequests;
+
+    private FusedAggregateRequest(List<AggregateTableRequest> requests) {
+        mRequests = requests;
+    }
+
+    /**
+     * Groups {@code requests} into as few queries as possible.
+     *
+     * <p>Requests are grouped with the ones that read the same rows, except that a group has at
+     * most one MIN or MAX request: SQLite returns the extra columns of the row with the extreme
+     * value, which the zone offset of the result is read from, only if there's a single one.
+     *
+     * @return groups of two or more requests, requests which can't be grouped are added to {@code
+     *     unfusedRequests} instead
+     */
+    public static List<FusedAggregateRequest> plan(
+            List<AggregateTableRequest> requests, List<AggregateTableRequest> unfusedRequests) {
+        Map<String, List<List<AggregateTableRequest>>> groupsByKey = new ArrayMap<>();
+        List<List<AggregateTableRequest>> groups = new ArrayList<>();
+        for (AggregateTableRequest request : requests) {
+            if (!request.canBeFused()) {
+                unfusedRequests.add(request);
+                continue;
+            }
+
+            List<List<AggregateTableRequest>> candidates =
+                    groupsByKey.computeIfAbsent(request.getFusionKey(), key -> new ArrayList<>());
+            List<AggregateTableRequest> group = null;
+            for (List<AggregateTableRequest> candidate : candidates) {
+                if (!request.hasExtremeValueRow() || !hasExtremeValueRow(candidate)) {
+                    group = candidate;
+                    break;
+                }
+            }
+            if (group == null) {
+                group = new ArrayList<>();
+                candidates.add(group);
+                groups.add(group);
+            }
+            group.add(request);
+        }
+
+        List<FusedAggregateRequest> fusedRequests = new ArrayList<>();
+        for (List<AggregateTableRequest> group : groups) {
+            if (group.size() == 1) {
+                unfusedRequests.add(group.get(0));
+            } else {
+                fusedRequests.add(new FusedAggregateRequest(group));
+            }
+        }
+        return fusedRequests;
+    }
+
+    /** Returns the requests computed by this query. */
+    public List<AggregateTableRequest> getRequests() {
+        return mRequests;
+    }
+
+    /** Returns SQL statement computing the aggregations of all requests. */
+    public String getAggregationCommand() {
+        return getAggregationCommand(/* args= */ null);
+    }
+
+    /**
+     * Same as {@link #getAggregationCommand()}, but with the values of the WHERE clauses and group
+     * splits bound as arguments.
+     */
+    public SqlWithArgs getAggregationCommandWithArgs() {
+        List<Object> args = new ArrayList<>();
+        String sql = getAggregationCommand(args);
+        return new SqlWithArgs(sql, args);
+    }
+
+    private String getAggregationCommand(@Nullable List<Object> args) {
+        StringBuilder builder = new StringBuilder("SELECT ");
+        for (int i = 0; i < mRequests.size(); i++) {
+            AggregateTableRequest request = mRequests.get(i);
+            for (String columnName : request.getColumnNamesToAggregate()) {
+                builder.append(request.getAggregateExpression(columnName))
+                        .append(" AS ")
+                        .append(getAlias(i, columnName))
+                        .append(", ");
+            }
+        }
+        builder.append("GROUP_CONCAT(DISTINCT ")
+                .append(APP_INFO_ID_COLUMN_NAME)
+                .append(") AS ")
+                .append(APP_INFO_IDS_COLUMN_NAME)
+                .append(", ");
+        // All requests have the same additional columns, table and where clauses.
+        AggregateTableRequest first = mRequests.get(0);
+        first.appendAdditionalColumnsToFetch(builder);
+        return first.appendAggregateCommand(builder, /* isMetadata= */ false, args);
+    }
+
+    /**
+     * Hands the results of the query from {@link #getAggregationCommand} to each request, see
+     * {@link TransactionManager#populateWithFusedAggregation}.
+     */
+    public void onResultsFetched(Cursor cursor) {
+        Set<Long> appInfoIds = new LinkedHashSet<>();
+        while (cursor.moveToNext()) {
+            appInfoIds.addAll(
+                    StorageUtils.getCursorLongList(cursor, APP_INFO_IDS_COLUMN_NAME, ","));
+        }
+        List<Long> dataOriginAppInfoIds = new ArrayList<>(appInfoIds);
+
+        for (int i = 0; i < mRequests.size(); i++) {
+            AggregateTableRequest request = mRequests.get(i);
+            Map<String, String> aliases = new ArrayMap<>();
+            for (String columnName : request.getColumnNamesToAggregate()) {
+                aliases.put(columnName, getAlias(i, columnName));
+            }
+            cursor.moveToPosition(-1);
+            request.onResultsFetched(new AliasedCursor(cursor, aliases), dataOriginAppInfoIds);
+        }
+    }
+
+    private static boolean hasExtremeValueRow(List<AggregateTableRequest> requests) {
+        for (AggregateTableRequest request : requests) {
+            if (request.hasExtremeValueRow()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getAlias(int requestIndex, String columnName) {
+        return "fused_" + requestIndex + "_" + columnName;
+    }
+
+    /** Returns the columns under their aliases when asked for by their names. */
+    private static final class AliasedCursor extends CursorWrapper {
+        private final Map<String, String> mAliases;
+
+        AliasedCursor(Cursor cursor, Map<String, String> aliases) {
+            super(cursor);
+            mAliases = aliases;
+        }
+
+        @Override
+        public int getColumnIndex(String columnName) {
+            return super.getColumnIndex(mAliases.getOrDefault(columnName, columnName));
+        }
+
+        @Override
+        public int getColumnIndexOrThrow(String columnName) {
+            return super.getColumnIndexOrThrow(mAliases.getOrDefault(columnName, columnName));
+        }
+    }
+}
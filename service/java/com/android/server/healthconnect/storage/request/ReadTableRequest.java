@@ -33,11 +33,13 @@ import com.android.server.healthconnect.storage.TransactionManager;
 import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
 import com.android.server.healthconnect.storage.utils.OrderByClause;
 import com.android.server.healthconnect.storage.utils.SqlJoin;
+import com.android.server.healthconnect.storage.utils.SqlWithArgs;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -110,6 +112,11 @@ public class ReadTableRequest {
         return this;
     }
 
+    /** Returns the WHERE clause used in this SELECT. */
+    public WhereClauses getWhereClauses() {
+        return mWhereClauses;
+    }
+
     /** Used to set Join Clause for the read query */
     public ReadTableRequest setJoinClause(SqlJoin joinClause) {
         mJoinClause = joinClause;
@@ -146,7 +153,19 @@ public class ReadTableRequest {
      *     lead to an invalid query.
      */
     public String getReadCommand() {
-        return getReadCommand(/* asCount= */ false);
+        return getReadCommand(/* asCount= */ false, /* args= */ null);
+    }
+
+    /**
+     * Same as {@link #getReadCommand()}, but with the values of the WHERE clauses bound as
+     * arguments, so that SQLite can reuse the statement for requests which only differ in values.
+     *
+     * <p>Values of a join clause and limits are still inlined in the SQL.
+     */
+    public SqlWithArgs getReadCommandWithArgs() {
+        List<Object> args = new ArrayList<>();
+        String sql = getReadCommand(/* asCount= */ false, args);
+        return new SqlWithArgs(sql, args);
     }
 
     /**
@@ -162,7 +181,14 @@ public class ReadTableRequest {
      *     lead to an invalid query.
      */
     public String getCountCommand() {
-        return getReadCommand(/* asCount= */ true);
+        return getReadCommand(/* asCount= */ true, /* args= */ null);
+    }
+
+    /** Same as {@link #getCountCommand()}, but with the values bound as arguments. */
+    public SqlWithArgs getCountCommandWithArgs() {
+        List<Object> args = new ArrayList<>();
+        String sql = getReadCommand(/* asCount= */ true, args);
+        return new SqlWithArgs(sql, args);
     }
 
     /**
@@ -170,8 +196,10 @@ public class ReadTableRequest {
      *
      * @param asCount if true, the SQL returns the count of the results, if false returns the
      *     results
+     * @param args if not null, the values of the WHERE clauses are replaced by placeholders in the
+     *     SQL, and added to this list
      */
-    private String getReadCommand(boolean asCount) {
+    private String getReadCommand(boolean asCount, @Nullable List<Object> args) {
         if (mUnionReadRequests != null && !mUnionReadRequests.isEmpty()) {
             StringBuilder builder = new StringBuilder();
             if (asCount) {
@@ -179,18 +207,24 @@ public class ReadTableRequest {
             }
             for (ReadTableRequest unionReadRequest : mUnionReadRequests) {
                 builder.append("SELECT * FROM (");
-                builder.append(unionReadRequest.getReadCommand());
+                if (args == null) {
+                    builder.append(unionReadRequest.getReadCommand());
+                } else {
+                    SqlWithArgs unionCommand = unionReadRequest.getReadCommandWithArgs();
+                    builder.append(unionCommand.getSql());
+                    Collections.addAll(args, unionCommand.getArgs());
+                }
                 builder.append(")");
                 builder.append(mUnionType);
             }
             // For a union request we have to do the count outside the query.
-            builder.append(getReadQuery(/* asCount= */ false));
+            builder.append(getReadQuery(/* asCount= */ false, args));
             if (asCount) {
                 builder.append(")");
             }
             return builder.toString();
         } else {
-            return getReadQuery(asCount);
+            return getReadQuery(asCount, args);
         }
     }
 
@@ -199,13 +233,15 @@ public class ReadTableRequest {
      *
      * @param asCount if true, the SQL returns the count of the results, if false returns the
      *     results
+     * @param args if not null, the values of the WHERE clauses are replaced by placeholders in the
+     *     SQL, and added to this list
      */
-    private String getReadQuery(boolean asCount) {
+    private String getReadQuery(boolean asCount, @Nullable List<Object> args) {
         String selectStatement = buildSelectStatement(asCount);
 
         String readQuery;
         if (mJoinClause != null) {
-            String innerQuery = buildReadQuery(SELECT_ALL);
+            String innerQuery = buildReadQuery(SELECT_ALL, args);
             readQuery = mJoinClause.getJoinWithQueryCommand(selectStatement, innerQuery);
         } else {
             if (!mOrderByClause.getOrderBy().isEmpty()
@@ -218,7 +254,7 @@ public class ReadTableRequest {
                 throw new IllegalArgumentException(
                         "Without a join clause only one of the limit or finalLimit may be set");
             }
-            readQuery = buildReadQuery(selectStatement);
+            readQuery = buildReadQuery(selectStatement, args);
         }
 
         readQuery = appendFinalOrderByAndLimit(readQuery);
@@ -258,10 +294,17 @@ public class ReadTableRequest {
         return selectStatement.toString();
     }
 
-    private String buildReadQuery(String selectStatement) {
+    private String buildReadQuery(String selectStatement, @Nullable List<Object> args) {
+        String whereClause;
+        if (args == null) {
+            whereClause = mWhereClauses.get(/* withWhereKeyword */ true);
+        } else {
+            whereClause = mWhereClauses.getWithPlaceholders(/* withWhereKeyword */ true);
+            args.addAll(mWhereClauses.getArgs());
+        }
         return selectStatement
                 + mTableName
-                + mWhereClauses.get(/* withWhereKeyword */ true)
+                + whereClause
                 + mOrderByClause.getOrderBy()
                 + (mLimit == null ? "" : LIMIT_SIZE + mLimit);
     }
@@ -22,6 +22,9 @@ import android.annotation.IntDef;
 import android.annotation.Nullable;
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.util.ArrayMap;
@@ -36,6 +39,7 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -46,6 +50,10 @@ public class UpsertTableRequest {
 
     public static final int TYPE_STRING = 0;
     public static final int TYPE_BLOB = 1;
+    private static final String[] CONFLICT_VALUES =
+            new String[] {"", " OR ROLLBACK", " OR ABORT", " OR FAIL", " OR IGNORE", " OR REPLACE"};
+    private static final ContentValues NO_CONTENT_VALUES = new ContentValues();
+
     private final String mTable;
     private ContentValues mContentValues;
     private final List<Pair<String, Integer>> mUniqueColumns;
@@ -61,11 +69,27 @@ public class UpsertTableRequest {
     private List<TableColumnPair> mChildTableAndColumnPairsToDelete = Collections.emptyList();
 
     @Nullable private ArrayMap<String, Boolean> mExtraWritePermissionsStateMapping;
+    @Nullable private RowLayout mRowLayout;
+    @Nullable private RowBinder mRowBinder;
 
     public UpsertTableRequest(String table, ContentValues contentValues) {
         this(table, contentValues, Collections.emptyList());
     }
 
+    /**
+     * Creates a request for a row of a child table, whose values are bound by {@code rowBinder}
+     * straight to the INSERT statement of {@code rowLayout}, without going through {@link
+     * ContentValues}.
+     *
+     * <p>Such a request can only be inserted with {@link #getInsertCommand} and {@link #bindTo}.
+     */
+    public UpsertTableRequest(RowLayout rowLayout, RowBinder rowBinder) {
+        this(rowLayout.mTable, NO_CONTENT_VALUES, Collections.emptyList());
+        mRowLayout = rowLayout;
+        mRowBinder = Objects.requireNonNull(rowBinder);
+        mParentCol = rowLayout.mParentColumn;
+    }
+
     @SuppressWarnings("NullAway.Init") // TODO(b/317029272): fix this suppression
     public UpsertTableRequest(
             String table, ContentValues contentValues, List<Pair<String, Integer>> uniqueColumns) {
@@ -109,6 +133,9 @@ public class UpsertTableRequest {
     }
 
     public ContentValues getContentValues() {
+        if (mRowBinder != null) {
+            throw new IllegalStateException("Values of " + mTable + " are bound without them");
+        }
         // Set the parent column of the creator of this requested to do that
         if (!Objects.isNull(mParentCol) && mRowId != INVALID_ROW_ID) {
             mContentValues.put(mParentCol, mRowId);
@@ -117,6 +144,43 @@ public class UpsertTableRequest {
         return mContentValues;
     }
 
+    /** Returns whether the values of this row are bound by a {@link RowBinder}. */
+    public boolean isBoundWithoutContentValues() {
+        return mRowBinder != null;
+    }
+
+    /**
+     * Returns an INSERT statement of this row, with a placeholder for each value bound by {@link
+     * #bindTo}.
+     *
+     * <p>Rows of the same table and columns share the same statement.
+     */
+    public String getInsertCommand(int conflictAlgorithm) {
+        if (mRowLayout != null && conflictAlgorithm == SQLiteDatabase.CONFLICT_NONE) {
+            return mRowLayout.mInsertCommand;
+        }
+        List<String> columnNames =
+                mRowLayout != null
+                        ? mRowLayout.getAllColumnNames()
+                        : List.copyOf(getContentValues().keySet());
+        return buildInsertCommand(mTable, columnNames, conflictAlgorithm);
+    }
+
+    /** Binds the values of this row to a statement from {@link #getInsertCommand}. */
+    public void bindTo(SQLiteStatement statement) {
+        if (mRowBinder != null) {
+            statement.bindLong(1, mRowId);
+            mRowBinder.bindTo(statement, 2);
+            return;
+        }
+        ContentValues contentValues = getContentValues();
+        int index = 1;
+        // Iterates the columns in the same order as getInsertCommand().
+        for (String columnName : contentValues.keySet()) {
+            DatabaseUtils.bindObjectToProgram(statement, index++, contentValues.get(columnName));
+        }
+    }
+
     public List<UpsertTableRequest> getChildTableRequests() {
         return mChildTableRequests;
     }
@@ -255,6 +319,59 @@ public class UpsertTableRequest {
     @IntDef({TYPE_STRING, TYPE_BLOB})
     public @interface ColumnType {}
 
+    private static String buildInsertCommand(
+            String table, List<String> columnNames, int conflictAlgorithm) {
+        StringBuilder builder = new StringBuilder("INSERT");
+        builder.append(CONFLICT_VALUES[conflictAlgorithm]).append(" INTO ").append(table);
+        builder.append(" (").append(String.join(", ", columnNames)).append(") VALUES (");
+        for (int i = 0; i < columnNames.size(); i++) {
+            builder.append(i == 0 ? "?" : ", ?");
+        }
+        return builder.append(")").toString();
+    }
+
+    /**
+     * The table and columns of child rows bound by a {@link RowBinder}.
+     *
+     * <p>Meant to be shared by all the rows of a table, so that their INSERT statement is built
+     * once.
+     */
+    public static final class RowLayout {
+        private final String mTable;
+        private final String mParentColumn;
+        private final List<String> mColumnNames;
+        private final String mInsertCommand;
+
+        /**
+         * @param table the child table
+         * @param parentColumn the column holding the row id of the parent row
+         * @param columnNames the other columns, in the order their values are bound
+         */
+        public RowLayout(String table, String parentColumn, List<String> columnNames) {
+            mTable = Objects.requireNonNull(table);
+            mParentColumn = Objects.requireNonNull(parentColumn);
+            mColumnNames = List.copyOf(columnNames);
+            mInsertCommand =
+                    buildInsertCommand(table, getAllColumnNames(), SQLiteDatabase.CONFLICT_NONE);
+        }
+
+        private List<String> getAllColumnNames() {
+            List<String> allColumnNames = new ArrayList<>(mColumnNames.size() + 1);
+            allColumnNames.add(mParentColumn);
+            allColumnNames.addAll(mColumnNames);
+            return allColumnNames;
+        }
+    }
+
+    /** Binds the values of a child row without {@link ContentValues}. */
+    public interface RowBinder {
+        /**
+         * Binds the values of the row, in the order of the columns of its {@link RowLayout},
+         * starting at {@code index}.
+         */
+        void bindTo(SQLiteStatement statement, int index);
+    }
+
     public interface IRequiresUpdate {
         default boolean requiresUpdate(
                 Cursor cursor, ContentValues contentValues, UpsertTableRequest request) {
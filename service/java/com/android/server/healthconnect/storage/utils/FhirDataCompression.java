@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.utils;
+
+import static android.health.connect.datatypes.FhirResource.FHIR_RESOURCE_TYPE_CONDITION;
+import static android.health.connect.datatypes.FhirResource.FHIR_RESOURCE_TYPE_IMMUNIZATION;
+import static android.health.connect.datatypes.FhirResource.FHIR_RESOURCE_TYPE_OBSERVATION;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the FHIR data of medical resources into a blob, and decompresses it.
+ *
+ * <p>The blob starts with a format byte and the id of the dictionary the data was compressed with,
+ * followed by the zlib stream of the UTF-8 encoded data. The dictionaries hold the strings most
+ * FHIR resources of a type repeat, such as the keys of the resource and the URLs of common code
+ * systems, so that a resource of a few hundred bytes compresses well although it repeats little
+ * of itself.
+ *
+ * <p>Compressed blobs are stored in the database, so a dictionary must never change once shipped.
+ * A better dictionary is added with a new id, and the old one kept to decompress existing blobs.
+ *
+ * @hide
+ */
+public final class FhirDataCompression {
+    private static final byte FORMAT_ZLIB = 1;
+    private static final int HEADER_SIZE = 2;
+
+    private static final byte DICTIONARY_COMMON = 1;
+    private static final byte DICTIONARY_OBSERVATION = 2;
+    private static final byte DICTIONARY_CONDITION = 3;
+    private static final byte DICTIONARY_IMMUNIZATION = 4;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    // Deflate finds matches closest to the end of the dictionary with the fewest bits, so the
+    // strings repeated by every resource come last.
+    private static final String COMMON_STRINGS =
+            "\"identifier\":[{\"use\":\"usual\",\"type\":{\"coding\":[{\"system\":"
+                    + "\"http://terminology.hl7.org/CodeSystem/v2-0203\",\"code\":\"MR\"}]},"
+                    + "\"value\":\"\",\"period\":{\"start\":\"\",\"end\":\"\"},"
+                    + "\"note\":[{\"text\":\"\"}],\"performer\":[{\"actor\":{\"reference\":"
+                    + "\"Practitioner/\",\"display\":\"\"}}],\"encounter\":{\"reference\":"
+                    + "\"Encounter/\"},\"subject\":{\"reference\":\"Patient/\"},"
+                    + "\"patient\":{\"reference\":\"Patient/\"},"
+                    + "\"text\":{\"status\":\"generated\",\"div\":"
+                    + "\"<div xmlns=\\\"http://www.w3.org/1999/xhtml\\\"></div>\"},"
+                    + "\"meta\":{\"versionId\":\"1\",\"lastUpdated\":\"T00:00:00.000Z\","
+                    + "\"profile\":[\"http://hl7.org/fhir/\"]},"
+                    + "\"extension\":[{\"url\":\"http://hl7.org/fhir/StructureDefinition/\","
+                    + "\"valueString\":\"\"}],"
+                    + "\"http://snomed.info/sct\",\"http://loinc.org\","
+                    + "\"http://terminology.hl7.org/CodeSystem/\","
+                    + "\"code\":{\"coding\":[{\"system\":\"\",\"code\":\"\",\"display\":\"\"}],"
+                    + "\"text\":\"\"},\"status\":\"\",\"id\":\"\","
+                    + "{\"resourceType\":\"";
+
+    private static final String OBSERVATION_STRINGS =
+            "\"referenceRange\":[{\"low\":{\"value\":,\"unit\":\"\",\"system\":"
+                    + "\"http://unitsofmeasure.org\",\"code\":\"\"},\"high\":{\"value\":,"
+                    + "\"unit\":\"\",\"system\":\"http://unitsofmeasure.org\",\"code\":\"\"}}],"
+                    + "\"interpretation\":[{\"coding\":[{\"system\":"
+                    + "\"http://terminology.hl7.org/CodeSystem/v3-ObservationInterpretation\","
+                    + "\"code\":\"N\",\"display\":\"Normal\"}]}],"
+                    + "\"component\":[{\"code\":{\"coding\":[{\"system\":\"http://loinc.org\","
+                    + "\"code\":\"\",\"display\":\"\"}]},\"valueQuantity\":{\"value\":,"
+                    + "\"unit\":\"mmHg\",\"system\":\"http://unitsofmeasure.org\","
+                    + "\"code\":\"mm[Hg]\"}}],"
+                    + "\"valueCodeableConcept\":{\"coding\":[{\"system\":\"\",\"code\":\"\"}]},"
+                    + "\"valueString\":\"\",\"effectivePeriod\":{\"start\":\"\",\"end\":\"\"},"
+                    + "\"category\":[{\"coding\":[{\"system\":"
+                    + "\"http://terminology.hl7.org/CodeSystem/observation-category\","
+                    + "\"code\":\"laboratory\",\"display\":\"Laboratory\"}]}],"
+                    + "\"code\":\"vital-signs\",\"display\":\"Vital Signs\"}]}],"
+                    + "\"valueQuantity\":{\"value\":,\"unit\":\"\",\"system\":"
+                    + "\"http://unitsofmeasure.org\",\"code\":\"\"},"
+                    + "\"effectiveDateTime\":\"T00:00:00Z\",\"issued\":\"T00:00:00.000Z\","
+                    + "{\"resourceType\":\"Observation\",\"id\":\"\",\"status\":\"final\",";
+
+    private static final String CONDITION_STRINGS =
+            "\"severity\":{\"coding\":[{\"system\":\"http://snomed.info/sct\",\"code\":\"\","
+                    + "\"display\":\"\"}]},\"bodySite\":[{\"coding\":[{\"system\":"
+                    + "\"http://snomed.info/sct\",\"code\":\"\",\"display\":\"\"}]}],"
+                    + "\"abatementDateTime\":\"\",\"onsetDateTime\":\"\",\"recordedDate\":\"\","
+                    + "\"recorder\":{\"reference\":\"Practitioner/\"},"
+                    + "\"asserter\":{\"reference\":\"Practitioner/\"},"
+                    + "\"category\":[{\"coding\":[{\"system\":"
+                    + "\"http://terminology.hl7.org/CodeSystem/condition-category\","
+                    + "\"code\":\"problem-list-item\",\"display\":\"Problem List Item\"}]}],"
+                    + "\"code\":\"encounter-diagnosis\",\"display\":\"Encounter Diagnosis\"}]}],"
+                    + "\"verificationStatus\":{\"coding\":[{\"system\":"
+                    + "\"http://terminology.hl7.org/CodeSystem/condition-ver-status\","
+                    + "\"code\":\"confirmed\"}]},"
+                    + "\"clinicalStatus\":{\"coding\":[{\"system\":"
+                    + "\"http://terminology.hl7.org/CodeSystem/condition-clinical\","
+                    + "\"code\":\"active\"}]},"
+                    + "{\"resourceType\":\"Condition\",\"id\":\"\",";
+
+    private static final String IMMUNIZATION_STRINGS =
+            "\"reaction\":[{\"date\":\"\",\"detail\":{\"reference\":\"Observation/\"},"
+                    + "\"reported\":false}],\"protocolApplied\":[{\"series\":\"\","
+                    + "\"doseNumberPositiveInt\":1,\"seriesDosesPositiveInt\":2}],"
+                    + "\"doseQuantity\":{\"value\":,\"system\":\"http://unitsofmeasure.org\","
+                    + "\"code\":\"mL\"},\"route\":{\"coding\":[{\"system\":"
+                    + "\"http://terminology.hl7.org/CodeSystem/v3-RouteOfAdministration\","
+                    + "\"code\":\"IM\",\"display\":\"Injection, intramuscular\"}]},"
+                    + "\"site\":{\"coding\":[{\"system\":"
+                    + "\"http://terminology.hl7.org/CodeSystem/v3-ActSite\","
+                    + "\"code\":\"LA\",\"display\":\"left arm\"}]},"
+                    + "\"manufacturer\":{\"reference\":\"Organization/\"},\"lotNumber\":\"\","
+                    + "\"expirationDate\":\"\",\"primarySource\":true,"
+                    + "\"location\":{\"reference\":\"Location/\"},"
+                    + "\"performer\":[{\"function\":{\"coding\":[{\"system\":"
+                    + "\"http://terminology.hl7.org/CodeSystem/v2-0443\",\"code\":\"AP\","
+                    + "\"display\":\"Administering Provider\"}]},\"actor\":{\"reference\":"
+                    + "\"Practitioner/\"}}],"
+                    + "\"vaccineCode\":{\"coding\":[{\"system\":\"http://hl7.org/fhir/sid/cvx\","
+                    + "\"code\":\"\",\"display\":\"\"}]},\"occurrenceDateTime\":\"\","
+                    + "{\"resourceType\":\"Immunization\",\"id\":\"\",\"status\":\"completed\",";
+
+    private static final byte[][] DICTIONARIES = {
+        /* unused id 0 */ new byte[0],
+        toUtf8(COMMON_STRINGS),
+        toUtf8(COMMON_STRINGS + OBSERVATION_STRINGS),
+        toUtf8(COMMON_STRINGS + CONDITION_STRINGS),
+        toUtf8(COMMON_STRINGS + IMMUNIZATION_STRINGS),
+    };
+
+    private FhirDataCompression() {}
+
+    /**
+     * Compresses {@code fhirData} with the dictionary for resources of {@code fhirResourceType}.
+     */
+    public static byte[] compress(int fhirResourceType, String fhirData) {
+        byte dictionaryId = getDictionaryId(fhirResourceType);
+        byte[] input = toUtf8(fhirData);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setDictionary(DICTIONARIES[dictionaryId]);
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out =
+                    new ByteArrayOutputStream(HEADER_SIZE + input.length / 2 + 16);
+            out.write(FORMAT_ZLIB);
+            out.write(dictionaryId);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses FHIR data compressed by {@link #compress}.
+     *
+     * @throws IllegalArgumentException if {@code compressed} is not a valid blob of FHIR data
+     */
+    public static String decompress(byte[] compressed) {
+        if (compressed.length < HEADER_SIZE || compressed[0] != FORMAT_ZLIB) {
+            throw new IllegalArgumentException("Unknown compressed FHIR data format");
+        }
+        byte dictionaryId = compressed[1];
+        if (dictionaryId <= 0 || dictionaryId >= DICTIONARIES.length) {
+            throw new IllegalArgumentException("Unknown FHIR data dictionary: " + dictionaryId);
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed, HEADER_SIZE, compressed.length - HEADER_SIZE);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                out.write(buffer, 0, length);
+                if (length > 0 || inflater.finished()) {
+                    continue;
+                }
+                if (inflater.needsDictionary()) {
+                    setDictionary(inflater, dictionaryId);
+                } else if (inflater.needsInput()) {
+                    throw new IllegalArgumentException("Truncated compressed FHIR data");
+                }
+            }
+            if (inflater.getRemaining() > 0) {
+                throw new IllegalArgumentException("Unexpected bytes after compressed FHIR data");
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Malformed compressed FHIR data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void setDictionary(Inflater inflater, byte dictionaryId) {
+        try {
+            inflater.setDictionary(DICTIONARIES[dictionaryId]);
+        } catch (IllegalArgumentException e) {
+            // The checksum of the dictionary in the stream does not match.
+            throw new IllegalArgumentException(
+                    "FHIR data not compressed with dictionary " + dictionaryId, e);
+        }
+    }
+
+    private static byte getDictionaryId(int fhirResourceType) {
+        switch (fhirResourceType) {
+            case FHIR_RESOURCE_TYPE_OBSERVATION:
+                return DICTIONARY_OBSERVATION;
+            case FHIR_RESOURCE_TYPE_CONDITION:
+                return DICTIONARY_CONDITION;
+            case FHIR_RESOURCE_TYPE_IMMUNIZATION:
+                return DICTIONARY_IMMUNIZATION;
+            default:
+                return DICTIONARY_COMMON;
+        }
+    }
+
+    private static byte[] toUtf8(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+}
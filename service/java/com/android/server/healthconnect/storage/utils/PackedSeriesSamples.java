@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.utils;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Packs the samples of a series record into a blob, and unpacks them.
+ *
+ * <p>The blob starts with a format byte and the number of samples, followed by each sample as the
+ * difference of its time from the previous sample, and its value. Integer values are stored as the
+ * difference from the previous value, floating point values as the bits that differ from the
+ * previous value, reversed so that the unchanged sign and exponent bits end up at the top. All
+ * numbers are stored as varints, so samples sorted by time with close values take a few bytes
+ * each.
+ *
+ * @hide
+ */
+public final class PackedSeriesSamples {
+    private static final byte FORMAT_LONG_VALUES = 1;
+    private static final byte FORMAT_DOUBLE_VALUES = 2;
+
+    // A varint of a long takes up to 10 bytes.
+    private static final int MAX_SAMPLE_SIZE = 20;
+
+    /** Receives the samples unpacked by {@link #unpack}, in the order they were packed. */
+    public interface SampleConsumer {
+        /** Accepts a sample, integer values are converted to double. */
+        void accept(long epochMillis, double value);
+    }
+
+    private PackedSeriesSamples() {}
+
+    /** Packs samples with integer values, preferably sorted by time. */
+    public static byte[] pack(long[] epochMillis, long[] values) {
+        checkSameLength(epochMillis.length, values.length);
+        ByteArrayOutputStream out = createOutput(FORMAT_LONG_VALUES, epochMillis.length);
+        long previousTime = 0;
+        long previousValue = 0;
+        for (int i = 0; i < epochMillis.length; i++) {
+            writeVarint(out, zigZagEncode(epochMillis[i] - previousTime));
+            writeVarint(out, zigZagEncode(values[i] - previousValue));
+            previousTime = epochMillis[i];
+            previousValue = values[i];
+        }
+        return out.toByteArray();
+    }
+
+    /** Packs samples with floating point values, preferably sorted by time. */
+    public static byte[] pack(long[] epochMillis, double[] values) {
+        checkSameLength(epochMillis.length, values.length);
+        ByteArrayOutputStream out = createOutput(FORMAT_DOUBLE_VALUES, epochMillis.length);
+        long previousTime = 0;
+        long previousBits = 0;
+        for (int i = 0; i < epochMillis.length; i++) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            writeVarint(out, zigZagEncode(epochMillis[i] - previousTime));
+            writeVarint(out, Long.reverse(bits ^ previousBits));
+            previousTime = epochMillis[i];
+            previousBits = bits;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Unpacks samples packed by one of the {@code pack} methods.
+     *
+     * @return the number of samples
+     * @throws IllegalArgumentException if {@code packed} is not a valid blob of samples
+     */
+    public static int unpack(byte[] packed, SampleConsumer consumer) {
+        Reader reader = new Reader(packed);
+        byte format = reader.readByte();
+        if (format != FORMAT_LONG_VALUES && format != FORMAT_DOUBLE_VALUES) {
+            throw new IllegalArgumentException("Unknown packed samples format: " + format);
+        }
+        long count = reader.readVarint();
+        if (count < 0 || count > packed.length) {
+            throw new IllegalArgumentException("Invalid packed samples count: " + count);
+        }
+
+        long time = 0;
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            time += zigZagDecode(reader.readVarint());
+            if (format == FORMAT_LONG_VALUES) {
+                value += zigZagDecode(reader.readVarint());
+                consumer.accept(time, value);
+            } else {
+                value ^= Long.reverse(reader.readVarint());
+                consumer.accept(time, Double.longBitsToDouble(value));
+            }
+        }
+        if (reader.hasRemaining()) {
+            throw new IllegalArgumentException("Unexpected bytes after packed samples");
+        }
+        return (int) count;
+    }
+
+    private static ByteArrayOutputStream createOutput(byte format, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 + 5 + count * MAX_SAMPLE_SIZE);
+        out.write(format);
+        writeVarint(out, count);
+        return out;
+    }
+
+    private static void checkSameLength(int timesLength, int valuesLength) {
+        if (timesLength != valuesLength) {
+            throw new IllegalArgumentException(
+                    "Got " + timesLength + " times for " + valuesLength + " values");
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Reader {
+        private final byte[] mBytes;
+        private int mPosition;
+
+        Reader(byte[] bytes) {
+            mBytes = bytes;
+        }
+
+        byte readByte() {
+            if (mPosition >= mBytes.length) {
+                throw new IllegalArgumentException("Truncated packed samples");
+            }
+            return mBytes[mPosition++];
+        }
+
+        long readVarint() {
+            long result = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                byte b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in packed samples");
+        }
+
+        boolean hasRemaining() {
+            return mPosition < mBytes.length;
+        }
+    }
+}
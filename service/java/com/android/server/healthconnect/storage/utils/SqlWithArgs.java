@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.utils;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An SQL statement with {@code ?} placeholders and the values to bind to them.
+ *
+ * <p>Keeping the values out of the SQL lets SQLite reuse the prepared statement for requests which
+ * only differ in their values.
+ *
+ * @hide
+ */
+public final class SqlWithArgs {
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final String mSql;
+    private final Object[] mArgs;
+
+    public SqlWithArgs(String sql) {
+        this(sql, NO_ARGS);
+    }
+
+    public SqlWithArgs(String sql, List<Object> args) {
+        this(sql, args.toArray());
+    }
+
+    public SqlWithArgs(String sql, Object[] args) {
+        mSql = Objects.requireNonNull(sql);
+        mArgs = Objects.requireNonNull(args);
+    }
+
+    /** Returns the SQL, with a {@code ?} placeholder for each of {@link #getArgs()}. */
+    public String getSql() {
+        return mSql;
+    }
+
+    /** Returns the values bound to the placeholders of {@link #getSql()}, in order. */
+    public Object[] getArgs() {
+        return mArgs;
+    }
+
+    /**
+     * Runs this query on the given database.
+     *
+     * <p>Unlike {@link SQLiteDatabase#rawQuery(String, String[])}, the values are bound with their
+     * own type, so numbers and blobs compare the same as if they were inlined into the SQL.
+     *
+     * <p>Note: It is the responsibility of the caller to close the returned cursor.
+     */
+    public Cursor query(SQLiteDatabase db) {
+        if (mArgs.length == 0) {
+            return db.rawQuery(mSql, null);
+        }
+        return db.rawQueryWithFactory(
+                (database, driver, editTable, query) -> {
+                    for (int i = 0; i < mArgs.length; i++) {
+                        DatabaseUtils.bindObjectToProgram(query, i + 1, mArgs[i]);
+                    }
+                    return new SQLiteCursor(driver, editTable, query);
+                },
+                mSql,
+                /* selectionArgs= */ null,
+                /* editTable= */ null);
+    }
+
+    /** Runs this statement, which must not be a query, on the given database. */
+    public void execute(SQLiteDatabase db) {
+        db.execSQL(mSql, mArgs);
+    }
+
+    @Override
+    public String toString() {
+        return mSql + " " + Arrays.toString(mArgs);
+    }
+}
@@ -556,6 +556,17 @@ public final class StorageUtils {
         }
     }
 
+    /** Checks whether {@code tableName} in the {@code database} has a column {@code columnName}. */
+    public static boolean checkColumnExists(
+            SQLiteDatabase database, String tableName, String columnName) {
+        try (Cursor cursor =
+                database.rawQuery(
+                        "SELECT name FROM pragma_table_info(?) WHERE name=?",
+                        new String[] {tableName, columnName})) {
+            return cursor.getCount() > 0;
+        }
+    }
+
     /** Extracts and holds data from {@link ContentValues}. */
     public static class RecordIdentifierData {
         private final String mClientRecordId;
@@ -22,10 +22,18 @@ import com.android.server.healthconnect.storage.request.ReadTableRequest;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
-/** @hide */
+/**
+ * Builds the WHERE clause of a statement.
+ *
+ * <p>The clause is available both with its values inlined, see {@link #get}, and with {@code ?}
+ * placeholders for its values, see {@link #getWithPlaceholders} and {@link #getArgs}.
+ *
+ * @hide
+ */
 public final class WhereClauses {
     public enum LogicalOperator {
         AND(" AND "),
@@ -39,6 +47,9 @@ public final class WhereClauses {
     }
 
     private final List<String> mClauses = new ArrayList<>();
+    // Same clauses as mClauses, with placeholders for the values in mArgs.
+    private final List<String> mBoundClauses = new ArrayList<>();
+    private final List<Object> mArgs = new ArrayList<>();
     private final LogicalOperator mLogicalOperator;
 
     public WhereClauses(LogicalOperator logicalOperator) {
@@ -46,7 +57,11 @@ public final class WhereClauses {
     }
 
     public WhereClauses addWhereBetweenClause(String columnName, long start, long end) {
-        mClauses.add(columnName + " BETWEEN " + start + " AND " + end);
+        addClause(
+                columnName + " BETWEEN " + start + " AND " + end,
+                columnName + " BETWEEN ? AND ?",
+                start,
+                end);
 
         return this;
     }
@@ -69,7 +84,11 @@ public final class WhereClauses {
             return addWhereLaterThanTimeClause(columnName, startTime);
         }
 
-        mClauses.add(columnName + " BETWEEN " + startTime + " AND " + endTime);
+        addClause(
+                columnName + " BETWEEN " + startTime + " AND " + endTime,
+                columnName + " BETWEEN ? AND ?",
+                startTime,
+                endTime);
 
         return this;
     }
@@ -87,7 +106,7 @@ public final class WhereClauses {
             return this;
         }
 
-        mClauses.add(columnName + " > " + startTime);
+        addClause(columnName + " > " + startTime, columnName + " > ?", startTime);
 
         return this;
     }
@@ -95,7 +114,10 @@ public final class WhereClauses {
     public WhereClauses addWhereInClause(String columnName, List<String> values) {
         if (values == null || values.isEmpty()) return this;
 
-        mClauses.add(columnName + " IN " + "('" + String.join("', '", values) + "')");
+        addClause(
+                columnName + " IN " + "('" + String.join("', '", values) + "')",
+                columnName + " IN (" + getPlaceholders(values.size()) + ")",
+                values.toArray());
 
         return this;
     }
@@ -112,7 +134,9 @@ public final class WhereClauses {
             @Nullable String columnName, @Nullable List<String> values) {
         if (columnName == null || values == null || values.isEmpty()) return this;
 
-        mClauses.add(columnName + " IN " + "(" + String.join(", ", values) + ")");
+        // The values may be SQL literals, such as hex blobs, so can't be bound as strings.
+        String clause = columnName + " IN " + "(" + String.join(", ", values) + ")";
+        addClause(clause, clause);
 
         return this;
     }
@@ -122,38 +146,45 @@ public final class WhereClauses {
             return this;
         }
 
-        mClauses.add(columnName + " = " + StorageUtils.getNormalisedString(value));
+        String normalisedValue = StorageUtils.getNormalisedString(value);
+        if (normalisedValue.equals(value)) {
+            // Already an SQL literal, such as a hex blob.
+            String clause = columnName + " = " + value;
+            addClause(clause, clause);
+        } else {
+            addClause(columnName + " = " + normalisedValue, columnName + " = ?", value);
+        }
         return this;
     }
 
     public WhereClauses addWhereGreaterThanClause(String columnName, String value) {
-        mClauses.add(columnName + " > '" + value + "'");
+        addClause(columnName + " > '" + value + "'", columnName + " > ?", value);
 
         return this;
     }
 
     /** Add clause columnName > value */
     public WhereClauses addWhereGreaterThanClause(String columnName, long value) {
-        mClauses.add(columnName + " > " + value);
+        addClause(columnName + " > " + value, columnName + " > ?", value);
 
         return this;
     }
 
     public WhereClauses addWhereGreaterThanOrEqualClause(String columnName, long value) {
-        mClauses.add(columnName + " >= " + value);
+        addClause(columnName + " >= " + value, columnName + " >= ?", value);
 
         return this;
     }
 
     public WhereClauses addWhereLessThanOrEqualClause(String columnName, long value) {
-        mClauses.add(columnName + " <= " + value);
+        addClause(columnName + " <= " + value, columnName + " <= ?", value);
 
         return this;
     }
 
     /** Add clause columnName < value */
     public WhereClauses addWhereLessThanClause(String columnName, long value) {
-        mClauses.add(columnName + " < " + value);
+        addClause(columnName + " < " + value, columnName + " < ?", value);
 
         return this;
     }
@@ -167,11 +198,13 @@ public final class WhereClauses {
     public WhereClauses addWhereInIntsClause(String columnName, Collection<Integer> values) {
         if (values == null || values.isEmpty()) return this;
 
-        mClauses.add(
+        addClause(
                 columnName
                         + " IN ("
                         + values.stream().map(String::valueOf).collect(Collectors.joining(", "))
-                        + ")");
+                        + ")",
+                columnName + " IN (" + getPlaceholders(values.size()) + ")",
+                values.stream().map(Integer::longValue).toArray());
 
         return this;
     }
@@ -186,14 +219,16 @@ public final class WhereClauses {
             @Nullable String columnName, @Nullable Collection<Long> values) {
         if (columnName == null || values == null || values.isEmpty()) return this;
 
-        mClauses.add(
+        List<Long> distinctValues = values.stream().distinct().toList();
+        addClause(
                 columnName
                         + " IN ("
-                        + values.stream()
-                                .distinct()
+                        + distinctValues.stream()
                                 .map(String::valueOf)
                                 .collect(Collectors.joining(", "))
-                        + ")");
+                        + ")",
+                columnName + " IN (" + getPlaceholders(distinctValues.size()) + ")",
+                distinctValues.toArray());
 
         return this;
     }
@@ -203,7 +238,70 @@ public final class WhereClauses {
      * set.
      */
     public WhereClauses addWhereInSQLRequestClause(String columnName, ReadTableRequest inRequest) {
-        mClauses.add(columnName + " IN (" + inRequest.getReadCommand() + ") ");
+        SqlWithArgs inCommand = inRequest.getReadCommandWithArgs();
+        addClause(
+                columnName + " IN (" + inRequest.getReadCommand() + ") ",
+                columnName + " IN (" + inCommand.getSql() + ") ",
+                inCommand.getArgs());
+
+        return this;
+    }
+
+    /**
+     * Adds a clause for the rows of {@code tableName} from ({@code value}, row id) onwards, in the
+     * order of {@code columnName}, then of {@code rowIdColumnName} ascending.
+     *
+     * <p>Only the bits of the row id in {@code rowIdMask} are known. The row id is recovered from
+     * the rows with the same {@code value}, which it only tells apart, assuming their row ids span
+     * less than the mask. If it can't be recovered, because the row was deleted and it came first
+     * or last among them, all of them are included, so that no row is skipped.
+     */
+    public WhereClauses addWhereFromKeyClause(
+            String tableName,
+            String columnName,
+            long value,
+            String rowIdColumnName,
+            long rowIdLowBits,
+            long rowIdMask,
+            boolean isAscending) {
+        String minRowId = "MIN(" + rowIdColumnName + ")";
+        String rowIdFromMin = minRowId + " + ((%2$s - " + minRowId + ") & " + rowIdMask + ")";
+        String rowId =
+                "(SELECT CASE WHEN "
+                        + rowIdFromMin
+                        + " > MAX("
+                        + rowIdColumnName
+                        + ") THEN "
+                        + minRowId
+                        + " ELSE "
+                        + rowIdFromMin
+                        + " END FROM "
+                        + tableName
+                        + " WHERE "
+                        + columnName
+                        + " = %1$s)";
+        // The first condition is redundant, but lets an index on columnName seek to the key.
+        String clause =
+                "("
+                        + columnName
+                        + (isAscending ? " >= " : " <= ")
+                        + "%1$s AND ("
+                        + columnName
+                        + (isAscending ? " > " : " < ")
+                        + "%1$s OR "
+                        + rowIdColumnName
+                        + " >= "
+                        + rowId
+                        + "))";
+        addClause(
+                String.format(clause, value, rowIdLowBits),
+                String.format(clause, "?", "?"),
+                // One argument per placeholder, in the order they appear in the clause.
+                value,
+                value,
+                rowIdLowBits,
+                rowIdLowBits,
+                value);
 
         return this;
     }
@@ -219,8 +317,13 @@ public final class WhereClauses {
             if (mLogicalOperator.equals(whereClauses.mLogicalOperator)) {
                 // If the logical operator matches we don't need extra parentheses
                 mClauses.addAll(whereClauses.mClauses);
+                mBoundClauses.addAll(whereClauses.mBoundClauses);
+                mArgs.addAll(whereClauses.mArgs);
             } else {
-                mClauses.add("(" + whereClauses.get(/* withWhereKeyword= */ false) + ")");
+                addClause(
+                        "(" + whereClauses.get(/* withWhereKeyword= */ false) + ")",
+                        "(" + whereClauses.getWithPlaceholders(/* withWhereKeyword= */ false) + ")",
+                        whereClauses.mArgs.toArray());
             }
         }
 
@@ -239,4 +342,32 @@ public final class WhereClauses {
         return (withWhereKeyword ? " WHERE " : "")
                 + String.join(mLogicalOperator.opKeyword, mClauses);
     }
+
+    /**
+     * Same as {@link #get}, but with a {@code ?} placeholder for each value returned by {@link
+     * #getArgs}.
+     */
+    public String getWithPlaceholders(boolean withWhereKeyword) {
+        if (mBoundClauses.isEmpty()) {
+            return "";
+        }
+
+        return (withWhereKeyword ? " WHERE " : "")
+                + String.join(mLogicalOperator.opKeyword, mBoundClauses);
+    }
+
+    /** Returns the values for the placeholders of {@link #getWithPlaceholders}, in order. */
+    public List<Object> getArgs() {
+        return Collections.unmodifiableList(mArgs);
+    }
+
+    private void addClause(String clause, String boundClause, Object... args) {
+        mClauses.add(clause);
+        mBoundClauses.add(boundClause);
+        Collections.addAll(mArgs, args);
+    }
+
+    private static String getPlaceholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
 }
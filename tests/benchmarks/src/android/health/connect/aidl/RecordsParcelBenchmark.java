@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package android.health.connect.aidl;
+
+import android.health.connect.internal.ParcelUtils;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.os.Parcel;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compares sending a page of 5000 heart rate records, of a minute of per second samples each, as a
+ * parcel copied to shared memory and as one frame per record in shared memory. Each iteration
+ * writes the records, reads them back and accesses every record, as a read response would.
+ *
+ * <p>The allocations reported by the benchmark show the heap copies of the whole page made by the
+ * parcel copied to shared memory.
+ */
+@RunWith(JUnit4.class)
+public class RecordsParcelBenchmark {
+    private static final int RECORD_COUNT = 5000;
+    private static final int SAMPLES_PER_RECORD = 60;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final List<RecordInternal<?>> mRecords = createHeartRateRecords();
+
+    @Test
+    public void parcelCopiedToSharedMemory() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            Parcel parcel = Parcel.obtain();
+            ParcelUtils.putToRequiredMemory(parcel, 0, this::writeRecords);
+            readRecords(parcel);
+        }
+    }
+
+    @Test
+    public void framedSharedMemory() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            Parcel parcel = Parcel.obtain();
+            ParcelUtils.putFramesToRequiredMemory(parcel, 0, mRecords.size(), this::writeRecord);
+            readRecords(parcel);
+        }
+    }
+
+    // Same as RecordsParcel.writeToParcel, without the flag.
+    private void writeRecords(Parcel dest) {
+        dest.writeInt(mRecords.size());
+        for (int i = 0; i < mRecords.size(); i++) {
+            writeRecord(dest, i);
+        }
+    }
+
+    private void writeRecord(Parcel dest, int index) {
+        RecordInternal<?> record = mRecords.get(index);
+        dest.writeInt(record.getRecordType());
+        record.writeToParcel(dest);
+    }
+
+    private static void readRecords(Parcel parcel) {
+        parcel.setDataPosition(0);
+        List<RecordInternal<?>> records =
+                RecordsParcel.CREATOR.createFromParcel(parcel).getRecords();
+        for (int i = 0; i < records.size(); i++) {
+            records.get(i);
+        }
+        parcel.recycle();
+    }
+
+    private static List<RecordInternal<?>> createHeartRateRecords() {
+        List<RecordInternal<?>> records = new ArrayList<>(RECORD_COUNT);
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            long startTime = i * SAMPLES_PER_RECORD * 1000L;
+            Set<HeartRateRecordInternal.HeartRateSample> samples = new HashSet<>();
+            for (int j = 0; j < SAMPLES_PER_RECORD; j++) {
+                samples.add(
+                        new HeartRateRecordInternal.HeartRateSample(
+                                60 + (i + j) % 100, startTime + j * 1000L));
+            }
+            records.add(
+                    new HeartRateRecordInternal()
+                            .setSamples(samples)
+                            .setStartTime(startTime)
+                            .setEndTime(startTime + SAMPLES_PER_RECORD * 1000L));
+        }
+        return records;
+    }
+}
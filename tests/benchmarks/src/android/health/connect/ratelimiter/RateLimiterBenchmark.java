@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.health.connect.ratelimiter;
+
+import android.health.connect.ratelimiter.RateLimiter.QuotaCategory;
+import android.platform.test.annotations.DisableFlags;
+import android.platform.test.annotations.EnableFlags;
+import android.platform.test.flag.junit.SetFlagsRule;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.android.healthfitness.flags.Flags;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares acquiring the quota of a background write with the rate limiter using locks and with
+ * the lock free one, while other threads acquire quotas for other uids.
+ *
+ * <p>Each thread goes through its own range of uids, so that the quota of a uid is not spent before
+ * the benchmark ends.
+ */
+@RunWith(JUnit4.class)
+public class RateLimiterBenchmark {
+    private static final int CONTENDING_THREAD_COUNT = 3;
+    private static final int UIDS_PER_THREAD = 20_000;
+    // Small enough for the quota across apps to last for the whole benchmark.
+    private static final int MEMORY_COST = 1;
+
+    @Rule public final SetFlagsRule mSetFlagsRule = new SetFlagsRule();
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final List<Thread> mContendingThreads = new ArrayList<>();
+    private volatile boolean mRunning;
+
+    @Before
+    public void setUp() {
+        RateLimiter.clearCache();
+        mRunning = true;
+        for (int i = 0; i < CONTENDING_THREAD_COUNT; i++) {
+            int firstUid = (i + 1) * UIDS_PER_THREAD;
+            Thread thread = new Thread(() -> acquireWhileRunning(firstUid));
+            thread.start();
+            mContendingThreads.add(thread);
+        }
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        mRunning = false;
+        for (Thread thread : mContendingThreads) {
+            thread.join();
+        }
+        RateLimiter.clearCache();
+    }
+
+    @Test
+    @DisableFlags(Flags.FLAG_LOCK_FREE_RATE_LIMITER)
+    public void lockingRateLimiter() {
+        benchmark();
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_LOCK_FREE_RATE_LIMITER)
+    public void lockFreeRateLimiter() {
+        benchmark();
+    }
+
+    private void benchmark() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        int calls = 0;
+        while (state.keepRunning()) {
+            acquire(calls++ % UIDS_PER_THREAD);
+        }
+    }
+
+    private void acquireWhileRunning(int firstUid) {
+        int calls = 0;
+        while (mRunning) {
+            try {
+                acquire(firstUid + calls++ % UIDS_PER_THREAD);
+            } catch (RateLimiterException e) {
+                // The other threads may run for longer than the benchmark needs.
+            }
+        }
+    }
+
+    private static void acquire(int uid) {
+        RateLimiter.tryAcquireApiCallQuota(
+                uid, QuotaCategory.QUOTA_CATEGORY_WRITE, /* isInForeground= */ false, MEMORY_COST);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Compares {@link HealthConnectRoundRobinScheduler} and {@link ActiveUidRoundRobinScheduler} when
+ * every active uid has a backlog of tasks, measuring one add and one take per iteration.
+ */
+@RunWith(Parameterized.class)
+public class RoundRobinSchedulerBenchmark {
+    private static final int TASKS_PER_UID = 4;
+    private static final Runnable TASK = () -> {};
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter public int mActiveUids;
+
+    @Parameterized.Parameters(name = "activeUids={0}")
+    public static List<Integer> getActiveUids() {
+        return List.of(1, 16, 256);
+    }
+
+    @Test
+    public void healthConnectRoundRobinScheduler() {
+        benchmark(HealthConnectRoundRobinScheduler::new);
+    }
+
+    @Test
+    public void activeUidRoundRobinScheduler() {
+        benchmark(ActiveUidRoundRobinScheduler::new);
+    }
+
+    private void benchmark(Supplier<RoundRobinScheduler> schedulerSupplier) {
+        RoundRobinScheduler scheduler = schedulerSupplier.get();
+        for (int uid = 0; uid < mActiveUids; uid++) {
+            for (int i = 0; i < TASKS_PER_UID; i++) {
+                scheduler.addTask(uid, TASK);
+            }
+        }
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        int uid = 0;
+        while (state.keepRunning()) {
+            scheduler.addTask(uid, TASK);
+            scheduler.getNextTask().run();
+            uid = (uid + 1) % mActiveUids;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.backuprestore;
+
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+import android.health.connect.internal.datatypes.utils.HealthConnectMappings;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.android.server.healthconnect.storage.utils.InternalHealthConnectMappings;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.UUID;
+
+/**
+ * Compares encoding and decoding a record of a cloud backup with {@link BackupRecordCodec} and with
+ * Java serialization. Series records are left out, as their samples can't be serialized by Java.
+ */
+@RunWith(JUnit4.class)
+public class BackupRecordCodecBenchmark {
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final BackupRecordCodec mCodec =
+            new BackupRecordCodec(new InternalHealthConnectMappings(new HealthConnectMappings()));
+    private final StepsRecordInternal mRecord = createStepsRecord();
+
+    @Test
+    public void encodeWithJavaSerialization() throws IOException {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            serialize(mRecord);
+        }
+    }
+
+    @Test
+    public void encodeWithCodec() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mCodec.encode(mRecord);
+        }
+    }
+
+    @Test
+    public void decodeWithJavaSerialization() throws IOException, ClassNotFoundException {
+        byte[] serialized = serialize(mRecord);
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            try (ObjectInputStream in =
+                    new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+                in.readObject();
+            }
+        }
+    }
+
+    @Test
+    public void decodeWithCodec() {
+        byte[] encoded = mCodec.encode(mRecord);
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mCodec.decode(encoded);
+        }
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(object);
+        }
+        return serialized.toByteArray();
+    }
+
+    private static StepsRecordInternal createStepsRecord() {
+        StepsRecordInternal record = new StepsRecordInternal();
+        record.setCount(1345);
+        record.setStartTime(1_700_000_000_000L);
+        record.setEndTime(1_700_000_060_000L);
+        record.setUuid(UUID.randomUUID());
+        record.setPackageName("com.example.fitness");
+        record.setAppName("Fitness");
+        record.setLastModifiedTime(1_700_000_100_000L);
+        record.setClientRecordId("steps-1");
+        record.setManufacturer("Manufacturer");
+        record.setModel("Watch");
+        return record;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares inserting a series record with an hour of per second samples through {@link
+ * SQLiteDatabase#insertWithOnConflict}, with a statement compiled once for the transaction, and
+ * with the samples bound to that statement without {@link ContentValues}.
+ */
+@RunWith(JUnit4.class)
+public class InsertStatementCacheBenchmark {
+    private static final String PARENT_TABLE = "parent_table";
+    private static final String CHILD_TABLE = "child_table";
+    private static final int SAMPLE_COUNT = 3600;
+    private static final UpsertTableRequest.RowLayout CHILD_ROW_LAYOUT =
+            new UpsertTableRequest.RowLayout(CHILD_TABLE, "parent_key", List.of("epoch", "bpm"));
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mDb = SQLiteDatabase.create(null);
+        mDb.execSQL(
+                "CREATE TABLE "
+                        + PARENT_TABLE
+                        + " (row_id INTEGER PRIMARY KEY AUTOINCREMENT, start_time INTEGER)");
+        mDb.execSQL(
+                "CREATE TABLE "
+                        + CHILD_TABLE
+                        + " (row_id INTEGER PRIMARY KEY AUTOINCREMENT, parent_key INTEGER,"
+                        + " epoch INTEGER, bpm INTEGER)");
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    @Test
+    public void insertWithContentValues() {
+        benchmark(/* enabled= */ false, /* bound= */ false);
+    }
+
+    @Test
+    public void insertWithCompiledStatements() {
+        benchmark(/* enabled= */ true, /* bound= */ false);
+    }
+
+    @Test
+    public void insertWithCompiledStatementsAndBoundSamples() {
+        benchmark(/* enabled= */ true, /* bound= */ true);
+    }
+
+    private void benchmark(boolean enabled, boolean bound) {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            // Building the requests is part of the cost saved by the bound samples.
+            UpsertTableRequest request = createRequest(bound);
+            mDb.beginTransaction();
+            try (InsertStatementCache statements = new InsertStatementCache(mDb, enabled)) {
+                long rowId = statements.insert(request, SQLiteDatabase.CONFLICT_NONE);
+                for (UpsertTableRequest child : request.getChildTableRequests()) {
+                    statements.insert(child.withParentKey(rowId), SQLiteDatabase.CONFLICT_NONE);
+                }
+            } finally {
+                // Rolled back to insert into the same tables on every iteration.
+                mDb.endTransaction();
+            }
+        }
+    }
+
+    private static UpsertTableRequest createRequest(boolean bound) {
+        ContentValues parentValues = new ContentValues();
+        parentValues.put("start_time", 0L);
+        List<UpsertTableRequest> children = new ArrayList<>(SAMPLE_COUNT);
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            long epoch = i * 1000L;
+            long bpm = 60 + i % 100;
+            if (bound) {
+                children.add(
+                        new UpsertTableRequest(
+                                CHILD_ROW_LAYOUT,
+                                (statement, index) -> {
+                                    statement.bindLong(index, epoch);
+                                    statement.bindLong(index + 1, bpm);
+                                }));
+            } else {
+                ContentValues values = new ContentValues();
+                values.put("epoch", epoch);
+                values.put("bpm", bpm);
+                children.add(
+                        new UpsertTableRequest(CHILD_TABLE, values)
+                                .setParentColumnForChildTables("parent_key"));
+            }
+        }
+        return new UpsertTableRequest(PARENT_TABLE, parentValues).setChildTableRequests(children);
+    }
+}
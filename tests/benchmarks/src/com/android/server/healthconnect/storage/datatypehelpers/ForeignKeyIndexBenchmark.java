@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.android.server.healthconnect.storage.HealthConnectDatabase;
+import com.android.server.healthconnect.storage.request.AlterTableRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Measures deleting and reading a day of heart rate records from a series table of over a million
+ * samples, through the parent_key index created with the series table, and deleting a week of
+ * exercise sessions referenced by planned exercise sessions, with and without indexes on the
+ * columns with foreign keys added by ALTER TABLE. The query plans are logged under {@link #TAG}.
+ */
+@RunWith(JUnit4.class)
+public class ForeignKeyIndexBenchmark {
+    private static final String TAG = "ForeignKeyIndexBenchmark";
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    private static final int HEART_RATE_RECORD_COUNT = 20_000;
+    private static final int SAMPLES_PER_RECORD = 60;
+    private static final long HEART_RATE_RECORD_INTERVAL_MILLIS = 60_000;
+    private static final String DELETE_HEART_RATE_QUERY =
+            "DELETE FROM heart_rate_record_table WHERE start_time BETWEEN ? AND ?";
+    private static final String READ_HEART_RATE_QUERY =
+            "SELECT * FROM heart_rate_record_table INNER JOIN heart_rate_record_series_table"
+                    + " ON heart_rate_record_table.row_id"
+                    + " = heart_rate_record_series_table.parent_key"
+                    + " WHERE start_time BETWEEN ? AND ?"
+                    + " ORDER BY start_time ASC, heart_rate_record_table.row_id ASC";
+
+    private static final int EXERCISE_SESSION_COUNT = 20_000;
+    private static final String DELETE_EXERCISE_SESSIONS_QUERY =
+            "DELETE FROM exercise_session_record_table WHERE start_time BETWEEN ? AND ?";
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mDb = SQLiteDatabase.create(null);
+        mDb.setForeignKeyConstraintsEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    @Test
+    public void deleteDayOfHeartRateRecords() {
+        insertHeartRateRecords();
+        String[] args = getDayArgs(HEART_RATE_RECORD_COUNT / 2 * HEART_RATE_RECORD_INTERVAL_MILLIS);
+        logQueryPlan(DELETE_HEART_RATE_QUERY, args);
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mDb.beginTransaction();
+            try {
+                mDb.execSQL(DELETE_HEART_RATE_QUERY, args);
+            } finally {
+                // Rolled back to delete the same records on every iteration.
+                mDb.endTransaction();
+            }
+        }
+    }
+
+    @Test
+    public void readDayOfHeartRateRecords() {
+        insertHeartRateRecords();
+        String[] args = getDayArgs(HEART_RATE_RECORD_COUNT / 2 * HEART_RATE_RECORD_INTERVAL_MILLIS);
+        logQueryPlan(READ_HEART_RATE_QUERY, args);
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            try (Cursor cursor = mDb.rawQuery(READ_HEART_RATE_QUERY, args)) {
+                while (cursor.moveToNext()) {
+                    cursor.getLong(0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void deleteWeekOfExerciseSessions() {
+        benchmarkDeleteExerciseSessions(/* foreignKeyIndexes= */ false);
+    }
+
+    @Test
+    public void deleteWeekOfExerciseSessionsWithForeignKeyIndexes() {
+        benchmarkDeleteExerciseSessions(/* foreignKeyIndexes= */ true);
+    }
+
+    private void benchmarkDeleteExerciseSessions(boolean foreignKeyIndexes) {
+        insertExerciseSessions(foreignKeyIndexes);
+        long startTime = EXERCISE_SESSION_COUNT / 2 * HOUR_MILLIS;
+        String[] args = {
+            String.valueOf(startTime), String.valueOf(startTime + 7 * DAY_MILLIS - 1)
+        };
+        logQueryPlan(DELETE_EXERCISE_SESSIONS_QUERY, args);
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            mDb.beginTransaction();
+            try {
+                mDb.execSQL(DELETE_EXERCISE_SESSIONS_QUERY, args);
+            } finally {
+                mDb.endTransaction();
+            }
+        }
+    }
+
+    private void insertHeartRateRecords() {
+        HeartRateRecordHelper helper = new HeartRateRecordHelper();
+        HealthConnectDatabase.createTable(mDb, helper.getCreateTableRequest());
+        helper.applyKeysetPageTokensUpgrade(mDb);
+
+        mDb.beginTransaction();
+        try (SQLiteStatement record = compileInsert("heart_rate_record_table");
+                SQLiteStatement sample =
+                        mDb.compileStatement(
+                                "INSERT INTO heart_rate_record_series_table"
+                                        + " (parent_key, beats_per_minute, epoch_millis)"
+                                        + " VALUES (?, ?, ?)")) {
+            for (int i = 0; i < HEART_RATE_RECORD_COUNT; i++) {
+                long startTime = i * HEART_RATE_RECORD_INTERVAL_MILLIS;
+                bindRecord(record, i, startTime, HEART_RATE_RECORD_INTERVAL_MILLIS);
+                long rowId = record.executeInsert();
+                for (int j = 0; j < SAMPLES_PER_RECORD; j++) {
+                    sample.bindLong(1, rowId);
+                    sample.bindLong(2, 60 + j);
+                    sample.bindLong(3, startTime + j * 1000L);
+                    sample.executeInsert();
+                }
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    private void insertExerciseSessions(boolean foreignKeyIndexes) {
+        ExerciseSessionRecordHelper sessionHelper = new ExerciseSessionRecordHelper();
+        PlannedExerciseSessionRecordHelper plannedHelper = new PlannedExerciseSessionRecordHelper();
+        HealthConnectDatabase.createTable(mDb, sessionHelper.getCreateTableRequest());
+        HealthConnectDatabase.createTable(mDb, plannedHelper.getCreateTableRequest());
+        sessionHelper.applyKeysetPageTokensUpgrade(mDb);
+        plannedHelper.applyKeysetPageTokensUpgrade(mDb);
+        for (AlterTableRequest request :
+                List.of(
+                        plannedHelper.getAlterTableRequestForPlannedExerciseFeature(),
+                        sessionHelper.getAlterTableRequestForPlannedExerciseFeature())) {
+            request.getAlterTableAddColumnsCommands().forEach(mDb::execSQL);
+            if (foreignKeyIndexes) {
+                request.getCreateIndexStatements().forEach(mDb::execSQL);
+            }
+        }
+
+        mDb.beginTransaction();
+        try (SQLiteStatement session = compileInsert("exercise_session_record_table");
+                SQLiteStatement planned = compileInsert("planned_exercise_session_record_table")) {
+            for (int i = 0; i < EXERCISE_SESSION_COUNT; i++) {
+                long startTime = i * HOUR_MILLIS;
+                bindRecord(planned, EXERCISE_SESSION_COUNT + i, startTime, HOUR_MILLIS / 2);
+                planned.executeInsert();
+                bindRecord(session, i, startTime, HOUR_MILLIS / 2);
+                session.executeInsert();
+            }
+            // Each session completes the planned session of the same time, and the other way.
+            mDb.execSQL(
+                    "UPDATE planned_exercise_session_record_table SET completed_session_id ="
+                            + " (SELECT uuid FROM exercise_session_record_table AS session"
+                            + " WHERE session.start_time"
+                            + " = planned_exercise_session_record_table.start_time)");
+            mDb.execSQL(
+                    "UPDATE exercise_session_record_table SET planned_exercise_session_id ="
+                            + " (SELECT uuid FROM planned_exercise_session_record_table AS planned"
+                            + " WHERE planned.start_time"
+                            + " = exercise_session_record_table.start_time)");
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    private SQLiteStatement compileInsert(String tableName) {
+        return mDb.compileStatement(
+                "INSERT INTO "
+                        + tableName
+                        + " (uuid, start_time, start_zone_offset, end_time, end_zone_offset,"
+                        + " local_date) VALUES (?, ?, 0, ?, 0, ?)");
+    }
+
+    private static void bindRecord(
+            SQLiteStatement statement, int index, long startTime, long durationMillis) {
+        statement.bindBlob(1, ByteBuffer.allocate(16).putLong(0).putLong(index).array());
+        statement.bindLong(2, startTime);
+        statement.bindLong(3, startTime + durationMillis);
+        statement.bindLong(4, startTime / DAY_MILLIS);
+    }
+
+    private static String[] getDayArgs(long startTime) {
+        return new String[] {String.valueOf(startTime), String.valueOf(startTime + DAY_MILLIS - 1)};
+    }
+
+    private void logQueryPlan(String query, String[] args) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = mDb.rawQuery("EXPLAIN QUERY PLAN " + query, args)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append("\n  ").append(cursor.getString(detail));
+            }
+        }
+        Log.i(TAG, "Plan of " + query + ":" + plan);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static android.health.connect.datatypes.FhirResource.FHIR_RESOURCE_TYPE_OBSERVATION;
+import static android.health.connect.datatypes.MedicalResource.MEDICAL_RESOURCE_TYPE_LABORATORY_RESULTS;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.android.server.healthconnect.storage.HealthConnectDatabase;
+import com.android.server.healthconnect.storage.request.UpsertMedicalResourceInternalRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Measures a resync of ten thousand medical resources of which one percent changed, by replacing
+ * every resource, and by skipping the resources whose FHIR data hash did not change.
+ */
+@RunWith(JUnit4.class)
+public class MedicalResourceUpsertBenchmark {
+    private static final int RESOURCE_COUNT = 10_000;
+    private static final int CHANGED_RESOURCE_COUNT = RESOURCE_COUNT / 100;
+    private static final String FHIR_VERSION = "4.0.1";
+    // The row id of the only data source, inserted into the empty table.
+    private static final long DATA_SOURCE_ROW_ID = 1;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private SQLiteDatabase mDb;
+    private final UUID mDataSourceId = UUID.randomUUID();
+
+    @Before
+    public void setUp() {
+        mDb = SQLiteDatabase.create(null);
+        mDb.setForeignKeyConstraintsEnabled(true);
+        HealthConnectDatabase.createTable(mDb, AppInfoHelper.getCreateTableRequest());
+        MedicalDataSourceHelper.onInitialUpgrade(mDb);
+        MedicalResourceHelper.onInitialUpgrade(mDb);
+        MedicalResourceHelper.applyContentHashUpgrade(mDb);
+
+        mDb.execSQL("INSERT INTO application_info_table (package_name) VALUES ('com.example')");
+        mDb.execSQL(
+                "INSERT INTO medical_data_source_table (app_info_id, display_name, fhir_base_uri,"
+                        + " fhir_version, data_source_uuid, last_modified_time)"
+                        + " VALUES (1, 'Hospital', 'https://fhir.example.com', '"
+                        + FHIR_VERSION
+                        + "', randomblob(16), 0)");
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    @Test
+    public void resyncByReplacing() {
+        benchmark(/* skipUnchanged= */ false);
+    }
+
+    @Test
+    public void resyncSkippingUnchanged() {
+        benchmark(/* skipUnchanged= */ true);
+    }
+
+    private void benchmark(boolean skipUnchanged) {
+        upsertAll(createRequests(/* version= */ 0, /* changedFrom= */ 0), skipUnchanged);
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        int version = 0;
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            version++;
+            // A different slice of the resources changes on every resync.
+            int changedFrom = (version * CHANGED_RESOURCE_COUNT) % RESOURCE_COUNT;
+            List<UpsertMedicalResourceInternalRequest> requests =
+                    createRequests(version, changedFrom);
+            state.resumeTiming();
+
+            upsertAll(requests, skipUnchanged);
+        }
+    }
+
+    private void upsertAll(
+            List<UpsertMedicalResourceInternalRequest> requests, boolean skipUnchanged) {
+        Instant now = Instant.now();
+        mDb.beginTransaction();
+        try {
+            for (UpsertMedicalResourceInternalRequest request : requests) {
+                ContentValues contentValues =
+                        MedicalResourceHelper.getContentValues(DATA_SOURCE_ROW_ID, request, now);
+                if (skipUnchanged) {
+                    MedicalResourceHelper.upsertMedicalResourceIfChanged(
+                            mDb, DATA_SOURCE_ROW_ID, request, contentValues);
+                } else {
+                    MedicalResourceHelper.replaceMedicalResource(mDb, request, contentValues);
+                }
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    /**
+     * Creates the requests of a resync, where the resources from {@code changedFrom} have the
+     * {@code version} of their data and the others the data they were first synced with.
+     */
+    private List<UpsertMedicalResourceInternalRequest> createRequests(
+            int version, int changedFrom) {
+        List<UpsertMedicalResourceInternalRequest> requests = new ArrayList<>(RESOURCE_COUNT);
+        for (int i = 0; i < RESOURCE_COUNT; i++) {
+            boolean changed = i >= changedFrom && i < changedFrom + CHANGED_RESOURCE_COUNT;
+            requests.add(
+                    new UpsertMedicalResourceInternalRequest()
+                            .setMedicalResourceType(MEDICAL_RESOURCE_TYPE_LABORATORY_RESULTS)
+                            .setFhirResourceType(FHIR_RESOURCE_TYPE_OBSERVATION)
+                            .setFhirResourceId("observation-" + i)
+                            .setFhirVersion(FHIR_VERSION)
+                            .setData(getObservationData(i, changed ? version : 0))
+                            .setDataSourceId(mDataSourceId.toString()));
+        }
+        return requests;
+    }
+
+    private static String getObservationData(int index, int version) {
+        return "{\"resourceType\":\"Observation\",\"id\":\"observation-"
+                + index
+                + "\",\"status\":\"final\",\"code\":{\"coding\":[{\"system\":\"http://loinc.org\","
+                + "\"code\":\"2339-0\",\"display\":\"Glucose [Mass/volume] in Blood\"}]},"
+                + "\"valueQuantity\":{\"value\":"
+                + (90 + index % 40)
+                + ",\"unit\":\"mg/dL\"},\"meta\":{\"versionId\":\""
+                + version
+                + "\"}}";
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal;
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.android.server.healthconnect.storage.utils.StorageUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+
+/**
+ * Compares decoding a page of steps records with each column looked up by name and the record
+ * constructor looked up for every row, against column indexes and a constructor resolved once per
+ * page, and measures decoding the samples of a page of heart rate records.
+ */
+@RunWith(JUnit4.class)
+public class RecordDecodeBenchmark {
+    private static final int RECORD_COUNT = 5000;
+    private static final int SAMPLES_PER_RECORD = 10;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mDb = SQLiteDatabase.create(null);
+        mDb.execSQL(
+                "CREATE TABLE steps_record_table (row_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                        + " uuid BLOB, last_modified_time INTEGER, client_record_id TEXT,"
+                        + " client_record_version INTEGER, recording_method INTEGER,"
+                        + " device_info_id INTEGER, app_info_id INTEGER, start_time INTEGER,"
+                        + " count INTEGER)");
+        mDb.execSQL(
+                "CREATE TABLE heart_rate_record_series_table (uuid BLOB, beats_per_minute INTEGER,"
+                        + " epoch_millis INTEGER)");
+        mDb.beginTransaction();
+        try {
+            for (int i = 0; i < RECORD_COUNT; i++) {
+                byte[] uuid = getUuid(i);
+                mDb.execSQL(
+                        "INSERT INTO steps_record_table (uuid, last_modified_time,"
+                                + " client_record_id, client_record_version, recording_method,"
+                                + " device_info_id, app_info_id, start_time, count)"
+                                + " VALUES (?, ?, ?, 0, 0, 1, 1, ?, ?)",
+                        new Object[] {uuid, i, "client" + i, i * 60_000L, i % 100});
+                for (int j = 0; j < SAMPLES_PER_RECORD; j++) {
+                    mDb.execSQL(
+                            "INSERT INTO heart_rate_record_series_table VALUES (?, ?, ?)",
+                            new Object[] {uuid, 60 + j, i * 60_000L + j * 1000L});
+                }
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    @Test
+    public void decodeStepsByColumnName() throws Exception {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            try (Cursor cursor = mDb.rawQuery("SELECT * FROM steps_record_table", null)) {
+                while (cursor.moveToNext()) {
+                    StepsRecordInternal record =
+                            StepsRecordInternal.class.getConstructor().newInstance();
+                    record.setUuid(StorageUtils.getCursorUUID(cursor, "uuid"));
+                    record.setLastModifiedTime(
+                            StorageUtils.getCursorLong(cursor, "last_modified_time"));
+                    record.setClientRecordId(
+                            StorageUtils.getCursorString(cursor, "client_record_id"));
+                    record.setClientRecordVersion(
+                            StorageUtils.getCursorLong(cursor, "client_record_version"));
+                    record.setRecordingMethod(
+                            StorageUtils.getCursorInt(cursor, "recording_method"));
+                    record.setRowId(StorageUtils.getCursorInt(cursor, "row_id"));
+                    record.setAppInfoId(StorageUtils.getCursorLong(cursor, "app_info_id"));
+                    record.setStartTime(StorageUtils.getCursorLong(cursor, "start_time"));
+                    record.setCount(StorageUtils.getCursorInt(cursor, "count"));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void decodeStepsByColumnIndex() throws Exception {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            try (Cursor cursor = mDb.rawQuery("SELECT * FROM steps_record_table", null)) {
+                Constructor<StepsRecordInternal> constructor =
+                        StepsRecordInternal.class.getConstructor();
+                int uuid = cursor.getColumnIndex("uuid");
+                int lastModifiedTime = cursor.getColumnIndex("last_modified_time");
+                int clientRecordId = cursor.getColumnIndex("client_record_id");
+                int clientRecordVersion = cursor.getColumnIndex("client_record_version");
+                int recordingMethod = cursor.getColumnIndex("recording_method");
+                int rowId = cursor.getColumnIndex("row_id");
+                int appInfoId = cursor.getColumnIndex("app_info_id");
+                int startTime = cursor.getColumnIndex("start_time");
+                int count = cursor.getColumnIndex("count");
+                while (cursor.moveToNext()) {
+                    StepsRecordInternal record = constructor.newInstance();
+                    record.setUuid(StorageUtils.convertBytesToUUID(cursor.getBlob(uuid)));
+                    record.setLastModifiedTime(cursor.getLong(lastModifiedTime));
+                    record.setClientRecordId(cursor.getString(clientRecordId));
+                    record.setClientRecordVersion(cursor.getLong(clientRecordVersion));
+                    record.setRecordingMethod(cursor.getInt(recordingMethod));
+                    record.setRowId(cursor.getInt(rowId));
+                    record.setAppInfoId(cursor.getLong(appInfoId));
+                    record.setStartTime(cursor.getLong(startTime));
+                    record.setCount(cursor.getInt(count));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void decodeHeartRateSamples() {
+        HeartRateRecordHelper helper = new HeartRateRecordHelper();
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            try (Cursor cursor =
+                    mDb.rawQuery("SELECT * FROM heart_rate_record_series_table", null)) {
+                while (cursor.moveToNext()) {
+                    helper.populateSpecificValues(cursor, new HeartRateRecordInternal());
+                }
+            }
+        }
+    }
+
+    private static byte[] getUuid(int index) {
+        return ByteBuffer.allocate(16).putLong(0).putLong(index).array();
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.android.server.healthconnect.storage.HealthConnectDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Measures reading a page of the steps records of one app and aggregating a day of steps in local
+ * time from a table of a million records, with the indexes of the keyset page tokens DB version
+ * only, and with the time range indexes added on top. The query plans are logged under {@link
+ * #TAG}.
+ */
+@RunWith(Parameterized.class)
+public class TimeRangeIndexBenchmark {
+    private static final String TAG = "TimeRangeIndexBenchmark";
+    private static final String TABLE_NAME = "steps_record_table";
+    private static final int RECORD_COUNT = 1_000_000;
+    private static final int APP_COUNT = 4;
+    private static final long RECORD_INTERVAL_MILLIS = 60_000;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final int ZONE_OFFSET_SECONDS = 3600;
+    private static final int PAGE_SIZE = 1000;
+
+    private static final String READ_PAGE_OF_APP_QUERY =
+            "SELECT * FROM "
+                    + TABLE_NAME
+                    + " WHERE app_info_id IN (?) AND start_time BETWEEN ? AND ?"
+                    + " ORDER BY start_time ASC, row_id ASC LIMIT "
+                    + (PAGE_SIZE + 1);
+    private static final String AGGREGATE_LOCAL_DAY_QUERY =
+            "SELECT SUM(count) FROM "
+                    + TABLE_NAME
+                    + " WHERE local_date_time_start_time BETWEEN ? AND ?";
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter public boolean mTimeRangeIndexes;
+
+    @Parameterized.Parameters(name = "timeRangeIndexes={0}")
+    public static List<Boolean> getTimeRangeIndexes() {
+        return List.of(false, true);
+    }
+
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        StepsRecordHelper helper = new StepsRecordHelper();
+        mDb = SQLiteDatabase.create(null);
+        HealthConnectDatabase.createTable(mDb, helper.getCreateTableRequest());
+        helper.applyKeysetPageTokensUpgrade(mDb);
+        if (mTimeRangeIndexes) {
+            helper.applyTimeRangeIndexesUpgrade(mDb);
+        }
+        insertRecords();
+        mDb.execSQL("ANALYZE");
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    @Test
+    public void readPageOfApp() {
+        // Records of the app are spread over the whole table, the page starts halfway through.
+        long startTime = RECORD_COUNT / 2 * RECORD_INTERVAL_MILLIS;
+        String[] args = {"1", String.valueOf(startTime), String.valueOf(Long.MAX_VALUE)};
+        logQueryPlan(READ_PAGE_OF_APP_QUERY, args);
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            try (Cursor cursor = mDb.rawQuery(READ_PAGE_OF_APP_QUERY, args)) {
+                while (cursor.moveToNext()) {
+                    cursor.getLong(0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void aggregateLocalDay() {
+        long localStartTime = RECORD_COUNT / 2 * RECORD_INTERVAL_MILLIS;
+        String[] args = {
+            String.valueOf(localStartTime), String.valueOf(localStartTime + DAY_MILLIS - 1)
+        };
+        logQueryPlan(AGGREGATE_LOCAL_DAY_QUERY, args);
+
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            try (Cursor cursor = mDb.rawQuery(AGGREGATE_LOCAL_DAY_QUERY, args)) {
+                cursor.moveToFirst();
+                cursor.getLong(0);
+            }
+        }
+    }
+
+    private void insertRecords() {
+        mDb.beginTransaction();
+        try (SQLiteStatement statement =
+                mDb.compileStatement(
+                        "INSERT INTO "
+                                + TABLE_NAME
+                                + " (uuid, app_info_id, device_info_id, start_time,"
+                                + " start_zone_offset, end_time, end_zone_offset, local_date,"
+                                + " count) VALUES (?, ?, 1, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < RECORD_COUNT; i++) {
+                long startTime = i * RECORD_INTERVAL_MILLIS;
+                statement.bindBlob(1, ByteBuffer.allocate(16).putLong(0).putLong(i).array());
+                statement.bindLong(2, i % APP_COUNT);
+                statement.bindLong(3, startTime);
+                statement.bindLong(4, ZONE_OFFSET_SECONDS);
+                statement.bindLong(5, startTime + RECORD_INTERVAL_MILLIS / 2);
+                statement.bindLong(6, ZONE_OFFSET_SECONDS);
+                statement.bindLong(7, (startTime + ZONE_OFFSET_SECONDS * 1000L) / DAY_MILLIS);
+                statement.bindLong(8, i % 100);
+                statement.executeInsert();
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    private void logQueryPlan(String query, String[] args) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = mDb.rawQuery("EXPLAIN QUERY PLAN " + query, args)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append("\n  ").append(cursor.getString(detail));
+            }
+        }
+        Log.i(TAG, "timeRangeIndexes=" + mTimeRangeIndexes + ", plan of " + query + ":" + plan);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.android.server.healthconnect.storage.datatypehelpers.aggregation;
+
+import static android.health.connect.datatypes.ActivityIntensityRecord.ACTIVITY_INTENSITY_TYPE_MODERATE;
+import static android.health.connect.datatypes.ActivityIntensityRecord.ACTIVITY_INTENSITY_TYPE_VIGOROUS;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.ACTIVITY_INTENSITY_MINUTES_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.SLEEP_SESSION_DURATION_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.STEPS_RECORD_COUNT_TOTAL;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.IntervalRecordHelper.END_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.IntervalRecordHelper.START_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.IntervalRecordHelper.START_ZONE_OFFSET_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.APP_INFO_ID_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.LAST_MODIFIED_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.UUID_COLUMN_NAME;
+
+import android.database.MatrixCursor;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.android.server.healthconnect.storage.datatypehelpers.ActivityIntensityRecordHelper;
+import com.android.server.healthconnect.storage.request.AggregateParams;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link PriorityRecordsAggregator} and {@link SweepLinePriorityAggregator} on cursors
+ * shaped like the ones produced by {@code AggregateTableRequest} for three contributing apps.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PriorityAggregationBenchmark {
+    private static final String STEPS_COLUMN = "count";
+    private static final String STAGE_START_COLUMN = "stage_start_time";
+    private static final String STAGE_END_COLUMN = "stage_end_time";
+    private static final String[] COLUMNS = {
+        START_TIME_COLUMN_NAME,
+        END_TIME_COLUMN_NAME,
+        LAST_MODIFIED_TIME_COLUMN_NAME,
+        START_ZONE_OFFSET_COLUMN_NAME,
+        APP_INFO_ID_COLUMN_NAME,
+        UUID_COLUMN_NAME,
+        STEPS_COLUMN,
+        STAGE_START_COLUMN,
+        STAGE_END_COLUMN,
+        ActivityIntensityRecordHelper.TYPE_COLUMN_NAME
+    };
+    private static final List<Long> APP_PRIORITY_LIST = List.of(1L, 2L, 3L);
+    private static final long START_TIME = 1_700_000_000_000L;
+    private static final int DAYS = 30;
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final AggregateParams.PriorityAggregationExtraParams mValueParams =
+            new AggregateParams.PriorityAggregationExtraParams(STEPS_COLUMN, Long.class);
+    private final AggregateParams.PriorityAggregationExtraParams mSessionParams =
+            new AggregateParams.PriorityAggregationExtraParams(
+                    STAGE_START_COLUMN, STAGE_END_COLUMN);
+
+    private MatrixCursor mStepsCursor;
+    private MatrixCursor mSleepCursor;
+    private MatrixCursor mActivityIntensityCursor;
+    private List<Long> mDailySplits;
+    private long mNextUuid;
+
+    @Before
+    public void setUp() {
+        mDailySplits = new ArrayList<>();
+        for (int day = 0; day <= DAYS; day++) {
+            mDailySplits.add(START_TIME + day * DAY);
+        }
+
+        // Minute level steps from three apps for the whole period.
+        mStepsCursor = new MatrixCursor(COLUMNS);
+        for (long time = START_TIME; time < START_TIME + DAYS * DAY; time += MINUTE) {
+            for (long appId : APP_PRIORITY_LIST) {
+                mStepsCursor.addRow(
+                        row(time, time + MINUTE, appId, nextUuid(), 60 + appId, null, null, 0));
+            }
+        }
+
+        // One night per app per day, with an awake stage every hour.
+        mSleepCursor = new MatrixCursor(COLUMNS);
+        for (int day = 0; day < DAYS; day++) {
+            long sleepStart = START_TIME + day * DAY - TimeUnit.HOURS.toMillis(2);
+            long sleepEnd = sleepStart + TimeUnit.HOURS.toMillis(8);
+            for (long appId : APP_PRIORITY_LIST) {
+                byte[] uuid = nextUuid();
+                for (long awake = sleepStart; awake < sleepEnd; awake += 60 * MINUTE) {
+                    mSleepCursor.addRow(
+                            row(
+                                    sleepStart,
+                                    sleepEnd,
+                                    appId,
+                                    uuid,
+                                    0,
+                                    awake,
+                                    awake + 5 * MINUTE,
+                                    0));
+                }
+            }
+        }
+
+        // Five minute intensity records from three apps for the whole period.
+        mActivityIntensityCursor = new MatrixCursor(COLUMNS);
+        for (long time = START_TIME; time < START_TIME + DAYS * DAY; time += 5 * MINUTE) {
+            for (long appId : APP_PRIORITY_LIST) {
+                int type =
+                        (time / MINUTE) % 2 == 0
+                                ? ACTIVITY_INTENSITY_TYPE_MODERATE
+                                : ACTIVITY_INTENSITY_TYPE_VIGOROUS;
+                mActivityIntensityCursor.addRow(
+                        row(time, time + 5 * MINUTE, appId, nextUuid(), 0, null, null, type));
+            }
+        }
+    }
+
+    @Test
+    public void stepsCountTotal_priorityRecordsAggregator() {
+        benchmark(
+                mStepsCursor,
+                () ->
+                        new PriorityRecordsAggregator(
+                                mDailySplits,
+                                APP_PRIORITY_LIST,
+                                STEPS_RECORD_COUNT_TOTAL,
+                                mValueParams,
+                                false));
+    }
+
+    @Test
+    public void stepsCountTotal_sweepLinePriorityAggregator() {
+        benchmark(
+                mStepsCursor,
+                () ->
+                        new SweepLinePriorityAggregator(
+                                mDailySplits,
+                                APP_PRIORITY_LIST,
+                                STEPS_RECORD_COUNT_TOTAL,
+                                mValueParams,
+                                false));
+    }
+
+    @Test
+    public void sleepSessionDurationTotal_priorityRecordsAggregator() {
+        benchmark(
+                mSleepCursor,
+                () ->
+                        new PriorityRecordsAggregator(
+                                mDailySplits,
+                                APP_PRIORITY_LIST,
+                                SLEEP_SESSION_DURATION_TOTAL,
+                                mSessionParams,
+                                false));
+    }
+
+    @Test
+    public void sleepSessionDurationTotal_sweepLinePriorityAggregator() {
+        benchmark(
+                mSleepCursor,
+                () ->
+                        new SweepLinePriorityAggregator(
+                                mDailySplits,
+                                APP_PRIORITY_LIST,
+                                SLEEP_SESSION_DURATION_TOTAL,
+                                mSessionParams,
+                                false));
+    }
+
+    @Test
+    public void activityIntensityMinutesTotal_priorityRecordsAggregator() {
+        benchmark(
+                mActivityIntensityCursor,
+                () ->
+                        new PriorityRecordsAggregator(
+                                mDailySplits,
+                                APP_PRIORITY_LIST,
+                                ACTIVITY_INTENSITY_MINUTES_TOTAL,
+                                mValueParams,
+                                false));
+    }
+
+    @Test
+    public void activityIntensityMinutesTotal_sweepLinePriorityAggregator() {
+        benchmark(
+                mActivityIntensityCursor,
+                () ->
+                        new SweepLinePriorityAggregator(
+                                mDailySplits,
+                                APP_PRIORITY_LIST,
+                                ACTIVITY_INTENSITY_MINUTES_TOTAL,
+                                mValueParams,
+                                false));
+    }
+
+    private void benchmark(MatrixCursor cursor, AggregatorFactory factory) {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            cursor.moveToPosition(-1);
+            PriorityAggregator aggregator = factory.create();
+            state.resumeTiming();
+
+            aggregator.calculateAggregation(cursor);
+        }
+    }
+
+    private static Object[] row(
+            long start,
+            long end,
+            long appId,
+            byte[] uuid,
+            long count,
+            Long stageStart,
+            Long stageEnd,
+            int intensityType) {
+        return new Object[] {
+            start,
+            end,
+            /* lastModifiedTime= */ appId,
+            /* zoneOffset= */ 0,
+            appId,
+            uuid,
+            count,
+            stageStart,
+            stageEnd,
+            intensityType
+        };
+    }
+
+    private byte[] nextUuid() {
+        return ByteBuffer.allocate(16).putLong(0).putLong(mNextUuid++).array();
+    }
+
+    private interface AggregatorFactory {
+        PriorityAggregator create();
+    }
+}
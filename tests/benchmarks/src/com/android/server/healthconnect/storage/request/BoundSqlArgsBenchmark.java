@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.request;
+
+import static com.android.server.healthconnect.storage.utils.WhereClauses.LogicalOperator.AND;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import com.android.server.healthconnect.storage.utils.SqlWithArgs;
+import com.android.server.healthconnect.storage.utils.WhereClauses;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+
+/**
+ * Compares reads with the values inlined in the SQL, which need a new statement to be compiled for
+ * every request, with reads binding the values to a statement from the statement cache.
+ */
+@RunWith(JUnit4.class)
+public class BoundSqlArgsBenchmark {
+    private static final String TABLE_NAME = "benchmark_table";
+    private static final int ROW_COUNT = 1000;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        mDatabase = SQLiteDatabase.create(null);
+        mDatabase.execSQL(
+                "CREATE TABLE "
+                        + TABLE_NAME
+                        + " (row_id INTEGER PRIMARY KEY, app_info_id INTEGER, time INTEGER,"
+                        + " value REAL)");
+        mDatabase.execSQL("CREATE INDEX time_idx ON " + TABLE_NAME + " (time)");
+        for (int i = 0; i < ROW_COUNT; i++) {
+            ContentValues values = new ContentValues();
+            values.put("app_info_id", i % 4);
+            values.put("time", i * 1000L);
+            values.put("value", i);
+            mDatabase.insert(TABLE_NAME, null, values);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void readInline() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        long start = 0;
+        while (state.keepRunning()) {
+            ReadTableRequest request = createRequest(start);
+            try (Cursor cursor = mDatabase.rawQuery(request.getReadCommand(), null)) {
+                consume(cursor);
+            }
+            start = nextStart(start);
+        }
+    }
+
+    @Test
+    public void readBound() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        long start = 0;
+        while (state.keepRunning()) {
+            SqlWithArgs command = createRequest(start).getReadCommandWithArgs();
+            try (Cursor cursor = command.query(mDatabase)) {
+                consume(cursor);
+            }
+            start = nextStart(start);
+        }
+    }
+
+    @Test
+    public void countInline() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        long start = 0;
+        while (state.keepRunning()) {
+            try (Cursor cursor =
+                    mDatabase.rawQuery(createRequest(start).getCountCommand(), null)) {
+                consume(cursor);
+            }
+            start = nextStart(start);
+        }
+    }
+
+    @Test
+    public void countBound() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        long start = 0;
+        while (state.keepRunning()) {
+            try (Cursor cursor = createRequest(start).getCountCommandWithArgs().query(mDatabase)) {
+                consume(cursor);
+            }
+            start = nextStart(start);
+        }
+    }
+
+    // Every iteration reads a different time range, as different requests of clients would.
+    private static ReadTableRequest createRequest(long start) {
+        return new ReadTableRequest(TABLE_NAME)
+                .setWhereClause(
+                        new WhereClauses(AND)
+                                .addWhereInLongsClause("app_info_id", List.of(1L, 2L))
+                                .addWhereBetweenTimeClause("time", start, start + 50_000))
+                .setLimit(20);
+    }
+
+    private static long nextStart(long start) {
+        return (start + 1) % (ROW_COUNT * 1000L);
+    }
+
+    private static void consume(Cursor cursor) {
+        while (cursor.moveToNext()) {
+            cursor.getLong(0);
+        }
+    }
+}
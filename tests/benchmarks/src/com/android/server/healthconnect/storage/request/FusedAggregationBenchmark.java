@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.android.server.healthconnect.storage.request;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+
+/**
+ * Compares the queries run for a dashboard asking for the heart rate MIN, MAX, AVG and COUNT of
+ * each day of a week, with a query and a data origins query per aggregation type, and with the
+ * types grouped by {@link FusedAggregateRequest}. The queries have the shape of the ones of {@link
+ * AggregateTableRequest} over a week of hourly series records with a sample every 5 seconds.
+ */
+@RunWith(JUnit4.class)
+public class FusedAggregationBenchmark {
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+    private static final int DAYS = 7;
+    private static final long SAMPLE_INTERVAL = 5_000L;
+    private static final String FROM_WHERE =
+            " FROM heart_rate_record_table INNER JOIN heart_rate_record_series_table"
+                    + " ON heart_rate_record_table.row_id"
+                    + " = heart_rate_record_series_table.parent_key"
+                    + " WHERE epoch_millis BETWEEN 0 AND "
+                    + (DAYS * DAY);
+    private static final String GROUP_BY =
+            ", " + getGroupByCase() + FROM_WHERE + " GROUP BY category";
+    private static final String ORDER_BY = " ORDER BY epoch_millis";
+    private static final String EXTRA_COLUMNS = ", zone_offset, epoch_millis";
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mDb = SQLiteDatabase.create(null);
+        mDb.execSQL(
+                "CREATE TABLE heart_rate_record_table (row_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                        + " start_time INTEGER, zone_offset INTEGER, app_info_id INTEGER)");
+        mDb.execSQL(
+                "CREATE TABLE heart_rate_record_series_table (parent_key INTEGER,"
+                        + " epoch_millis INTEGER, beats_per_minute INTEGER)");
+        mDb.execSQL(
+                "CREATE INDEX idx_series_parent_key"
+                        + " ON heart_rate_record_series_table (parent_key)");
+        mDb.beginTransaction();
+        try {
+            for (long start = 0; start < DAYS * DAY; start += HOUR) {
+                ContentValues values = new ContentValues();
+                values.put("start_time", start);
+                values.put("zone_offset", 0);
+                values.put("app_info_id", 1 + start / HOUR % 2);
+                long rowId = mDb.insert("heart_rate_record_table", null, values);
+                for (long time = start; time < start + HOUR; time += SAMPLE_INTERVAL) {
+                    mDb.execSQL(
+                            "INSERT INTO heart_rate_record_series_table VALUES (?, ?, ?)",
+                            new Object[] {rowId, time, 60 + time / SAMPLE_INTERVAL % 60});
+                }
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    @Test
+    public void separateQueries() {
+        List<String> aggregates =
+                List.of(
+                        "MIN(beats_per_minute)",
+                        "MAX(beats_per_minute)",
+                        "AVG(beats_per_minute)",
+                        "COUNT(beats_per_minute)");
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (String aggregate : aggregates) {
+                query("SELECT " + aggregate + " AS beats_per_minute" + EXTRA_COLUMNS + GROUP_BY);
+                query("SELECT DISTINCT app_info_id" + FROM_WHERE);
+            }
+        }
+    }
+
+    @Test
+    public void fusedQueries() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            // MIN, AVG and COUNT share a query, MAX is left on its own.
+            query(
+                    "SELECT MIN(beats_per_minute) AS fused_0_beats_per_minute,"
+                            + " AVG(beats_per_minute) AS fused_1_beats_per_minute,"
+                            + " COUNT(beats_per_minute) AS fused_2_beats_per_minute,"
+                            + " GROUP_CONCAT(DISTINCT app_info_id) AS fused_app_info_ids"
+                            + EXTRA_COLUMNS
+                            + GROUP_BY);
+            query("SELECT MAX(beats_per_minute) AS beats_per_minute" + EXTRA_COLUMNS + GROUP_BY);
+            query("SELECT DISTINCT app_info_id" + FROM_WHERE);
+        }
+    }
+
+    private void query(String sql) {
+        try (Cursor cursor = mDb.rawQuery(sql + ORDER_BY, null)) {
+            while (cursor.moveToNext()) {
+                cursor.getDouble(0);
+            }
+        }
+    }
+
+    private static String getGroupByCase() {
+        StringBuilder builder = new StringBuilder("CASE");
+        for (int day = 0; day < DAYS; day++) {
+            builder.append(" WHEN epoch_millis >= ")
+                    .append(day * DAY)
+                    .append(" AND epoch_millis < ")
+                    .append((day + 1) * DAY)
+                    .append(" THEN ")
+                    .append(day);
+        }
+        return builder.append(" END category").toString();
+    }
+}
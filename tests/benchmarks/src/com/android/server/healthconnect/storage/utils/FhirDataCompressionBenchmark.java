@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.utils;
+
+import static android.health.connect.datatypes.FhirResource.FHIR_RESOURCE_TYPE_CONDITION;
+import static android.health.connect.datatypes.FhirResource.FHIR_RESOURCE_TYPE_IMMUNIZATION;
+import static android.health.connect.datatypes.FhirResource.FHIR_RESOURCE_TYPE_OBSERVATION;
+
+import android.util.Log;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Measures compressing and decompressing corpora of Observation, Condition and Immunization
+ * resources. The total size of each corpus as text, compressed without a dictionary and compressed
+ * with the dictionary of its resource type is logged under {@link #TAG}.
+ */
+@RunWith(Parameterized.class)
+public class FhirDataCompressionBenchmark {
+    private static final String TAG = "FhirDataCompressionBenchmark";
+    private static final int CORPUS_SIZE = 1000;
+
+    @Rule public final BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter public String mResourceType;
+
+    @Parameterized.Parameters(name = "resourceType={0}")
+    public static List<String> getResourceTypes() {
+        return List.of("Observation", "Condition", "Immunization");
+    }
+
+    private int mFhirResourceType;
+    private final List<String> mCorpus = new ArrayList<>(CORPUS_SIZE);
+    private final List<byte[]> mCompressedCorpus = new ArrayList<>(CORPUS_SIZE);
+
+    @Before
+    public void setUp() {
+        mFhirResourceType = getFhirResourceType(mResourceType);
+        long textSize = 0;
+        long deflatedSize = 0;
+        long compressedSize = 0;
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            String data = createResource(i);
+            byte[] text = data.getBytes(StandardCharsets.UTF_8);
+            byte[] compressed = FhirDataCompression.compress(mFhirResourceType, data);
+            mCorpus.add(data);
+            mCompressedCorpus.add(compressed);
+            textSize += text.length;
+            deflatedSize += getDeflatedSize(text);
+            compressedSize += compressed.length;
+        }
+        Log.i(
+                TAG,
+                mResourceType
+                        + ": text "
+                        + textSize
+                        + " bytes, deflated "
+                        + deflatedSize
+                        + " bytes, compressed with dictionary "
+                        + compressedSize
+                        + " bytes");
+    }
+
+    @Test
+    public void compress() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (String data : mCorpus) {
+                FhirDataCompression.compress(mFhirResourceType, data);
+            }
+        }
+    }
+
+    @Test
+    public void decompress() {
+        BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (byte[] compressed : mCompressedCorpus) {
+                FhirDataCompression.decompress(compressed);
+            }
+        }
+    }
+
+    private static int getFhirResourceType(String resourceType) {
+        switch (resourceType) {
+            case "Observation":
+                return FHIR_RESOURCE_TYPE_OBSERVATION;
+            case "Condition":
+                return FHIR_RESOURCE_TYPE_CONDITION;
+            case "Immunization":
+                return FHIR_RESOURCE_TYPE_IMMUNIZATION;
+            default:
+                throw new IllegalArgumentException("Unknown resource type: " + resourceType);
+        }
+    }
+
+    private String createResource(int index) {
+        switch (mFhirResourceType) {
+            case FHIR_RESOURCE_TYPE_OBSERVATION:
+                return createObservation(index);
+            case FHIR_RESOURCE_TYPE_CONDITION:
+                return createCondition(index);
+            default:
+                return createImmunization(index);
+        }
+    }
+
+    private static String createObservation(int index) {
+        return "{\"resourceType\":\"Observation\",\"id\":\"observation-"
+                + index
+                + "\",\"meta\":{\"versionId\":\"1\",\"lastUpdated\":\"2024-03-"
+                + (10 + index % 20)
+                + "T08:15:00.000Z\"},\"status\":\"final\",\"category\":[{\"coding\":[{\"system\":"
+                + "\"http://terminology.hl7.org/CodeSystem/observation-category\","
+                + "\"code\":\"laboratory\",\"display\":\"Laboratory\"}]}],"
+                + "\"code\":{\"coding\":[{\"system\":\"http://loinc.org\",\"code\":\"2339-0\","
+                + "\"display\":\"Glucose [Mass/volume] in Blood\"}],\"text\":\"Glucose\"},"
+                + "\"subject\":{\"reference\":\"Patient/patient-1\"},"
+                + "\"effectiveDateTime\":\"2024-03-"
+                + (10 + index % 20)
+                + "T07:30:00Z\",\"valueQuantity\":{\"value\":"
+                + (70 + index % 60)
+                + ",\"unit\":\"mg/dL\",\"system\":\"http://unitsofmeasure.org\","
+                + "\"code\":\"mg/dL\"},\"referenceRange\":[{\"low\":{\"value\":70,"
+                + "\"unit\":\"mg/dL\",\"system\":\"http://unitsofmeasure.org\","
+                + "\"code\":\"mg/dL\"},\"high\":{\"value\":100,\"unit\":\"mg/dL\","
+                + "\"system\":\"http://unitsofmeasure.org\",\"code\":\"mg/dL\"}}]}";
+    }
+
+    private static String createCondition(int index) {
+        return "{\"resourceType\":\"Condition\",\"id\":\"condition-"
+                + index
+                + "\",\"clinicalStatus\":{\"coding\":[{\"system\":"
+                + "\"http://terminology.hl7.org/CodeSystem/condition-clinical\","
+                + "\"code\":\"active\"}]},\"verificationStatus\":{\"coding\":[{\"system\":"
+                + "\"http://terminology.hl7.org/CodeSystem/condition-ver-status\","
+                + "\"code\":\"confirmed\"}]},\"category\":[{\"coding\":[{\"system\":"
+                + "\"http://terminology.hl7.org/CodeSystem/condition-category\","
+                + "\"code\":\"problem-list-item\",\"display\":\"Problem List Item\"}]}],"
+                + "\"code\":{\"coding\":[{\"system\":\"http://snomed.info/sct\",\"code\":\""
+                + (38341003 + index)
+                + "\",\"display\":\"Hypertensive disorder\"}],\"text\":\"Hypertension\"},"
+                + "\"subject\":{\"reference\":\"Patient/patient-1\"},"
+                + "\"onsetDateTime\":\"20"
+                + (10 + index % 14)
+                + "-05-01\",\"recordedDate\":\"2024-01-15\"}";
+    }
+
+    private static String createImmunization(int index) {
+        return "{\"resourceType\":\"Immunization\",\"id\":\"immunization-"
+                + index
+                + "\",\"status\":\"completed\",\"vaccineCode\":{\"coding\":[{\"system\":"
+                + "\"http://hl7.org/fhir/sid/cvx\",\"code\":\""
+                + (100 + index % 100)
+                + "\"}],\"text\":\"Tdap\"},\"patient\":{\"reference\":\"Patient/patient-1\"},"
+                + "\"occurrenceDateTime\":\"20"
+                + (10 + index % 14)
+                + "-09-12\",\"primarySource\":true,\"lotNumber\":\"AAJN"
+                + index
+                + "\",\"site\":{\"coding\":[{\"system\":"
+                + "\"http://terminology.hl7.org/CodeSystem/v3-ActSite\","
+                + "\"code\":\"LA\",\"display\":\"left arm\"}]},\"route\":{\"coding\":[{\"system\":"
+                + "\"http://terminology.hl7.org/CodeSystem/v3-RouteOfAdministration\","
+                + "\"code\":\"IM\",\"display\":\"Injection, intramuscular\"}]},"
+                + "\"doseQuantity\":{\"value\":0.5,\"system\":\"http://unitsofmeasure.org\","
+                + "\"code\":\"mL\"}}";
+    }
+
+    private static int getDeflatedSize(byte[] text) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(text);
+            deflater.finish();
+            byte[] buffer = new byte[text.length + 64];
+            int size = 0;
+            while (!deflater.finished()) {
+                size += deflater.deflate(buffer);
+            }
+            return size;
+        } finally {
+            deflater.end();
+        }
+    }
+}
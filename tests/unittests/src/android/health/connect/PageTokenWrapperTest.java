@@ -34,6 +34,7 @@ import java.time.Instant;
 public class PageTokenWrapperTest {
     private static final long MAX_ALLOWED_TIME_MILLIS = (1L << 44) - 1;
     private static final long MAX_ALLOWED_OFFSET = (1 << 18) - 1;
+    private static final long ROW_ID_LOW_BITS_MASK = (1L << 17) - 1;
 
     @Test
     public void of_createInstance() {
@@ -130,6 +131,72 @@ public class PageTokenWrapperTest {
         assertThat(wrapper.isEmpty()).isFalse();
     }
 
+    @Test
+    public void ofRowId_createInstance() {
+        PageTokenWrapper wrapper =
+                PageTokenWrapper.ofRowId(/* isAscending= */ false, /* timeMillis= */ 456, 123);
+
+        assertThat(wrapper.isAscending()).isFalse();
+        assertThat(wrapper.timeMillis()).isEqualTo(456);
+        assertThat(wrapper.rowIdLowBits()).isEqualTo(123);
+        assertThat(wrapper.isRowIdSet()).isTrue();
+        assertThat(wrapper.isTimestampSet()).isFalse();
+        assertThat(wrapper.offset()).isEqualTo(0);
+        assertThat(wrapper.isEmpty()).isFalse();
+    }
+
+    @Test
+    public void ofRowId_invalidArgument_throws() {
+        Throwable thrown;
+
+        thrown =
+                assertThrows(
+                        IllegalArgumentException.class,
+                        () -> PageTokenWrapper.ofRowId(/* isAscending= */ true, -1, 0));
+        assertThat(thrown.getMessage()).isEqualTo("timestamp can not be negative");
+
+        thrown =
+                assertThrows(
+                        IllegalArgumentException.class,
+                        () ->
+                                PageTokenWrapper.ofRowId(
+                                        /* isAscending= */ true, MAX_ALLOWED_TIME_MILLIS + 1, 0));
+        assertThat(thrown.getMessage()).isEqualTo("timestamp too large");
+
+        thrown =
+                assertThrows(
+                        IllegalArgumentException.class,
+                        () -> PageTokenWrapper.ofRowId(/* isAscending= */ true, 0, -1));
+        assertThat(thrown.getMessage()).isEqualTo("row id can not be negative");
+    }
+
+    @Test
+    public void ofRowId_largeRowId_keepsLowBits() {
+        long rowId = (5L << 40) + 123;
+
+        PageTokenWrapper wrapper = PageTokenWrapper.ofRowId(/* isAscending= */ true, 456, rowId);
+
+        assertThat(wrapper.rowIdLowBits()).isEqualTo(123);
+        assertThat(PageTokenWrapper.from(wrapper.encode(), /* defaultIsAscending= */ true))
+                .isEqualTo(wrapper);
+    }
+
+    @Test
+    public void encodeAndFromToken_rowId_expectSameToken() {
+        for (boolean isAscending : new boolean[] {true, false}) {
+            for (long timeMillis : new long[] {0, 1, MAX_ALLOWED_TIME_MILLIS}) {
+                for (long rowId : new long[] {0, 1, ROW_ID_LOW_BITS_MASK}) {
+                    PageTokenWrapper wrapper =
+                            PageTokenWrapper.ofRowId(isAscending, timeMillis, rowId);
+                    long token = wrapper.encode();
+
+                    assertThat(token).isNotEqualTo(DEFAULT_LONG);
+                    assertThat(PageTokenWrapper.from(token, !isAscending)).isEqualTo(wrapper);
+                }
+            }
+        }
+    }
+
     @Test
     public void from_negativePageToken_throws() {
         boolean unusedDefault = true;
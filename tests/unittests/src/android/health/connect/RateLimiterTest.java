@@ -16,11 +16,17 @@
 
 package android.health.connect;
 
+import static com.google.common.truth.Truth.assertThat;
+
 import static org.hamcrest.CoreMatchers.containsString;
 
 import android.health.connect.ratelimiter.RateLimiter;
 import android.health.connect.ratelimiter.RateLimiter.QuotaCategory;
+import android.health.connect.ratelimiter.RateLimiterException;
+import android.platform.test.annotations.EnableFlags;
+import android.platform.test.flag.junit.SetFlagsRule;
 
+import com.android.healthfitness.flags.Flags;
 import com.android.modules.utils.testing.ExtendedMockitoRule;
 
 import org.junit.Rule;
@@ -30,6 +36,13 @@ import org.mockito.quality.Strictness;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class RateLimiterTest {
     private static final int UID = 1;
@@ -42,6 +55,8 @@ public class RateLimiterTest {
 
     @Rule public ExpectedException exception = ExpectedException.none();
 
+    @Rule public final SetFlagsRule mSetFlagsRule = new SetFlagsRule();
+
     @Rule
     public final ExtendedMockitoRule mExtendedMockitoRule =
             new ExtendedMockitoRule.Builder(this).setStrictness(Strictness.LENIENT).build();
@@ -127,6 +142,97 @@ public class RateLimiterTest {
                 quotaCategoryWrite, IS_IN_FOREGROUND_FALSE, MAX_BACKGROUND_CALL_15M, 40000);
     }
 
+    @Test
+    @EnableFlags(Flags.FLAG_LOCK_FREE_RATE_LIMITER)
+    public void testTryAcquireApiCallQuota_lockFree_meteredBackgroundCallsInLimit() {
+        RateLimiter.clearCache();
+        @QuotaCategory.Type int quotaCategoryWrite = 3;
+        tryAcquireCallQuotaNTimes(
+                quotaCategoryWrite, IS_IN_FOREGROUND_FALSE, MAX_BACKGROUND_CALL_15M);
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_LOCK_FREE_RATE_LIMITER)
+    public void testTryAcquireApiCallQuota_lockFree_meteredForegroundCallsLimitExceeded() {
+        RateLimiter.clearCache();
+        @QuotaCategory.Type int quotaCategoryRead = 2;
+        Instant startTime = Instant.now();
+        tryAcquireCallQuotaNTimes(
+                quotaCategoryRead, IS_IN_FOREGROUND_TRUE, MAX_FOREGROUND_READ_CALL_15M);
+        Instant endTime = Instant.now();
+        int ceilQuotaAcquired =
+                getCeilQuotaAcquired(startTime, endTime, WINDOW_15M, MAX_FOREGROUND_READ_CALL_15M);
+        exception.expect(HealthConnectException.class);
+        exception.expectMessage(containsString("API call quota exceeded"));
+        tryAcquireCallQuotaNTimes(quotaCategoryRead, IS_IN_FOREGROUND_TRUE, ceilQuotaAcquired);
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_LOCK_FREE_RATE_LIMITER)
+    public void testRecordMemoryRollingQuota_lockFree_exceedBackgroundLimit() {
+        RateLimiter.clearCache();
+        exception.expect(HealthConnectException.class);
+        exception.expectMessage(containsString("API call quota exceeded"));
+        tryAcquireCallQuotaNTimes(
+                QuotaCategory.QUOTA_CATEGORY_WRITE,
+                IS_IN_FOREGROUND_FALSE,
+                MAX_BACKGROUND_CALL_15M,
+                40000);
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_LOCK_FREE_RATE_LIMITER)
+    public void testTryAcquireApiCallQuota_lockFree_concurrentCalls_noOverAdmission()
+            throws Exception {
+        RateLimiter.clearCache();
+        int threadCount = 8;
+        int callsPerThread = MAX_FOREGROUND_READ_CALL_15M / 2;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> acquiredCounts = new ArrayList<>();
+        Instant startTime = Instant.now();
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                acquiredCounts.add(
+                        executor.submit(
+                                () -> {
+                                    start.await();
+                                    int acquired = 0;
+                                    for (int j = 0; j < callsPerThread; j++) {
+                                        try {
+                                            RateLimiter.tryAcquireApiCallQuota(
+                                                    UID,
+                                                    QuotaCategory.QUOTA_CATEGORY_READ,
+                                                    IS_IN_FOREGROUND_TRUE);
+                                            acquired++;
+                                        } catch (RateLimiterException e) {
+                                            // Expected once the quota is spent.
+                                        }
+                                    }
+                                    return acquired;
+                                }));
+            }
+            start.countDown();
+            int totalAcquired = 0;
+            for (Future<Integer> acquiredCount : acquiredCounts) {
+                totalAcquired += acquiredCount.get(1, TimeUnit.MINUTES);
+            }
+            Instant endTime = Instant.now();
+
+            assertThat(totalAcquired).isAtLeast(MAX_FOREGROUND_READ_CALL_15M);
+            assertThat(totalAcquired)
+                    .isAtMost(
+                            MAX_FOREGROUND_READ_CALL_15M
+                                    + getCeilQuotaAcquired(
+                                            startTime,
+                                            endTime,
+                                            WINDOW_15M,
+                                            MAX_FOREGROUND_READ_CALL_15M));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void checkMaxChunkMemoryUsage_LimitExceeded() {
         long valueExceeding = 5000001;
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package android.health.connect.aidl;
+
+import static com.android.healthfitness.flags.Flags.FLAG_FRAMED_RECORDS_SHARED_MEMORY;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.health.connect.internal.ParcelUtils;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+import android.os.Parcel;
+import android.platform.test.annotations.DisableFlags;
+import android.platform.test.annotations.EnableFlags;
+import android.platform.test.flag.junit.SetFlagsRule;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class RecordsParcelTest {
+    @Rule public final SetFlagsRule mSetFlagsRule = new SetFlagsRule();
+
+    @Test
+    @EnableFlags(FLAG_FRAMED_RECORDS_SHARED_MEMORY)
+    public void writeToParcel_framesEnabled_manyRecords_usesFramedSharedMemory() {
+        List<RecordInternal<?>> records = createStepsRecords(getRequiredNumberOfRecords() * 2);
+
+        Parcel parcel = writeToParcel(new RecordsParcel(records));
+
+        assertThat(getParcelType(parcel)).isEqualTo(ParcelUtils.USING_FRAMED_SHARED_MEMORY);
+        parcel.setDataPosition(0);
+        assertSameSteps(RecordsParcel.CREATOR.createFromParcel(parcel).getRecords(), records);
+        parcel.recycle();
+    }
+
+    @Test
+    @EnableFlags(FLAG_FRAMED_RECORDS_SHARED_MEMORY)
+    public void writeToParcel_framesEnabled_fewRecords_usesParcel() {
+        List<RecordInternal<?>> records = createStepsRecords(2);
+
+        Parcel parcel = writeToParcel(new RecordsParcel(records));
+
+        assertThat(getParcelType(parcel)).isEqualTo(ParcelUtils.USING_PARCEL);
+        parcel.setDataPosition(0);
+        assertSameSteps(RecordsParcel.CREATOR.createFromParcel(parcel).getRecords(), records);
+        parcel.recycle();
+    }
+
+    @Test
+    @DisableFlags(FLAG_FRAMED_RECORDS_SHARED_MEMORY)
+    public void writeToParcel_framesDisabled_manyRecords_usesSharedMemory() {
+        List<RecordInternal<?>> records = createStepsRecords(getRequiredNumberOfRecords() * 2);
+
+        Parcel parcel = writeToParcel(new RecordsParcel(records));
+
+        assertThat(getParcelType(parcel)).isEqualTo(ParcelUtils.USING_SHARED_MEMORY);
+        parcel.setDataPosition(0);
+        assertSameSteps(RecordsParcel.CREATOR.createFromParcel(parcel).getRecords(), records);
+        parcel.recycle();
+    }
+
+    @Test
+    @EnableFlags(FLAG_FRAMED_RECORDS_SHARED_MEMORY)
+    public void writeToParcel_framesEnabled_manyRecordsAfterOtherValues_otherValuesKept() {
+        List<RecordInternal<?>> records = createStepsRecords(getRequiredNumberOfRecords() * 2);
+        Parcel parcel = Parcel.obtain();
+        parcel.writeInt(42);
+
+        new RecordsParcel(records).writeToParcel(parcel, 0);
+        parcel.writeInt(43);
+
+        parcel.setDataPosition(0);
+        assertThat(parcel.readInt()).isEqualTo(42);
+        int position = parcel.dataPosition();
+        assertThat(parcel.readInt()).isEqualTo(ParcelUtils.USING_FRAMED_SHARED_MEMORY);
+        parcel.setDataPosition(position);
+        assertSameSteps(RecordsParcel.CREATOR.createFromParcel(parcel).getRecords(), records);
+        assertThat(parcel.readInt()).isEqualTo(43);
+        parcel.recycle();
+    }
+
+    @Test
+    @EnableFlags(FLAG_FRAMED_RECORDS_SHARED_MEMORY)
+    public void createFromParcel_framedSharedMemory_recordsSizeAddsUpToChunkSize() {
+        List<RecordInternal<?>> records = createStepsRecords(getRequiredNumberOfRecords() * 2);
+        Parcel parcel = writeToParcel(new RecordsParcel(records));
+        parcel.setDataPosition(0);
+
+        RecordsParcel recordsParcel = RecordsParcel.CREATOR.createFromParcel(parcel);
+
+        assertThat(recordsParcel.getRecordsSize()).hasSize(records.size());
+        assertThat(recordsParcel.getRecordsSize().stream().mapToLong(Long::longValue).sum())
+                .isEqualTo(recordsParcel.getRecordsChunkSize());
+        parcel.recycle();
+    }
+
+    @Test
+    @EnableFlags(FLAG_FRAMED_RECORDS_SHARED_MEMORY)
+    public void getRecords_framedSharedMemory_returnsSameRecordOnEveryAccess() {
+        List<RecordInternal<?>> records = createStepsRecords(getRequiredNumberOfRecords() * 2);
+        Parcel parcel = writeToParcel(new RecordsParcel(records));
+        parcel.setDataPosition(0);
+
+        List<RecordInternal<?>> readRecords =
+                RecordsParcel.CREATOR.createFromParcel(parcel).getRecords();
+
+        assertThat(readRecords.get(1)).isSameInstanceAs(readRecords.get(1));
+        assertSameSteps(readRecords, records);
+        // All records are decoded, and the shared memory closed, by now.
+        assertThat(readRecords.get(0)).isSameInstanceAs(readRecords.get(0));
+        parcel.recycle();
+    }
+
+    private static List<RecordInternal<?>> createStepsRecords(int count) {
+        List<RecordInternal<?>> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(
+                    new StepsRecordInternal()
+                            .setCount(i)
+                            .setStartTime(i * 1000L)
+                            .setEndTime(i * 1000L + 500)
+                            .setClientRecordId("client_id_" + i));
+        }
+        return records;
+    }
+
+    /** Calculates the number of records we need to cross the IPC_PARCEL_LIMIT threshold */
+    private static int getRequiredNumberOfRecords() {
+        Parcel parcel = Parcel.obtain();
+        createStepsRecords(1).get(0).writeToParcel(parcel);
+        int recordSize = parcel.dataSize();
+        parcel.recycle();
+        return ParcelUtils.IPC_PARCEL_LIMIT / recordSize;
+    }
+
+    private static Parcel writeToParcel(RecordsParcel recordsParcel) {
+        Parcel parcel = Parcel.obtain();
+        recordsParcel.writeToParcel(parcel, 0);
+        return parcel;
+    }
+
+    private static int getParcelType(Parcel parcel) {
+        parcel.setDataPosition(0);
+        return parcel.readInt();
+    }
+
+    private static void assertSameSteps(
+            List<RecordInternal<?>> actual, List<RecordInternal<?>> expected) {
+        assertThat(actual).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            StepsRecordInternal actualSteps = (StepsRecordInternal) actual.get(i);
+            StepsRecordInternal expectedSteps = (StepsRecordInternal) expected.get(i);
+            assertThat(actualSteps.getCount()).isEqualTo(expectedSteps.getCount());
+            assertThat(actualSteps.getStartTimeInMillis())
+                    .isEqualTo(expectedSteps.getStartTimeInMillis());
+            assertThat(actualSteps.getClientRecordId())
+                    .isEqualTo(expectedSteps.getClientRecordId());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.healthconnect.internal.datatypes.utils;
+
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_ACTIVITY_INTENSITY;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_UNKNOWN;
+import static android.health.connect.internal.datatypes.utils.DataTypeDescriptors.getAllDataTypeDescriptors;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import static org.junit.Assert.assertThrows;
+
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.utils.DataTypeDescriptor;
+import android.health.connect.internal.datatypes.utils.HealthConnectMappings;
+import android.health.connect.internal.datatypes.utils.RecordInternalFactory;
+import android.platform.test.annotations.DisableFlags;
+import android.platform.test.annotations.EnableFlags;
+import android.platform.test.flag.junit.SetFlagsRule;
+
+import com.android.healthfitness.flags.Flags;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Map;
+
+@EnableFlags({Flags.FLAG_HEALTH_CONNECT_MAPPINGS})
+public class RecordInternalFactoryTest {
+
+    @Rule public final SetFlagsRule mSetFlagsRule = new SetFlagsRule();
+
+    @Before
+    public void setUp() {
+        HealthConnectMappings.resetInstanceForTesting();
+    }
+
+    @Test
+    public void newRecordInternal_createsRecordOfDescriptorClass() {
+        for (DataTypeDescriptor descriptor : getAllDataTypeDescriptors()) {
+            RecordInternal<?> record =
+                    RecordInternalFactory.newRecordInternal(descriptor.getRecordTypeIdentifier());
+
+            assertWithMessage("record type " + descriptor.getRecordTypeIdentifier())
+                    .that(record.getClass())
+                    .isEqualTo(descriptor.getRecordInternalClass());
+        }
+    }
+
+    @Test
+    @EnableFlags({Flags.FLAG_ACTIVITY_INTENSITY, Flags.FLAG_ACTIVITY_INTENSITY_DB})
+    public void newRecordInternal_everyRecordType_createsRecordOfMappedClass() {
+        HealthConnectMappings mappings = HealthConnectMappings.getInstance();
+        for (int type : mappings.getAllRecordTypeIdentifiers()) {
+            RecordInternal<?> record = RecordInternalFactory.newRecordInternal(type);
+
+            assertWithMessage("record type " + type)
+                    .that(record.getClass())
+                    .isEqualTo(mappings.getRecordIdToInternalRecordClassMap().get(type));
+        }
+    }
+
+    @Test
+    @DisableFlags({Flags.FLAG_HEALTH_CONNECT_MAPPINGS})
+    public void newRecordInternal_withoutDescriptors_createsRecordOfMappedClass() {
+        Map<Integer, Class<? extends RecordInternal<?>>> recordClasses =
+                HealthConnectMappings.getInstance().getRecordIdToInternalRecordClassMap();
+        for (Map.Entry<Integer, Class<? extends RecordInternal<?>>> entry :
+                recordClasses.entrySet()) {
+            RecordInternal<?> record = RecordInternalFactory.newRecordInternal(entry.getKey());
+
+            assertWithMessage("record type " + entry.getKey())
+                    .that(record.getClass())
+                    .isEqualTo(entry.getValue());
+        }
+    }
+
+    @Test
+    public void newRecordInternal_createsNewRecordEachTime() {
+        int type = getAllDataTypeDescriptors().get(0).getRecordTypeIdentifier();
+
+        assertWithMessage("new record")
+                .that(RecordInternalFactory.newRecordInternal(type))
+                .isNotSameInstanceAs(RecordInternalFactory.newRecordInternal(type));
+    }
+
+    @Test
+    public void newRecordInternal_unknownType_throws() {
+        assertThrows(
+                NullPointerException.class,
+                () -> RecordInternalFactory.newRecordInternal(RECORD_TYPE_UNKNOWN));
+    }
+
+    @Test
+    @DisableFlags({Flags.FLAG_ACTIVITY_INTENSITY})
+    public void newRecordInternal_typeDisabledByFlag_throws() {
+        assertThrows(
+                NullPointerException.class,
+                () -> RecordInternalFactory.newRecordInternal(RECORD_TYPE_ACTIVITY_INTENSITY));
+    }
+}
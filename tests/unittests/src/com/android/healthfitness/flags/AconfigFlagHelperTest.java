@@ -18,7 +18,11 @@ package com.android.healthfitness.flags;
 
 import static com.android.healthfitness.flags.AconfigFlagHelper.DB_VERSION_TO_DB_FLAG_MAP;
 import static com.android.healthfitness.flags.AconfigFlagHelper.getDbVersion;
+import static com.android.healthfitness.flags.AconfigFlagHelper.isActivityDateCountsEnabled;
+import static com.android.healthfitness.flags.AconfigFlagHelper.isAggregateRollupsEnabled;
 import static com.android.healthfitness.flags.AconfigFlagHelper.isEcosystemMetricsEnabled;
+import static com.android.healthfitness.flags.AconfigFlagHelper.isKeysetPageTokensEnabled;
+import static com.android.healthfitness.flags.AconfigFlagHelper.isPackedSeriesSamplesEnabled;
 import static com.android.healthfitness.flags.AconfigFlagHelper.isPersonalHealthRecordEnabled;
 import static com.android.healthfitness.flags.DatabaseVersions.LAST_ROLLED_OUT_DB_VERSION;
 
@@ -199,4 +203,114 @@ public class AconfigFlagHelperTest {
     public void isEcosystemMetricsEnabled_bothFlagsOn_expectTrue() {
         assertThat(isEcosystemMetricsEnabled()).isTrue();
     }
+
+    @Test
+    @EnableFlags(Flags.FLAG_AGGREGATE_ROLLUPS_DB)
+    @DisableFlags(Flags.FLAG_AGGREGATE_ROLLUPS)
+    public void isAggregateRollupsEnabled_featureFlagOff_expectFalse() {
+        assertThat(isAggregateRollupsEnabled()).isFalse();
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_AGGREGATE_ROLLUPS)
+    @DisableFlags(Flags.FLAG_AGGREGATE_ROLLUPS_DB)
+    public void isAggregateRollupsEnabled_dbFlagOff_expectFalse() {
+        assertThat(isAggregateRollupsEnabled()).isFalse();
+    }
+
+    @Test
+    @EnableFlags({
+        Flags.FLAG_AGGREGATE_ROLLUPS,
+        Flags.FLAG_AGGREGATE_ROLLUPS_DB,
+        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+        Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+        Flags.FLAG_ACTIVITY_INTENSITY_DB
+    })
+    public void isAggregateRollupsEnabled_bothFlagsOn_expectTrue() {
+        assertThat(isAggregateRollupsEnabled()).isTrue();
+    }
+
+    @Test
+    @DisableFlags(Flags.FLAG_PACKED_SERIES_SAMPLES)
+    @EnableFlags(Flags.FLAG_PACKED_SERIES_SAMPLES_DB)
+    public void isPackedSeriesSamplesEnabled_featureFlagOff_expectFalse() {
+        assertThat(isPackedSeriesSamplesEnabled()).isFalse();
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_PACKED_SERIES_SAMPLES)
+    @DisableFlags(Flags.FLAG_PACKED_SERIES_SAMPLES_DB)
+    public void isPackedSeriesSamplesEnabled_dbFlagOff_expectFalse() {
+        assertThat(isPackedSeriesSamplesEnabled()).isFalse();
+    }
+
+    @Test
+    @EnableFlags({
+        Flags.FLAG_PACKED_SERIES_SAMPLES,
+        Flags.FLAG_PACKED_SERIES_SAMPLES_DB,
+        Flags.FLAG_AGGREGATE_ROLLUPS_DB,
+        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+        Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+        Flags.FLAG_ACTIVITY_INTENSITY_DB
+    })
+    public void isPackedSeriesSamplesEnabled_bothFlagsOn_expectTrue() {
+        assertThat(isPackedSeriesSamplesEnabled()).isTrue();
+    }
+
+    @Test
+    @DisableFlags(Flags.FLAG_KEYSET_PAGE_TOKENS)
+    @EnableFlags(Flags.FLAG_KEYSET_PAGE_TOKENS_DB)
+    public void isKeysetPageTokensEnabled_featureFlagOff_expectFalse() {
+        assertThat(isKeysetPageTokensEnabled()).isFalse();
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_KEYSET_PAGE_TOKENS)
+    @DisableFlags(Flags.FLAG_KEYSET_PAGE_TOKENS_DB)
+    public void isKeysetPageTokensEnabled_dbFlagOff_expectFalse() {
+        assertThat(isKeysetPageTokensEnabled()).isFalse();
+    }
+
+    @Test
+    @EnableFlags({
+        Flags.FLAG_KEYSET_PAGE_TOKENS,
+        Flags.FLAG_KEYSET_PAGE_TOKENS_DB,
+        Flags.FLAG_PACKED_SERIES_SAMPLES_DB,
+        Flags.FLAG_AGGREGATE_ROLLUPS_DB,
+        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+        Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+        Flags.FLAG_ACTIVITY_INTENSITY_DB
+    })
+    public void isKeysetPageTokensEnabled_bothFlagsOn_expectTrue() {
+        assertThat(isKeysetPageTokensEnabled()).isTrue();
+    }
+
+    @Test
+    @DisableFlags(Flags.FLAG_ACTIVITY_DATE_COUNTS)
+    @EnableFlags(Flags.FLAG_ACTIVITY_DATE_COUNTS_DB)
+    public void isActivityDateCountsEnabled_featureFlagOff_expectFalse() {
+        assertThat(isActivityDateCountsEnabled()).isFalse();
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_ACTIVITY_DATE_COUNTS)
+    @DisableFlags(Flags.FLAG_ACTIVITY_DATE_COUNTS_DB)
+    public void isActivityDateCountsEnabled_dbFlagOff_expectFalse() {
+        assertThat(isActivityDateCountsEnabled()).isFalse();
+    }
+
+    @Test
+    @EnableFlags({
+        Flags.FLAG_ACTIVITY_DATE_COUNTS,
+        Flags.FLAG_ACTIVITY_DATE_COUNTS_DB,
+        Flags.FLAG_KEYSET_PAGE_TOKENS_DB,
+        Flags.FLAG_PACKED_SERIES_SAMPLES_DB,
+        Flags.FLAG_AGGREGATE_ROLLUPS_DB,
+        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+        Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+        Flags.FLAG_ACTIVITY_INTENSITY_DB
+    })
+    public void isActivityDateCountsEnabled_bothFlagsOn_expectTrue() {
+        assertThat(isActivityDateCountsEnabled()).isTrue();
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(AndroidJUnit4.class)
+public class ActiveUidRoundRobinSchedulerTest {
+    private final ActiveUidRoundRobinScheduler mScheduler = new ActiveUidRoundRobinScheduler();
+    private final List<String> mRunTasks = new ArrayList<>();
+
+    @Test
+    public void getNextTask_takesTurnsBetweenUids() {
+        addTasks(/* uid= */ 1, "a1", "a2", "a3");
+        addTasks(/* uid= */ 2, "b1");
+        addTasks(/* uid= */ 3, "c1", "c2");
+
+        runTasks(6);
+
+        assertThat(mRunTasks).containsExactly("a1", "b1", "c1", "a2", "c2", "a3").inOrder();
+    }
+
+    @Test
+    public void getNextTask_uidBecomesActiveAgain_joinsEndOfRing() {
+        addTasks(/* uid= */ 1, "a1");
+        addTasks(/* uid= */ 2, "b1", "b2");
+        runTasks(2);
+        addTasks(/* uid= */ 1, "a2");
+
+        runTasks(2);
+
+        assertThat(mRunTasks).containsExactly("a1", "b1", "b2", "a2").inOrder();
+    }
+
+    @Test
+    public void getNextTask_weightedUid_runsTasksInARow() {
+        mScheduler.setWeight(/* uid= */ 1, /* weight= */ 2);
+        addTasks(/* uid= */ 1, "a1", "a2", "a3", "a4");
+        addTasks(/* uid= */ 2, "b1", "b2");
+
+        runTasks(6);
+
+        assertThat(mRunTasks).containsExactly("a1", "a2", "b1", "a3", "a4", "b2").inOrder();
+    }
+
+    @Test
+    public void setWeight_notPositive_throws() {
+        assertThrows(IllegalArgumentException.class, () -> mScheduler.setWeight(1, 0));
+    }
+
+    @Test
+    public void addTask_paused_taskDropped() {
+        addTasks(/* uid= */ 1, "a1");
+        mScheduler.killTasksAndPauseScheduler();
+        addTasks(/* uid= */ 1, "a2");
+
+        assertThrows(InternalError.class, mScheduler::getNextTask);
+
+        mScheduler.resume();
+        addTasks(/* uid= */ 1, "a3");
+        runTasks(1);
+        assertThat(mRunTasks).containsExactly("a3");
+    }
+
+    @Test
+    public void getNextTask_concurrentProducersAndConsumers_everyTaskRunsOnce() throws Exception {
+        int uids = 16;
+        int tasksPerUid = 500;
+        AtomicInteger runCount = new AtomicInteger();
+        ExecutorService consumers = Executors.newFixedThreadPool(4);
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(uids * tasksPerUid);
+        try {
+            for (int uid = 0; uid < uids; uid++) {
+                int producerUid = uid;
+                producers.execute(
+                        () -> {
+                            for (int i = 0; i < tasksPerUid; i++) {
+                                mScheduler.addTask(producerUid, runCount::incrementAndGet);
+                                consumers.execute(
+                                        () -> {
+                                            mScheduler.getNextTask().run();
+                                            done.countDown();
+                                        });
+                            }
+                        });
+            }
+
+            assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+            assertThat(runCount.get()).isEqualTo(uids * tasksPerUid);
+        } finally {
+            producers.shutdownNow();
+            consumers.shutdownNow();
+        }
+    }
+
+    private void addTasks(int uid, String... names) {
+        for (String name : names) {
+            mScheduler.addTask(uid, () -> mRunTasks.add(name));
+        }
+    }
+
+    private void runTasks(int count) {
+        for (int i = 0; i < count; i++) {
+            mScheduler.getNextTask().run();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect;
+
+import static android.app.ActivityManager.RunningAppProcessInfo.IMPORTANCE_BACKGROUND;
+import static android.app.ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class ForegroundUidTrackerTest {
+    private static final int UID = 10123;
+    private static final int OTHER_UID = 10456;
+
+    @Mock private Context mContext;
+    @Mock private ActivityManager mActivityManager;
+
+    private ForegroundUidTracker mTracker;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(mContext.getSystemService(ActivityManager.class)).thenReturn(mActivityManager);
+        mTracker = new ForegroundUidTracker(mContext);
+    }
+
+    @Test
+    public void isUidInForeground_notTracking_queriesProcesses() {
+        when(mActivityManager.getRunningAppProcesses())
+                .thenReturn(List.of(createProcessInfo(UID, IMPORTANCE_FOREGROUND)));
+
+        assertThat(mTracker.isUidInForeground(UID)).isTrue();
+        assertThat(mTracker.isUidInForeground(OTHER_UID)).isFalse();
+        verify(mActivityManager, times(2)).getRunningAppProcesses();
+    }
+
+    @Test
+    public void startTracking_seededFromRunningProcesses() {
+        when(mActivityManager.getRunningAppProcesses())
+                .thenReturn(
+                        List.of(
+                                createProcessInfo(UID, IMPORTANCE_FOREGROUND),
+                                createProcessInfo(OTHER_UID, IMPORTANCE_BACKGROUND)));
+
+        mTracker.startTracking();
+
+        assertThat(mTracker.isUidInForeground(UID)).isTrue();
+        assertThat(mTracker.isUidInForeground(OTHER_UID)).isFalse();
+        verify(mActivityManager, times(1)).getRunningAppProcesses();
+    }
+
+    @Test
+    public void startTracking_importanceChanges_followsListener() {
+        ArgumentCaptor<ActivityManager.OnUidImportanceListener> listenerCaptor =
+                ArgumentCaptor.forClass(ActivityManager.OnUidImportanceListener.class);
+        mTracker.startTracking();
+        verify(mActivityManager)
+                .addOnUidImportanceListener(listenerCaptor.capture(), eq(IMPORTANCE_FOREGROUND));
+        ActivityManager.OnUidImportanceListener listener = listenerCaptor.getValue();
+
+        listener.onUidImportance(UID, IMPORTANCE_FOREGROUND);
+        assertThat(mTracker.isUidInForeground(UID)).isTrue();
+
+        listener.onUidImportance(UID, IMPORTANCE_BACKGROUND);
+        assertThat(mTracker.isUidInForeground(UID)).isFalse();
+    }
+
+    @Test
+    public void startTracking_updateWhileSeeding_appliedOnTopOfSeed() throws Exception {
+        Thread[] listenerThread = new Thread[1];
+        when(mActivityManager.getRunningAppProcesses())
+                .thenAnswer(
+                        invocation -> {
+                            // The uid goes to background right after this stale snapshot.
+                            listenerThread[0] =
+                                    new Thread(
+                                            () ->
+                                                    mTracker.onUidImportance(
+                                                            UID, IMPORTANCE_BACKGROUND));
+                            listenerThread[0].start();
+                            listenerThread[0].join(/* millis= */ 100);
+                            return List.of(createProcessInfo(UID, IMPORTANCE_FOREGROUND));
+                        });
+
+        mTracker.startTracking();
+        listenerThread[0].join();
+
+        assertThat(mTracker.isUidInForeground(UID)).isFalse();
+    }
+
+    @Test
+    public void stopTracking_lateUpdate_ignored() {
+        mTracker.startTracking();
+        mTracker.stopTracking();
+
+        mTracker.onUidImportance(UID, IMPORTANCE_FOREGROUND);
+        mTracker.startTracking();
+
+        assertThat(mTracker.isUidInForeground(UID)).isFalse();
+    }
+
+    @Test
+    public void startTracking_listenerNotAllowed_queriesProcesses() {
+        doThrow(new SecurityException())
+                .when(mActivityManager)
+                .addOnUidImportanceListener(any(), anyInt());
+        when(mActivityManager.getRunningAppProcesses())
+                .thenReturn(List.of(createProcessInfo(UID, IMPORTANCE_FOREGROUND)));
+
+        mTracker.startTracking();
+
+        assertThat(mTracker.isUidInForeground(UID)).isTrue();
+        verify(mActivityManager, times(1)).getRunningAppProcesses();
+    }
+
+    @Test
+    public void stopTracking_listenerRemovedAndQueriesProcesses() {
+        mTracker.startTracking();
+        mTracker.onUidImportance(UID, IMPORTANCE_FOREGROUND);
+
+        mTracker.stopTracking();
+
+        verify(mActivityManager).removeOnUidImportanceListener(any());
+        assertThat(mTracker.isUidInForeground(UID)).isFalse();
+    }
+
+    private static ActivityManager.RunningAppProcessInfo createProcessInfo(
+            int uid, int importance) {
+        ActivityManager.RunningAppProcessInfo info = new ActivityManager.RunningAppProcessInfo();
+        info.uid = uid;
+        info.importance = importance;
+        return info;
+    }
+}
@@ -381,6 +381,7 @@ public class HealthConnectServiceImplTest {
                         healthConnectInjector.getInternalHealthConnectMappings(),
                         healthConnectInjector.getTransactionManager(),
                         healthConnectInjector.getHealthConnectPermissionHelper(),
+                        healthConnectInjector.getPermissionDecisionCache(),
                         healthConnectInjector.getFirstGrantTimeManager(),
                         healthConnectInjector.getMigrationEntityHelper(),
                         healthConnectInjector.getMigrationStateManager(),
@@ -23,30 +23,41 @@ import static org.mockito.Mockito.when;
 import android.app.ActivityManager;
 import android.content.Context;
 import android.os.Process;
+import android.platform.test.annotations.EnableFlags;
+import android.platform.test.flag.junit.SetFlagsRule;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.platform.app.InstrumentationRegistry;
 
+import com.android.healthfitness.flags.Flags;
+
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 
 @RunWith(AndroidJUnit4.class)
 public class HealthConnectThreadSchedulerTest {
+    @Rule public final SetFlagsRule mSetFlagsRule = new SetFlagsRule();
+
     private ThreadPoolExecutor mInternalTaskScheduler;
     private ThreadPoolExecutor mControllerTaskScheduler;
     private ThreadPoolExecutor mForegroundTaskScheduler;
     private ThreadPoolExecutor mBackgroundTaskScheduler;
+    private ThreadPoolExecutor mReadTaskScheduler;
     private long mInternalTaskSchedulerCompletedJobs;
     private long mControllerTaskSchedulerCompletedJobs;
     private long mForegroundTaskSchedulerCompletedJobs;
     private long mBackgroundTaskSchedulerCompletedJobs;
+    private long mReadTaskSchedulerCompletedJobs;
     private Context mContext;
 
     @Mock private Context mMockContext;
@@ -66,6 +77,8 @@ public class HealthConnectThreadSchedulerTest {
         mForegroundTaskSchedulerCompletedJobs = mForegroundTaskScheduler.getCompletedTaskCount();
         mBackgroundTaskScheduler = HealthConnectThreadScheduler.sBackgroundThreadExecutor;
         mBackgroundTaskSchedulerCompletedJobs = mBackgroundTaskScheduler.getCompletedTaskCount();
+        mReadTaskScheduler = HealthConnectThreadScheduler.sReadExecutor;
+        mReadTaskSchedulerCompletedJobs = mReadTaskScheduler.getCompletedTaskCount();
         mContext = InstrumentationRegistry.getInstrumentation().getContext();
     }
 
@@ -114,6 +127,65 @@ public class HealthConnectThreadSchedulerTest {
                 });
     }
 
+    @Test
+    @EnableFlags(Flags.FLAG_MULTI_THREADED_READS)
+    public void testHealthConnectSchedulerScheduleReadOnly_runsOnReadExecutor() throws Exception {
+        HealthConnectThreadScheduler.schedule(
+                mContext,
+                () -> {},
+                Process.myUid(),
+                /* isController= */ false,
+                /* isReadOnly= */ true);
+        TestUtils.waitForTaskToFinishSuccessfully(
+                () -> {
+                    if (mReadTaskScheduler.getCompletedTaskCount()
+                            != mReadTaskSchedulerCompletedJobs + 1) {
+                        throw new RuntimeException();
+                    }
+                });
+        assertThat(mBackgroundTaskScheduler.getCompletedTaskCount())
+                .isEqualTo(mBackgroundTaskSchedulerCompletedJobs);
+        assertThat(mForegroundTaskScheduler.getCompletedTaskCount())
+                .isEqualTo(mForegroundTaskSchedulerCompletedJobs);
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_MULTI_THREADED_READS)
+    public void testHealthConnectSchedulerScheduleReadOnly_foregroundReadsServedFirst()
+            throws Exception {
+        int foregroundUid = Process.myUid();
+        int backgroundUid = foregroundUid + 1;
+        when(mMockContext.getSystemService(ActivityManager.class)).thenReturn(mActivityManager);
+        ActivityManager.RunningAppProcessInfo runningAppProcessInfo =
+                new ActivityManager.RunningAppProcessInfo();
+        runningAppProcessInfo.uid = foregroundUid;
+        runningAppProcessInfo.importance =
+                ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
+        when(mActivityManager.getRunningAppProcesses()).thenReturn(List.of(runningAppProcessInfo));
+
+        // Keep every read thread busy with background reads, then queue one more of each.
+        int threadCount = mReadTaskScheduler.getMaximumPoolSize();
+        Semaphore blockers = new Semaphore(0);
+        for (int i = 0; i < threadCount; i++) {
+            scheduleRead(backgroundUid, blockers::acquireUninterruptibly);
+        }
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        scheduleRead(backgroundUid, () -> order.add(backgroundUid));
+        scheduleRead(foregroundUid, () -> order.add(foregroundUid));
+
+        // A single freed thread runs the queued reads one after the other.
+        blockers.release();
+        TestUtils.waitForTaskToFinishSuccessfully(
+                () -> {
+                    if (order.size() != 2) {
+                        throw new RuntimeException();
+                    }
+                });
+        blockers.release(threadCount - 1);
+
+        assertThat(order).containsExactly(foregroundUid, backgroundUid).inOrder();
+    }
+
     @Test
     public void testHealthConnectScheduler_runningAppProcessNull() throws Exception {
         when(mMockContext.getSystemService(ActivityManager.class)).thenReturn(mActivityManager);
@@ -135,6 +207,7 @@ public class HealthConnectThreadSchedulerTest {
         assertThat(mControllerTaskSchedulerCompletedJobs).isEqualTo(0);
         assertThat(mForegroundTaskSchedulerCompletedJobs).isEqualTo(0);
         assertThat(mBackgroundTaskSchedulerCompletedJobs).isEqualTo(0);
+        assertThat(mReadTaskSchedulerCompletedJobs).isEqualTo(0);
     }
 
     @Test
@@ -173,4 +246,15 @@ public class HealthConnectThreadSchedulerTest {
                 mBackgroundTaskScheduler.submit(() -> Thread.currentThread().getName());
         assertThat(name.get()).isEqualTo("hc-bg-0");
     }
+
+    @Test
+    public void testReadSchedulerThreadName() throws Exception {
+        Future<String> name = mReadTaskScheduler.submit(() -> Thread.currentThread().getName());
+        assertThat(name.get()).startsWith("hc-read-");
+    }
+
+    private void scheduleRead(int uid, Runnable task) {
+        HealthConnectThreadScheduler.schedule(
+                mMockContext, task, uid, /* isController= */ false, /* isReadOnly= */ true);
+    }
 }
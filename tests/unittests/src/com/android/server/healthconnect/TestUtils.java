@@ -70,6 +70,9 @@ public final class TestUtils {
                                                 .getCompletedTaskCount())
                                 && (HealthConnectThreadScheduler.sForegroundExecutor.getTaskCount()
                                         == HealthConnectThreadScheduler.sForegroundExecutor
+                                                .getCompletedTaskCount())
+                                && (HealthConnectThreadScheduler.sReadExecutor.getTaskCount()
+                                        == HealthConnectThreadScheduler.sReadExecutor
                                                 .getCompletedTaskCount()),
                 15);
     }
@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.backuprestore;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.health.connect.datatypes.Device;
+import android.health.connect.datatypes.ExerciseSegmentType;
+import android.health.connect.datatypes.ExerciseSessionType;
+import android.health.connect.datatypes.Metadata;
+import android.health.connect.datatypes.PlannedExerciseStep;
+import android.health.connect.datatypes.units.Length;
+import android.health.connect.internal.datatypes.ExerciseCompletionGoalInternal;
+import android.health.connect.internal.datatypes.ExerciseLapInternal;
+import android.health.connect.internal.datatypes.ExercisePerformanceGoalInternal;
+import android.health.connect.internal.datatypes.ExerciseRouteInternal;
+import android.health.connect.internal.datatypes.ExerciseRouteInternal.LocationInternal;
+import android.health.connect.internal.datatypes.ExerciseSessionRecordInternal;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal.HeartRateSample;
+import android.health.connect.internal.datatypes.NutritionRecordInternal;
+import android.health.connect.internal.datatypes.PlannedExerciseBlockInternal;
+import android.health.connect.internal.datatypes.PlannedExerciseSessionRecordInternal;
+import android.health.connect.internal.datatypes.PlannedExerciseStepInternal;
+import android.health.connect.internal.datatypes.SeriesRecordInternal;
+import android.health.connect.internal.datatypes.StepsRecordInternal;
+import android.health.connect.internal.datatypes.utils.HealthConnectMappings;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.android.server.healthconnect.storage.utils.InternalHealthConnectMappings;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@RunWith(AndroidJUnit4.class)
+public class BackupRecordCodecTest {
+    private final BackupRecordCodec mCodec =
+            new BackupRecordCodec(new InternalHealthConnectMappings(new HealthConnectMappings()));
+
+    @Test
+    public void encode_stepsRecord_decodedWithSameValues() {
+        StepsRecordInternal record = new StepsRecordInternal();
+        record.setCount(1345);
+        record.setStartTime(2000);
+        record.setStartZoneOffset(3600);
+        record.setEndTime(3000);
+        record.setEndZoneOffset(7200);
+        record.setUuid(UUID.randomUUID());
+        record.setPackageName("test.package.name");
+        record.setAppName("Test app");
+        record.setLastModifiedTime(123456789);
+        record.setClientRecordId("client id");
+        record.setClientRecordVersion(7);
+        record.setManufacturer("manufacturer");
+        record.setModel("model");
+        record.setDeviceType(Device.DEVICE_TYPE_WATCH);
+        record.setRecordingMethod(Metadata.RECORDING_METHOD_AUTOMATICALLY_RECORDED);
+
+        StepsRecordInternal decoded = (StepsRecordInternal) mCodec.decode(mCodec.encode(record));
+
+        assertThat(decoded.getCount()).isEqualTo(1345);
+        assertThat(decoded.getStartTimeInMillis()).isEqualTo(2000);
+        assertThat(decoded.getStartZoneOffsetInSeconds()).isEqualTo(3600);
+        assertThat(decoded.getEndTimeInMillis()).isEqualTo(3000);
+        assertThat(decoded.getEndZoneOffsetInSeconds()).isEqualTo(7200);
+        assertThat(decoded.getUuid()).isEqualTo(record.getUuid());
+        assertThat(decoded.getPackageName()).isEqualTo("test.package.name");
+        assertThat(decoded.getAppName()).isEqualTo("Test app");
+        assertThat(decoded.getLastModifiedTime()).isEqualTo(123456789);
+        assertThat(decoded.getClientRecordId()).isEqualTo("client id");
+        assertThat(decoded.getClientRecordVersion()).isEqualTo(7);
+        assertThat(decoded.getManufacturer()).isEqualTo("manufacturer");
+        assertThat(decoded.getModel()).isEqualTo("model");
+        assertThat(decoded.getDeviceType()).isEqualTo(Device.DEVICE_TYPE_WATCH);
+        assertThat(decoded.getRecordingMethod())
+                .isEqualTo(Metadata.RECORDING_METHOD_AUTOMATICALLY_RECORDED);
+    }
+
+    @Test
+    public void encode_nullMetadata_decodedAsNull() {
+        StepsRecordInternal record = new StepsRecordInternal();
+        record.setCount(10);
+
+        StepsRecordInternal decoded = (StepsRecordInternal) mCodec.decode(mCodec.encode(record));
+
+        assertThat(decoded.getUuid()).isNull();
+        assertThat(decoded.getClientRecordId()).isNull();
+        assertThat(decoded.getManufacturer()).isNull();
+        assertThat(decoded.getModel()).isNull();
+        assertThat(decoded.getCount()).isEqualTo(10);
+    }
+
+    @Test
+    public void encode_seriesRecord_samplesDecodedAndRecordUnchanged() {
+        HeartRateRecordInternal record = createHeartRateRecord(/* sampleCount= */ 100);
+        Set<HeartRateSample> samples = record.getSamples();
+
+        HeartRateRecordInternal decoded =
+                (HeartRateRecordInternal) mCodec.decode(mCodec.encode(record));
+
+        assertThat(record.getSamples()).isSameInstanceAs(samples);
+        assertThat(record.getSamples()).hasSize(100);
+        assertThat(decoded.getStartTimeInMillis()).isEqualTo(record.getStartTimeInMillis());
+        assertThat(decoded.getEndTimeInMillis()).isEqualTo(record.getEndTimeInMillis());
+        assertThat(toPairs(decoded.getSamples())).isEqualTo(toPairs(record.getSamples()));
+    }
+
+    @Test
+    public void encode_exerciseSession_decodedWithSameValues() {
+        UUID plannedSessionId = UUID.randomUUID();
+        ExerciseSessionRecordInternal record = new ExerciseSessionRecordInternal();
+        record.setExerciseType(ExerciseSessionType.EXERCISE_SESSION_TYPE_RUNNING);
+        record.setTitle("Morning run");
+        record.setRoute(
+                new ExerciseRouteInternal(
+                        List.of(
+                                new LocationInternal()
+                                        .setTime(1500)
+                                        .setLatitude(47.5)
+                                        .setLongitude(8.5)
+                                        .setAltitude(400))));
+        record.setExerciseLaps(
+                List.of(
+                        new ExerciseLapInternal()
+                                .setStarTime(1000)
+                                .setEndTime(1800)
+                                .setLength(400)));
+        record.setPlannedExerciseSessionId(plannedSessionId);
+        record.setStartTime(1000);
+        record.setEndTime(2000);
+
+        ExerciseSessionRecordInternal decoded =
+                (ExerciseSessionRecordInternal) mCodec.decode(mCodec.encode(record));
+
+        assertThat(decoded.getExerciseType())
+                .isEqualTo(ExerciseSessionType.EXERCISE_SESSION_TYPE_RUNNING);
+        assertThat(decoded.getTitle()).isEqualTo("Morning run");
+        assertThat(decoded.getNotes()).isNull();
+        assertThat(decoded.hasRoute()).isTrue();
+        assertThat(decoded.getRoute()).isEqualTo(record.getRoute());
+        assertThat(decoded.getLaps()).isEqualTo(record.getLaps());
+        assertThat(decoded.getSegments()).isNull();
+        assertThat(decoded.getPlannedExerciseSessionId()).isEqualTo(plannedSessionId);
+    }
+
+    @Test
+    public void encode_plannedExerciseSession_goalsDecoded() {
+        PlannedExerciseStepInternal step =
+                new PlannedExerciseStepInternal(
+                        ExerciseSegmentType.EXERCISE_SEGMENT_TYPE_RUNNING,
+                        PlannedExerciseStep.EXERCISE_CATEGORY_ACTIVE,
+                        new ExerciseCompletionGoalInternal.DistanceGoalInternal(
+                                Length.fromMeters(1000)));
+        step.setPerformanceGoals(
+                List.of(
+                        new ExercisePerformanceGoalInternal.HeartRateGoalInternal(120, 150),
+                        ExercisePerformanceGoalInternal.AmrapGoalInternal.INSTANCE));
+        PlannedExerciseBlockInternal block = new PlannedExerciseBlockInternal(3);
+        block.setExerciseSteps(List.of(step));
+        PlannedExerciseSessionRecordInternal record =
+                new PlannedExerciseSessionRecordInternal()
+                        .setExerciseType(ExerciseSessionType.EXERCISE_SESSION_TYPE_RUNNING)
+                        .setHasExplicitTime(true)
+                        .setExerciseBlocks(List.of(block));
+        record.setStartTime(1000);
+        record.setEndTime(2000);
+
+        PlannedExerciseSessionRecordInternal decoded =
+                (PlannedExerciseSessionRecordInternal) mCodec.decode(mCodec.encode(record));
+
+        assertThat(decoded.getHasExplicitTime()).isTrue();
+        assertThat(decoded.getCompletedExerciseSessionId()).isNull();
+        assertThat(decoded.getExerciseBlocks()).hasSize(1);
+        PlannedExerciseBlockInternal decodedBlock = decoded.getExerciseBlocks().get(0);
+        assertThat(decodedBlock.getRepetitions()).isEqualTo(3);
+        assertThat(decodedBlock.getExerciseSteps()).hasSize(1);
+        PlannedExerciseStepInternal decodedStep = decodedBlock.getExerciseSteps().get(0);
+        assertThat(decodedStep.getExerciseCategory())
+                .isEqualTo(PlannedExerciseStep.EXERCISE_CATEGORY_ACTIVE);
+        assertThat(
+                        ((ExerciseCompletionGoalInternal.DistanceGoalInternal)
+                                        decodedStep.getCompletionGoal())
+                                .getDistance())
+                .isEqualTo(Length.fromMeters(1000));
+        assertThat(decodedStep.getPerformanceGoals()).hasSize(2);
+        ExercisePerformanceGoalInternal.HeartRateGoalInternal heartRateGoal =
+                (ExercisePerformanceGoalInternal.HeartRateGoalInternal)
+                        decodedStep.getPerformanceGoals().get(0);
+        assertThat(heartRateGoal.getMinBpm()).isEqualTo(120);
+        assertThat(heartRateGoal.getMaxBpm()).isEqualTo(150);
+        assertThat(decodedStep.getPerformanceGoals().get(1))
+                .isSameInstanceAs(ExercisePerformanceGoalInternal.AmrapGoalInternal.INSTANCE);
+    }
+
+    @Test
+    public void encode_nutrition_decodedWithSameValues() {
+        NutritionRecordInternal record =
+                new NutritionRecordInternal()
+                        .setEnergy(250_000)
+                        .setProtein(12.5)
+                        .setVitaminB12(0.002)
+                        .setMealName("Lunch");
+        record.setStartTime(1000);
+        record.setEndTime(2000);
+
+        NutritionRecordInternal decoded =
+                (NutritionRecordInternal) mCodec.decode(mCodec.encode(record));
+
+        assertThat(decoded.getEnergy()).isEqualTo(250_000);
+        assertThat(decoded.getProtein()).isEqualTo(12.5);
+        assertThat(decoded.getVitaminB12()).isEqualTo(0.002);
+        assertThat(decoded.getMealName()).isEqualTo("Lunch");
+        // Values that are not set keep the default of the record.
+        assertThat(decoded.getSugar()).isEqualTo(record.getSugar());
+    }
+
+    @Test
+    public void decode_fieldAddedByLaterVersion_ignored() {
+        byte[] encoded = mCodec.encode(createStepsRecord());
+        // Field 15 of BackupData, a varint of value 1.
+        byte[] withUnknownField = Arrays.copyOf(encoded, encoded.length + 2);
+        withUnknownField[encoded.length] = (byte) (15 << 3);
+        withUnknownField[encoded.length + 1] = 1;
+
+        StepsRecordInternal decoded = (StepsRecordInternal) mCodec.decode(withUnknownField);
+
+        assertThat(decoded.getCount()).isEqualTo(1345);
+    }
+
+    @Test
+    public void decode_unknownVersion_throws() {
+        byte[] encoded = mCodec.encode(createStepsRecord());
+        encoded[0] = 1;
+
+        assertThrows(IllegalArgumentException.class, () -> mCodec.decode(encoded));
+    }
+
+    @Test
+    public void encode_smallerThanJavaSerialization() throws IOException {
+        StepsRecordInternal record = createStepsRecord();
+
+        byte[] serialized = serialize(record);
+
+        assertThat(mCodec.encode(record).length).isLessThan(serialized.length / 2);
+    }
+
+    @Test
+    public void decode_javaSerialization_throws() throws IOException {
+        byte[] serialized = serialize(createStepsRecord());
+
+        assertThrows(IllegalArgumentException.class, () -> mCodec.decode(serialized));
+    }
+
+    @Test
+    public void decode_truncated_throws() {
+        byte[] encoded = mCodec.encode(createHeartRateRecord(/* sampleCount= */ 10));
+        byte[] truncated = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+
+        assertThrows(IllegalArgumentException.class, () -> mCodec.decode(truncated));
+    }
+
+    private static StepsRecordInternal createStepsRecord() {
+        StepsRecordInternal record = new StepsRecordInternal();
+        record.setCount(1345);
+        record.setStartTime(2000);
+        record.setEndTime(3000);
+        record.setUuid(UUID.randomUUID());
+        record.setPackageName("test.package.name");
+        return record;
+    }
+
+    private static HeartRateRecordInternal createHeartRateRecord(int sampleCount) {
+        HeartRateRecordInternal record = new HeartRateRecordInternal();
+        long startTime = 1_700_000_000_000L;
+        Set<HeartRateSample> samples = new HashSet<>();
+        for (int i = 0; i < sampleCount; i++) {
+            samples.add(new HeartRateSample(60 + i % 40, startTime + i * 1000L));
+        }
+        record.setSamples(samples);
+        record.setStartTime(startTime);
+        record.setEndTime(startTime + sampleCount * 1000L);
+        record.setUuid(UUID.randomUUID());
+        record.setPackageName("test.package.name");
+        return record;
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(object);
+        }
+        return serialized.toByteArray();
+    }
+
+    private static List<List<Long>> toPairs(Set<? extends SeriesRecordInternal.Sample> samples) {
+        return samples.stream()
+                .map(sample -> (HeartRateSample) sample)
+                .map(sample -> List.of(sample.getEpochMillis(), (long) sample.getBeatsPerMinute()))
+                .sorted(Comparator.comparing(pair -> pair.get(0)))
+                .toList();
+    }
+}
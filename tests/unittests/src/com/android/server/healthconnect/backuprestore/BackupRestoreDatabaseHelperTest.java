@@ -111,6 +111,7 @@ public class BackupRestoreDatabaseHelperTest {
                     .build();
 
     private BackupRestoreDatabaseHelper mBackupRestoreDatabaseHelper;
+    private BackupRecordCodec mBackupRecordCodec;
     private TransactionTestUtils mTransactionTestUtils;
     private TransactionManager mTransactionManager;
     private AccessLogsHelper mAccessLogsHelper;
@@ -155,6 +156,28 @@ public class BackupRestoreDatabaseHelperTest {
                         internalHealthConnectMappings,
                         changeLogsHelper,
                         changeLogsRequestHelper);
+        mBackupRecordCodec = new BackupRecordCodec(internalHealthConnectMappings);
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_BINARY_BACKUP_CODEC)
+    public void getChangesAndTokenFromDataTables_binaryCodec_recordsDecoded() {
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                createStepsRecord(
+                        TEST_START_TIME_IN_MILLIS, TEST_END_TIME_IN_MILLIS, TEST_STEP_COUNT));
+
+        List<BackupChange> changes =
+                mBackupRestoreDatabaseHelper.getChangesAndTokenFromDataTables().getChanges();
+
+        assertThat(changes).hasSize(1);
+        StepsRecordInternal stepsRecord =
+                (StepsRecordInternal) mBackupRecordCodec.decode(changes.get(0).getData());
+        assertThat(changes.get(0).getUid()).isEqualTo(String.valueOf(stepsRecord.getUuid()));
+        assertThat(stepsRecord.getPackageName()).isEqualTo(TEST_PACKAGE_NAME);
+        assertThat(stepsRecord.getCount()).isEqualTo(TEST_STEP_COUNT);
+        assertThat(stepsRecord.getStartTimeInMillis()).isEqualTo(TEST_START_TIME_IN_MILLIS);
+        assertThat(stepsRecord.getEndTimeInMillis()).isEqualTo(TEST_END_TIME_IN_MILLIS);
     }
 
     @Test
@@ -0,0 +1,473 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.backuprestore;
+
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_ACTIVE_CALORIES_BURNED;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_ACTIVITY_INTENSITY;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BASAL_BODY_TEMPERATURE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BASAL_METABOLIC_RATE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BLOOD_GLUCOSE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BLOOD_PRESSURE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BODY_FAT;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BODY_TEMPERATURE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BODY_WATER_MASS;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BONE_MASS;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_CERVICAL_MUCUS;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_CYCLING_PEDALING_CADENCE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_DISTANCE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_ELEVATION_GAINED;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_EXERCISE_SESSION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_FLOORS_CLIMBED;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HEART_RATE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HEART_RATE_VARIABILITY_RMSSD;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HEIGHT;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HYDRATION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_INTERMENSTRUAL_BLEEDING;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_LEAN_BODY_MASS;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_MENSTRUATION_FLOW;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_MENSTRUATION_PERIOD;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_MINDFULNESS_SESSION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_NUTRITION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_OVULATION_TEST;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_OXYGEN_SATURATION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_PLANNED_EXERCISE_SESSION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_POWER;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_RESPIRATORY_RATE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_RESTING_HEART_RATE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_SEXUAL_ACTIVITY;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_SKIN_TEMPERATURE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_SLEEP_SESSION;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_SPEED;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS_CADENCE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_TOTAL_CALORIES_BURNED;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_UNKNOWN;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_VO2_MAX;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_WEIGHT;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_WHEELCHAIR_PUSHES;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.health.connect.datatypes.ActiveCaloriesBurnedRecord;
+import android.health.connect.datatypes.ActivityIntensityRecord;
+import android.health.connect.datatypes.BasalBodyTemperatureRecord;
+import android.health.connect.datatypes.BasalMetabolicRateRecord;
+import android.health.connect.datatypes.BloodGlucoseRecord;
+import android.health.connect.datatypes.BloodPressureRecord;
+import android.health.connect.datatypes.BodyFatRecord;
+import android.health.connect.datatypes.BodyTemperatureMeasurementLocation;
+import android.health.connect.datatypes.BodyTemperatureRecord;
+import android.health.connect.datatypes.BodyWaterMassRecord;
+import android.health.connect.datatypes.BoneMassRecord;
+import android.health.connect.datatypes.CervicalMucusRecord;
+import android.health.connect.datatypes.CyclingPedalingCadenceRecord;
+import android.health.connect.datatypes.DataOrigin;
+import android.health.connect.datatypes.Device;
+import android.health.connect.datatypes.DistanceRecord;
+import android.health.connect.datatypes.ElevationGainedRecord;
+import android.health.connect.datatypes.ExerciseSessionRecord;
+import android.health.connect.datatypes.ExerciseSessionType;
+import android.health.connect.datatypes.FloorsClimbedRecord;
+import android.health.connect.datatypes.HeartRateRecord;
+import android.health.connect.datatypes.HeartRateVariabilityRmssdRecord;
+import android.health.connect.datatypes.HeightRecord;
+import android.health.connect.datatypes.HydrationRecord;
+import android.health.connect.datatypes.IntermenstrualBleedingRecord;
+import android.health.connect.datatypes.LeanBodyMassRecord;
+import android.health.connect.datatypes.MealType;
+import android.health.connect.datatypes.MenstruationFlowRecord;
+import android.health.connect.datatypes.MenstruationPeriodRecord;
+import android.health.connect.datatypes.Metadata;
+import android.health.connect.datatypes.MindfulnessSessionRecord;
+import android.health.connect.datatypes.NutritionRecord;
+import android.health.connect.datatypes.OvulationTestRecord;
+import android.health.connect.datatypes.OxygenSaturationRecord;
+import android.health.connect.datatypes.PlannedExerciseSessionRecord;
+import android.health.connect.datatypes.PowerRecord;
+import android.health.connect.datatypes.Record;
+import android.health.connect.datatypes.RecordTypeIdentifier;
+import android.health.connect.datatypes.RespiratoryRateRecord;
+import android.health.connect.datatypes.RestingHeartRateRecord;
+import android.health.connect.datatypes.SexualActivityRecord;
+import android.health.connect.datatypes.SkinTemperatureRecord;
+import android.health.connect.datatypes.SleepSessionRecord;
+import android.health.connect.datatypes.SpeedRecord;
+import android.health.connect.datatypes.StepsCadenceRecord;
+import android.health.connect.datatypes.StepsRecord;
+import android.health.connect.datatypes.TotalCaloriesBurnedRecord;
+import android.health.connect.datatypes.Vo2MaxRecord;
+import android.health.connect.datatypes.WeightRecord;
+import android.health.connect.datatypes.WheelchairPushesRecord;
+import android.health.connect.datatypes.units.BloodGlucose;
+import android.health.connect.datatypes.units.Energy;
+import android.health.connect.datatypes.units.Length;
+import android.health.connect.datatypes.units.Mass;
+import android.health.connect.datatypes.units.Percentage;
+import android.health.connect.datatypes.units.Power;
+import android.health.connect.datatypes.units.Pressure;
+import android.health.connect.datatypes.units.Temperature;
+import android.health.connect.datatypes.units.TemperatureDelta;
+import android.health.connect.datatypes.units.Velocity;
+import android.health.connect.datatypes.units.Volume;
+import android.health.connect.internal.datatypes.utils.HealthConnectMappings;
+import android.platform.test.annotations.EnableFlags;
+import android.platform.test.flag.junit.SetFlagsRule;
+
+import com.android.healthfitness.flags.Flags;
+import com.android.server.healthconnect.storage.utils.InternalHealthConnectMappings;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import platform.test.runner.parameterized.ParameterizedAndroidJunit4;
+import platform.test.runner.parameterized.Parameters;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@RunWith(ParameterizedAndroidJunit4.class)
+@EnableFlags({
+    Flags.FLAG_HEALTH_CONNECT_MAPPINGS,
+    Flags.FLAG_ACTIVITY_INTENSITY,
+    Flags.FLAG_ACTIVITY_INTENSITY_DB
+})
+public class RecordProtoConverterTest {
+    private static final Instant START_TIME = Instant.ofEpochMilli(1_700_000_000_000L);
+    private static final Instant MID_TIME = START_TIME.plusSeconds(60);
+    private static final Instant END_TIME = START_TIME.plusSeconds(120);
+
+    @Rule public final SetFlagsRule mSetFlagsRule = new SetFlagsRule();
+
+    private final int mRecordType;
+    private HealthConnectMappings mHealthConnectMappings;
+    private BackupRecordCodec mCodec;
+
+    /**
+     * Returns every declared record type rather than the mapped ones, as the parameters are
+     * computed before the flags of this test are set.
+     */
+    @Parameters(name = "{0}")
+    public static List<Integer> getRecordTypes() throws IllegalAccessException {
+        List<Integer> recordTypes = new ArrayList<>();
+        for (Field field : RecordTypeIdentifier.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers())
+                    && field.getType() == int.class
+                    && field.getName().startsWith("RECORD_TYPE_")
+                    && field.getInt(null) != RECORD_TYPE_UNKNOWN) {
+                recordTypes.add(field.getInt(null));
+            }
+        }
+        return recordTypes;
+    }
+
+    public RecordProtoConverterTest(int recordType) {
+        mRecordType = recordType;
+    }
+
+    @Before
+    public void setUp() {
+        HealthConnectMappings.resetInstanceForTesting();
+        mHealthConnectMappings = new HealthConnectMappings();
+        mCodec = new BackupRecordCodec(new InternalHealthConnectMappings(mHealthConnectMappings));
+    }
+
+    @Test
+    public void recordType_isMapped() {
+        assertThat(mHealthConnectMappings.getAllRecordTypeIdentifiers()).contains(mRecordType);
+    }
+
+    @Test
+    public void encode_recordOfType_decodedEqualToOriginal() {
+        Record record = createRecord(mRecordType);
+
+        Record decoded = mCodec.decode(mCodec.encode(record.toRecordInternal())).toExternalRecord();
+
+        assertThat(decoded).isEqualTo(record);
+    }
+
+    private static Record createRecord(int recordType) {
+        Metadata metadata = createMetadata();
+        switch (recordType) {
+            case RECORD_TYPE_ACTIVE_CALORIES_BURNED:
+                return new ActiveCaloriesBurnedRecord.Builder(
+                                metadata, START_TIME, END_TIME, Energy.fromCalories(120))
+                        .build();
+            case RECORD_TYPE_ACTIVITY_INTENSITY:
+                return new ActivityIntensityRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                END_TIME,
+                                ActivityIntensityRecord.ACTIVITY_INTENSITY_TYPE_MODERATE)
+                        .build();
+            case RECORD_TYPE_BASAL_BODY_TEMPERATURE:
+                return new BasalBodyTemperatureRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                BodyTemperatureMeasurementLocation.MEASUREMENT_LOCATION_ARMPIT,
+                                Temperature.fromCelsius(36.6))
+                        .build();
+            case RECORD_TYPE_BASAL_METABOLIC_RATE:
+                return new BasalMetabolicRateRecord.Builder(
+                                metadata, START_TIME, Power.fromWatts(80))
+                        .build();
+            case RECORD_TYPE_BLOOD_GLUCOSE:
+                return new BloodGlucoseRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                BloodGlucoseRecord.SpecimenSource
+                                        .SPECIMEN_SOURCE_CAPILLARY_BLOOD,
+                                BloodGlucose.fromMillimolesPerLiter(5.2),
+                                BloodGlucoseRecord.RelationToMealType.RELATION_TO_MEAL_FASTING,
+                                MealType.MEAL_TYPE_BREAKFAST)
+                        .build();
+            case RECORD_TYPE_BLOOD_PRESSURE:
+                return new BloodPressureRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                BloodPressureRecord.BloodPressureMeasurementLocation
+                                        .BLOOD_PRESSURE_MEASUREMENT_LOCATION_LEFT_WRIST,
+                                Pressure.fromMillimetersOfMercury(120),
+                                Pressure.fromMillimetersOfMercury(80),
+                                BloodPressureRecord.BodyPosition.BODY_POSITION_SITTING_DOWN)
+                        .build();
+            case RECORD_TYPE_BODY_FAT:
+                return new BodyFatRecord.Builder(metadata, START_TIME, Percentage.fromValue(21))
+                        .build();
+            case RECORD_TYPE_BODY_TEMPERATURE:
+                return new BodyTemperatureRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                BodyTemperatureMeasurementLocation.MEASUREMENT_LOCATION_ARMPIT,
+                                Temperature.fromCelsius(37.1))
+                        .build();
+            case RECORD_TYPE_BODY_WATER_MASS:
+                return new BodyWaterMassRecord.Builder(
+                                metadata, START_TIME, Mass.fromGrams(40_000))
+                        .build();
+            case RECORD_TYPE_BONE_MASS:
+                return new BoneMassRecord.Builder(metadata, START_TIME, Mass.fromGrams(3_000))
+                        .build();
+            case RECORD_TYPE_CERVICAL_MUCUS:
+                return new CervicalMucusRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                CervicalMucusRecord.CervicalMucusSensation.SENSATION_LIGHT,
+                                CervicalMucusRecord.CervicalMucusAppearance.APPEARANCE_DRY)
+                        .build();
+            case RECORD_TYPE_CYCLING_PEDALING_CADENCE:
+                return new CyclingPedalingCadenceRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                END_TIME,
+                                List.of(
+                                        new CyclingPedalingCadenceRecord
+                                                .CyclingPedalingCadenceRecordSample(
+                                                80, MID_TIME)))
+                        .build();
+            case RECORD_TYPE_DISTANCE:
+                return new DistanceRecord.Builder(
+                                metadata, START_TIME, END_TIME, Length.fromMeters(250))
+                        .build();
+            case RECORD_TYPE_ELEVATION_GAINED:
+                return new ElevationGainedRecord.Builder(
+                                metadata, START_TIME, END_TIME, Length.fromMeters(12))
+                        .build();
+            case RECORD_TYPE_EXERCISE_SESSION:
+                return new ExerciseSessionRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                END_TIME,
+                                ExerciseSessionType.EXERCISE_SESSION_TYPE_RUNNING)
+                        .setTitle("Morning run")
+                        .setNotes("Easy pace")
+                        .build();
+            case RECORD_TYPE_FLOORS_CLIMBED:
+                return new FloorsClimbedRecord.Builder(metadata, START_TIME, END_TIME, 4)
+                        .build();
+            case RECORD_TYPE_HEART_RATE:
+                return new HeartRateRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                END_TIME,
+                                List.of(new HeartRateRecord.HeartRateSample(72, MID_TIME)))
+                        .build();
+            case RECORD_TYPE_HEART_RATE_VARIABILITY_RMSSD:
+                return new HeartRateVariabilityRmssdRecord.Builder(metadata, START_TIME, 35)
+                        .build();
+            case RECORD_TYPE_HEIGHT:
+                return new HeightRecord.Builder(metadata, START_TIME, Length.fromMeters(1.8))
+                        .build();
+            case RECORD_TYPE_HYDRATION:
+                return new HydrationRecord.Builder(
+                                metadata, START_TIME, END_TIME, Volume.fromLiters(0.5))
+                        .build();
+            case RECORD_TYPE_INTERMENSTRUAL_BLEEDING:
+                return new IntermenstrualBleedingRecord.Builder(metadata, START_TIME).build();
+            case RECORD_TYPE_LEAN_BODY_MASS:
+                return new LeanBodyMassRecord.Builder(
+                                metadata, START_TIME, Mass.fromGrams(60_000))
+                        .build();
+            case RECORD_TYPE_MENSTRUATION_FLOW:
+                return new MenstruationFlowRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                MenstruationFlowRecord.MenstruationFlowType.FLOW_LIGHT)
+                        .build();
+            case RECORD_TYPE_MENSTRUATION_PERIOD:
+                return new MenstruationPeriodRecord.Builder(metadata, START_TIME, END_TIME)
+                        .build();
+            case RECORD_TYPE_MINDFULNESS_SESSION:
+                return new MindfulnessSessionRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                END_TIME,
+                                MindfulnessSessionRecord.MINDFULNESS_SESSION_TYPE_MEDITATION)
+                        .setTitle("Breathing")
+                        .setNotes("Calm")
+                        .build();
+            case RECORD_TYPE_NUTRITION:
+                return new NutritionRecord.Builder(metadata, START_TIME, END_TIME)
+                        .setEnergy(Energy.fromCalories(500_000))
+                        .setMealName("Breakfast")
+                        .setMealType(MealType.MEAL_TYPE_BREAKFAST)
+                        .build();
+            case RECORD_TYPE_OVULATION_TEST:
+                return new OvulationTestRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                OvulationTestRecord.OvulationTestResult.RESULT_POSITIVE)
+                        .build();
+            case RECORD_TYPE_OXYGEN_SATURATION:
+                return new OxygenSaturationRecord.Builder(
+                                metadata, START_TIME, Percentage.fromValue(98))
+                        .build();
+            case RECORD_TYPE_PLANNED_EXERCISE_SESSION:
+                return new PlannedExerciseSessionRecord.Builder(
+                                metadata,
+                                ExerciseSessionType.EXERCISE_SESSION_TYPE_RUNNING,
+                                START_TIME,
+                                END_TIME)
+                        .setTitle("Intervals")
+                        .setNotes("Warm up first")
+                        .build();
+            case RECORD_TYPE_POWER:
+                return new PowerRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                END_TIME,
+                                List.of(
+                                        new PowerRecord.PowerRecordSample(
+                                                Power.fromWatts(200), MID_TIME)))
+                        .build();
+            case RECORD_TYPE_RESPIRATORY_RATE:
+                return new RespiratoryRateRecord.Builder(metadata, START_TIME, 14).build();
+            case RECORD_TYPE_RESTING_HEART_RATE:
+                return new RestingHeartRateRecord.Builder(metadata, START_TIME, 58).build();
+            case RECORD_TYPE_SEXUAL_ACTIVITY:
+                return new SexualActivityRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                SexualActivityRecord.SexualActivityProtectionUsed
+                                        .PROTECTION_USED_PROTECTED)
+                        .build();
+            case RECORD_TYPE_SKIN_TEMPERATURE:
+                return new SkinTemperatureRecord.Builder(metadata, START_TIME, END_TIME)
+                        .setBaseline(Temperature.fromCelsius(33))
+                        .setDeltas(
+                                List.of(
+                                        new SkinTemperatureRecord.Delta(
+                                                TemperatureDelta.fromCelsius(0.5), MID_TIME)))
+                        .setMeasurementLocation(SkinTemperatureRecord.MEASUREMENT_LOCATION_WRIST)
+                        .build();
+            case RECORD_TYPE_SLEEP_SESSION:
+                return new SleepSessionRecord.Builder(metadata, START_TIME, END_TIME)
+                        .setTitle("Nap")
+                        .setNotes("Short")
+                        .setStages(
+                                List.of(
+                                        new SleepSessionRecord.Stage(
+                                                START_TIME,
+                                                MID_TIME,
+                                                SleepSessionRecord.StageType
+                                                        .STAGE_TYPE_SLEEPING_DEEP)))
+                        .build();
+            case RECORD_TYPE_SPEED:
+                return new SpeedRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                END_TIME,
+                                List.of(
+                                        new SpeedRecord.SpeedRecordSample(
+                                                Velocity.fromMetersPerSecond(3), MID_TIME)))
+                        .build();
+            case RECORD_TYPE_STEPS:
+                return new StepsRecord.Builder(metadata, START_TIME, END_TIME, 1345).build();
+            case RECORD_TYPE_STEPS_CADENCE:
+                return new StepsCadenceRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                END_TIME,
+                                List.of(
+                                        new StepsCadenceRecord.StepsCadenceRecordSample(
+                                                160, MID_TIME)))
+                        .build();
+            case RECORD_TYPE_TOTAL_CALORIES_BURNED:
+                return new TotalCaloriesBurnedRecord.Builder(
+                                metadata, START_TIME, END_TIME, Energy.fromCalories(300_000))
+                        .build();
+            case RECORD_TYPE_VO2_MAX:
+                return new Vo2MaxRecord.Builder(
+                                metadata,
+                                START_TIME,
+                                Vo2MaxRecord.Vo2MaxMeasurementMethod
+                                        .MEASUREMENT_METHOD_METABOLIC_CART,
+                                45)
+                        .build();
+            case RECORD_TYPE_WEIGHT:
+                return new WeightRecord.Builder(metadata, START_TIME, Mass.fromGrams(70_000))
+                        .build();
+            case RECORD_TYPE_WHEELCHAIR_PUSHES:
+                return new WheelchairPushesRecord.Builder(metadata, START_TIME, END_TIME, 30)
+                        .build();
+            default:
+                throw new AssertionError("No test record for record type " + recordType);
+        }
+    }
+
+    private static Metadata createMetadata() {
+        return new Metadata.Builder()
+                .setId(UUID.randomUUID().toString())
+                .setDataOrigin(new DataOrigin.Builder().setPackageName("test.package.name").build())
+                .setClientRecordId("client id")
+                .setClientRecordVersion(7)
+                .setDevice(
+                        new Device.Builder()
+                                .setManufacturer("manufacturer")
+                                .setModel("model")
+                                .setType(Device.DEVICE_TYPE_WATCH)
+                                .build())
+                .setRecordingMethod(Metadata.RECORDING_METHOD_AUTOMATICALLY_RECORDED)
+                .setLastModifiedTime(Instant.ofEpochMilli(123456789))
+                .build();
+    }
+}
@@ -360,6 +360,62 @@ public class ExportManagerTest {
         }
     }
 
+    @Test
+    @EnableFlags(Flags.FLAG_INCREMENTAL_STREAMING_EXPORT)
+    public void streamingExport_makesRemoteCopyOfDatabase() throws Exception {
+        mTransactionTestUtils.insertRecords(TEST_PACKAGE_NAME, createStepsRecord(123, 456, 7));
+
+        assertThat(mExportManager.runExport(mContext.getUser())).isTrue();
+
+        decompressExportedZip();
+        try (HealthConnectDatabase exportedDatabase =
+                new HealthConnectDatabase(mExportedDbContext, REMOTE_EXPORT_DATABASE_FILE_NAME)) {
+            assertThat(queryNumEntries(exportedDatabase, "steps_record_table")).isEqualTo(1);
+            assertThat(queryNumEntries(exportedDatabase, "change_logs_table")).isEqualTo(0);
+        }
+        StorageContext localContext =
+                StorageContext.create(mContext, mContext.getUser(), LOCAL_EXPORT_DIR_NAME);
+        assertThat(localContext.getDatabasePath(LOCAL_EXPORT_DATABASE_FILE_NAME).exists())
+                .isFalse();
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_INCREMENTAL_STREAMING_EXPORT)
+    public void streamingExport_nothingChanged_skipsExport() throws Exception {
+        mTransactionTestUtils.insertRecords(TEST_PACKAGE_NAME, createStepsRecord(123, 456, 7));
+        assertThat(mExportManager.runExport(mContext.getUser())).isTrue();
+        File exportedZip = mExportedDbContext.getDatabasePath(REMOTE_EXPORT_ZIP_FILE_NAME);
+        assertThat(exportedZip.setLastModified(0)).isTrue();
+
+        assertThat(mExportManager.runExport(mContext.getUser())).isTrue();
+
+        assertThat(exportedZip.lastModified()).isEqualTo(0);
+        ExtendedMockito.verify(
+                () ->
+                        ExportImportLogger.logExportStatus(
+                                eq(DATA_EXPORT_ERROR_NONE),
+                                anyInt(),
+                                eq(-1 /* no value recorded*/),
+                                eq(-1 /* no value recorded*/)),
+                times(1));
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_INCREMENTAL_STREAMING_EXPORT)
+    public void streamingExport_dataChanged_exportsAgain() throws Exception {
+        mTransactionTestUtils.insertRecords(TEST_PACKAGE_NAME, createStepsRecord(123, 456, 7));
+        assertThat(mExportManager.runExport(mContext.getUser())).isTrue();
+
+        mTransactionTestUtils.insertRecords(TEST_PACKAGE_NAME, createStepsRecord(789, 1011, 12));
+        assertThat(mExportManager.runExport(mContext.getUser())).isTrue();
+
+        decompressExportedZip();
+        try (HealthConnectDatabase exportedDatabase =
+                new HealthConnectDatabase(mExportedDbContext, REMOTE_EXPORT_DATABASE_FILE_NAME)) {
+            assertThat(queryNumEntries(exportedDatabase, "steps_record_table")).isEqualTo(2);
+        }
+    }
+
     @Test
     @MockStatic(Slog.class)
     public void destinationUriDoesNotExist_exportFailsWithLostFileAccessError() {
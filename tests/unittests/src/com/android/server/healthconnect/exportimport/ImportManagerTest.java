@@ -588,6 +588,46 @@ public class ImportManagerTest {
                 times(1));
     }
 
+    @Test
+    @EnableFlags(Flags.FLAG_BATCHED_IMPORT_MERGE)
+    public void copiesAllData_copyingRows() throws Exception {
+        List<String> uuids =
+                mTransactionTestUtils.insertRecords(
+                        TEST_PACKAGE_NAME,
+                        createStepsRecord(123, 345, 100),
+                        createBloodPressureRecord(234, 120.0, 80.0));
+        File zipToImport = zipExportedDb(exportCurrentDb());
+        mDatabaseHelpers.clearAllData(mTransactionManager);
+
+        mImportManagerSpy.runImport(mContext.getUser(), Uri.fromFile(zipToImport));
+        // Importing the same records again is ignored.
+        mImportManagerSpy.runImport(mContext.getUser(), Uri.fromFile(zipToImport));
+
+        List<UUID> stepsUuids = ImmutableList.of(UUID.fromString(uuids.get(0)));
+        List<UUID> bloodPressureUuids = ImmutableList.of(UUID.fromString(uuids.get(1)));
+        ReadTransactionRequest request =
+                mTransactionTestUtils.getReadTransactionRequest(
+                        ImmutableMap.of(
+                                RecordTypeIdentifier.RECORD_TYPE_STEPS,
+                                stepsUuids,
+                                RecordTypeIdentifier.RECORD_TYPE_BLOOD_PRESSURE,
+                                bloodPressureUuids));
+        List<RecordInternal<?>> records =
+                mTransactionManager.readRecordsByIds(
+                        request,
+                        mAppInfoHelper,
+                        mAccessLogsHelper,
+                        mDeviceInfoHelper,
+                        /* shouldRecordAccessLog= */ false);
+        assertThat(records).hasSize(2);
+        assertThat(records.get(0).getUuid()).isEqualTo(stepsUuids.get(0));
+        assertThat(records.get(0).getPackageName()).isEqualTo(TEST_PACKAGE_NAME);
+        assertThat(records.get(1).getUuid()).isEqualTo(bloodPressureUuids.get(0));
+        assertThat(mTransactionTestUtils.queryNumEntries("steps_record_table")).isEqualTo(1);
+        assertThat(mExportImportSettingsStorage.getImportStatus().getDataImportError())
+                .isEqualTo(DATA_IMPORT_ERROR_NONE);
+    }
+
     @Test
     @EnableFlags(Flags.FLAG_CLOUD_BACKUP_AND_RESTORE)
     public void copiesAllData_usingInsertAllWithoutAccessLogs() throws Exception {
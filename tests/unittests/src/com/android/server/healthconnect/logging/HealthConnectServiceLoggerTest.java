@@ -39,6 +39,8 @@ import static android.health.connect.ratelimiter.RateLimiter.QuotaBucket.QUOTA_B
 import static android.health.connect.ratelimiter.RateLimiter.QuotaBucket.QUOTA_BUCKET_WRITES_PER_24H_BACKGROUND;
 import static android.health.connect.ratelimiter.RateLimiter.QuotaBucket.QUOTA_BUCKET_WRITES_PER_24H_FOREGROUND;
 
+import static com.google.common.truth.Truth.assertThat;
+
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyLong;
@@ -501,4 +503,15 @@ public class HealthConnectServiceLoggerTest {
         private static final int BACKGROUND_24_HRS_BW_3000_TO_4000 =
                 HEALTH_CONNECT_API_CALLED__RATE_LIMIT__RATE_LIMIT_BACKGROUND_24_HRS_BW_3000_TO_4000;
     }
+
+    @Test
+    public void testSetSchedulingStats() {
+        HealthConnectServiceLogger logger =
+                new HealthConnectServiceLogger.Builder(false, ApiMethods.READ_DATA)
+                        .setSchedulingStats(/* queuedTaskCount= */ 3, /* queueWaitTime= */ 25)
+                        .build();
+
+        assertThat(logger.getQueuedTaskCount()).isEqualTo(3);
+        assertThat(logger.getQueueWaitTime()).isEqualTo(25);
+    }
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.permission;
+
+import static android.health.connect.HealthPermissions.READ_STEPS;
+import static android.health.connect.HealthPermissions.WRITE_STEPS;
+import static android.permission.PermissionManager.PERMISSION_GRANTED;
+import static android.permission.PermissionManager.PERMISSION_HARD_DENIED;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.AttributionSource;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.health.connect.internal.datatypes.utils.HealthConnectMappings;
+import android.os.Process;
+import android.permission.PermissionManager;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.android.server.healthconnect.storage.datatypehelpers.AppInfoHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.HealthDataCategoryPriorityHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PermissionDecisionCacheTest {
+    private static final int UID = 123;
+    private static final int THREAD_COUNT = 4;
+    private static final int ROUND_COUNT = 50;
+    private static final int CHECKS_PER_THREAD = 2000;
+
+    @Mock private PermissionManager mPermissionManager;
+    @Mock private PackageManager mPackageManager;
+    @Mock private HealthPermissionIntentAppsTracker mPermissionIntentAppsTracker;
+    @Mock private FirstGrantTimeManager mFirstGrantTimeManager;
+    @Mock private HealthDataCategoryPriorityHelper mHealthDataCategoryPriorityHelper;
+    @Mock private AppInfoHelper mAppInfoHelper;
+
+    private final AttributionSource mAttributionSource =
+            new AttributionSource.Builder(UID).setPackageName("package").build();
+    private PermissionDecisionCache mCache;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mCache = new PermissionDecisionCache(mPermissionManager);
+    }
+
+    @Test
+    public void isPermissionGranted_checkedTwice_permissionManagerCalledOnce() {
+        when(mPermissionManager.checkPermissionForDataDelivery(
+                        READ_STEPS, mAttributionSource, null))
+                .thenReturn(PERMISSION_GRANTED);
+
+        assertThat(mCache.isPermissionGranted(READ_STEPS, mAttributionSource)).isTrue();
+        assertThat(mCache.isPermissionGranted(READ_STEPS, mAttributionSource)).isTrue();
+
+        verify(mPermissionManager, times(1))
+                .checkPermissionForDataDelivery(READ_STEPS, mAttributionSource, null);
+    }
+
+    @Test
+    public void isPermissionGranted_differentPermissions_cachedSeparately() {
+        when(mPermissionManager.checkPermissionForDataDelivery(
+                        READ_STEPS, mAttributionSource, null))
+                .thenReturn(PERMISSION_GRANTED);
+        when(mPermissionManager.checkPermissionForDataDelivery(
+                        WRITE_STEPS, mAttributionSource, null))
+                .thenReturn(PERMISSION_HARD_DENIED);
+
+        assertThat(mCache.isPermissionGranted(READ_STEPS, mAttributionSource)).isTrue();
+        assertThat(mCache.isPermissionGranted(WRITE_STEPS, mAttributionSource)).isFalse();
+        assertThat(mCache.isPermissionGranted(WRITE_STEPS, mAttributionSource)).isFalse();
+    }
+
+    @Test
+    public void isPermissionGranted_afterPermissionsChanged_checksAgain() {
+        when(mPermissionManager.checkPermissionForDataDelivery(
+                        READ_STEPS, mAttributionSource, null))
+                .thenReturn(PERMISSION_GRANTED);
+        mCache.isPermissionGranted(READ_STEPS, mAttributionSource);
+
+        when(mPermissionManager.checkPermissionForDataDelivery(
+                        READ_STEPS, mAttributionSource, null))
+                .thenReturn(PERMISSION_HARD_DENIED);
+        mCache.onPermissionsChanged(UID);
+
+        assertThat(mCache.isPermissionGranted(READ_STEPS, mAttributionSource)).isFalse();
+    }
+
+    @Test
+    public void isPermissionGranted_afterPackageChanged_checksAgain() {
+        when(mPermissionManager.checkPermissionForDataDelivery(
+                        READ_STEPS, mAttributionSource, null))
+                .thenReturn(PERMISSION_GRANTED);
+        mCache.isPermissionGranted(READ_STEPS, mAttributionSource);
+
+        when(mPermissionManager.checkPermissionForDataDelivery(
+                        READ_STEPS, mAttributionSource, null))
+                .thenReturn(PERMISSION_HARD_DENIED);
+        mCache.onReceive(/* context= */ null, new Intent(Intent.ACTION_PACKAGE_REMOVED));
+
+        assertThat(mCache.isPermissionGranted(READ_STEPS, mAttributionSource)).isFalse();
+    }
+
+    @Test
+    public void isPermissionGranted_chainedAttributionSource_notCached() {
+        AttributionSource chained =
+                new AttributionSource.Builder(UID)
+                        .setPackageName("package")
+                        .setNext(new AttributionSource.Builder(456).setPackageName("next").build())
+                        .build();
+        when(mPermissionManager.checkPermissionForDataDelivery(READ_STEPS, chained, null))
+                .thenReturn(PERMISSION_GRANTED);
+
+        mCache.isPermissionGranted(READ_STEPS, chained);
+        mCache.isPermissionGranted(READ_STEPS, chained);
+
+        verify(mPermissionManager, times(2))
+                .checkPermissionForDataDelivery(READ_STEPS, chained, null);
+    }
+
+    @Test
+    public void isPermissionGranted_revokedWhileChecking_noStaleGrantAfterInvalidation()
+            throws Exception {
+        AtomicBoolean isGranted = new AtomicBoolean();
+        when(mPermissionManager.checkPermissionForDataDelivery(
+                        READ_STEPS, mAttributionSource, null))
+                .thenAnswer(
+                        invocation ->
+                                isGranted.get() ? PERMISSION_GRANTED : PERMISSION_HARD_DENIED);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            for (int round = 0; round < ROUND_COUNT; round++) {
+                isGranted.set(true);
+                mCache.onPermissionsChanged(UID);
+                AtomicBoolean isRevoked = new AtomicBoolean();
+                CountDownLatch started = new CountDownLatch(THREAD_COUNT);
+                List<Future<Integer>> staleGrantCounts = new ArrayList<>();
+                for (int i = 0; i < THREAD_COUNT; i++) {
+                    staleGrantCounts.add(
+                            executor.submit(
+                                    () -> {
+                                        started.countDown();
+                                        int staleGrants = 0;
+                                        for (int check = 0; check < CHECKS_PER_THREAD; check++) {
+                                            boolean wasRevoked = isRevoked.get();
+                                            if (mCache.isPermissionGranted(
+                                                            READ_STEPS, mAttributionSource)
+                                                    && wasRevoked) {
+                                                staleGrants++;
+                                            }
+                                        }
+                                        return staleGrants;
+                                    }));
+                }
+
+                started.await();
+                isGranted.set(false);
+                mCache.onPermissionsChanged(UID);
+                isRevoked.set(true);
+
+                for (Future<Integer> staleGrantCount : staleGrantCounts) {
+                    assertThat(staleGrantCount.get()).isEqualTo(0);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void isPermissionGranted_rightAfterRevokeHealthPermission_notGranted() throws Exception {
+        HealthConnectPermissionHelper permissionHelper = createPermissionHelper();
+        when(mPermissionManager.checkPermissionForDataDelivery(
+                        READ_STEPS, mAttributionSource, null))
+                .thenReturn(PERMISSION_GRANTED);
+        assertThat(mCache.isPermissionGranted(READ_STEPS, mAttributionSource)).isTrue();
+
+        when(mPermissionManager.checkPermissionForDataDelivery(
+                        READ_STEPS, mAttributionSource, null))
+                .thenReturn(PERMISSION_HARD_DENIED);
+        permissionHelper.revokeHealthPermission(
+                "package", READ_STEPS, /* reason= */ null, Process.myUserHandle());
+
+        // No permission change callback has run, the revocation itself invalidates the cache.
+        verify(mPackageManager)
+                .revokeRuntimePermission(
+                        eq("package"), eq(READ_STEPS), eq(Process.myUserHandle()), any());
+        assertThat(mCache.isPermissionGranted(READ_STEPS, mAttributionSource)).isFalse();
+    }
+
+    private HealthConnectPermissionHelper createPermissionHelper() throws Exception {
+        Context context = spy(ApplicationProvider.getApplicationContext());
+        Context userContext = mock(Context.class);
+        PackageManager userPackageManager = mock(PackageManager.class);
+        doNothing().when(context).enforceCallingOrSelfPermission(any(), any());
+        doReturn(userContext).when(context).createContextAsUser(any(), anyInt());
+        when(userContext.getPackageManager()).thenReturn(userPackageManager);
+        when(userPackageManager.getPackageInfo(
+                        eq("package"), any(PackageManager.PackageInfoFlags.class)))
+                .thenReturn(new PackageInfo());
+        when(mPackageManager.checkPermission(READ_STEPS, "package"))
+                .thenReturn(PackageManager.PERMISSION_GRANTED);
+        return new HealthConnectPermissionHelper(
+                context,
+                mPackageManager,
+                mPermissionIntentAppsTracker,
+                mFirstGrantTimeManager,
+                mHealthDataCategoryPriorityHelper,
+                mAppInfoHelper,
+                HealthConnectMappings.getInstance(),
+                mCache);
+    }
+}
@@ -18,7 +18,7 @@ package com.android.server.healthconnect.storage;
 
 import static android.database.DatabaseUtils.queryNumEntries;
 
-import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_ECOSYSTEM_METRICS;
+import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_MEDICAL_RESOURCE_COMPRESSION;
 import static com.android.healthfitness.flags.DatabaseVersions.DB_VERSION_MINDFULNESS_SESSION;
 import static com.android.healthfitness.flags.DatabaseVersions.MIN_SUPPORTED_DB_VERSION;
 import static com.android.healthfitness.flags.Flags.FLAG_INFRA_TO_GUARD_DB_CHANGES;
@@ -36,6 +36,7 @@ import android.platform.test.flag.junit.FlagsParameterization;
 import android.platform.test.flag.junit.SetFlagsRule;
 
 import com.android.server.healthconnect.storage.datatypehelpers.AccessLogsHelper;
+import com.android.server.healthconnect.storage.datatypehelpers.HeartRateRecordHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.MedicalDataSourceHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.MedicalResourceHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.MedicalResourceIndicesHelper;
@@ -67,8 +68,9 @@ public class DatabaseUpgradeHelperTest {
 
     private static final int NUM_OF_TABLES_AT_MIN_SUPPORTED_VERSION = 57;
     private static final int NUM_OF_TABLES_AT_MINDFULNESS_VERSION = 64;
-    private static final int NUM_OF_TABLES_IN_STAGING = 69;
-    private static final int LATEST_DB_VERSION_IN_STAGING = DB_VERSION_ECOSYSTEM_METRICS;
+    private static final int NUM_OF_TABLES_IN_STAGING = 70;
+    private static final int LATEST_DB_VERSION_IN_STAGING =
+            DB_VERSION_MEDICAL_RESOURCE_COMPRESSION;
 
     private SQLiteDatabase mSQLiteDatabase;
 
@@ -139,6 +141,40 @@ public class DatabaseUpgradeHelperTest {
                 mSQLiteDatabase,
                 AccessLogsHelper.TABLE_NAME,
                 List.of("medical_resource_type", "medical_data_source_accessed"));
+
+        // Packed series samples
+        assertColumnsExist(
+                mSQLiteDatabase,
+                HeartRateRecordHelper.TABLE_NAME,
+                List.of(
+                        "packed_samples",
+                        "sample_count",
+                        "sample_sum",
+                        "sample_min",
+                        "sample_max"));
+
+        // Keyset page tokens
+        assertIndexExists(mSQLiteDatabase, "idx_heart_rate_record_table_start_time_row_id");
+
+        // Activity date counts
+        assertColumnsExist(mSQLiteDatabase, "activity_date_table", List.of("record_count"));
+
+        // Time range indexes
+        assertIndexExists(
+                mSQLiteDatabase, "idx_heart_rate_record_table_app_info_id_start_time_row_id");
+        assertIndexExists(mSQLiteDatabase, "idx_steps_record_table_local_date_time_start_time");
+        assertIndexExists(mSQLiteDatabase, "idx_weight_record_table_app_info_id_time_row_id");
+        assertIndexExists(mSQLiteDatabase, "idx_weight_record_table_local_date_time");
+
+        // Foreign key indexes
+        assertIndexExists(
+                mSQLiteDatabase,
+                "idx_planned_exercise_session_record_table_completed_session_id");
+        assertIndexExists(
+                mSQLiteDatabase, "idx_exercise_session_record_table_planned_exercise_session_id");
+
+        // Medical resource content hash
+        assertColumnsExist(mSQLiteDatabase, "medical_resource_table", List.of("fhir_data_hash"));
     }
 
     /** Asserts that a list of {@code columns} exist in the specified {@code table}. */
@@ -151,6 +187,17 @@ public class DatabaseUpgradeHelperTest {
         }
     }
 
+    /** Asserts that the index named {@code index} exists. */
+    private static void assertIndexExists(SQLiteDatabase db, String index) {
+        long numEntries =
+                queryNumEntries(
+                        db,
+                        "sqlite_master",
+                        /* selection= */ "type = 'index' AND name = ?",
+                        /* selectionArgs= */ new String[] {index});
+        assertThat(numEntries).isEqualTo(1);
+    }
+
     /** Asserts that a list of {@code tables} exist. */
     private static void assertTablesExists(SQLiteDatabase db, List<String> tables) {
         for (String table : tables) {
@@ -16,6 +16,7 @@
 
 package com.android.server.healthconnect.storage;
 
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HEART_RATE;
 import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
 import static android.healthconnect.cts.utils.DataFactory.NOW;
 
@@ -27,6 +28,7 @@ import static com.android.healthfitness.flags.Flags.FLAG_PERSONAL_HEALTH_RECORD_
 import static com.android.server.healthconnect.storage.DatabaseTestUtils.NUM_OF_TABLES;
 import static com.android.server.healthconnect.storage.DatabaseTestUtils.assertNumberOfTables;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.checkTableExists;
+import static com.android.server.healthconnect.storage.utils.WhereClauses.LogicalOperator.AND;
 
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.truth.Truth.assertThat;
@@ -34,10 +36,13 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.mock;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.health.connect.HealthConnectManager;
 import android.health.connect.datatypes.MedicalDataSource;
 import android.health.connect.datatypes.StepsRecord;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal.HeartRateSample;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.healthconnect.cts.phr.utils.PhrDataFactory;
 import android.platform.test.annotations.DisableFlags;
@@ -55,10 +60,13 @@ import com.android.server.healthconnect.injector.HealthConnectInjectorImpl;
 import com.android.server.healthconnect.logging.ExportImportLogger;
 import com.android.server.healthconnect.permission.FirstGrantTimeManager;
 import com.android.server.healthconnect.permission.HealthPermissionIntentAppsTracker;
+import com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.MedicalDataSourceHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.MedicalResourceHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.MedicalResourceIndicesHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils;
+import com.android.server.healthconnect.storage.request.ReadTableRequest;
+import com.android.server.healthconnect.storage.utils.WhereClauses;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -68,6 +76,7 @@ import org.mockito.quality.Strictness;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 public class HealthConnectDatabaseTest {
@@ -97,7 +106,15 @@ public class HealthConnectDatabaseTest {
         FLAG_DEVELOPMENT_DATABASE,
         FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
         FLAG_ACTIVITY_INTENSITY_DB,
-        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES
+        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+        Flags.FLAG_AGGREGATE_ROLLUPS_DB,
+        Flags.FLAG_PACKED_SERIES_SAMPLES_DB,
+        Flags.FLAG_KEYSET_PAGE_TOKENS_DB,
+        Flags.FLAG_ACTIVITY_DATE_COUNTS_DB,
+        Flags.FLAG_TIME_RANGE_INDEXES_DB,
+        Flags.FLAG_FOREIGN_KEY_INDEXES_DB,
+        Flags.FLAG_MEDICAL_RESOURCE_CONTENT_HASH_DB,
+        Flags.FLAG_MEDICAL_RESOURCE_COMPRESSION_DB
     })
     public void onCreate_dbWithLatestSchemaCreated() {
         SQLiteDatabase sqliteDatabase =
@@ -211,6 +228,47 @@ public class HealthConnectDatabaseTest {
         assertThat(originalMedicalDataSource).isEqualTo(readMedicalDataSources.get(0));
     }
 
+    @Test
+    @EnableFlags({
+        FLAG_INFRA_TO_GUARD_DB_CHANGES,
+        FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+        FLAG_ACTIVITY_INTENSITY_DB,
+        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES
+    })
+    public void upgradeToRollupsAndPackedSamplesWithExistingSeriesData_expectRollupsComputed() {
+        // Disable the flags with `disableFlags()` so they can be enabled later in this test.
+        mSetFlagsRule.disableFlags(
+                Flags.FLAG_AGGREGATE_ROLLUPS_DB, Flags.FLAG_PACKED_SERIES_SAMPLES_DB);
+        HealthConnectInjector injector = getHealthConnectInjector(mContext);
+        TransactionTestUtils transactionTestUtils = new TransactionTestUtils(injector);
+        transactionTestUtils.insertApp(TEST_PACKAGE_NAME);
+        long startTime = NOW.toEpochMilli();
+        transactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                new HeartRateRecordInternal()
+                        .setSamples(Set.of(new HeartRateSample(60, startTime)))
+                        .setStartTime(startTime)
+                        .setEndTime(startTime + 1000));
+
+        // Both upgrades run at once, the rollups are computed with the packed samples columns.
+        mSetFlagsRule.enableFlags(
+                Flags.FLAG_AGGREGATE_ROLLUPS_DB, Flags.FLAG_PACKED_SERIES_SAMPLES_DB);
+        injector = getHealthConnectInjector(mContext);
+        TransactionManager transactionManager = injector.getTransactionManager();
+
+        try (Cursor cursor =
+                transactionManager.read(
+                        new ReadTableRequest(AggregateRollupHelper.TABLE_NAME)
+                                .setWhereClause(
+                                        new WhereClauses(AND)
+                                                .addWhereEqualsClause(
+                                                        AggregateRollupHelper
+                                                                .RECORD_TYPE_COLUMN_NAME,
+                                                        String.valueOf(RECORD_TYPE_HEART_RATE))))) {
+            assertThat(cursor.getCount()).isGreaterThan(0);
+        }
+    }
+
     // The database needs to be initialized after the flags have been set by the annotations,
     // hence this methods needs to be called in individual tests rather than in @Before method.
     private HealthConnectDatabase initializeEmptyHealthConnectDatabase() {
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.android.server.healthconnect.storage.request.UpsertTableRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class InsertStatementCacheTest {
+    private static final String PARENT_TABLE = "parent_table";
+    private static final String CHILD_TABLE = "child_table";
+    private static final UpsertTableRequest.RowLayout CHILD_ROW_LAYOUT =
+            new UpsertTableRequest.RowLayout(CHILD_TABLE, "parent_key", List.of("time", "value"));
+
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mDb = SQLiteDatabase.create(null);
+        mDb.execSQL(
+                "CREATE TABLE "
+                        + PARENT_TABLE
+                        + " (row_id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT UNIQUE)");
+        mDb.execSQL(
+                "CREATE TABLE " + CHILD_TABLE + " (parent_key INTEGER, time INTEGER, value REAL)");
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    @Test
+    public void insert_contentValues_rowsInserted() {
+        try (InsertStatementCache statements =
+                new InsertStatementCache(mDb, /* enabled= */ true)) {
+            assertThat(statements.insert(createParentRequest("a"), SQLiteDatabase.CONFLICT_NONE))
+                    .isEqualTo(1);
+            assertThat(statements.insert(createParentRequest("b"), SQLiteDatabase.CONFLICT_NONE))
+                    .isEqualTo(2);
+        }
+
+        assertThat(readNames()).containsExactly("a", "b").inOrder();
+    }
+
+    @Test
+    public void insert_conflictIgnored_returnsMinusOne() {
+        try (InsertStatementCache statements =
+                new InsertStatementCache(mDb, /* enabled= */ true)) {
+            statements.insert(createParentRequest("a"), SQLiteDatabase.CONFLICT_IGNORE);
+
+            assertThat(
+                            statements.insert(
+                                    createParentRequest("a"), SQLiteDatabase.CONFLICT_IGNORE))
+                    .isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void insert_conflictFail_throws() {
+        try (InsertStatementCache statements =
+                new InsertStatementCache(mDb, /* enabled= */ true)) {
+            statements.insert(createParentRequest("a"), SQLiteDatabase.CONFLICT_FAIL);
+
+            assertThrows(
+                    SQLiteConstraintException.class,
+                    () ->
+                            statements.insert(
+                                    createParentRequest("a"), SQLiteDatabase.CONFLICT_FAIL));
+        }
+    }
+
+    @Test
+    public void insert_boundRows_parentKeySet() {
+        for (boolean enabled : new boolean[] {true, false}) {
+            try (InsertStatementCache statements = new InsertStatementCache(mDb, enabled)) {
+                statements.insert(
+                        createChildRequest(100, 1.5).withParentKey(7),
+                        SQLiteDatabase.CONFLICT_NONE);
+                statements.insert(
+                        createChildRequest(200, 2.5).withParentKey(7),
+                        SQLiteDatabase.CONFLICT_NONE);
+            }
+        }
+
+        try (Cursor cursor =
+                mDb.rawQuery("SELECT parent_key, time, value FROM " + CHILD_TABLE, null)) {
+            assertThat(cursor.getCount()).isEqualTo(4);
+            cursor.moveToFirst();
+            assertThat(cursor.getLong(0)).isEqualTo(7);
+            assertThat(cursor.getLong(1)).isEqualTo(100);
+            assertThat(cursor.getDouble(2)).isEqualTo(1.5);
+        }
+    }
+
+    @Test
+    public void getContentValues_boundRow_throws() {
+        UpsertTableRequest request = createChildRequest(100, 1.5);
+
+        assertThat(request.isBoundWithoutContentValues()).isTrue();
+        assertThrows(IllegalStateException.class, request::getContentValues);
+        assertThat(request.getInsertCommand(SQLiteDatabase.CONFLICT_NONE))
+                .isEqualTo("INSERT INTO child_table (parent_key, time, value) VALUES (?, ?, ?)");
+    }
+
+    private static UpsertTableRequest createParentRequest(String name) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put("name", name);
+        return new UpsertTableRequest(PARENT_TABLE, contentValues);
+    }
+
+    private static UpsertTableRequest createChildRequest(long time, double value) {
+        return new UpsertTableRequest(
+                CHILD_ROW_LAYOUT,
+                (statement, index) -> {
+                    statement.bindLong(index, time);
+                    statement.bindDouble(index + 1, value);
+                });
+    }
+
+    private List<String> readNames() {
+        try (Cursor cursor =
+                mDb.rawQuery("SELECT name FROM " + PARENT_TABLE + " ORDER BY row_id", null)) {
+            List<String> names = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+            return names;
+        }
+    }
+}
@@ -19,7 +19,12 @@ package com.android.server.healthconnect.storage;
 import static android.health.connect.Constants.DEFAULT_PAGE_SIZE;
 import static android.health.connect.accesslog.AccessLog.OperationType.OPERATION_TYPE_DELETE;
 import static android.health.connect.accesslog.AccessLog.OperationType.OPERATION_TYPE_READ;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.BLOOD_PRESSURE_RECORD_DIASTOLIC_AVG;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.BLOOD_PRESSURE_RECORD_SYSTOLIC_AVG;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.BLOOD_PRESSURE_RECORD_SYSTOLIC_MAX;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.BLOOD_PRESSURE_RECORD_SYSTOLIC_MIN;
 import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.HEART_RATE_RECORD_BPM_AVG;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_BLOOD_PRESSURE;
 import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HEART_RATE;
 import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
 import static android.healthconnect.cts.utils.DataFactory.getDataOrigin;
@@ -33,6 +38,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 
 import android.content.Context;
+import android.health.connect.AggregateResult;
 import android.health.connect.DeleteUsingFiltersRequest;
 import android.health.connect.HealthConnectManager;
 import android.health.connect.PageTokenWrapper;
@@ -50,6 +56,7 @@ import android.health.connect.datatypes.RecordTypeIdentifier;
 import android.health.connect.datatypes.StepsRecord;
 import android.health.connect.internal.datatypes.RecordInternal;
 import android.health.connect.internal.datatypes.utils.AggregationTypeIdMapper;
+import android.os.Parcel;
 import android.platform.test.annotations.EnableFlags;
 import android.platform.test.flag.junit.SetFlagsRule;
 import android.util.ArrayMap;
@@ -74,6 +81,7 @@ import com.android.server.healthconnect.storage.datatypehelpers.RecordHelper;
 import com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils;
 import com.android.server.healthconnect.storage.request.AggregateTableRequest;
 import com.android.server.healthconnect.storage.request.DeleteTransactionRequest;
+import com.android.server.healthconnect.storage.request.FusedAggregateRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTransactionRequest;
 import com.android.server.healthconnect.storage.request.UpsertTransactionRequest;
@@ -90,6 +98,7 @@ import org.mockito.quality.Strictness;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -528,6 +537,86 @@ public class TransactionManagerTest {
         assertThat(log.getOperationType()).isEqualTo(OPERATION_TYPE_READ);
     }
 
+    @Test
+    public void populateWithFusedAggregation_sameResultsAsSeparateQueries() {
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                createBloodPressureRecord(200, 120.0, 80.0),
+                createBloodPressureRecord(300, 110.0, 70.0),
+                createBloodPressureRecord(400, 130.0, 90.0));
+        List<Integer> aggregationTypeIds =
+                List.of(
+                        BLOOD_PRESSURE_RECORD_SYSTOLIC_MIN,
+                        BLOOD_PRESSURE_RECORD_SYSTOLIC_MAX,
+                        BLOOD_PRESSURE_RECORD_SYSTOLIC_AVG,
+                        BLOOD_PRESSURE_RECORD_DIASTOLIC_AVG);
+        List<AggregateTableRequest> requests = new ArrayList<>();
+        for (int aggregationTypeId : aggregationTypeIds) {
+            requests.add(createBloodPressureAggregateTableRequest(aggregationTypeId));
+        }
+
+        List<AggregateTableRequest> unfusedRequests = new ArrayList<>();
+        List<FusedAggregateRequest> fusedRequests =
+                FusedAggregateRequest.plan(requests, unfusedRequests);
+        for (FusedAggregateRequest fusedRequest : fusedRequests) {
+            mTransactionManager.populateWithFusedAggregation(
+                    fusedRequest,
+                    TEST_PACKAGE_NAME,
+                    Set.of(RECORD_TYPE_BLOOD_PRESSURE),
+                    mAccessLogsHelper,
+                    /* shouldRecordAccessLog= */ false);
+        }
+
+        // MIN and MAX can't share a query, so SYSTOLIC_MAX is left on its own.
+        assertThat(fusedRequests).hasSize(1);
+        assertThat(fusedRequests.get(0).getRequests())
+                .containsExactly(requests.get(0), requests.get(2), requests.get(3));
+        assertThat(unfusedRequests).containsExactly(requests.get(1));
+        for (int i : List.of(0, 2, 3)) {
+            AggregateTableRequest expected =
+                    createBloodPressureAggregateTableRequest(aggregationTypeIds.get(i));
+            mTransactionManager.populateWithAggregation(
+                    expected,
+                    TEST_PACKAGE_NAME,
+                    Set.of(RECORD_TYPE_BLOOD_PRESSURE),
+                    mAccessLogsHelper,
+                    /* shouldRecordAccessLog= */ false);
+            AggregateResult<?> expectedResult = expected.getAggregateResults().get(0);
+            AggregateResult<?> actualResult = requests.get(i).getAggregateResults().get(0);
+            assertThat(getDoubleResult(actualResult)).isEqualTo(getDoubleResult(expectedResult));
+            assertThat(actualResult.getZoneOffset()).isEqualTo(expectedResult.getZoneOffset());
+            assertThat(actualResult.getDataOrigins())
+                    .containsExactlyElementsIn(expectedResult.getDataOrigins());
+        }
+    }
+
+    @Test
+    @EnableFlags({Flags.FLAG_ADD_MISSING_ACCESS_LOGS, Flags.FLAG_BUFFERED_READ_ACCESS_LOGS})
+    public void populateWithFusedAggregation_bufferedAccessLogRecorded() {
+        List<AggregateTableRequest> requests =
+                List.of(
+                        createBloodPressureAggregateTableRequest(
+                                BLOOD_PRESSURE_RECORD_SYSTOLIC_AVG),
+                        createBloodPressureAggregateTableRequest(
+                                BLOOD_PRESSURE_RECORD_DIASTOLIC_AVG));
+        List<FusedAggregateRequest> fusedRequests =
+                FusedAggregateRequest.plan(requests, new ArrayList<>());
+        assertThat(fusedRequests).hasSize(1);
+
+        mTransactionManager.populateWithFusedAggregation(
+                fusedRequests.get(0),
+                TEST_PACKAGE_NAME,
+                Set.of(RECORD_TYPE_BLOOD_PRESSURE),
+                mAccessLogsHelper,
+                /* shouldRecordAccessLog= */ true);
+
+        List<AccessLog> result = mAccessLogsHelper.queryAccessLogs();
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getPackageName()).isEqualTo(TEST_PACKAGE_NAME);
+        assertThat(result.get(0).getRecordTypes()).containsExactly(BloodPressureRecord.class);
+        assertThat(result.get(0).getOperationType()).isEqualTo(OPERATION_TYPE_READ);
+    }
+
     @Test
     public void insertAllRecords_noChangeLogs() {
         UpsertTransactionRequest upsertTransactionRequest =
@@ -577,4 +666,41 @@ public class TransactionManagerTest {
         List<AccessLog> result = mAccessLogsHelper.queryAccessLogs();
         assertThat(result).isNotEmpty();
     }
+
+    private AggregateTableRequest createBloodPressureAggregateTableRequest(int aggregationTypeId) {
+        AggregateTableRequest request =
+                mInternalHealthConnectMappings
+                        .getRecordHelper(RECORD_TYPE_BLOOD_PRESSURE)
+                        .getAggregateTableRequest(
+                                AggregationTypeIdMapper.getInstance()
+                                        .getAggregationTypeFor(aggregationTypeId),
+                                TEST_PACKAGE_NAME,
+                                /* packageFilters= */ List.of(),
+                                mHealthDataCategoryPriorityHelper,
+                                mInternalHealthConnectMappings,
+                                mAppInfoHelper,
+                                mTransactionManager,
+                                /* startTime= */ 100,
+                                /* endTime= */ 500,
+                                /* startDateAccess= */ 0,
+                                /* useLocalTime= */ false);
+        request.setGroupBy(
+                TIME_COLUMN_NAME,
+                /* period= */ null,
+                Duration.ofMillis(500 - 100),
+                new TimeInstantRangeFilter.Builder()
+                        .setStartTime(Instant.ofEpochMilli(100))
+                        .setEndTime(Instant.ofEpochMilli(500))
+                        .build());
+        return request;
+    }
+
+    private static double getDoubleResult(AggregateResult<?> result) {
+        Parcel parcel = Parcel.obtain();
+        result.putToParcel(parcel);
+        parcel.setDataPosition(0);
+        double value = parcel.readDouble();
+        parcel.recycle();
+        return value;
+    }
 }
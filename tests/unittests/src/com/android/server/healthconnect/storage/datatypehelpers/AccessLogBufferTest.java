@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentValues;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+@RunWith(AndroidJUnit4.class)
+public class AccessLogBufferTest {
+    private static final String ACCESS_TIME = "access_time";
+    private static final String APP_ID = "app_id";
+    private static final String DATABASE = "/data/user/0/healthconnect.db";
+    private static final String OTHER_DATABASE = "/data/user/10/healthconnect.db";
+
+    @Test
+    public void add_firstRowSinceDrain_requestsDrain() {
+        AccessLogBuffer buffer = new AccessLogBuffer(/* capacity= */ 4, ACCESS_TIME);
+
+        assertThat(buffer.add(DATABASE, createRow(/* appId= */ 1, /* accessTime= */ 100)))
+                .isTrue();
+        assertThat(buffer.add(DATABASE, createRow(/* appId= */ 2, /* accessTime= */ 200)))
+                .isFalse();
+        buffer.drain(DATABASE);
+        assertThat(buffer.add(DATABASE, createRow(/* appId= */ 1, /* accessTime= */ 300)))
+                .isTrue();
+    }
+
+    @Test
+    public void add_full_requestsDrainAgainOnce() {
+        AccessLogBuffer buffer = new AccessLogBuffer(/* capacity= */ 2, ACCESS_TIME);
+
+        assertThat(buffer.add(DATABASE, createRow(/* appId= */ 1, /* accessTime= */ 100)))
+                .isTrue();
+        assertThat(buffer.add(DATABASE, createRow(/* appId= */ 2, /* accessTime= */ 200)))
+                .isTrue();
+        assertThat(buffer.add(DATABASE, createRow(/* appId= */ 3, /* accessTime= */ 300)))
+                .isFalse();
+
+        // Rows are kept until drained.
+        assertThat(buffer.drain(DATABASE)).hasSize(3);
+    }
+
+    @Test
+    public void add_sameValuesExceptAccessTime_coalescedIntoLatest() {
+        AccessLogBuffer buffer = new AccessLogBuffer(/* capacity= */ 4, ACCESS_TIME);
+
+        buffer.add(DATABASE, createRow(/* appId= */ 1, /* accessTime= */ 100));
+        buffer.add(DATABASE, createRow(/* appId= */ 2, /* accessTime= */ 200));
+        buffer.add(DATABASE, createRow(/* appId= */ 1, /* accessTime= */ 300));
+
+        List<ContentValues> rows = buffer.drain(DATABASE);
+        assertThat(rows)
+                .containsExactly(
+                        createRow(/* appId= */ 2, /* accessTime= */ 200),
+                        createRow(/* appId= */ 1, /* accessTime= */ 300))
+                .inOrder();
+    }
+
+    @Test
+    public void add_otherDatabase_previousRowsDiscarded() {
+        AccessLogBuffer buffer = new AccessLogBuffer(/* capacity= */ 4, ACCESS_TIME);
+        buffer.add(OTHER_DATABASE, createRow(/* appId= */ 1, /* accessTime= */ 100));
+
+        assertThat(buffer.add(DATABASE, createRow(/* appId= */ 2, /* accessTime= */ 200)))
+                .isTrue();
+
+        assertThat(buffer.drain(DATABASE))
+                .containsExactly(createRow(/* appId= */ 2, /* accessTime= */ 200));
+    }
+
+    @Test
+    public void drain_otherDatabase_rowsDiscarded() {
+        AccessLogBuffer buffer = new AccessLogBuffer(/* capacity= */ 4, ACCESS_TIME);
+        buffer.add(OTHER_DATABASE, createRow(/* appId= */ 1, /* accessTime= */ 100));
+
+        assertThat(buffer.drain(DATABASE)).isEmpty();
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void drain_emptiesBuffer() {
+        AccessLogBuffer buffer = new AccessLogBuffer(/* capacity= */ 4, ACCESS_TIME);
+        buffer.add(DATABASE, createRow(/* appId= */ 1, /* accessTime= */ 100));
+
+        buffer.drain(DATABASE);
+
+        assertThat(buffer.isEmpty()).isTrue();
+        assertThat(buffer.drain(DATABASE)).isEmpty();
+    }
+
+    private static ContentValues createRow(long appId, long accessTime) {
+        ContentValues row = new ContentValues();
+        row.put(APP_ID, appId);
+        row.put(ACCESS_TIME, accessTime);
+        return row;
+    }
+}
@@ -30,6 +30,7 @@ import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_
 import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS_CADENCE;
 import static android.healthconnect.cts.phr.utils.PhrDataFactory.DATA_SOURCE_PACKAGE_NAME;
 
+import static com.android.healthfitness.flags.Flags.FLAG_BUFFERED_READ_ACCESS_LOGS;
 import static com.android.healthfitness.flags.Flags.FLAG_PERSONAL_HEALTH_RECORD;
 import static com.android.healthfitness.flags.Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE;
 import static com.android.server.healthconnect.storage.datatypehelpers.AccessLogsHelper.MEDICAL_DATA_SOURCE_ACCESSED_COLUMN_NAME;
@@ -433,4 +434,39 @@ public class AccessLogsHelperTest {
 
         assertThat(result).isNotEqualTo(Long.MIN_VALUE);
     }
+
+    @Test
+    @EnableFlags(FLAG_BUFFERED_READ_ACCESS_LOGS)
+    public void recordReadAccessLog_buffered_returnedByQueryAccessLogs() {
+        mTransactionManager.runAsTransaction(
+                db -> {
+                    mAccessLogsHelper.recordReadAccessLog(
+                            db, DATA_SOURCE_PACKAGE_NAME, Set.of(RECORD_TYPE_STEPS));
+                    mAccessLogsHelper.recordReadAccessLog(
+                            db, DATA_SOURCE_PACKAGE_NAME, Set.of(RECORD_TYPE_HEIGHT));
+                });
+
+        List<AccessLog> result = mAccessLogsHelper.queryAccessLogs();
+
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0).getRecordTypes()).containsExactly(StepsRecord.class);
+        assertThat(result.get(0).getOperationType()).isEqualTo(OPERATION_TYPE_READ);
+        assertThat(result.get(1).getRecordTypes()).containsExactly(HeightRecord.class);
+        assertThat(result.get(1).getOperationType()).isEqualTo(OPERATION_TYPE_READ);
+    }
+
+    @Test
+    @EnableFlags(FLAG_BUFFERED_READ_ACCESS_LOGS)
+    public void recordReadAccessLog_bufferedThenCacheCleared_discarded() {
+        mTransactionManager.runAsTransaction(
+                db -> {
+                    mAccessLogsHelper.recordReadAccessLog(
+                            db, DATA_SOURCE_PACKAGE_NAME, Set.of(RECORD_TYPE_STEPS));
+                });
+
+        // As on a user switch, after the logs were flushed to the database of the previous user.
+        mAccessLogsHelper.clearCache();
+
+        assertThat(mAccessLogsHelper.queryAccessLogs()).isEmpty();
+    }
 }
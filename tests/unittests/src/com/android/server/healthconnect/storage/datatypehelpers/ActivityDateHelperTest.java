@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils.createStepsRecord;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.health.connect.HealthConnectManager;
+import android.health.connect.datatypes.StepsRecord;
+import android.platform.test.annotations.EnableFlags;
+import android.platform.test.flag.junit.SetFlagsRule;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.android.healthfitness.flags.Flags;
+import com.android.modules.utils.testing.ExtendedMockitoRule;
+import com.android.server.healthconnect.EnvironmentFixture;
+import com.android.server.healthconnect.SQLiteDatabaseFixture;
+import com.android.server.healthconnect.injector.HealthConnectInjector;
+import com.android.server.healthconnect.injector.HealthConnectInjectorImpl;
+import com.android.server.healthconnect.permission.FirstGrantTimeManager;
+import com.android.server.healthconnect.permission.HealthPermissionIntentAppsTracker;
+import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.utils.InternalHealthConnectMappings;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.quality.Strictness;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RunWith(AndroidJUnit4.class)
+@EnableFlags({
+    Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+    Flags.FLAG_ACTIVITY_INTENSITY_DB,
+    Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+    Flags.FLAG_AGGREGATE_ROLLUPS_DB,
+    Flags.FLAG_PACKED_SERIES_SAMPLES_DB,
+    Flags.FLAG_KEYSET_PAGE_TOKENS_DB,
+    Flags.FLAG_ACTIVITY_DATE_COUNTS_DB
+})
+public class ActivityDateHelperTest {
+    private static final String TEST_PACKAGE_NAME = "package.name";
+    private static final long DAY_MILLIS = Duration.ofDays(1).toMillis();
+    private static final long EPOCH_DAY = 100;
+
+    @Rule(order = 1)
+    public final SetFlagsRule mSetFlagsRule = new SetFlagsRule();
+
+    @Rule(order = 2)
+    public final ExtendedMockitoRule mExtendedMockitoRule =
+            new ExtendedMockitoRule.Builder(this)
+                    .mockStatic(HealthConnectManager.class)
+                    .addStaticMockFixtures(EnvironmentFixture::new, SQLiteDatabaseFixture::new)
+                    .setStrictness(Strictness.LENIENT)
+                    .build();
+
+    private TransactionTestUtils mTransactionTestUtils;
+    private TransactionManager mTransactionManager;
+    private ActivityDateHelper mActivityDateHelper;
+
+    @Before
+    public void setup() {
+        Context context = ApplicationProvider.getApplicationContext();
+        HealthConnectInjector healthConnectInjector =
+                HealthConnectInjectorImpl.newBuilderForTest(context)
+                        .setFirstGrantTimeManager(mock(FirstGrantTimeManager.class))
+                        .setHealthPermissionIntentAppsTracker(
+                                mock(HealthPermissionIntentAppsTracker.class))
+                        .build();
+        mTransactionManager = healthConnectInjector.getTransactionManager();
+        mActivityDateHelper = healthConnectInjector.getActivityDateHelper();
+        mTransactionTestUtils = new TransactionTestUtils(healthConnectInjector);
+        mTransactionTestUtils.insertApp(TEST_PACKAGE_NAME);
+    }
+
+    @Test
+    public void insertRecords_countedPerDay() {
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                createStepsRecord(startOfDay(EPOCH_DAY), startOfDay(EPOCH_DAY) + 1000, 10),
+                createStepsRecord(startOfDay(EPOCH_DAY) + 2000, startOfDay(EPOCH_DAY) + 3000, 20),
+                createStepsRecord(startOfDay(EPOCH_DAY + 1), startOfDay(EPOCH_DAY + 1) + 1000, 30));
+
+        assertThat(readStepsCounts()).containsExactly(EPOCH_DAY, 2L, EPOCH_DAY + 1, 1L).inOrder();
+    }
+
+    @Test
+    public void deleteRecords_lastRecordsOfDay_dayRemoved() {
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                createStepsRecord(startOfDay(EPOCH_DAY), startOfDay(EPOCH_DAY) + 1000, 10),
+                createStepsRecord(startOfDay(EPOCH_DAY) + 2000, startOfDay(EPOCH_DAY) + 3000, 20));
+
+        RecordHelper<?> recordHelper =
+                InternalHealthConnectMappings.getInstance().getRecordHelper(RECORD_TYPE_STEPS);
+        mTransactionManager.deleteWithoutChangeLogs(
+                List.of(
+                        recordHelper.getDeleteRequestForAutoDelete(
+                                /* recordAutoDeletePeriodInDays= */ 30)));
+
+        assertThat(readStepsCounts()).isEmpty();
+        assertThat(mActivityDateHelper.getActivityDates(List.of(StepsRecord.class))).isEmpty();
+    }
+
+    @Test
+    public void reSyncByRecordTypeIds_countsDrifted_onlyDriftedDaysRewritten() {
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                createStepsRecord(startOfDay(EPOCH_DAY), startOfDay(EPOCH_DAY) + 1000, 10),
+                createStepsRecord(startOfDay(EPOCH_DAY + 1), startOfDay(EPOCH_DAY + 1) + 1000, 20),
+                createStepsRecord(startOfDay(EPOCH_DAY + 2), startOfDay(EPOCH_DAY + 2) + 1000, 30));
+        // A wrong count, a missing day and a day without records.
+        mTransactionManager.runAsTransaction(
+                db -> {
+                    db.execSQL(
+                            "UPDATE activity_date_table SET record_count = 5 WHERE epoch_days = "
+                                    + EPOCH_DAY);
+                    db.execSQL(
+                            "DELETE FROM activity_date_table WHERE epoch_days = "
+                                    + (EPOCH_DAY + 1));
+                    db.execSQL(
+                            "INSERT INTO activity_date_table (epoch_days, record_type_id,"
+                                    + " record_count) VALUES ("
+                                    + (EPOCH_DAY + 3)
+                                    + ", "
+                                    + RECORD_TYPE_STEPS
+                                    + ", 1)");
+                });
+        long unchangedRowId = readRowId(EPOCH_DAY + 2);
+
+        mActivityDateHelper.reSyncByRecordTypeIds(List.of(RECORD_TYPE_STEPS));
+
+        assertThat(readStepsCounts())
+                .containsExactly(EPOCH_DAY, 1L, EPOCH_DAY + 1, 1L, EPOCH_DAY + 2, 1L)
+                .inOrder();
+        assertThat(readRowId(EPOCH_DAY + 2)).isEqualTo(unchangedRowId);
+    }
+
+    private Map<Long, Long> readStepsCounts() {
+        Map<Long, Long> counts = new TreeMap<>();
+        try (Cursor cursor =
+                mTransactionManager.rawQuery(
+                        "SELECT epoch_days, record_count FROM activity_date_table"
+                                + " WHERE record_type_id = "
+                                + RECORD_TYPE_STEPS,
+                        null)) {
+            while (cursor.moveToNext()) {
+                counts.put(
+                        getCursorLong(cursor, "epoch_days"), getCursorLong(cursor, "record_count"));
+            }
+        }
+        return counts;
+    }
+
+    private long readRowId(long epochDay) {
+        try (Cursor cursor =
+                mTransactionManager.rawQuery(
+                        "SELECT row_id FROM activity_date_table WHERE epoch_days = " + epochDay,
+                        null)) {
+            cursor.moveToFirst();
+            return getCursorLong(cursor, "row_id");
+        }
+    }
+
+    private static long startOfDay(long epochDay) {
+        return epochDay * DAY_MILLIS;
+    }
+}
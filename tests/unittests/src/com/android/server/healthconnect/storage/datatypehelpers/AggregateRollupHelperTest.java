@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.datatypehelpers;
+
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.HEART_RATE_RECORD_BPM_AVG;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.HEART_RATE_RECORD_BPM_MAX;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.HEART_RATE_RECORD_BPM_MIN;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.HEART_RATE_RECORD_MEASUREMENTS_COUNT;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HEART_RATE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_WEIGHT;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.BUCKET_SIZE_MILLIS;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.BUCKET_START_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.RECORD_TYPE_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.USE_LOCAL_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.VALUE_COUNT_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.VALUE_MAX_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.VALUE_MIN_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.VALUE_SUM_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.AggregateRollupHelper.getBucketStart;
+import static com.android.server.healthconnect.storage.datatypehelpers.InstantRecordHelper.TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorDouble;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.health.connect.AggregateResult;
+import android.health.connect.HealthConnectManager;
+import android.health.connect.LocalTimeRangeFilter;
+import android.health.connect.TimeInstantRangeFilter;
+import android.health.connect.TimeRangeFilter;
+import android.health.connect.TimeRangeFilterHelper;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal.HeartRateSample;
+import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.WeightRecordInternal;
+import android.health.connect.internal.datatypes.utils.AggregationTypeIdMapper;
+import android.os.Parcel;
+import android.platform.test.annotations.EnableFlags;
+import android.platform.test.flag.junit.SetFlagsRule;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.android.healthfitness.flags.Flags;
+import com.android.modules.utils.testing.ExtendedMockitoRule;
+import com.android.server.healthconnect.EnvironmentFixture;
+import com.android.server.healthconnect.SQLiteDatabaseFixture;
+import com.android.server.healthconnect.injector.HealthConnectInjector;
+import com.android.server.healthconnect.injector.HealthConnectInjectorImpl;
+import com.android.server.healthconnect.permission.FirstGrantTimeManager;
+import com.android.server.healthconnect.permission.HealthPermissionIntentAppsTracker;
+import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.request.AggregateTableRequest;
+import com.android.server.healthconnect.storage.request.ReadTableRequest;
+import com.android.server.healthconnect.storage.utils.InternalHealthConnectMappings;
+import com.android.server.healthconnect.storage.utils.OrderByClause;
+import com.android.server.healthconnect.storage.utils.WhereClauses;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.quality.Strictness;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+@RunWith(AndroidJUnit4.class)
+@EnableFlags({
+    Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+    Flags.FLAG_ACTIVITY_INTENSITY_DB,
+    Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+    Flags.FLAG_AGGREGATE_ROLLUPS_DB
+})
+public class AggregateRollupHelperTest {
+    private static final String TEST_PACKAGE_NAME = "package.name";
+    private static final long HOUR_START = 100 * BUCKET_SIZE_MILLIS;
+    private static final long MINUTE = 60_000;
+
+    @Rule(order = 1)
+    public final SetFlagsRule mSetFlagsRule = new SetFlagsRule();
+
+    @Rule(order = 2)
+    public final ExtendedMockitoRule mExtendedMockitoRule =
+            new ExtendedMockitoRule.Builder(this)
+                    .mockStatic(HealthConnectManager.class)
+                    .addStaticMockFixtures(EnvironmentFixture::new, SQLiteDatabaseFixture::new)
+                    .setStrictness(Strictness.LENIENT)
+                    .build();
+
+    private TransactionTestUtils mTransactionTestUtils;
+    private TransactionManager mTransactionManager;
+    private HealthConnectInjector mHealthConnectInjector;
+
+    @Before
+    public void setup() {
+        Context context = ApplicationProvider.getApplicationContext();
+        mHealthConnectInjector =
+                HealthConnectInjectorImpl.newBuilderForTest(context)
+                        .setFirstGrantTimeManager(mock(FirstGrantTimeManager.class))
+                        .setHealthPermissionIntentAppsTracker(
+                                mock(HealthPermissionIntentAppsTracker.class))
+                        .build();
+        mTransactionManager = mHealthConnectInjector.getTransactionManager();
+        mTransactionTestUtils = new TransactionTestUtils(mHealthConnectInjector);
+        mTransactionTestUtils.insertApp(TEST_PACKAGE_NAME);
+    }
+
+    @Test
+    public void getBucketStart_roundsDownToHour() {
+        assertThat(getBucketStart(HOUR_START)).isEqualTo(HOUR_START);
+        assertThat(getBucketStart(HOUR_START + BUCKET_SIZE_MILLIS - 1)).isEqualTo(HOUR_START);
+        assertThat(getBucketStart(-1)).isEqualTo(-BUCKET_SIZE_MILLIS);
+    }
+
+    @Test
+    public void insertRecords_recordsInSameHour_rolledUpIntoOneBucket() {
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                createWeightRecord(HOUR_START + 1000, 60_000),
+                createWeightRecord(HOUR_START + 2000, 70_000),
+                createWeightRecord(HOUR_START + BUCKET_SIZE_MILLIS, 80_000));
+
+        try (Cursor cursor = readPhysicalTimeRollups()) {
+            assertThat(cursor.getCount()).isEqualTo(2);
+
+            cursor.moveToNext();
+            assertThat(getCursorLong(cursor, BUCKET_START_COLUMN_NAME)).isEqualTo(HOUR_START);
+            assertThat(getCursorLong(cursor, VALUE_COUNT_COLUMN_NAME)).isEqualTo(2);
+            assertThat(getCursorDouble(cursor, VALUE_SUM_COLUMN_NAME)).isEqualTo(130_000);
+            assertThat(getCursorDouble(cursor, VALUE_MIN_COLUMN_NAME)).isEqualTo(60_000);
+            assertThat(getCursorDouble(cursor, VALUE_MAX_COLUMN_NAME)).isEqualTo(70_000);
+
+            cursor.moveToNext();
+            assertThat(getCursorLong(cursor, BUCKET_START_COLUMN_NAME))
+                    .isEqualTo(HOUR_START + BUCKET_SIZE_MILLIS);
+            assertThat(getCursorLong(cursor, VALUE_COUNT_COLUMN_NAME)).isEqualTo(1);
+            assertThat(getCursorDouble(cursor, VALUE_SUM_COLUMN_NAME)).isEqualTo(80_000);
+        }
+    }
+
+    @Test
+    public void insertRecords_otherBucketsAlreadyExist_existingBucketsKept() {
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME, createWeightRecord(HOUR_START, 60_000));
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME, createWeightRecord(HOUR_START + 10, 50_000));
+
+        try (Cursor cursor = readPhysicalTimeRollups()) {
+            assertThat(cursor.getCount()).isEqualTo(1);
+            cursor.moveToNext();
+            assertThat(getCursorLong(cursor, VALUE_COUNT_COLUMN_NAME)).isEqualTo(2);
+            assertThat(getCursorDouble(cursor, VALUE_MIN_COLUMN_NAME)).isEqualTo(50_000);
+            assertThat(getCursorDouble(cursor, VALUE_MAX_COLUMN_NAME)).isEqualTo(60_000);
+        }
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_AGGREGATE_ROLLUPS)
+    public void aggregate_intervalRecordsAcrossBuckets_sameResultsWithoutRollups() {
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                // Starts before the filter and ends in its first bucket.
+                createHeartRateRecord(HOUR_START - 20 * MINUTE, 0, HOUR_START + 20 * MINUTE, 0, 50),
+                // Crosses a bucket boundary inside the filter.
+                createHeartRateRecord(HOUR_START + 10 * MINUTE, 0, HOUR_START + 70 * MINUTE, 0, 70),
+                // Starts in the last bucket of the filter and ends after it.
+                createHeartRateRecord(
+                        HOUR_START + 170 * MINUTE, 0, HOUR_START + 200 * MINUTE, 0, 90));
+
+        assertSameResultsWithoutRollups(
+                new TimeInstantRangeFilter.Builder()
+                        .setStartTime(Instant.ofEpochMilli(HOUR_START))
+                        .setEndTime(Instant.ofEpochMilli(HOUR_START + 3 * BUCKET_SIZE_MILLIS))
+                        .build(),
+                /* useLocalTime= */ false);
+    }
+
+    @Test
+    @EnableFlags(Flags.FLAG_AGGREGATE_ROLLUPS)
+    public void aggregate_localTime_recordEndingBeforeItStarts_sameResultsWithoutRollups() {
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                createHeartRateRecord(HOUR_START + 10 * MINUTE, 0, HOUR_START + 70 * MINUTE, 0, 70),
+                // Starts at HOUR_START + 1h and ends at HOUR_START - 1.5h in local time, so it ends
+                // before the filter starts.
+                createHeartRateRecord(
+                        HOUR_START - BUCKET_SIZE_MILLIS,
+                        /* startZoneOffsetSeconds= */ 2 * 3600,
+                        HOUR_START - 30 * MINUTE,
+                        /* endZoneOffsetSeconds= */ -3600,
+                        200));
+
+        assertSameResultsWithoutRollups(
+                new LocalTimeRangeFilter.Builder()
+                        .setStartTime(toLocalDateTime(HOUR_START))
+                        .setEndTime(toLocalDateTime(HOUR_START + 3 * BUCKET_SIZE_MILLIS))
+                        .build(),
+                /* useLocalTime= */ true);
+    }
+
+    private void assertSameResultsWithoutRollups(
+            TimeRangeFilter timeRangeFilter, boolean useLocalTime) {
+        List<Integer> aggregationTypeIds =
+                List.of(
+                        HEART_RATE_RECORD_BPM_MIN,
+                        HEART_RATE_RECORD_BPM_MAX,
+                        HEART_RATE_RECORD_BPM_AVG,
+                        HEART_RATE_RECORD_MEASUREMENTS_COUNT);
+        List<AggregateResult<?>> rollupResults = new ArrayList<>();
+        for (int aggregationTypeId : aggregationTypeIds) {
+            rollupResults.add(aggregateHeartRate(aggregationTypeId, timeRangeFilter, useLocalTime));
+        }
+
+        mSetFlagsRule.disableFlags(Flags.FLAG_AGGREGATE_ROLLUPS);
+        for (int i = 0; i < aggregationTypeIds.size(); i++) {
+            AggregateResult<?> expected =
+                    aggregateHeartRate(aggregationTypeIds.get(i), timeRangeFilter, useLocalTime);
+            AggregateResult<?> actual = rollupResults.get(i);
+            assertThat(marshall(actual)).isEqualTo(marshall(expected));
+            assertThat(actual.getZoneOffset()).isEqualTo(expected.getZoneOffset());
+        }
+    }
+
+    private AggregateResult<?> aggregateHeartRate(
+            int aggregationTypeId, TimeRangeFilter timeRangeFilter, boolean useLocalTime) {
+        InternalHealthConnectMappings mappings =
+                mHealthConnectInjector.getInternalHealthConnectMappings();
+        long startTime = TimeRangeFilterHelper.getFilterStartTimeMillis(timeRangeFilter);
+        long endTime = TimeRangeFilterHelper.getFilterEndTimeMillis(timeRangeFilter);
+        AggregateTableRequest request =
+                mappings.getRecordHelper(RECORD_TYPE_HEART_RATE)
+                        .getAggregateTableRequest(
+                                AggregationTypeIdMapper.getInstance()
+                                        .getAggregationTypeFor(aggregationTypeId),
+                                TEST_PACKAGE_NAME,
+                                /* packageFilters= */ List.of(),
+                                mHealthConnectInjector.getHealthDataCategoryPriorityHelper(),
+                                mappings,
+                                mHealthConnectInjector.getAppInfoHelper(),
+                                mTransactionManager,
+                                startTime,
+                                endTime,
+                                /* startDateAccess= */ 0,
+                                useLocalTime);
+        request.setGroupBy(
+                TIME_COLUMN_NAME,
+                /* period= */ null,
+                Duration.ofMillis(endTime - startTime),
+                timeRangeFilter);
+        mTransactionManager.populateWithAggregation(
+                request,
+                TEST_PACKAGE_NAME,
+                Set.of(RECORD_TYPE_HEART_RATE),
+                mHealthConnectInjector.getAccessLogsHelper(),
+                /* shouldRecordAccessLog= */ false);
+        return request.getAggregateResults().get(0);
+    }
+
+    private Cursor readPhysicalTimeRollups() {
+        return mTransactionManager.read(
+                new ReadTableRequest(AggregateRollupHelper.TABLE_NAME)
+                        .setWhereClause(
+                                new WhereClauses(WhereClauses.LogicalOperator.AND)
+                                        .addWhereEqualsClause(
+                                                RECORD_TYPE_COLUMN_NAME,
+                                                String.valueOf(RECORD_TYPE_WEIGHT))
+                                        .addWhereEqualsClause(USE_LOCAL_TIME_COLUMN_NAME, "0"))
+                        .setOrderBy(
+                                new OrderByClause()
+                                        .addOrderByClause(BUCKET_START_COLUMN_NAME, true)));
+    }
+
+    /** Returns a heart rate record with one sample at its start and one at its end. */
+    private static RecordInternal<?> createHeartRateRecord(
+            long startTime,
+            int startZoneOffsetSeconds,
+            long endTime,
+            int endZoneOffsetSeconds,
+            int beatsPerMinute) {
+        return new HeartRateRecordInternal()
+                .setSamples(
+                        Set.of(
+                                new HeartRateSample(beatsPerMinute, startTime),
+                                new HeartRateSample(beatsPerMinute + 1, endTime)))
+                .setStartTime(startTime)
+                .setStartZoneOffset(startZoneOffsetSeconds)
+                .setEndTime(endTime)
+                .setEndZoneOffset(endZoneOffsetSeconds);
+    }
+
+    private static LocalDateTime toLocalDateTime(long timeMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), ZoneOffset.UTC);
+    }
+
+    private static byte[] marshall(AggregateResult<?> result) {
+        Parcel parcel = Parcel.obtain();
+        result.putToParcel(parcel);
+        byte[] bytes = parcel.marshall();
+        parcel.recycle();
+        return bytes;
+    }
+
+    private static RecordInternal<?> createWeightRecord(long timeMillis, double weight) {
+        return new WeightRecordInternal().setWeight(weight).setTime(timeMillis);
+    }
+}
@@ -58,6 +58,7 @@ import static com.android.server.healthconnect.storage.utils.StorageUtils.PRIMAR
 import static com.android.server.healthconnect.storage.utils.StorageUtils.TEXT_NOT_NULL;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.generateMedicalResourceUUID;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorInt;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
 import static com.android.server.healthconnect.storage.utils.StorageUtils.getHexString;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -332,6 +333,165 @@ public class MedicalResourceHelperTest {
         assertThat(lastModifiedTimeUpdated).isEqualTo(upadatedInstant.toEpochMilli());
     }
 
+    @Test
+    @EnableFlags({
+        Flags.FLAG_PERSONAL_HEALTH_RECORD,
+        Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+        Flags.FLAG_ACTIVITY_INTENSITY_DB,
+        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+        Flags.FLAG_AGGREGATE_ROLLUPS_DB,
+        Flags.FLAG_PACKED_SERIES_SAMPLES_DB,
+        Flags.FLAG_KEYSET_PAGE_TOKENS_DB,
+        Flags.FLAG_ACTIVITY_DATE_COUNTS_DB,
+        Flags.FLAG_TIME_RANGE_INDEXES_DB,
+        Flags.FLAG_FOREIGN_KEY_INDEXES_DB,
+        Flags.FLAG_MEDICAL_RESOURCE_CONTENT_HASH_DB,
+        Flags.FLAG_MEDICAL_RESOURCE_CONTENT_HASH
+    })
+    public void upsertSameResourceTwice_contentHashEnabled_rowLeftUntouched() {
+        MedicalDataSource dataSource =
+                mUtil.insertR4MedicalDataSource("ds", DATA_SOURCE_PACKAGE_NAME);
+        MedicalResource resource = createVaccineMedicalResource(dataSource.getId());
+        mMedicalResourceHelper.upsertMedicalResources(
+                DATA_SOURCE_PACKAGE_NAME, List.of(makeUpsertRequest(resource)));
+        List<Long> rowIdsOriginal = readMedicalResourceRowIds();
+
+        mFakeTimeSource.setInstant(INSTANT_NOW.plusSeconds(60));
+        List<MedicalResource> upsertedResources =
+                mMedicalResourceHelper.upsertMedicalResources(
+                        DATA_SOURCE_PACKAGE_NAME, List.of(makeUpsertRequest(resource)));
+
+        assertThat(upsertedResources).containsExactly(resource);
+        assertThat(readMedicalResourceRowIds()).isEqualTo(rowIdsOriginal);
+        assertThat(mUtil.readLastModifiedTimestamp(MEDICAL_RESOURCE_TABLE_NAME))
+                .isEqualTo(INSTANT_NOW.toEpochMilli());
+        assertThat(readEntriesInMedicalResourceIndicesTable())
+                .containsExactly(MEDICAL_RESOURCE_TYPE_VACCINES);
+    }
+
+    @Test
+    @EnableFlags({
+        Flags.FLAG_PERSONAL_HEALTH_RECORD,
+        Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+        Flags.FLAG_ACTIVITY_INTENSITY_DB,
+        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+        Flags.FLAG_AGGREGATE_ROLLUPS_DB,
+        Flags.FLAG_PACKED_SERIES_SAMPLES_DB,
+        Flags.FLAG_KEYSET_PAGE_TOKENS_DB,
+        Flags.FLAG_ACTIVITY_DATE_COUNTS_DB,
+        Flags.FLAG_TIME_RANGE_INDEXES_DB,
+        Flags.FLAG_FOREIGN_KEY_INDEXES_DB,
+        Flags.FLAG_MEDICAL_RESOURCE_CONTENT_HASH_DB,
+        Flags.FLAG_MEDICAL_RESOURCE_CONTENT_HASH
+    })
+    public void upsertUpdatedResource_contentHashEnabled_rowUpdatedInPlace() {
+        MedicalDataSource dataSource =
+                mUtil.insertR4MedicalDataSource("ds", DATA_SOURCE_PACKAGE_NAME);
+        MedicalResource resource = createVaccineMedicalResource(dataSource.getId());
+        MedicalResource updatedResource = createUpdatedVaccineMedicalResource(dataSource.getId());
+        mMedicalResourceHelper.upsertMedicalResources(
+                DATA_SOURCE_PACKAGE_NAME, List.of(makeUpsertRequest(resource)));
+        List<Long> rowIdsOriginal = readMedicalResourceRowIds();
+
+        Instant updatedInstant = INSTANT_NOW.plusSeconds(60);
+        mFakeTimeSource.setInstant(updatedInstant);
+        mMedicalResourceHelper.upsertMedicalResources(
+                DATA_SOURCE_PACKAGE_NAME, List.of(makeUpsertRequest(updatedResource)));
+
+        assertThat(readMedicalResourceRowIds()).isEqualTo(rowIdsOriginal);
+        assertThat(mUtil.readLastModifiedTimestamp(MEDICAL_RESOURCE_TABLE_NAME))
+                .isEqualTo(updatedInstant.toEpochMilli());
+        assertThat(
+                        mMedicalResourceHelper.readMedicalResourcesByIdsWithoutPermissionChecks(
+                                List.of(resource.getId())))
+                .containsExactly(updatedResource);
+        assertThat(readEntriesInMedicalResourceIndicesTable())
+                .containsExactly(MEDICAL_RESOURCE_TYPE_VACCINES);
+    }
+
+    @Test
+    public void getFhirDataHash_sameData_sameHash() {
+        assertThat(MedicalResourceHelper.getFhirDataHash("{\"id\":\"1\"}"))
+                .isEqualTo(MedicalResourceHelper.getFhirDataHash("{\"id\":\"1\"}"));
+        assertThat(MedicalResourceHelper.getFhirDataHash("{\"id\":\"1\"}"))
+                .isNotEqualTo(MedicalResourceHelper.getFhirDataHash("{\"id\":\"2\"}"));
+    }
+
+    @Test
+    @EnableFlags({
+        Flags.FLAG_PERSONAL_HEALTH_RECORD,
+        Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+        Flags.FLAG_ACTIVITY_INTENSITY_DB,
+        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+        Flags.FLAG_AGGREGATE_ROLLUPS_DB,
+        Flags.FLAG_PACKED_SERIES_SAMPLES_DB,
+        Flags.FLAG_KEYSET_PAGE_TOKENS_DB,
+        Flags.FLAG_ACTIVITY_DATE_COUNTS_DB,
+        Flags.FLAG_TIME_RANGE_INDEXES_DB,
+        Flags.FLAG_FOREIGN_KEY_INDEXES_DB,
+        Flags.FLAG_MEDICAL_RESOURCE_CONTENT_HASH_DB,
+        Flags.FLAG_MEDICAL_RESOURCE_COMPRESSION_DB,
+        Flags.FLAG_MEDICAL_RESOURCE_COMPRESSION
+    })
+    public void upsertResource_compressionEnabled_storedCompressedAndReadBack() {
+        MedicalDataSource dataSource =
+                mUtil.insertR4MedicalDataSource("ds", DATA_SOURCE_PACKAGE_NAME);
+        MedicalResource resource = createVaccineMedicalResource(dataSource.getId());
+
+        mMedicalResourceHelper.upsertMedicalResources(
+                DATA_SOURCE_PACKAGE_NAME, List.of(makeUpsertRequest(resource)));
+
+        assertThat(readFhirDataTypes()).containsExactly(Cursor.FIELD_TYPE_BLOB);
+        assertThat(
+                        mMedicalResourceHelper.readMedicalResourcesByIdsWithoutPermissionChecks(
+                                List.of(resource.getId())))
+                .containsExactly(resource);
+    }
+
+    @Test
+    @EnableFlags({
+        Flags.FLAG_PERSONAL_HEALTH_RECORD,
+        Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+        Flags.FLAG_ACTIVITY_INTENSITY_DB,
+        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+        Flags.FLAG_AGGREGATE_ROLLUPS_DB,
+        Flags.FLAG_PACKED_SERIES_SAMPLES_DB,
+        Flags.FLAG_KEYSET_PAGE_TOKENS_DB,
+        Flags.FLAG_ACTIVITY_DATE_COUNTS_DB,
+        Flags.FLAG_TIME_RANGE_INDEXES_DB,
+        Flags.FLAG_FOREIGN_KEY_INDEXES_DB,
+        Flags.FLAG_MEDICAL_RESOURCE_CONTENT_HASH_DB,
+        Flags.FLAG_MEDICAL_RESOURCE_COMPRESSION_DB,
+        Flags.FLAG_MEDICAL_RESOURCE_COMPRESSION
+    })
+    public void applyCompressionUpgrade_uncompressedResource_compressedAndReadBack() {
+        MedicalDataSource dataSource =
+                mUtil.insertR4MedicalDataSource("ds", DATA_SOURCE_PACKAGE_NAME);
+        MedicalResource resource = createVaccineMedicalResource(dataSource.getId());
+        mMedicalResourceHelper.upsertMedicalResources(
+                DATA_SOURCE_PACKAGE_NAME, List.of(makeUpsertRequest(resource)));
+        // Store the FHIR data as text, as written before the upgrade.
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(FHIR_DATA_COLUMN_NAME, resource.getFhirResource().getData());
+        mTransactionManager.runAsTransaction(
+                db -> {
+                    db.update(
+                            MEDICAL_RESOURCE_TABLE_NAME,
+                            contentValues,
+                            /* whereClause= */ null,
+                            /* whereArgs= */ null);
+                });
+        assertThat(readFhirDataTypes()).containsExactly(Cursor.FIELD_TYPE_STRING);
+
+        mTransactionManager.runAsTransaction(MedicalResourceHelper::applyCompressionUpgrade);
+
+        assertThat(readFhirDataTypes()).containsExactly(Cursor.FIELD_TYPE_BLOB);
+        assertThat(
+                        mMedicalResourceHelper.readMedicalResourcesByIdsWithoutPermissionChecks(
+                                List.of(resource.getId())))
+                .containsExactly(resource);
+    }
+
     @Test
     @EnableFlags({Flags.FLAG_PHR_READ_MEDICAL_RESOURCES_FIX_QUERY_LIMIT})
     public void getReadTableRequest_usingRequest_correctQuery() {
@@ -2872,6 +3032,29 @@ public class MedicalResourceHelperTest {
         }
     }
 
+    private List<Long> readMedicalResourceRowIds() {
+        List<Long> rowIds = new ArrayList<>();
+        ReadTableRequest readTableRequest = new ReadTableRequest(MEDICAL_RESOURCE_TABLE_NAME);
+        try (Cursor cursor = mTransactionManager.read(readTableRequest)) {
+            while (cursor.moveToNext()) {
+                rowIds.add(getCursorLong(cursor, getPrimaryColumn()));
+            }
+        }
+        return rowIds;
+    }
+
+    /** Returns the type of the stored FHIR data of each medical resource, see {@link Cursor}. */
+    private List<Integer> readFhirDataTypes() {
+        List<Integer> types = new ArrayList<>();
+        ReadTableRequest readTableRequest = new ReadTableRequest(MEDICAL_RESOURCE_TABLE_NAME);
+        try (Cursor cursor = mTransactionManager.read(readTableRequest)) {
+            while (cursor.moveToNext()) {
+                types.add(cursor.getType(cursor.getColumnIndex(FHIR_DATA_COLUMN_NAME)));
+            }
+        }
+        return types;
+    }
+
     private int getMedicalResourcesTableRowCount() {
         ReadTableRequest readTableRequest =
                 new ReadTableRequest(MedicalResourceHelper.getMainTableName());
@@ -18,11 +18,27 @@ package com.android.server.healthconnect.storage.datatypehelpers;
 
 import static android.health.connect.Constants.MAXIMUM_ALLOWED_CURSOR_COUNT;
 import static android.health.connect.PageTokenWrapper.EMPTY_PAGE_TOKEN;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_CYCLING_PEDALING_CADENCE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_HEART_RATE;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_POWER;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_SPEED;
+import static android.health.connect.datatypes.RecordTypeIdentifier.RECORD_TYPE_STEPS_CADENCE;
 
 import static com.android.server.healthconnect.storage.datatypehelpers.BloodPressureRecordHelper.BLOOD_PRESSURE_RECORD_TABLE_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.APP_INFO_ID_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.CLIENT_RECORD_ID_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.DEVICE_INFO_ID_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.LAST_MODIFIED_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.PRIMARY_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.UUID_COLUMN_NAME;
 import static com.android.server.healthconnect.storage.datatypehelpers.StepsRecordHelper.STEPS_TABLE_NAME;
 import static com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils.createBloodPressureRecord;
 import static com.android.server.healthconnect.storage.datatypehelpers.TransactionTestUtils.createStepsRecord;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorDouble;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorInt;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorLong;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorString;
+import static com.android.server.healthconnect.storage.utils.StorageUtils.getCursorUUID;
 import static com.android.server.healthconnect.storage.utils.WhereClauses.LogicalOperator.AND;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -39,13 +55,28 @@ import android.health.connect.TimeInstantRangeFilter;
 import android.health.connect.aidl.ReadRecordsRequestParcel;
 import android.health.connect.datatypes.StepsRecord;
 import android.health.connect.internal.datatypes.BloodPressureRecordInternal;
+import android.health.connect.internal.datatypes.CyclingPedalingCadenceRecordInternal;
+import android.health.connect.internal.datatypes.CyclingPedalingCadenceRecordInternal.CyclingPedalingCadenceRecordSample;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal;
+import android.health.connect.internal.datatypes.HeartRateRecordInternal.HeartRateSample;
+import android.health.connect.internal.datatypes.PowerRecordInternal;
+import android.health.connect.internal.datatypes.PowerRecordInternal.PowerRecordSample;
 import android.health.connect.internal.datatypes.RecordInternal;
+import android.health.connect.internal.datatypes.SeriesRecordInternal;
+import android.health.connect.internal.datatypes.SpeedRecordInternal;
+import android.health.connect.internal.datatypes.SpeedRecordInternal.SpeedRecordSample;
+import android.health.connect.internal.datatypes.StepsCadenceRecordInternal;
+import android.health.connect.internal.datatypes.StepsCadenceRecordInternal.StepsCadenceRecordSample;
 import android.health.connect.internal.datatypes.StepsRecordInternal;
+import android.health.connect.internal.datatypes.utils.HealthConnectMappings;
+import android.platform.test.annotations.EnableFlags;
+import android.platform.test.flag.junit.SetFlagsRule;
 import android.util.Pair;
 
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.android.healthfitness.flags.Flags;
 import com.android.modules.utils.testing.ExtendedMockitoRule;
 import com.android.server.healthconnect.EnvironmentFixture;
 import com.android.server.healthconnect.SQLiteDatabaseFixture;
@@ -54,6 +85,7 @@ import com.android.server.healthconnect.injector.HealthConnectInjectorImpl;
 import com.android.server.healthconnect.permission.FirstGrantTimeManager;
 import com.android.server.healthconnect.permission.HealthPermissionIntentAppsTracker;
 import com.android.server.healthconnect.storage.TransactionManager;
+import com.android.server.healthconnect.storage.request.DeleteTableRequest;
 import com.android.server.healthconnect.storage.request.ReadTableRequest;
 import com.android.server.healthconnect.storage.utils.OrderByClause;
 import com.android.server.healthconnect.storage.utils.WhereClauses;
@@ -66,6 +98,7 @@ import org.mockito.quality.Strictness;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -74,6 +107,9 @@ import java.util.UUID;
 public class RecordHelperTest {
     private static final String TEST_PACKAGE_NAME = "package.name";
 
+    @Rule(order = 0)
+    public final SetFlagsRule mSetFlagsRule = new SetFlagsRule();
+
     @Rule(order = 1)
     public final ExtendedMockitoRule mExtendedMockitoRule =
             new ExtendedMockitoRule.Builder(this)
@@ -318,6 +354,204 @@ public class RecordHelperTest {
         }
     }
 
+    @Test
+    @EnableFlags({
+        Flags.FLAG_KEYSET_PAGE_TOKENS,
+        Flags.FLAG_KEYSET_PAGE_TOKENS_DB,
+        Flags.FLAG_PACKED_SERIES_SAMPLES_DB,
+        Flags.FLAG_AGGREGATE_ROLLUPS_DB,
+        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+        Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+        Flags.FLAG_ACTIVITY_INTENSITY_DB
+    })
+    public void getNextInternalRecordsPageAndToken_rowIdPageToken_correctResults() {
+        RecordHelper<?> helper = new StepsRecordHelper();
+        int pageSize = 2;
+        boolean isAscending = false;
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                // in page 3
+                createStepsRecord("id1", 3000, 4000, 100),
+                // in page 2
+                createStepsRecord("id2", 4000, 5000, 100),
+                // in page 1
+                createStepsRecord("id3", 5000, 6000, 100),
+                createStepsRecord("id4", 5000, 7000, 100),
+                // in page 2
+                createStepsRecord("id5", 4000, 6000, 100));
+
+        ReadRecordsRequestUsingFilters<StepsRecord> readRequest1 =
+                new ReadRecordsRequestUsingFilters.Builder<>(StepsRecord.class)
+                        .setAscending(isAscending)
+                        .setPageSize(pageSize)
+                        .build();
+        PageTokenWrapper pageToken;
+        try (Cursor cursor =
+                mTransactionManager.read(
+                        getReadTableRequest(helper, readRequest1.toReadRecordsRequestParcel()))) {
+            Pair<List<RecordInternal<?>>, PageTokenWrapper> page1 =
+                    helper.getNextInternalRecordsPageAndToken(
+                            mDeviceInfoHelper,
+                            cursor,
+                            pageSize,
+                            PageTokenWrapper.ofAscending(isAscending),
+                            mAppInfoHelper);
+            assertThat(page1.first).hasSize(2);
+            assertThat(page1.first.get(0).getClientRecordId()).isEqualTo("id3");
+            assertThat(page1.first.get(1).getClientRecordId()).isEqualTo("id4");
+            pageToken = page1.second;
+            assertThat(pageToken.isRowIdSet()).isTrue();
+            assertThat(pageToken.isAscending()).isEqualTo(isAscending);
+        }
+
+        ReadRecordsRequestUsingFilters<StepsRecord> readRequest2 =
+                new ReadRecordsRequestUsingFilters.Builder<>(StepsRecord.class)
+                        .setPageSize(pageSize)
+                        .setPageToken(pageToken.encode())
+                        .build();
+        try (Cursor cursor =
+                mTransactionManager.read(
+                        getReadTableRequest(helper, readRequest2.toReadRecordsRequestParcel()))) {
+            Pair<List<RecordInternal<?>>, PageTokenWrapper> page2 =
+                    helper.getNextInternalRecordsPageAndToken(
+                            mDeviceInfoHelper, cursor, pageSize, pageToken, mAppInfoHelper);
+            // Records of the same start time are in the order they were inserted.
+            assertThat(page2.first).hasSize(2);
+            assertThat(page2.first.get(0).getClientRecordId()).isEqualTo("id2");
+            assertThat(page2.first.get(1).getClientRecordId()).isEqualTo("id5");
+            assertThat(page2.second.isRowIdSet()).isTrue();
+        }
+    }
+
+    @Test
+    @EnableFlags({
+        Flags.FLAG_KEYSET_PAGE_TOKENS,
+        Flags.FLAG_KEYSET_PAGE_TOKENS_DB,
+        Flags.FLAG_PACKED_SERIES_SAMPLES_DB,
+        Flags.FLAG_AGGREGATE_ROLLUPS_DB,
+        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+        Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+        Flags.FLAG_ACTIVITY_INTENSITY_DB
+    })
+    public void getNextInternalRecordsPageAndToken_rowIdPageTokenRecordDeleted_correctResults() {
+        RecordHelper<?> helper = new StepsRecordHelper();
+        int pageSize = 2;
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                createStepsRecord("id1", 3000, 4000, 100),
+                createStepsRecord("id2", 4000, 5000, 100),
+                createStepsRecord("id3", 4000, 6000, 100),
+                createStepsRecord("id4", 4000, 7000, 100),
+                createStepsRecord("id5", 5000, 6000, 100));
+
+        ReadRecordsRequestUsingFilters<StepsRecord> readRequest1 =
+                new ReadRecordsRequestUsingFilters.Builder<>(StepsRecord.class)
+                        .setAscending(true)
+                        .setPageSize(pageSize)
+                        .build();
+        PageTokenWrapper pageToken;
+        try (Cursor cursor =
+                mTransactionManager.read(
+                        getReadTableRequest(helper, readRequest1.toReadRecordsRequestParcel()))) {
+            Pair<List<RecordInternal<?>>, PageTokenWrapper> page1 =
+                    helper.getNextInternalRecordsPageAndToken(
+                            mDeviceInfoHelper,
+                            cursor,
+                            pageSize,
+                            PageTokenWrapper.ofAscending(true),
+                            mAppInfoHelper);
+            assertThat(page1.first).hasSize(2);
+            assertThat(page1.first.get(0).getClientRecordId()).isEqualTo("id1");
+            assertThat(page1.first.get(1).getClientRecordId()).isEqualTo("id2");
+            pageToken = page1.second;
+            assertThat(pageToken.isRowIdSet()).isTrue();
+        }
+
+        // Delete the first record of the next page, which the page token points at.
+        mTransactionManager.delete(
+                new DeleteTableRequest(STEPS_TABLE_NAME)
+                        .setId(CLIENT_RECORD_ID_COLUMN_NAME, "id3"));
+
+        ReadRecordsRequestUsingFilters<StepsRecord> readRequest2 =
+                new ReadRecordsRequestUsingFilters.Builder<>(StepsRecord.class)
+                        .setPageSize(pageSize)
+                        .setPageToken(pageToken.encode())
+                        .build();
+        try (Cursor cursor =
+                mTransactionManager.read(
+                        getReadTableRequest(helper, readRequest2.toReadRecordsRequestParcel()))) {
+            Pair<List<RecordInternal<?>>, PageTokenWrapper> page2 =
+                    helper.getNextInternalRecordsPageAndToken(
+                            mDeviceInfoHelper, cursor, pageSize, pageToken, mAppInfoHelper);
+            assertThat(page2.first).hasSize(2);
+            assertThat(page2.first.get(0).getClientRecordId()).isEqualTo("id4");
+            assertThat(page2.first.get(1).getClientRecordId()).isEqualTo("id5");
+            assertThat(page2.second).isEqualTo(EMPTY_PAGE_TOKEN);
+        }
+    }
+
+    @Test
+    @EnableFlags({
+        Flags.FLAG_KEYSET_PAGE_TOKENS,
+        Flags.FLAG_KEYSET_PAGE_TOKENS_DB,
+        Flags.FLAG_PACKED_SERIES_SAMPLES_DB,
+        Flags.FLAG_AGGREGATE_ROLLUPS_DB,
+        Flags.FLAG_ECOSYSTEM_METRICS_DB_CHANGES,
+        Flags.FLAG_PERSONAL_HEALTH_RECORD_DATABASE,
+        Flags.FLAG_ACTIVITY_INTENSITY_DB
+    })
+    public void getNextInternalRecordsPageAndToken_rowIdsAboveTokenBits_correctResults() {
+        RecordHelper<?> helper = new StepsRecordHelper();
+        int pageSize = 2;
+        mTransactionTestUtils.insertRecords(
+                TEST_PACKAGE_NAME,
+                createStepsRecord("id1", 4000, 5000, 100),
+                createStepsRecord("id2", 4000, 6000, 100),
+                createStepsRecord("id3", 4000, 7000, 100),
+                createStepsRecord("id4", 4000, 8000, 100),
+                createStepsRecord("id5", 4000, 9000, 100));
+        // Move the row ids to 2^17 - 2 .. 2^17 + 2, so that the records of the same start time
+        // have row ids above the bits of the page token, on both sides of a multiple of them.
+        mTransactionManager.runAsTransaction(
+                db ->
+                        db.execSQL(
+                                "UPDATE "
+                                        + STEPS_TABLE_NAME
+                                        + " SET row_id = row_id + "
+                                        + ((1L << 17) - 3)));
+
+        List<String> clientRecordIds = new ArrayList<>();
+        PageTokenWrapper pageToken = PageTokenWrapper.ofAscending(true);
+        for (int page = 0; page < 3; page++) {
+            ReadRecordsRequestUsingFilters.Builder<StepsRecord> readRequest =
+                    new ReadRecordsRequestUsingFilters.Builder<>(StepsRecord.class)
+                            .setPageSize(pageSize);
+            if (page == 0) {
+                readRequest.setAscending(true);
+            } else {
+                readRequest.setPageToken(pageToken.encode());
+            }
+            try (Cursor cursor =
+                    mTransactionManager.read(
+                            getReadTableRequest(
+                                    helper, readRequest.build().toReadRecordsRequestParcel()))) {
+                Pair<List<RecordInternal<?>>, PageTokenWrapper> result =
+                        helper.getNextInternalRecordsPageAndToken(
+                                mDeviceInfoHelper, cursor, pageSize, pageToken, mAppInfoHelper);
+                for (RecordInternal<?> record : result.first) {
+                    clientRecordIds.add(record.getClientRecordId());
+                }
+                pageToken = result.second;
+            }
+            if (page < 2) {
+                assertThat(pageToken.isRowIdSet()).isTrue();
+            }
+        }
+
+        assertThat(clientRecordIds).containsExactly("id1", "id2", "id3", "id4", "id5").inOrder();
+        assertThat(pageToken).isEqualTo(EMPTY_PAGE_TOKEN);
+    }
+
     @Test
     public void getNextInternalRecordsPageAndToken_wrongOffsetPageToken_skipSameStartTimeRecords() {
         RecordHelper<?> helper = new StepsRecordHelper();
@@ -384,6 +618,193 @@ public class RecordHelperTest {
         }
     }
 
+    @Test
+    public void getInternalRecords_cachedColumnIndexes_sameAsReadingColumnsByName()
+            throws Exception {
+        assertDecodedSameAsReadingColumnsByName(
+                new StepsRecordHelper(),
+                createStepsRecord("id1", 4000, 5000, 100),
+                createStepsRecord("id2", 6000, 7000, 200));
+        assertDecodedSameAsReadingColumnsByName(
+                new BloodPressureRecordHelper(),
+                createBloodPressureRecord(4000, 120, 80),
+                createBloodPressureRecord(6000, 110, 70));
+    }
+
+    @Test
+    public void getInternalRecords_seriesCachedColumnIndexes_sameAsReadingColumnsByName()
+            throws Exception {
+        assertDecodedSameAsReadingColumnsByName(
+                new HeartRateRecordHelper(),
+                createSeriesRecord(
+                        new HeartRateRecordInternal(),
+                        4000,
+                        new HeartRateSample(70, 4100),
+                        new HeartRateSample(72, 4200)),
+                createSeriesRecord(
+                        new HeartRateRecordInternal(), 6000, new HeartRateSample(80, 6100)));
+        assertDecodedSameAsReadingColumnsByName(
+                new PowerRecordHelper(),
+                createSeriesRecord(
+                        new PowerRecordInternal(),
+                        4000,
+                        new PowerRecordSample(200, 4100),
+                        new PowerRecordSample(210, 4200)),
+                createSeriesRecord(
+                        new PowerRecordInternal(), 6000, new PowerRecordSample(150, 6100)));
+        assertDecodedSameAsReadingColumnsByName(
+                new SpeedRecordHelper(),
+                createSeriesRecord(
+                        new SpeedRecordInternal(),
+                        4000,
+                        new SpeedRecordSample(3, 4100),
+                        new SpeedRecordSample(3.5, 4200)),
+                createSeriesRecord(
+                        new SpeedRecordInternal(), 6000, new SpeedRecordSample(2, 6100)));
+        assertDecodedSameAsReadingColumnsByName(
+                new StepsCadenceRecordHelper(),
+                createSeriesRecord(
+                        new StepsCadenceRecordInternal(),
+                        4000,
+                        new StepsCadenceRecordSample(160, 4100),
+                        new StepsCadenceRecordSample(165, 4200)),
+                createSeriesRecord(
+                        new StepsCadenceRecordInternal(),
+                        6000,
+                        new StepsCadenceRecordSample(150, 6100)));
+        assertDecodedSameAsReadingColumnsByName(
+                new CyclingPedalingCadenceRecordHelper(),
+                createSeriesRecord(
+                        new CyclingPedalingCadenceRecordInternal(),
+                        4000,
+                        new CyclingPedalingCadenceRecordSample(80, 4100),
+                        new CyclingPedalingCadenceRecordSample(85, 4200)),
+                createSeriesRecord(
+                        new CyclingPedalingCadenceRecordInternal(),
+                        6000,
+                        new CyclingPedalingCadenceRecordSample(90, 6100)));
+    }
+
+    /**
+     * Inserts {@code records}, then checks that {@link RecordHelper#getInternalRecords} reads them
+     * the same as looking up every column by name for each row, as it did before the column
+     * indexes were resolved once per cursor.
+     */
+    private void assertDecodedSameAsReadingColumnsByName(
+            RecordHelper<?> helper, RecordInternal<?>... records) throws Exception {
+        List<UUID> uuids =
+                mTransactionTestUtils.insertRecords(TEST_PACKAGE_NAME, records).stream()
+                        .map(UUID::fromString)
+                        .toList();
+        ReadTableRequest request =
+                helper.getReadTableRequest(
+                        TEST_PACKAGE_NAME,
+                        uuids,
+                        /* startDateAccess= */ 0,
+                        /* grantedExtraReadPermissions= */ Set.of(),
+                        /* isInForeground= */ true,
+                        mAppInfoHelper);
+        List<RecordInternal<?>> expected;
+        List<RecordInternal<?>> actual;
+        try (Cursor cursor = mTransactionManager.read(request)) {
+            expected = getInternalRecordsByColumnName(helper, cursor);
+            cursor.moveToPosition(-1);
+            actual = helper.getInternalRecords(cursor, mDeviceInfoHelper, mAppInfoHelper);
+        }
+
+        assertThat(actual).hasSize(records.length);
+        assertThat(expected).hasSize(records.length);
+        for (int i = 0; i < records.length; i++) {
+            assertThat(actual.get(i).toExternalRecord())
+                    .isEqualTo(expected.get(i).toExternalRecord());
+            assertThat(actual.get(i).getRowId()).isEqualTo(expected.get(i).getRowId());
+            assertThat(actual.get(i).getLastModifiedTime())
+                    .isEqualTo(expected.get(i).getLastModifiedTime());
+            assertThat(actual.get(i).getAppInfoId()).isEqualTo(expected.get(i).getAppInfoId());
+        }
+    }
+
+    @SuppressWarnings("unchecked") // uncheck cast to T
+    private <T extends RecordInternal<?>> List<RecordInternal<?>> getInternalRecordsByColumnName(
+            RecordHelper<T> helper, Cursor cursor) throws Exception {
+        List<RecordInternal<?>> records = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            T record =
+                    (T)
+                            HealthConnectMappings.getInstance()
+                                    .getRecordIdToInternalRecordClassMap()
+                                    .get(helper.getRecordIdentifier())
+                                    .getConstructor()
+                                    .newInstance();
+            record.setUuid(getCursorUUID(cursor, UUID_COLUMN_NAME));
+            record.setLastModifiedTime(getCursorLong(cursor, LAST_MODIFIED_TIME_COLUMN_NAME));
+            record.setClientRecordId(getCursorString(cursor, CLIENT_RECORD_ID_COLUMN_NAME));
+            record.setClientRecordVersion(getCursorLong(cursor, "client_record_version"));
+            record.setRecordingMethod(getCursorInt(cursor, "recording_method"));
+            record.setRowId(getCursorInt(cursor, PRIMARY_COLUMN_NAME));
+            mDeviceInfoHelper.populateRecordWithValue(
+                    getCursorLong(cursor, DEVICE_INFO_ID_COLUMN_NAME), record);
+            long appInfoId = getCursorLong(cursor, APP_INFO_ID_COLUMN_NAME);
+            record.setPackageName(mAppInfoHelper.getPackageName(appInfoId));
+            int position = cursor.getPosition();
+            helper.populateRecordValue(cursor, record);
+            if (record instanceof SeriesRecordInternal<?, ?> seriesRecord) {
+                // Read the samples again from the first row of the record, by column name.
+                int lastPosition = cursor.getPosition();
+                cursor.moveToPosition(position);
+                seriesRecord.setSamples(
+                        getSamplesByColumnName(cursor, helper.getRecordIdentifier()));
+                assertThat(cursor.getPosition()).isEqualTo(lastPosition);
+            }
+            record.setAppInfoId(appInfoId);
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static Set<SeriesRecordInternal.Sample> getSamplesByColumnName(
+            Cursor cursor, int recordType) {
+        Set<SeriesRecordInternal.Sample> samples = new HashSet<>();
+        UUID uuid = getCursorUUID(cursor, UUID_COLUMN_NAME);
+        do {
+            long epochMillis = getCursorLong(cursor, "epoch_millis");
+            switch (recordType) {
+                case RECORD_TYPE_HEART_RATE ->
+                        samples.add(
+                                new HeartRateSample(
+                                        getCursorInt(cursor, "beats_per_minute"), epochMillis));
+                case RECORD_TYPE_POWER ->
+                        samples.add(
+                                new PowerRecordSample(
+                                        getCursorDouble(cursor, "power"), epochMillis));
+                case RECORD_TYPE_SPEED ->
+                        samples.add(
+                                new SpeedRecordSample(
+                                        getCursorDouble(cursor, "speed"), epochMillis));
+                case RECORD_TYPE_STEPS_CADENCE ->
+                        samples.add(
+                                new StepsCadenceRecordSample(
+                                        getCursorDouble(cursor, "rate"), epochMillis));
+                case RECORD_TYPE_CYCLING_PEDALING_CADENCE ->
+                        samples.add(
+                                new CyclingPedalingCadenceRecordSample(
+                                        getCursorDouble(cursor, "revolutions_per_minute"),
+                                        epochMillis));
+                default -> throw new AssertionError("Not a series record type: " + recordType);
+            }
+        } while (cursor.moveToNext() && uuid.equals(getCursorUUID(cursor, UUID_COLUMN_NAME)));
+        cursor.moveToPrevious();
+        return samples;
+    }
+
+    private static RecordInternal<?> createSeriesRecord(
+            SeriesRecordInternal<?, ?> record,
+            long startTimeMillis,
+            SeriesRecordInternal.Sample... samples) {
+        record.setSamples(Set.of(samples));
+        return record.setStartTime(startTimeMillis).setEndTime(startTimeMillis + 1000);
+    }
+
     private ReadTableRequest getReadTableRequest(
             RecordHelper<?> helper, ReadRecordsRequestParcel request) {
         return helper.getReadTableRequest(
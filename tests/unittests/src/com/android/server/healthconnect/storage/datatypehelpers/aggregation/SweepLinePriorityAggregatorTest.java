@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.android.server.healthconnect.storage.datatypehelpers.aggregation;
+
+import static android.health.connect.datatypes.ActivityIntensityRecord.ACTIVITY_INTENSITY_TYPE_MODERATE;
+import static android.health.connect.datatypes.ActivityIntensityRecord.ACTIVITY_INTENSITY_TYPE_VIGOROUS;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.ACTIVITY_INTENSITY_MINUTES_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.SLEEP_SESSION_DURATION_TOTAL;
+import static android.health.connect.datatypes.AggregationType.AggregationTypeIdentifier.STEPS_RECORD_COUNT_TOTAL;
+
+import static com.android.server.healthconnect.storage.datatypehelpers.IntervalRecordHelper.END_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.IntervalRecordHelper.START_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.IntervalRecordHelper.START_ZONE_OFFSET_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.APP_INFO_ID_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.LAST_MODIFIED_TIME_COLUMN_NAME;
+import static com.android.server.healthconnect.storage.datatypehelpers.RecordHelper.UUID_COLUMN_NAME;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.database.MatrixCursor;
+
+import com.android.server.healthconnect.storage.datatypehelpers.ActivityIntensityRecordHelper;
+import com.android.server.healthconnect.storage.request.AggregateParams;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class SweepLinePriorityAggregatorTest {
+    private static final String STEPS_COLUMN = "count";
+    private static final String STAGE_START_COLUMN = "stage_start_time";
+    private static final String STAGE_END_COLUMN = "stage_end_time";
+    private static final String[] COLUMNS = {
+        START_TIME_COLUMN_NAME,
+        END_TIME_COLUMN_NAME,
+        LAST_MODIFIED_TIME_COLUMN_NAME,
+        START_ZONE_OFFSET_COLUMN_NAME,
+        APP_INFO_ID_COLUMN_NAME,
+        UUID_COLUMN_NAME,
+        STEPS_COLUMN,
+        STAGE_START_COLUMN,
+        STAGE_END_COLUMN,
+        ActivityIntensityRecordHelper.TYPE_COLUMN_NAME
+    };
+    private static final long HIGH_PRIORITY_APP = 2;
+    private static final long LOW_PRIORITY_APP = 1;
+    private static final long NO_PRIORITY_APP = 3;
+    private static final List<Long> PRIORITY_LIST = List.of(HIGH_PRIORITY_APP, LOW_PRIORITY_APP);
+    private static final AggregateParams.PriorityAggregationExtraParams STEPS_PARAMS =
+            new AggregateParams.PriorityAggregationExtraParams(STEPS_COLUMN, Long.class);
+    private static final AggregateParams.PriorityAggregationExtraParams SESSION_PARAMS =
+            new AggregateParams.PriorityAggregationExtraParams(
+                    STAGE_START_COLUMN, STAGE_END_COLUMN);
+
+    private final MatrixCursor mCursor = new MatrixCursor(COLUMNS);
+    private int mNextUuid;
+
+    @Test
+    public void testNoRecords_resultsAreNull() {
+        SweepLinePriorityAggregator aggregator = createStepsAggregator(List.of(10L, 20L));
+
+        aggregator.calculateAggregation(mCursor);
+
+        assertThat(aggregator.getResultForGroup(0)).isNull();
+        assertThat(aggregator.getZoneOffsetForGroup(0)).isNull();
+    }
+
+    @Test
+    public void testStepsOverlapBetweenGroups_higherPriorityAccounted() {
+        addSteps(15, 27, 12, LOW_PRIORITY_APP, 10);
+        addSteps(19, 30, 110, HIGH_PRIORITY_APP, 10);
+        SweepLinePriorityAggregator aggregator = createStepsAggregator(List.of(10L, 20L, 30L, 40L));
+
+        aggregator.calculateAggregation(mCursor);
+
+        assertThat(aggregator.getResultForGroup(0)).isEqualTo(4 + 10);
+        assertThat(aggregator.getResultForGroup(1)).isEqualTo(100);
+        assertThat(aggregator.getResultForGroup(2)).isNull();
+    }
+
+    @Test
+    public void testStepsSamePriority_latestModifiedRecordAccounted() {
+        addSteps(10, 17, 7, LOW_PRIORITY_APP, 10);
+        addSteps(12, 20, 80, LOW_PRIORITY_APP, 1);
+        SweepLinePriorityAggregator aggregator = createStepsAggregator(List.of(10L, 20L));
+
+        aggregator.calculateAggregation(mCursor);
+
+        assertThat(aggregator.getResultForGroup(0)).isEqualTo(7.0 + 30.0);
+    }
+
+    @Test
+    public void testStepsFromAppWithoutPriority_notAccounted() {
+        addSteps(10, 20, 10, NO_PRIORITY_APP, 1);
+        SweepLinePriorityAggregator aggregator = createStepsAggregator(List.of(10L, 20L));
+
+        aggregator.calculateAggregation(mCursor);
+
+        assertThat(aggregator.getResultForGroup(0)).isNull();
+    }
+
+    @Test
+    public void testInstantStepsRecordsWithSameTime_highestPriorityAccountedOnce() {
+        addSteps(15, 15, 10, LOW_PRIORITY_APP, 10);
+        addSteps(15, 15, 20, HIGH_PRIORITY_APP, 20);
+        SweepLinePriorityAggregator aggregator = createStepsAggregator(List.of(10L, 20L));
+
+        aggregator.calculateAggregation(mCursor);
+
+        assertThat(aggregator.getResultForGroup(0)).isEqualTo(20);
+    }
+
+    @Test
+    public void testStepsRecordStartAfterEnd_skipped() {
+        addSteps(18, 12, 10, HIGH_PRIORITY_APP, 1);
+        SweepLinePriorityAggregator aggregator = createStepsAggregator(List.of(10L, 20L));
+
+        aggregator.calculateAggregation(mCursor);
+
+        assertThat(aggregator.getResultForGroup(0)).isNull();
+    }
+
+    @Test
+    public void testZoneOffset_takenFromEarliestOpenInterval() {
+        addRow(12, 18, 1, 3600, HIGH_PRIORITY_APP, newUuid(), 10, null, null, 0);
+        addRow(14, 16, 1, 7200, LOW_PRIORITY_APP, newUuid(), 10, null, null, 0);
+        SweepLinePriorityAggregator aggregator = createStepsAggregator(List.of(10L, 20L));
+
+        aggregator.calculateAggregation(mCursor);
+
+        assertThat(aggregator.getZoneOffsetForGroup(0)).isEqualTo(ZoneOffset.ofHours(1));
+    }
+
+    @Test
+    public void testSessionWithStages_awakeStagesExcluded() {
+        byte[] uuid = newUuid();
+        addRow(10, 30, 1, 0, HIGH_PRIORITY_APP, uuid, 0, 12L, 14L, 0);
+        addRow(10, 30, 1, 0, HIGH_PRIORITY_APP, uuid, 0, 20L, 25L, 0);
+        addRow(18, 22, 1, 0, LOW_PRIORITY_APP, newUuid(), 0, null, null, 0);
+        SweepLinePriorityAggregator aggregator =
+                new SweepLinePriorityAggregator(
+                        List.of(10L, 20L, 30L),
+                        PRIORITY_LIST,
+                        SLEEP_SESSION_DURATION_TOTAL,
+                        SESSION_PARAMS,
+                        /* useLocalTime= */ false);
+
+        aggregator.calculateAggregation(mCursor);
+
+        assertThat(aggregator.getResultForGroup(0)).isEqualTo(10 - 2);
+        assertThat(aggregator.getResultForGroup(1)).isEqualTo(10 - 5);
+    }
+
+    @Test
+    public void testActivityIntensityMinutes_vigorousCountedTwice() {
+        long minute = 60_000;
+        addRow(
+                0,
+                10 * minute,
+                1,
+                0,
+                HIGH_PRIORITY_APP,
+                newUuid(),
+                0,
+                null,
+                null,
+                ACTIVITY_INTENSITY_TYPE_MODERATE);
+        addRow(
+                10 * minute,
+                15 * minute,
+                1,
+                0,
+                HIGH_PRIORITY_APP,
+                newUuid(),
+                0,
+                null,
+                null,
+                ACTIVITY_INTENSITY_TYPE_VIGOROUS);
+        SweepLinePriorityAggregator aggregator =
+                new SweepLinePriorityAggregator(
+                        List.of(0L, 60 * minute),
+                        PRIORITY_LIST,
+                        ACTIVITY_INTENSITY_MINUTES_TOTAL,
+                        STEPS_PARAMS,
+                        /* useLocalTime= */ false);
+
+        aggregator.calculateAggregation(mCursor);
+
+        assertThat(aggregator.getResultForGroup(0)).isEqualTo(10 + 2 * 5);
+    }
+
+    @Test
+    public void testRandomSteps_sameResultAsPriorityRecordsAggregator() {
+        Random random = new Random(/* seed= */ 42);
+        for (int iteration = 0; iteration < 200; iteration++) {
+            MatrixCursor cursor = new MatrixCursor(COLUMNS);
+            List<long[]> records = new ArrayList<>();
+            int numberOfRecords = random.nextInt(30);
+            for (int i = 0; i < numberOfRecords; i++) {
+                long start = random.nextInt(100);
+                records.add(new long[] {start, start + random.nextInt(20)});
+            }
+            records.sort(Comparator.comparingLong(record -> record[0]));
+            for (long[] record : records) {
+                cursor.addRow(
+                        new Object[] {
+                            record[0],
+                            record[1],
+                            random.nextInt(3),
+                            0,
+                            1 + random.nextInt(3),
+                            newUuid(),
+                            random.nextInt(100),
+                            null,
+                            null,
+                            0
+                        });
+            }
+            List<Long> splits = List.of(0L, 25L, 50L, 75L, 100L, 125L);
+
+            PriorityRecordsAggregator expected =
+                    new PriorityRecordsAggregator(
+                            splits, PRIORITY_LIST, STEPS_RECORD_COUNT_TOTAL, STEPS_PARAMS, false);
+            expected.calculateAggregation(cursor);
+            cursor.moveToPosition(-1);
+            SweepLinePriorityAggregator actual = createStepsAggregator(splits);
+            actual.calculateAggregation(cursor);
+
+            for (int group = 0; group < splits.size() - 1; group++) {
+                if (expected.getResultForGroup(group) == null) {
+                    assertThat(actual.getResultForGroup(group)).isNull();
+                } else {
+                    assertThat(actual.getResultForGroup(group))
+                            .isWithin(1e-9)
+                            .of(expected.getResultForGroup(group));
+                }
+            }
+        }
+    }
+
+    private SweepLinePriorityAggregator createStepsAggregator(List<Long> splits) {
+        return new SweepLinePriorityAggregator(
+                splits,
+                PRIORITY_LIST,
+                STEPS_RECORD_COUNT_TOTAL,
+                STEPS_PARAMS,
+                /* useLocalTime= */ false);
+    }
+
+    private void addSteps(long start, long end, long count, long appId, long lastModifiedTime) {
+        addRow(start, end, lastModifiedTime, 0, appId, newUuid(), count, null, null, 0);
+    }
+
+    private void addRow(
+            long start,
+            long end,
+            long lastModifiedTime,
+            int zoneOffsetSeconds,
+            long appId,
+            byte[] uuid,
+            long count,
+            Long stageStart,
+            Long stageEnd,
+            int intensityType) {
+        mCursor.addRow(
+                new Object[] {
+                    start,
+                    end,
+                    lastModifiedTime,
+                    zoneOffsetSeconds,
+                    appId,
+                    uuid,
+                    count,
+                    stageStart,
+                    stageEnd,
+                    intensityType
+                });
+    }
+
+    private byte[] newUuid() {
+        return ByteBuffer.allocate(16).putLong(0).putLong(mNextUuid++).array();
+    }
+}
@@ -66,6 +66,23 @@ public class AlterTableRequestTest {
                         "ALTER TABLE sample_table ADD COLUMN sample_column_2 INTEGER;");
     }
 
+    @Test
+    public void testAlterTableRequest_getCreateIndexStatements_indexesForeignKeyColumns() {
+        List<Pair<String, String>> columnInfo =
+                List.of(
+                        Pair.create(COLUMN_NAME_1, COLUMN_TYPE),
+                        Pair.create(COLUMN_NAME_2, COLUMN_TYPE));
+
+        AlterTableRequest alterTableRequest =
+                new AlterTableRequest(TABLE_NAME, columnInfo)
+                        .addForeignKeyConstraint(COLUMN_NAME_2, "other_table", "uuid");
+
+        assertThat(alterTableRequest.getCreateIndexStatements())
+                .containsExactly(
+                        "CREATE INDEX IF NOT EXISTS idx_sample_table_sample_column_2"
+                                + " ON sample_table(sample_column_2)");
+    }
+
     @Test
     public void testAlterTableRequest_notNullColumnUsed_expectException() {
         List<Pair<String, String>> columnInfo = List.of(Pair.create(COLUMN_NAME_1, TEXT_NOT_NULL));
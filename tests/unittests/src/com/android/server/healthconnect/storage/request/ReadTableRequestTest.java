@@ -16,6 +16,8 @@
 
 package com.android.server.healthconnect.storage.request;
 
+import static com.android.server.healthconnect.storage.utils.WhereClauses.LogicalOperator.AND;
+
 import static com.google.common.truth.Truth.assertThat;
 
 import static org.junit.Assert.assertThrows;
@@ -24,6 +26,8 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 
 import com.android.server.healthconnect.storage.utils.OrderByClause;
 import com.android.server.healthconnect.storage.utils.SqlJoin;
+import com.android.server.healthconnect.storage.utils.SqlWithArgs;
+import com.android.server.healthconnect.storage.utils.WhereClauses;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -306,4 +310,42 @@ public class ReadTableRequestTest {
                         "SELECT COUNT(*) FROM (SELECT * FROM (SELECT col FROM otherTableName) UNION"
                                 + " ALL SELECT col FROM tableName)");
     }
+
+    @Test
+    public void testGetReadCommandWithArgs_whereClause() {
+        ReadTableRequest request =
+                new ReadTableRequest("tableName")
+                        .setWhereClause(
+                                new WhereClauses(AND)
+                                        .addWhereEqualsClause("col", "value")
+                                        .addWhereGreaterThanOrEqualClause("time", 5))
+                        .setLimit(10);
+
+        SqlWithArgs command = request.getReadCommandWithArgs();
+
+        assertThat(command.getSql())
+                .isEqualTo("SELECT * FROM tableName WHERE col = ? AND time >= ? LIMIT 10");
+        assertThat(command.getArgs()).asList().containsExactly("value", 5L).inOrder();
+    }
+
+    @Test
+    public void testGetCountCommandWithArgs_unionQuery() {
+        ReadTableRequest request =
+                new ReadTableRequest("tableName")
+                        .setColumnNames(List.of("col"))
+                        .setWhereClause(new WhereClauses(AND).addWhereLessThanClause("col", 2));
+        ReadTableRequest unionRequest =
+                new ReadTableRequest("otherTableName")
+                        .setColumnNames(List.of("col"))
+                        .setWhereClause(new WhereClauses(AND).addWhereGreaterThanClause("col", 1));
+        request.setUnionReadRequests(List.of(unionRequest));
+
+        SqlWithArgs command = request.getCountCommandWithArgs();
+
+        assertThat(command.getSql())
+                .isEqualTo(
+                        "SELECT COUNT(*) FROM (SELECT * FROM (SELECT col FROM otherTableName WHERE"
+                                + " col > ?) UNION ALL SELECT col FROM tableName WHERE col < ?)");
+        assertThat(command.getArgs()).asList().containsExactly(1L, 2L).inOrder();
+    }
 }
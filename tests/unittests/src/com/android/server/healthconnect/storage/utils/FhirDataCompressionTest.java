@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.healthconnect.storage.utils;
+
+import static android.health.connect.datatypes.FhirResource.FHIR_RESOURCE_TYPE_CONDITION;
+import static android.health.connect.datatypes.FhirResource.FHIR_RESOURCE_TYPE_IMMUNIZATION;
+import static android.health.connect.datatypes.FhirResource.FHIR_RESOURCE_TYPE_OBSERVATION;
+import static android.health.connect.datatypes.FhirResource.FHIR_RESOURCE_TYPE_PATIENT;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class FhirDataCompressionTest {
+    private static final String OBSERVATION_DATA =
+            "{\"resourceType\":\"Observation\",\"id\":\"glucose-1\",\"status\":\"final\","
+                    + "\"category\":[{\"coding\":[{\"system\":"
+                    + "\"http://terminology.hl7.org/CodeSystem/observation-category\","
+                    + "\"code\":\"laboratory\",\"display\":\"Laboratory\"}]}],"
+                    + "\"code\":{\"coding\":[{\"system\":\"http://loinc.org\",\"code\":\"2339-0\","
+                    + "\"display\":\"Glucose [Mass/volume] in Blood\"}]},"
+                    + "\"subject\":{\"reference\":\"Patient/patient-1\"},"
+                    + "\"effectiveDateTime\":\"2024-01-02T10:00:00Z\","
+                    + "\"valueQuantity\":{\"value\":95,\"unit\":\"mg/dL\","
+                    + "\"system\":\"http://unitsofmeasure.org\",\"code\":\"mg/dL\"}}";
+
+    @Test
+    public void compress_decompressesSameData() {
+        for (int fhirResourceType :
+                new int[] {
+                    FHIR_RESOURCE_TYPE_OBSERVATION,
+                    FHIR_RESOURCE_TYPE_CONDITION,
+                    FHIR_RESOURCE_TYPE_IMMUNIZATION,
+                    FHIR_RESOURCE_TYPE_PATIENT
+                }) {
+            byte[] compressed = FhirDataCompression.compress(fhirResourceType, OBSERVATION_DATA);
+
+            assertThat(FhirDataCompression.decompress(compressed)).isEqualTo(OBSERVATION_DATA);
+        }
+    }
+
+    @Test
+    public void compress_nonAsciiAndEmptyData_decompressesSameData() {
+        String data = "{\"text\":\"Bluthochdruck überwacht ✓\"}";
+
+        assertThat(
+                        FhirDataCompression.decompress(
+                                FhirDataCompression.compress(FHIR_RESOURCE_TYPE_CONDITION, data)))
+                .isEqualTo(data);
+        assertThat(
+                        FhirDataCompression.decompress(
+                                FhirDataCompression.compress(FHIR_RESOURCE_TYPE_PATIENT, "")))
+                .isEmpty();
+    }
+
+    @Test
+    public void compress_dictionaryOfResourceType_smallerThanCommonDictionary() {
+        byte[] withTypeDictionary =
+                FhirDataCompression.compress(FHIR_RESOURCE_TYPE_OBSERVATION, OBSERVATION_DATA);
+        byte[] withCommonDictionary =
+                FhirDataCompression.compress(FHIR_RESOURCE_TYPE_PATIENT, OBSERVATION_DATA);
+
+        assertThat(withTypeDictionary.length).isLessThan(withCommonDictionary.length);
+        // The dictionary leaves little more than the values of the resource.
+        assertThat(withTypeDictionary.length)
+                .isLessThan(OBSERVATION_DATA.getBytes(StandardCharsets.UTF_8).length / 3);
+    }
+
+    @Test
+    public void decompress_invalidData_throws() {
+        byte[] compressed =
+                FhirDataCompression.compress(FHIR_RESOURCE_TYPE_OBSERVATION, OBSERVATION_DATA);
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length - 4);
+        byte[] wrongDictionary = compressed.clone();
+        wrongDictionary[1]++;
+        byte[] unknownFormat = compressed.clone();
+        unknownFormat[0] = 0;
+
+        assertThrows(
+                IllegalArgumentException.class, () -> FhirDataCompression.decompress(truncated));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> FhirDataCompression.decompress(wrongDictionary));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> FhirDataCompression.decompress(unknownFormat));
+        assertThrows(
+                IllegalArgumentException.class, () -> FhirDataCompression.decompress(new byte[1]));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.android.server.healthconnect.storage.utils;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PackedSeriesSamplesTest {
+    @Test
+    public void packLongValues_unpacksSameSamples() {
+        long[] epochMillis = {1_700_000_000_000L, 1_700_000_001_000L, 1_700_000_000_500L};
+        long[] values = {60, 200, -5};
+
+        byte[] packed = PackedSeriesSamples.pack(epochMillis, values);
+
+        List<long[]> samples = unpack(packed);
+        assertThat(samples).hasSize(3);
+        for (int i = 0; i < samples.size(); i++) {
+            assertThat(samples.get(i)[0]).isEqualTo(epochMillis[i]);
+            assertThat(Double.longBitsToDouble(samples.get(i)[1])).isEqualTo(values[i]);
+        }
+    }
+
+    @Test
+    public void packDoubleValues_unpacksSameSamples() {
+        long[] epochMillis = {1_700_000_000_000L, 1_700_000_001_000L, 1_699_999_999_000L, 0};
+        double[] values = {1.5, 1.25, Double.MAX_VALUE, -0.0};
+
+        byte[] packed = PackedSeriesSamples.pack(epochMillis, values);
+
+        List<long[]> samples = unpack(packed);
+        assertThat(samples).hasSize(4);
+        for (int i = 0; i < samples.size(); i++) {
+            assertThat(samples.get(i)[0]).isEqualTo(epochMillis[i]);
+            assertThat(samples.get(i)[1]).isEqualTo(Double.doubleToRawLongBits(values[i]));
+        }
+    }
+
+    @Test
+    public void packNoSamples_unpacksNoSamples() {
+        byte[] packed = PackedSeriesSamples.pack(new long[0], new double[0]);
+
+        assertThat(unpack(packed)).isEmpty();
+    }
+
+    @Test
+    public void packSortedSamples_takesFewBytesPerSample() {
+        int count = 3600;
+        long[] epochMillis = new long[count];
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            epochMillis[i] = 1_700_000_000_000L + i * 1000L;
+            values[i] = 60 + i % 40;
+        }
+
+        byte[] packed = PackedSeriesSamples.pack(epochMillis, values);
+
+        // 2 bytes for each time delta of a second, 1 byte for each value delta.
+        assertThat(packed.length).isLessThan(count * 4);
+    }
+
+    @Test
+    public void pack_differentLengths_throws() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> PackedSeriesSamples.pack(new long[2], new long[1]));
+    }
+
+    @Test
+    public void unpack_invalidBlob_throws() {
+        byte[] packed = PackedSeriesSamples.pack(new long[] {1, 2}, new double[] {1, 2});
+
+        assertThrows(IllegalArgumentException.class, () -> unpack(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> unpack(new byte[] {42, 0}));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> unpack(Arrays.copyOf(packed, packed.length - 1)));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> unpack(Arrays.copyOf(packed, packed.length + 1)));
+    }
+
+    /** Returns the unpacked samples as pairs of time and raw bits of the value. */
+    private static List<long[]> unpack(byte[] packed) {
+        List<long[]> samples = new ArrayList<>();
+        int count =
+                PackedSeriesSamples.unpack(
+                        packed,
+                        (epochMillis, value) -> {
+                            long bits = Double.doubleToRawLongBits(value);
+                            samples.add(new long[] {epochMillis, bits});
+                        });
+        assertThat(count).isEqualTo(samples.size());
+        return samples;
+    }
+}
@@ -67,4 +67,76 @@ public class WhereClausesTest {
         assertThat(level1.get(/* withWhereKeyword= */ true))
                 .isEqualTo(" WHERE (bar = 'value' OR (foo IN (1, 2, 3)))");
     }
+
+    @Test
+    public void testGetWithPlaceholders_valuesReplacedByArgs() {
+        WhereClauses whereClauses =
+                new WhereClauses(AND)
+                        .addWhereBetweenTimeClause("time", 10, 20)
+                        .addWhereInLongsClause("app_id", List.of(1L, 2L, 1L))
+                        .addWhereEqualsClause("name", "value");
+
+        assertThat(whereClauses.get(/* withWhereKeyword= */ true))
+                .isEqualTo(" WHERE time BETWEEN 10 AND 20 AND app_id IN (1, 2) AND name = 'value'");
+        assertThat(whereClauses.getWithPlaceholders(/* withWhereKeyword= */ true))
+                .isEqualTo(" WHERE time BETWEEN ? AND ? AND app_id IN (?, ?) AND name = ?");
+        assertThat(whereClauses.getArgs()).containsExactly(10L, 20L, 1L, 2L, "value").inOrder();
+    }
+
+    @Test
+    public void testAddWhereFromKeyClause_descending() {
+        WhereClauses whereClauses =
+                new WhereClauses(AND)
+                        .addWhereFromKeyClause(
+                                "t",
+                                "time",
+                                1000,
+                                "row_id",
+                                42,
+                                /* rowIdMask= */ 255,
+                                /* isAscending= */ false);
+
+        String rowId =
+                "(SELECT CASE WHEN MIN(row_id) + ((%1$s - MIN(row_id)) & 255) > MAX(row_id)"
+                        + " THEN MIN(row_id) ELSE MIN(row_id) + ((%1$s - MIN(row_id)) & 255) END"
+                        + " FROM t WHERE time = %2$s)";
+        assertThat(whereClauses.get(/* withWhereKeyword= */ false))
+                .isEqualTo(
+                        "(time <= 1000 AND (time < 1000 OR row_id >= "
+                                + String.format(rowId, 42, 1000)
+                                + "))");
+        assertThat(whereClauses.getWithPlaceholders(/* withWhereKeyword= */ false))
+                .isEqualTo(
+                        "(time <= ? AND (time < ? OR row_id >= "
+                                + String.format(rowId, "?", "?")
+                                + "))");
+        assertThat(whereClauses.getArgs()).containsExactly(1000L, 1000L, 42L, 42L, 1000L).inOrder();
+    }
+
+    @Test
+    public void testGetWithPlaceholders_sqlLiterals_keptInline() {
+        WhereClauses whereClauses =
+                new WhereClauses(AND)
+                        .addWhereEqualsClause("uuid", "x'0A0B'")
+                        .addWhereInClauseWithoutQuotes("uuid", List.of("x'0C0D'"));
+
+        assertThat(whereClauses.getWithPlaceholders(/* withWhereKeyword= */ false))
+                .isEqualTo(whereClauses.get(/* withWhereKeyword= */ false));
+        assertThat(whereClauses.getArgs()).isEmpty();
+    }
+
+    @Test
+    public void testGetWithPlaceholders_logicalTypeChange_argsInOrder() {
+        WhereClauses level1 = new WhereClauses(AND);
+        WhereClauses level2 = new WhereClauses(OR);
+        level1.addWhereGreaterThanClause("foo", 1L);
+        level2.addWhereEqualsClause("bar", "value");
+        level2.addWhereInIntsClause("baz", List.of(2, 3));
+        level1.addNestedWhereClauses(level2);
+        level1.addWhereLessThanClause("foo", 4L);
+
+        assertThat(level1.getWithPlaceholders(/* withWhereKeyword= */ true))
+                .isEqualTo(" WHERE foo > ? AND (bar = ? OR baz IN (?, ?)) AND foo < ?");
+        assertThat(level1.getArgs()).containsExactly(1L, "value", 2L, 3L, 4L).inOrder();
+    }
 }